@@ -1,5 +1,7 @@
 package com.win.marketplace.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -9,7 +11,8 @@ import java.util.concurrent.Executor;
 
 /**
  * Configuração para execução assíncrona de tarefas.
- * Usado principalmente para sincronização paralela de múltiplos ERPs.
+ * Sincronização de ERPs, despacho de corridas e webhooks Uber têm pools próprios para
+ * não competirem entre si nem com os @Async genéricos.
  */
 @Configuration
 @EnableAsync
@@ -19,15 +22,120 @@ public class AsyncConfig implements AsyncConfigurer {
     public Executor getAsyncExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
-        // Pool configurado para sincronização de ERPs
         executor.setCorePoolSize(5);        // Mínimo de threads
         executor.setMaxPoolSize(20);        // Máximo de threads
         executor.setQueueCapacity(100);     // Fila de espera
-        executor.setThreadNamePrefix("erp-sync-");
+        executor.setThreadNamePrefix("async-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Sincronização de estoque dos lojistas com ERP (MultiErpStockScheduler).
+     * Pool fixo: um ERP lento ocupa um worker, não o agendador. A fila é curta
+     * de propósito; quem não couber volta na próxima rodada, na frente por
+     * estar mais atrasado.
+     */
+    @Bean("erpSyncExecutor")
+    public ThreadPoolTaskExecutor erpSyncExecutor(
+            @Value("${app.erp.sync.workers:8}") int workers,
+            @Value("${app.erp.sync.fila:50}") int fila) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(fila);
+        executor.setThreadNamePrefix("erp-sync-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Workers do despacho automático de corridas Uber (outbox).
+     * Fila curta: o que não couber fica na outbox e é reivindicado na próxima rodada.
+     */
+    @Bean("despachoUberExecutor")
+    public ThreadPoolTaskExecutor despachoUberExecutor(
+            @Value("${app.uber.despacho.workers:4}") int workers,
+            @Value("${app.uber.despacho.fila:100}") int fila) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(fila);
+        executor.setThreadNamePrefix("uber-despacho-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Workers da inbox de webhooks Uber (UberWebhookInboxService).
+     * Eventos que não couberem ficam na inbox e são reivindicados na próxima rodada.
+     */
+    @Bean("uberWebhookExecutor")
+    public ThreadPoolTaskExecutor uberWebhookExecutor(
+            @Value("${app.uber.webhook-inbox.workers:4}") int workers,
+            @Value("${app.uber.webhook-inbox.fila:200}") int fila) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(fila);
+        executor.setThreadNamePrefix("uber-webhook-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Consultas de status da reconciliação de entregas Uber. Cada rodada espera
+     * as próprias consultas, então a fila nunca passa do tamanho do lote.
+     */
+    @Bean("uberConsultaExecutor")
+    public ThreadPoolTaskExecutor uberConsultaExecutor(
+            @Value("${app.uber.reconciliacao.workers:4}") int workers,
+            @Value("${app.uber.reconciliacao.tamanho-lote:50}") int tamanhoLote) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(tamanhoLote);
+        executor.setThreadNamePrefix("uber-consulta-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Revalidação em segundo plano das estimativas de frete (stale-while-revalidate).
+     * Se a fila estiver cheia a revalidação é descartada e a cotação antiga continua sendo servida.
+     */
+    @Bean("freteRevalidacaoExecutor")
+    public ThreadPoolTaskExecutor freteRevalidacaoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("frete-revalidacao-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Jobs de geocodificação em lote (um por alvo). Cada job paraleliza as
+     * próprias páginas; este pool só limita quantos jobs rodam ao mesmo tempo.
+     */
+    @Bean("geocodificacaoLoteExecutor")
+    public ThreadPoolTaskExecutor geocodificacaoLoteExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(3);
+        executor.setMaxPoolSize(3);
+        executor.setQueueCapacity(3);
+        executor.setThreadNamePrefix("geocodificacao-lote-");
+        executor.initialize();
+        return executor;
+    }
 }
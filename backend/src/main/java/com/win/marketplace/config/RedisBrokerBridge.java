@@ -0,0 +1,133 @@
+package com.win.marketplace.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Ponte Redis pub/sub entre os brokers em memória das réplicas
+ * (app.websocket.broker.modo=redis).
+ *
+ * Cada réplica mantém o simple broker para as próprias sessões. Mensagens
+ * publicadas pela aplicação em /topic (SimpMessagingTemplate → brokerChannel)
+ * são entregues localmente e também publicadas no canal Redis; as outras
+ * réplicas as recebem e reinjetam no próprio brokerChannel, marcadas com a
+ * origem para não voltarem ao Redis. Se o Redis falhar, a entrega local
+ * continua.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.websocket.broker.modo", havingValue = "redis")
+public class RedisBrokerBridge implements ChannelInterceptor, MessageListener {
+
+    /** Header das mensagens vindas de outra réplica (não são republicadas) */
+    static final String HEADER_ORIGEM = "winBrokerOrigem";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MessageChannel brokerChannel;
+    private final String canal;
+    private final String instancia = UUID.randomUUID().toString();
+
+    private final Counter publicadas;
+    private final Counter recebidas;
+    private final Counter falhas;
+
+    public RedisBrokerBridge(RedisTemplate<String, String> redisTemplate,
+                             ObjectMapper objectMapper,
+                             @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.websocket.broker.redis.canal:win:ws:topic}") String canal) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.brokerChannel = brokerChannel;
+        this.canal = canal;
+        this.publicadas = contador(meterRegistry, "publicada");
+        this.recebidas = contador(meterRegistry, "recebida");
+        this.falhas = contador(meterRegistry, "falha");
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("websocket.ponte.redis").tag("resultado", resultado).register(registry);
+    }
+
+    public String getCanal() {
+        return canal;
+    }
+
+    /**
+     * Intercepta o brokerChannel: publica no Redis o que a aplicação envia para /topic
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || message.getHeaders().containsKey(HEADER_ORIGEM)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String destino = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destino == null || !destino.startsWith("/topic/")) {
+            return message;
+        }
+
+        try {
+            MimeType contentType = (MimeType) message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+            Envelope envelope = new Envelope(instancia, destino,
+                    contentType != null ? contentType.toString() : null,
+                    Base64.getEncoder().encodeToString(payload));
+            redisTemplate.convertAndSend(canal, objectMapper.writeValueAsString(envelope));
+            publicadas.increment();
+        } catch (Exception e) {
+            falhas.increment();
+            log.warn("⚠️ Falha ao publicar {} na ponte Redis (só sessões locais recebem): {}", destino, e.getMessage());
+        }
+        return message;
+    }
+
+    /**
+     * Mensagem publicada por outra réplica: entrega às sessões desta
+     */
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message redisMessage, byte[] pattern) {
+        try {
+            Envelope envelope = objectMapper.readValue(redisMessage.getBody(), Envelope.class);
+            if (instancia.equals(envelope.origem())) {
+                return;
+            }
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setDestination(envelope.destino());
+            if (envelope.contentType() != null) {
+                headers.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            headers.setHeader(HEADER_ORIGEM, envelope.origem());
+            brokerChannel.send(MessageBuilder.createMessage(
+                    Base64.getDecoder().decode(envelope.payload()), headers.getMessageHeaders()));
+            recebidas.increment();
+        } catch (Exception e) {
+            falhas.increment();
+            log.warn("⚠️ Mensagem inválida na ponte Redis: {}", e.getMessage());
+        }
+    }
+
+    record Envelope(String origem, String destino, String contentType, String payload) {
+    }
+}
@@ -71,6 +71,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(allowedOrigins);
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(List.of("X-Proximo-Cursor")); // cursor das listagens paginadas de pedidos
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
@@ -1,18 +1,31 @@
 package com.win.marketplace.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * Configuração WebSocket com STOMP
  * 
  * Responsabilidades:
  * - Habilitar mensageria WebSocket
- * - Configurar message broker (in-memory)
+ * - Configurar message broker (app.websocket.broker.modo)
+ * - Dimensionar canais de entrada/saída e limites de envio por sessão
  * - Definir endpoints de conexão
  * - Configurar prefixos de destino
  * 
@@ -31,8 +44,15 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  *   });
  * });
  * 
+ * Modos de broker (app.websocket.broker.modo):
+ * - simples: broker em memória; só as sessões desta instância recebem (dev / réplica única)
+ * - redis: broker em memória + ponte Redis pub/sub (RedisBrokerBridge) entre réplicas
+ * - relay: broker STOMP externo (ActiveMQ Artemis etc.); fan-out fora do heap da aplicação.
+ *   Os destinos usam "/" (/topic/entrega/{id}/status), então o broker precisa aceitá-los
+ * 
  * @author WinMarketplace Team
  */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
@@ -40,15 +60,144 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${app.cors.allowed-origins:http://localhost:3000,http://127.0.0.1:3000,http://localhost:5173,http://127.0.0.1:5173}")
     private String allowedOrigins;
 
+    @Value("${app.websocket.broker.modo:simples}")
+    private String modoBroker;
+
+    @Value("${app.websocket.broker.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Value("${app.websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.broker.relay.porta:61613}")
+    private int relayPorta;
+
+    @Value("${app.websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${app.websocket.broker.relay.senha:guest}")
+    private String relaySenha;
+
+    @Value("${app.websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${app.websocket.canais.entrada-threads:8}")
+    private int entradaThreads;
+
+    @Value("${app.websocket.canais.saida-threads:16}")
+    private int saidaThreads;
+
+    @Value("${app.websocket.canais.fila:10000}")
+    private int filaCanais;
+
+    @Value("${app.websocket.sessao.tempo-envio-ms:5000}")
+    private int tempoEnvioMs;
+
+    @Value("${app.websocket.sessao.buffer-envio-kb:256}")
+    private int bufferEnvioKb;
+
+    @Value("${app.websocket.sessao.tamanho-mensagem-kb:64}")
+    private int tamanhoMensagemKb;
+
+    private final ObjectProvider<RedisBrokerBridge> redisBrokerBridge;
+    private final TaskScheduler heartbeatScheduler;
+
     /**
-     * Configura o message broker
-     * - enableSimpleBroker: ativa broker in-memory para /topic
+     * @param heartbeatScheduler scheduler do próprio Spring (bean gerenciado, encerrado com o contexto);
+     *                           @Lazy porque é criado pela mesma configuração de mensageria
+     */
+    public WebSocketConfig(ObjectProvider<RedisBrokerBridge> redisBrokerBridge,
+                           @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler heartbeatScheduler) {
+        this.redisBrokerBridge = redisBrokerBridge;
+        this.heartbeatScheduler = heartbeatScheduler;
+    }
+
+    /**
+     * Configura o message broker conforme app.websocket.broker.modo
      * - setApplicationDestinationPrefixes: prefixo para mensagens client-to-server
+     * - setPreservePublishOrder: mensagens para a mesma sessão saem na ordem publicada
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        long[] heartbeat = {heartbeatMs, heartbeatMs};
+
+        if ("relay".equalsIgnoreCase(modoBroker)) {
+            var relay = config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPorta)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relaySenha)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relaySenha)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs);
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            log.info("📡 WebSocket: relay STOMP em {}:{}", relayHost, relayPorta);
+        } else {
+            config.enableSimpleBroker("/topic")
+                    .setHeartbeatValue(heartbeat)
+                    .setTaskScheduler(heartbeatScheduler);
+            RedisBrokerBridge ponte = redisBrokerBridge.getIfAvailable();
+            if (ponte != null) {
+                config.configureBrokerChannel().interceptors(ponte);
+                log.info("📡 WebSocket: broker em memória com ponte Redis ({})", ponte.getCanal());
+            } else {
+                log.info("📡 WebSocket: broker em memória (sessões desta instância apenas)");
+            }
+        }
         config.setApplicationDestinationPrefixes("/app");
+        config.setPreservePublishOrder(true);
+    }
+
+    /**
+     * Mensagens vindas dos clientes (CONNECT, SUBSCRIBE, SEND...)
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(entradaThreads)
+                .maxPoolSize(entradaThreads)
+                .queueCapacity(filaCanais);
+    }
+
+    /**
+     * Fan-out para as sessões: é aqui que milhares de assinantes pesam, por
+     * isso mais threads que a entrada
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(saidaThreads)
+                .maxPoolSize(saidaThreads)
+                .queueCapacity(filaCanais);
+    }
+
+    /**
+     * Contrapressão por sessão: um cliente lento acumula até buffer-envio-kb
+     * ou tempo-envio-ms de envio travado; passando disso a sessão é fechada
+     * (o cliente reconecta) em vez de segurar threads e memória do servidor.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(tempoEnvioMs)
+                .setSendBufferSizeLimit(bufferEnvioKb * 1024)
+                .setMessageSizeLimit(tamanhoMensagemKb * 1024)
+                .setTimeToFirstMessage(30_000);
+    }
+
+    /**
+     * Assinatura do canal da ponte Redis entre réplicas
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.websocket.broker.modo", havingValue = "redis")
+    public RedisMessageListenerContainer websocketBrokerRedisListener(RedisConnectionFactory connectionFactory,
+                                                                     RedisBrokerBridge ponte) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(ponte, new ChannelTopic(ponte.getCanal()));
+        return container;
     }
 
     /**
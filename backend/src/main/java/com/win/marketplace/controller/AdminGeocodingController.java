@@ -1,6 +1,10 @@
 package com.win.marketplace.controller;
 
+import com.win.marketplace.dto.response.JobGeocodificacaoResponseDTO;
+import com.win.marketplace.model.JobGeocodificacao;
 import com.win.marketplace.service.AdminGeocodingService;
+import com.win.marketplace.service.CepCentroideIndex;
+import com.win.marketplace.service.GeocodificacaoLoteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.NotBlank;
@@ -10,17 +14,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Controller Admin para Geocodificação em massa de lojistas
  * 
  * Responsável por:
- * - Geocodificar todos os lojistas em background
+ * - Geocodificar lojistas, endereços e usuários em lote (job retomável em background)
  * - Geocodificar lojista específico sob demanda
  * - Atualizar banco de dados com coordenadas obtidas
+ * - Importar o índice offline de CEPs (centroides por prefixo)
  * 
  * Requer permissão: ADMIN
  */
@@ -32,23 +39,35 @@ import java.util.Map;
 public class AdminGeocodingController {
 
     private final AdminGeocodingService adminGeocodingService;
+    private final CepCentroideIndex cepCentroideIndex;
+    private final GeocodificacaoLoteService geocodificacaoLoteService;
 
     /**
-     * Geocodificar TODOS os lojistas sem coordenadas
+     * Geocodificar TODOS os lojistas sem coordenadas (job em segundo plano)
      * 
-     * @return Relatório resumido da operação
+     * @return Situação do job criado (ou do que já estava em execução)
      */
     @PostMapping("/lojistas/geocodificar-todos")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Geocodificar todos os lojistas", 
-               description = "Executa geocodificação em massa para todos os lojistas sem coordenadas. Pode levar vários minutos.")
+               description = "Inicia a geocodificação em massa dos lojistas sem coordenadas em segundo plano. Acompanhe por GET /lotes/{id}.")
     public ResponseEntity<?> geocodificarTodos() {
         log.info("🚀 [ADMIN] Requisição: Geocodificar todos os lojistas");
-        
+        return iniciarLote(JobGeocodificacao.Alvo.LOJISTA);
+    }
+
+    /**
+     * Inicia a geocodificação em lote de lojistas, endereços ou usuários
+     */
+    @PostMapping("/lotes")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Iniciar geocodificação em lote",
+               description = "Alvos: LOJISTA, ENDERECO ou USUARIO. Retoma do checkpoint se a aplicação reiniciar.")
+    public ResponseEntity<?> iniciarLote(@RequestParam("alvo") JobGeocodificacao.Alvo alvo) {
+        log.info("🚀 [ADMIN] Requisição: Geocodificação em lote de {}", alvo);
+
         try {
-            Map<String, Object> resultado = adminGeocodingService.geocodificarTodosLojistas();
-            log.info("✅ Geocodificação em massa finalizada: {}", resultado);
-            return ResponseEntity.ok(resultado);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(geocodificacaoLoteService.iniciar(alvo));
         } catch (Exception e) {
             log.error("❌ Erro ao iniciar geocodificação em massa: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -59,6 +78,48 @@ public class AdminGeocodingController {
         }
     }
 
+    /**
+     * Jobs de geocodificação em lote mais recentes
+     */
+    @GetMapping("/lotes")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Listar geocodificações em lote", description = "Últimos 20 jobs com progresso")
+    public ResponseEntity<List<JobGeocodificacaoResponseDTO>> listarLotes() {
+        return ResponseEntity.ok(geocodificacaoLoteService.listarRecentes());
+    }
+
+    /**
+     * Progresso, vazão e ETA de um job
+     */
+    @GetMapping("/lotes/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Status da geocodificação em lote", description = "Progresso, vazão média e tempo estimado restante")
+    public ResponseEntity<JobGeocodificacaoResponseDTO> statusLote(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(geocodificacaoLoteService.status(jobId));
+    }
+
+    /**
+     * Cancela um job (para ao fim da página corrente)
+     */
+    @PostMapping("/lotes/{jobId}/cancelar")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Cancelar geocodificação em lote")
+    public ResponseEntity<JobGeocodificacaoResponseDTO> cancelarLote(@PathVariable UUID jobId) {
+        log.info("🛑 [ADMIN] Requisição: Cancelar geocodificação em lote {}", jobId);
+        return ResponseEntity.ok(geocodificacaoLoteService.cancelar(jobId));
+    }
+
+    /**
+     * Retoma um job cancelado, com falha ou abandonado a partir do checkpoint
+     */
+    @PostMapping("/lotes/{jobId}/retomar")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Retomar geocodificação em lote")
+    public ResponseEntity<JobGeocodificacaoResponseDTO> retomarLote(@PathVariable UUID jobId) {
+        log.info("🔁 [ADMIN] Requisição: Retomar geocodificação em lote {}", jobId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(geocodificacaoLoteService.retomar(jobId));
+    }
+
     /**
      * Geocodificar um lojista específico
      * 
@@ -107,4 +168,47 @@ public class AdminGeocodingController {
                     ));
         }
     }
+
+    /**
+     * Importa o índice offline de CEPs a partir de CSV (cep,latitude,longitude)
+     *
+     * @param file CSV com CEPs completos ou prefixos (3 a 8 dígitos)
+     * @return Resumo da importação
+     */
+    @PostMapping("/cep-index/importar")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Importar índice de CEPs",
+               description = "Gera o índice offline de centroides por prefixo de CEP a partir de um CSV (cep,latitude,longitude)")
+    public ResponseEntity<?> importarIndiceCep(@RequestParam("file") MultipartFile file) {
+        log.info("🗺️ [ADMIN] Requisição: Importar índice de CEPs ({} bytes)", file.getSize());
+
+        try {
+            Map<String, Object> resultado = cepCentroideIndex.importarCsv(file.getInputStream());
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ CSV de CEPs inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                        "erro", "CSV inválido",
+                        "mensagem", e.getMessage()
+                    ));
+        } catch (Exception e) {
+            log.error("❌ Erro ao importar índice de CEPs: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of(
+                        "erro", "Falha ao importar índice de CEPs",
+                        "mensagem", e.getMessage()
+                    ));
+        }
+    }
+
+    /**
+     * Situação do índice offline de CEPs
+     */
+    @GetMapping("/cep-index")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Status do índice de CEPs", description = "Quantidade de prefixos carregados e acertos")
+    public ResponseEntity<?> statusIndiceCep() {
+        return ResponseEntity.ok(cepCentroideIndex.estatisticas());
+    }
 }
@@ -0,0 +1,52 @@
+package com.win.marketplace.controller;
+
+import com.win.marketplace.service.ErpWebhookService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Controller para receber webhooks de estoque dos ERPs.
+ * 
+ * Endpoint público (sem JWT), autenticado pelo segredo de webhook do lojista
+ * (gerado em POST /api/v1/lojista/erp/webhook/segredo):
+ * - Header X-Win-Signature com o HMAC-SHA256 (hex) do corpo bruto, ou
+ * - Parâmetro token com o próprio segredo, para ERPs que só permitem cadastrar a URL
+ * 
+ * Os saldos são enfileirados e aplicados em micro-lotes (ErpWebhookService);
+ * a resposta 202 só confirma o recebimento.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/webhooks/erp")
+@RequiredArgsConstructor
+public class ErpWebhookController {
+
+    private final ErpWebhookService erpWebhookService;
+
+    /**
+     * POST /api/v1/webhooks/erp/{configId}
+     */
+    @PostMapping("/{configId}")
+    public ResponseEntity<Map<String, Object>> receberEstoque(
+            @PathVariable UUID configId,
+            @RequestHeader(value = "X-Win-Signature", required = false) String assinatura,
+            @RequestParam(value = "token", required = false) String token,
+            @RequestBody String corpo) {
+
+        int enfileirados = erpWebhookService.receber(configId, corpo, assinatura, token);
+        return ResponseEntity.accepted().body(Map.of("status", "received", "saldos", enfileirados));
+    }
+
+    /**
+     * Verificação da URL pelo ERP
+     */
+    @GetMapping("/{configId}")
+    public ResponseEntity<String> health(@PathVariable UUID configId) {
+        return ResponseEntity.ok("Webhook ERP ativo");
+    }
+}
@@ -9,6 +9,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Arrays;
@@ -97,6 +99,27 @@ public class LojistaErpController {
         return ResponseEntity.ok().build();
     }
     
+    /**
+     * Gera (ou troca) o segredo dos webhooks de estoque do ERP.
+     * O segredo só é exibido nesta resposta; deve ser cadastrado no ERP
+     * junto com a URL do webhook.
+     */
+    @PostMapping("/webhook/segredo")
+    @PreAuthorize("hasRole('LOJISTA')")
+    public ResponseEntity<Map<String, String>> gerarSegredoWebhook(@RequestParam UUID lojistaId) {
+        log.info("Gerando segredo de webhook ERP do lojista: {}", lojistaId);
+        
+        // O service recusa (403) lojista que não é do usuário autenticado
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String segredo = erpConfigService.gerarSegredoWebhook(lojistaId, authentication.getName());
+        ErpConfigResponseDTO config = erpConfigService.buscarConfiguracao(lojistaId);
+        
+        return ResponseEntity.ok(Map.of(
+            "segredo", segredo,
+            "url", "/api/v1/webhooks/erp/" + config.id()
+        ));
+    }
+    
     /**
      * Alterna sincronização automática
      */
@@ -1,6 +1,7 @@
 package com.win.marketplace.controller;
 
 import com.win.marketplace.dto.request.PedidoCreateRequestDTO;
+import com.win.marketplace.dto.response.PedidoPaginaResponseDTO;
 import com.win.marketplace.dto.response.PedidoResponseDTO;
 import com.win.marketplace.model.Pedido;
 import com.win.marketplace.service.PedidoService;
@@ -23,12 +24,18 @@ import java.util.UUID;
  * - Listar próprios pedidos: Usuário autenticado
  * - Atualizar status/operações: ADMIN ou LOJISTA
  * - Motorista: Pode ver pedidos atribuídos a ele e atualizar status de entrega
+ *
+ * Listagens são paginadas por cursor (mais recentes primeiro): use ?limite= (padrão 50,
+ * máx. 100) e repasse o header X-Proximo-Cursor recebido em ?cursor= para obter a página
+ * seguinte.
  */
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/pedidos")
 public class PedidoController {
 
+    public static final String HEADER_PROXIMO_CURSOR = "X-Proximo-Cursor";
+
     private final PedidoService pedidoService;
 
     public PedidoController(PedidoService pedidoService) {
@@ -53,11 +60,13 @@ public class PedidoController {
     @GetMapping("/usuario/{usuarioId}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<List<PedidoResponseDTO>> listarPedidosPorUsuario(
-            @PathVariable UUID usuarioId) {
+            @PathVariable UUID usuarioId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
         log.info("GET /api/v1/pedidos/usuario/{} - Buscando pedidos do usuário", usuarioId);
-        List<PedidoResponseDTO> pedidos = pedidoService.listarPedidosPorUsuario(usuarioId);
-        log.info("Encontrados {} pedidos para o usuário {}", pedidos.size(), usuarioId);
-        return ResponseEntity.ok(pedidos);
+        PedidoPaginaResponseDTO pagina = pedidoService.listarPedidosPorUsuario(usuarioId, cursor, limite);
+        log.info("Encontrados {} pedidos para o usuário {}", pagina.itens().size(), usuarioId);
+        return comCursor(pagina);
     }
 
     /**
@@ -85,9 +94,10 @@ public class PedidoController {
     @GetMapping("/motorista/{motoristaId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'MOTORISTA')")
     public ResponseEntity<List<PedidoResponseDTO>> listarPedidosPorMotorista(
-            @PathVariable UUID motoristaId) {
-        List<PedidoResponseDTO> pedidos = pedidoService.listarPedidosPorMotorista(motoristaId);
-        return ResponseEntity.ok(pedidos);
+            @PathVariable UUID motoristaId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return comCursor(pedidoService.listarPedidosPorMotorista(motoristaId, cursor, limite));
     }
 
     /**
@@ -96,10 +106,11 @@ public class PedidoController {
     @GetMapping("/status/{status}")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOJISTA')")
     public ResponseEntity<List<PedidoResponseDTO>> listarPorStatus(
-            @PathVariable String status) {
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
         Pedido.StatusPedido statusEnum = Pedido.StatusPedido.valueOf(status.toUpperCase());
-        List<PedidoResponseDTO> pedidos = pedidoService.listarPorStatus(statusEnum);
-        return ResponseEntity.ok(pedidos);
+        return comCursor(pedidoService.listarPorStatus(statusEnum, cursor, limite));
     }
 
     /**
@@ -108,9 +119,10 @@ public class PedidoController {
     @GetMapping("/lojista/{lojistaId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOJISTA')")
     public ResponseEntity<List<PedidoResponseDTO>> listarPedidosPorLojista(
-            @PathVariable UUID lojistaId) {
-        List<PedidoResponseDTO> pedidos = pedidoService.listarPedidosPorLojista(lojistaId);
-        return ResponseEntity.ok(pedidos);
+            @PathVariable UUID lojistaId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return comCursor(pedidoService.listarPedidosPorLojista(lojistaId, cursor, limite));
     }
 
     /**
@@ -119,10 +131,11 @@ public class PedidoController {
     @GetMapping("/lojista/{lojistaId}/pendentes-preparacao")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOJISTA')")
     public ResponseEntity<List<PedidoResponseDTO>> listarPedidosPagosPendentesPreparacaoPorLojista(
-            @PathVariable UUID lojistaId) {
-        List<PedidoResponseDTO> pedidos = pedidoService
-                .listarPedidosPagosPendentesPreparacaoPorLojista(lojistaId);
-        return ResponseEntity.ok(pedidos);
+            @PathVariable UUID lojistaId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return comCursor(pedidoService
+                .listarPedidosPagosPendentesPreparacaoPorLojista(lojistaId, cursor, limite));
     }
 
     /**
@@ -132,10 +145,11 @@ public class PedidoController {
     @PreAuthorize("hasAnyRole('ADMIN', 'LOJISTA')")
     public ResponseEntity<List<PedidoResponseDTO>> listarPedidosPorLojistaEStatus(
             @PathVariable UUID lojistaId,
-            @PathVariable String status) {
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
         Pedido.StatusPedido statusEnum = Pedido.StatusPedido.valueOf(status.toUpperCase());
-        List<PedidoResponseDTO> pedidos = pedidoService.listarPedidosPorLojistaEStatus(lojistaId, statusEnum);
-        return ResponseEntity.ok(pedidos);
+        return comCursor(pedidoService.listarPedidosPorLojistaEStatus(lojistaId, statusEnum, cursor, limite));
     }
 
     /**
@@ -254,8 +268,21 @@ public class PedidoController {
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<PedidoResponseDTO>> listarTodos() {
-        List<PedidoResponseDTO> pedidos = pedidoService.listarTodos();
-        return ResponseEntity.ok(pedidos);
+    public ResponseEntity<List<PedidoResponseDTO>> listarTodos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return comCursor(pedidoService.listarTodos(cursor, limite));
+    }
+
+    /**
+     * Corpo continua sendo a lista de pedidos (compatível com os clientes atuais);
+     * o cursor da próxima página vai no header X-Proximo-Cursor (ausente na última página)
+     */
+    private ResponseEntity<List<PedidoResponseDTO>> comCursor(PedidoPaginaResponseDTO pagina) {
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok();
+        if (pagina.proximoCursor() != null) {
+            resposta.header(HEADER_PROXIMO_CURSOR, pagina.proximoCursor());
+        }
+        return resposta.body(pagina.itens());
     }
 }
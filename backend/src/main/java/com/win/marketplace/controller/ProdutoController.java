@@ -3,10 +3,15 @@ package com.win.marketplace.controller;
 import com.win.marketplace.dto.request.ProdutoCreateRequestDTO;
 import com.win.marketplace.dto.request.ProdutoUpdateRequestDTO;
 import com.win.marketplace.dto.response.GtinDataResponseDTO;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO;
 import com.win.marketplace.dto.response.ProdutoResponseDTO;
 import com.win.marketplace.dto.response.ProdutoSummaryResponseDTO;
 import com.win.marketplace.service.GtinApiService;
+import com.win.marketplace.service.ProdutoBuscaService;
+import com.win.marketplace.service.ProdutoCatalogoService;
 import com.win.marketplace.service.ProdutoService;
+import com.win.marketplace.service.RankingVendasService;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -21,7 +26,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -40,6 +47,10 @@ import java.util.UUID;
 public class ProdutoController {
 
     private final ProdutoService produtoService;
+    private final ProdutoBuscaService produtoBuscaService;
+    private final ProdutoCatalogoService produtoCatalogoService;
+    private final RankingVendasService rankingVendasService;
+    private final CatalogoCacheService catalogoCacheService;
     private final GtinApiService gtinApiService;
 
     /**
@@ -66,7 +77,7 @@ public class ProdutoController {
             @PageableDefault(size = 20, sort = "criadoEm") Pageable pageable) {
         
         log.info("GET /api/v1/produtos - Página: {}, Tamanho: {}", pageable.getPageNumber(), pageable.getPageSize());
-        Page<ProdutoSummaryResponseDTO> produtos = produtoService.listarProdutosPaginados(pageable);
+        Page<ProdutoSummaryResponseDTO> produtos = produtoCatalogoService.listarProdutosPaginados(pageable);
         return ResponseEntity.ok(produtos);
     }
 
@@ -82,6 +93,28 @@ public class ProdutoController {
         return ResponseEntity.ok(produtos);
     }
 
+    /**
+     * Estatísticas do cache do catálogo (hits/misses/evicções) - Apenas ADMIN
+     */
+    @GetMapping("/admin/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Estatísticas do cache do catálogo", description = "Hits, misses e evicções dos níveis local e Redis")
+    public ResponseEntity<Map<String, Object>> estatisticasCacheCatalogo() {
+        log.info("GET /api/v1/produtos/admin/cache/stats");
+        return ResponseEntity.ok(catalogoCacheService.getEstatisticas());
+    }
+
+    /**
+     * Reconstrói o ranking de mais vendidos a partir do histórico de pedidos - Apenas ADMIN
+     */
+    @PostMapping("/admin/ranking-vendas/reconstruir")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Reconstruir ranking de vendas", description = "Recalcula os contadores de mais vendidos (total e janelas de 7/30 dias)")
+    public ResponseEntity<Map<String, Object>> reconstruirRankingVendas() {
+        log.info("POST /api/v1/produtos/admin/ranking-vendas/reconstruir");
+        return ResponseEntity.ok(rankingVendasService.reconstruir());
+    }
+
     /**
      * Lista produtos de um lojista específico
      */
@@ -104,7 +137,7 @@ public class ProdutoController {
             @Parameter(description = "ID da categoria") @PathVariable UUID categoriaId) {
         
         log.info("GET /api/v1/produtos/categoria/{}", categoriaId);
-        List<ProdutoResponseDTO> produtos = produtoService.listarProdutosPorCategoria(categoriaId);
+        List<ProdutoResponseDTO> produtos = produtoCatalogoService.listarProdutosPorCategoria(categoriaId);
         return ResponseEntity.ok(produtos);
     }
 
@@ -121,6 +154,28 @@ public class ProdutoController {
         return ResponseEntity.ok(produtos);
     }
 
+    /**
+     * Busca full-text com relevância, paginação por cursor e facetas
+     */
+    @GetMapping("/busca")
+    @Operation(summary = "Busca full-text de produtos",
+               description = "Busca por nome, categoria e descrição (sem acentos, com stemming), ordenada por relevância. " +
+                             "Use o proximoCursor retornado para obter a página seguinte.")
+    public ResponseEntity<ProdutoBuscaResponseDTO> buscarFullText(
+            @Parameter(description = "Texto da busca") @RequestParam String q,
+            @Parameter(description = "Filtrar por categoria") @RequestParam(required = false) UUID categoriaId,
+            @Parameter(description = "Filtrar por lojista") @RequestParam(required = false) UUID lojistaId,
+            @Parameter(description = "Preço mínimo") @RequestParam(required = false) BigDecimal precoMin,
+            @Parameter(description = "Preço máximo") @RequestParam(required = false) BigDecimal precoMax,
+            @Parameter(description = "Cursor da página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamanho da página (máx. 100)") @RequestParam(defaultValue = "20") int limite) {
+        
+        log.info("GET /api/v1/produtos/busca?q={}", q);
+        ProdutoBuscaResponseDTO resultado = produtoBuscaService.buscar(
+                q, categoriaId, lojistaId, precoMin, precoMax, cursor, limite);
+        return ResponseEntity.ok(resultado);
+    }
+
     /**
      * Busca produto por ID
      */
@@ -130,7 +185,7 @@ public class ProdutoController {
             @Parameter(description = "ID do produto") @PathVariable UUID id) {
         
         log.info("GET /api/v1/produtos/{}", id);
-        ProdutoResponseDTO produto = produtoService.buscarPorId(id);
+        ProdutoResponseDTO produto = produtoCatalogoService.buscarPorId(id);
         return ResponseEntity.ok(produto);
     }
 
@@ -226,12 +281,17 @@ public class ProdutoController {
      * Lista produtos mais vendidos
      */
     @GetMapping("/mais-vendidos")
-    @Operation(summary = "Produtos mais vendidos", description = "Lista os produtos mais vendidos")
+    @Operation(summary = "Produtos mais vendidos", description = "Lista os produtos mais vendidos, opcionalmente por categoria, lojista e janela de tempo")
     public ResponseEntity<List<ProdutoSummaryResponseDTO>> listarMaisVendidos(
-            @Parameter(description = "Limite de produtos a retornar") @RequestParam(defaultValue = "10") int limite) {
+            @Parameter(description = "Limite de produtos a retornar (máx. 100)") @RequestParam(defaultValue = "10") int limite,
+            @Parameter(description = "Janela: 7d, 30d ou total") @RequestParam(required = false) String janela,
+            @Parameter(description = "Filtrar por categoria") @RequestParam(required = false) UUID categoriaId,
+            @Parameter(description = "Filtrar por lojista") @RequestParam(required = false) UUID lojistaId) {
         
-        log.info("GET /api/v1/produtos/mais-vendidos?limite={}", limite);
-        List<ProdutoSummaryResponseDTO> produtos = produtoService.listarMaisVendidos(limite);
+        log.info("GET /api/v1/produtos/mais-vendidos?limite={}&janela={}&categoriaId={}&lojistaId={}",
+                limite, janela, categoriaId, lojistaId);
+        List<ProdutoSummaryResponseDTO> produtos = produtoCatalogoService.listarMaisVendidos(
+                limite, RankingVendasService.Janela.deParametro(janela), categoriaId, lojistaId);
         return ResponseEntity.ok(produtos);
     }
 
@@ -244,7 +304,7 @@ public class ProdutoController {
             @Parameter(description = "Limite de produtos a retornar") @RequestParam(defaultValue = "10") int limite) {
         
         log.info("GET /api/v1/produtos/mais-avaliados?limite={}", limite);
-        List<ProdutoSummaryResponseDTO> produtos = produtoService.listarMaisAvaliados(limite);
+        List<ProdutoSummaryResponseDTO> produtos = produtoCatalogoService.listarMaisAvaliados(limite);
         return ResponseEntity.ok(produtos);
     }
 
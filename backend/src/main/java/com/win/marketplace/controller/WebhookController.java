@@ -1,6 +1,7 @@
 package com.win.marketplace.controller;
 
 import com.win.marketplace.dto.webhook.UberWebhookEventDTO;
+import com.win.marketplace.service.UberWebhookInboxService;
 import com.win.marketplace.service.UberWebhookService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -34,6 +35,7 @@ import java.util.Map;
 public class WebhookController {
 
     private final UberWebhookService uberWebhookService;
+    private final UberWebhookInboxService uberWebhookInboxService;
 
     /**
      * Webhook otimizado para notificações da Uber Direct (versão tipada).
@@ -52,42 +54,49 @@ public class WebhookController {
      *   <li>deliveries.canceled</li>
      * </ul>
      * 
-     * @param event DTO tipado com dados do evento
+     * <p>O evento é validado, gravado na inbox e respondido com 200 na hora;
+     * o processamento acontece em workers (UberWebhookInboxService). Eventos
+     * repetidos (mesmo event_id) também recebem 200, sem reprocessar.</p>
+     * 
+     * @param corpo Corpo bruto do evento (a assinatura é calculada sobre ele)
      * @param signature Assinatura HMAC-SHA256 para validação
-     * @return 200 OK se processado com sucesso
+     * @return 200 OK se aceito
      */
     @PostMapping("/uber-direct")
     public ResponseEntity<?> receberWebhookUber(
-            @RequestBody UberWebhookEventDTO event,
+            @RequestBody String corpo,
             @RequestHeader(value = "X-Uber-Signature", required = false) String signature) {
         
-        log.info("📥 Webhook Uber recebido - Event Type: {}", 
-                event.getEventType());
-        
         try {
-            // Processar webhook (validação HMAC incluída)
-            uberWebhookService.processarWebhook(event, signature);
+            boolean novo = uberWebhookInboxService.receber(corpo, signature);
             
             // Retornar sucesso para a Uber
             return ResponseEntity.ok(Map.of(
                     "status", "success",
-                    "message", "Webhook processado com sucesso"
+                    "message", novo ? "Webhook recebido" : "Webhook já recebido"
             ));
             
         } catch (SecurityException e) {
             // Assinatura inválida
-            log.error("🔒 Assinatura HMAC inválida - possível tentativa de fraude", e);
+            log.error("🔒 Assinatura HMAC inválida - possível tentativa de fraude");
             return ResponseEntity.status(401).body(Map.of(
                     "status", "error",
                     "message", "Assinatura inválida"
             ));
             
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Webhook Uber com corpo inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "status", "error",
+                    "message", "Evento inválido"
+            ));
+            
         } catch (Exception e) {
-            // Erro genérico
-            log.error("❌ Erro ao processar webhook Uber", e);
+            // Falha ao gravar: 500 faz a Uber reenviar
+            log.error("❌ Erro ao receber webhook Uber", e);
             return ResponseEntity.status(500).body(Map.of(
                     "status", "error",
-                    "message", "Erro ao processar webhook: " + e.getMessage()
+                    "message", "Erro ao receber webhook: " + e.getMessage()
             ));
         }
     }
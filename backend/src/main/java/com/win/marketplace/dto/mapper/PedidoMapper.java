@@ -33,6 +33,7 @@ public interface PedidoMapper {
     @Mapping(target = "entregueEm", ignore = true)
     @Mapping(target = "itens", ignore = true)
     @Mapping(target = "cuponsAplicados", ignore = true)
+    @Mapping(target = "estoqueReservado", ignore = true)
     Pedido toEntity(PedidoCreateRequestDTO requestDTO);
 
     @Mapping(source = "usuario.id", target = "usuarioId")
@@ -61,5 +62,6 @@ public interface PedidoMapper {
     @Mapping(target = "entregueEm", ignore = true)
     @Mapping(target = "itens", ignore = true)
     @Mapping(target = "cuponsAplicados", ignore = true)
+    @Mapping(target = "estoqueReservado", ignore = true)
     void updateEntityFromDTO(PedidoCreateRequestDTO requestDTO, @MappingTarget Pedido pedido);
 }
@@ -82,4 +82,6 @@ public class SolicitacaoCorridaUberRequestDTO {
     private String cepDestino; // CEP separado (recomendado pela Uber)
     
     private UUID lojistaId; // ID da loja no sistema WIN (external_store_id)
+
+    private String chaveIdempotencia; // Enviada no header Idempotency-Key (retentativas não duplicam a corrida)
 }
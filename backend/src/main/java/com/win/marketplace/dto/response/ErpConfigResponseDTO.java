@@ -19,6 +19,8 @@ public record ErpConfigResponseDTO(
     Boolean syncEnabled,
     LocalDateTime lastSyncAt,
     String lastSyncStatus,
+    Boolean webhookConfigured,
+    LocalDateTime lastWebhookAt,
     Boolean ativo
 ) {
     public static ErpConfigResponseDTO fromEntity(com.win.marketplace.model.LojistaErpConfig config) {
@@ -32,6 +34,8 @@ public record ErpConfigResponseDTO(
             .syncEnabled(config.getSyncEnabled())
             .lastSyncAt(config.getLastSyncAt())
             .lastSyncStatus(config.getLastSyncStatus())
+            .webhookConfigured(config.getWebhookSecretEncrypted() != null)
+            .lastWebhookAt(config.getLastWebhookAt())
             .ativo(config.getAtivo())
             .build();
     }
@@ -0,0 +1,60 @@
+package com.win.marketplace.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Situação de um job de geocodificação em lote
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobGeocodificacaoResponseDTO {
+
+    private UUID id;
+
+    /**
+     * LOJISTA, ENDERECO ou USUARIO
+     */
+    private String alvo;
+
+    /**
+     * EXECUTANDO, CONCLUIDO, CANCELADO ou FALHOU
+     */
+    private String status;
+
+    /**
+     * Registros sem coordenadas quando o job foi criado
+     */
+    private Integer total;
+
+    private Integer processados;
+    private Integer sucessos;
+    private Integer falhas;
+
+    /**
+     * Progresso de 0 a 100
+     */
+    private Double percentual;
+
+    /**
+     * Vazão média desde o início
+     */
+    private Double itensPorMinuto;
+
+    /**
+     * Estimativa de término (apenas enquanto em execução)
+     */
+    private Long etaSegundos;
+
+    private String ultimoErro;
+    private OffsetDateTime iniciadoEm;
+    private OffsetDateTime atualizadoEm;
+    private OffsetDateTime concluidoEm;
+}
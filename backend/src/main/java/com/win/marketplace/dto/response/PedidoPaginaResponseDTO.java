@@ -0,0 +1,14 @@
+package com.win.marketplace.dto.response;
+
+import java.util.List;
+
+/**
+ * Página de uma listagem de pedidos (mais recentes primeiro)
+ *
+ * - itens: pedidos da página
+ * - proximoCursor: cursor opaco para a próxima página (null quando não há mais pedidos)
+ */
+public record PedidoPaginaResponseDTO(
+    List<PedidoResponseDTO> itens,
+    String proximoCursor
+) {}
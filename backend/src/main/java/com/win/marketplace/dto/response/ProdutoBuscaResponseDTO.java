@@ -0,0 +1,36 @@
+package com.win.marketplace.dto.response;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO de resposta da busca full-text de produtos
+ *
+ * - itens: página atual ordenada por relevância
+ * - proximoCursor: cursor opaco para a próxima página (null quando não há mais resultados)
+ * - facetas: contagens por categoria, lojista e faixa de preço (apenas na primeira página)
+ */
+public record ProdutoBuscaResponseDTO(
+    List<ProdutoSummaryResponseDTO> itens,
+    String proximoCursor,
+    FacetasDTO facetas
+) {
+    public record FacetasDTO(
+        List<FacetaDTO> categorias,
+        List<FacetaDTO> lojistas,
+        List<FaixaPrecoDTO> faixasPreco
+    ) {}
+
+    public record FacetaDTO(
+        UUID id,
+        String nome,
+        Long quantidade
+    ) {}
+
+    public record FaixaPrecoDTO(
+        BigDecimal precoMin, // null = sem limite inferior
+        BigDecimal precoMax, // null = sem limite superior
+        Long quantidade
+    ) {}
+}
@@ -1,5 +1,6 @@
 package com.win.marketplace.dto.webhook;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
@@ -36,6 +37,13 @@ import java.time.Instant;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class UberWebhookEventDTO {
     
+    /**
+     * ID do evento (único por notificação; repetido nas retentativas da Uber)
+     */
+    @JsonProperty("event_id")
+    @JsonAlias("id")
+    private String eventId;
+    
     /**
      * Tipo de evento
      */
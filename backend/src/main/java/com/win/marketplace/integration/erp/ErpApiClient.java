@@ -1,8 +1,10 @@
 package com.win.marketplace.integration.erp;
 
 import com.win.marketplace.integration.erp.dto.ErpProductDTO;
+import com.win.marketplace.integration.erp.dto.ErpStockChangesDTO;
 import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +32,27 @@ public interface ErpApiClient {
      */
     List<ErpStockUpdateDTO> getStockUpdates(List<String> skus);
     
+    /**
+     * Se o ERP consegue listar apenas os saldos alterados desde um instante
+     * (sincronização incremental). ERPs sem esse recurso usam sempre getStockUpdates.
+     */
+    default boolean supportsIncrementalSync() {
+        return false;
+    }
+    
+    /**
+     * Busca uma página dos saldos alterados desde o instante informado
+     * 
+     * @param desde Instante (horário local do servidor) a partir do qual buscar alterações
+     * @param pagina Página, começando em 1
+     * @return Página de alterações, ou null se o ERP recusar o modo incremental
+     *         (o chamador deve fazer a sincronização completa)
+     * @throws ErpIntegrationException em caso de erro na comunicação
+     */
+    default ErpStockChangesDTO getStockChangesSince(LocalDateTime desde, int pagina) {
+        return null;
+    }
+    
     /**
      * Testa a conexão com o ERP usando as credenciais configuradas
      * 
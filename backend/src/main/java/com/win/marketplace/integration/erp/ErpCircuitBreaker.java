@@ -0,0 +1,91 @@
+package com.win.marketplace.integration.erp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker simples por host e credencial de ERP.
+ *
+ * Após N falhas seguidas o circuito abre e as chamadas falham imediatamente
+ * (sem ocupar conexões nem threads) até o fim do intervalo de espera. Depois
+ * disso uma única chamada de teste é liberada: sucesso fecha o circuito,
+ * falha reabre por mais um intervalo.
+ */
+public class ErpCircuitBreaker {
+
+    public enum Estado { FECHADO, ABERTO, MEIO_ABERTO }
+
+    private final int limiteFalhas;
+    private final Duration espera;
+    private final Clock relogio;
+
+    private final AtomicInteger falhasSeguidas = new AtomicInteger();
+    private final AtomicBoolean testeEmAndamento = new AtomicBoolean();
+    private volatile Instant abertoAte;
+
+    public ErpCircuitBreaker(int limiteFalhas, Duration espera) {
+        this(limiteFalhas, espera, Clock.systemUTC());
+    }
+
+    ErpCircuitBreaker(int limiteFalhas, Duration espera, Clock relogio) {
+        this.limiteFalhas = Math.max(1, limiteFalhas);
+        this.espera = espera;
+        this.relogio = relogio;
+    }
+
+    /**
+     * Se a chamada pode ser feita agora
+     */
+    public boolean permitir() {
+        Instant ate = abertoAte;
+        if (ate == null) {
+            return true;
+        }
+        if (relogio.instant().isBefore(ate)) {
+            return false;
+        }
+        // Meio aberto: só uma chamada de teste por vez
+        return testeEmAndamento.compareAndSet(false, true);
+    }
+
+    public void registrarSucesso() {
+        falhasSeguidas.set(0);
+        abertoAte = null;
+        testeEmAndamento.set(false);
+    }
+
+    /**
+     * Resposta que não diz nada sobre a saúde do host (ex.: 429): só devolve a
+     * vaga da chamada de teste, sem fechar nem reabrir o circuito
+     */
+    public void liberarTeste() {
+        testeEmAndamento.set(false);
+    }
+
+    public void registrarFalha() {
+        boolean eraTeste = testeEmAndamento.getAndSet(false);
+        if (eraTeste || falhasSeguidas.incrementAndGet() >= limiteFalhas) {
+            abertoAte = relogio.instant().plus(espera);
+        }
+    }
+
+    /**
+     * Chamada recusada sem tentar porque o circuito do host está aberto
+     */
+    public static class CircuitoAbertoException extends ErpIntegrationException {
+        public CircuitoAbertoException(String host) {
+            super("ERP indisponível (circuito aberto): " + host);
+        }
+    }
+
+    public Estado getEstado() {
+        Instant ate = abertoAte;
+        if (ate == null) {
+            return Estado.FECHADO;
+        }
+        return relogio.instant().isBefore(ate) ? Estado.ABERTO : Estado.MEIO_ABERTO;
+    }
+}
@@ -6,23 +6,59 @@ import com.win.marketplace.integration.erp.impl.TinyApiClient;
 import com.win.marketplace.model.LojistaErpConfig;
 import com.win.marketplace.model.enums.ErpType;
 import com.win.marketplace.service.EncryptionService;
-import lombok.RequiredArgsConstructor;
+import com.win.marketplace.service.cache.LocalTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+
 /**
  * Factory para criar instâncias de clientes ERP baseado na configuração do lojista.
  * Aplica o padrão Factory + Strategy para injeção dinâmica de dependências.
+ * 
+ * Os clientes são reaproveitados por configuração: a chave é o id da
+ * configuração e a entrada guarda a "versão" dos campos que definem o cliente
+ * (tipo, URL, chave criptografada). Se a versão mudou, o cliente é recriado;
+ * o LojistaErpConfigService também invalida ao salvar. Lojistas inativos saem
+ * do cache após inatividade-minutos sem uso (ou pelo LRU, acima da capacidade).
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ErpClientFactory {
     
     private final EncryptionService encryptionService;
+    private final ErpHttpClientPool httpPool;
+    private final LocalTtlCache<UUID, ClienteVersionado> clientes;
+    
+    private final Counter reaproveitados;
+    private final Counter criados;
+    
+    public ErpClientFactory(EncryptionService encryptionService,
+                            ErpHttpClientPool httpPool,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.erp.clientes.capacidade:1000}") int capacidade,
+                            @Value("${app.erp.clientes.inatividade-minutos:60}") long inatividadeMinutos) {
+        this.encryptionService = encryptionService;
+        this.httpPool = httpPool;
+        this.clientes = new LocalTtlCache<>(capacidade, Duration.ofMinutes(inatividadeMinutos));
+        
+        this.reaproveitados = Counter.builder("erp.clientes.requisicoes").tag("resultado", "hit").register(meterRegistry);
+        this.criados = Counter.builder("erp.clientes.requisicoes").tag("resultado", "miss").register(meterRegistry);
+        FunctionCounter.builder("erp.clientes.evicoes", clientes, LocalTtlCache::getEvicoes).register(meterRegistry);
+        Gauge.builder("erp.clientes.tamanho", clientes, LocalTtlCache::tamanho).register(meterRegistry);
+    }
     
     /**
-     * Cria uma instância do cliente ERP apropriado baseado na configuração
+     * Retorna o cliente ERP da configuração, reaproveitando o já criado
+     * (credenciais descriptografadas e conexões) enquanto ela não mudar
      * 
      * @param config Configuração do ERP do lojista
      * @return Instância do cliente ERP configurado
@@ -34,6 +70,47 @@ public class ErpClientFactory {
             return new ManualErpClient();
         }
         
+        // Configuração ainda não salva (ex.: teste de conexão): não entra no cache
+        if (config.getId() == null) {
+            return criarCliente(config);
+        }
+        
+        String versao = versao(config);
+        ClienteVersionado cacheado = clientes.get(config.getId());
+        if (cacheado != null && cacheado.versao().equals(versao)) {
+            reaproveitados.increment();
+            // Renova o prazo de inatividade
+            clientes.put(config.getId(), cacheado);
+            return cacheado.client();
+        }
+        
+        ErpApiClient client = criarCliente(config);
+        clientes.put(config.getId(), new ClienteVersionado(versao, client));
+        criados.increment();
+        return client;
+    }
+    
+    /**
+     * Descarta o cliente da configuração (chamado ao alterar ou desvincular o ERP)
+     */
+    public void invalidar(UUID configId) {
+        if (configId != null) {
+            clientes.invalidar(configId);
+        }
+    }
+    
+    /**
+     * Limpa periodicamente os clientes de lojistas inativos
+     */
+    @Scheduled(fixedDelay = 600000) // 10 minutos
+    public void limparInativos() {
+        int removidos = clientes.limparExpirados();
+        if (removidos > 0) {
+            log.debug("{} clientes ERP inativos descartados", removidos);
+        }
+    }
+    
+    private ErpApiClient criarCliente(LojistaErpConfig config) {
         ErpType erpType = config.getErpType();
         log.info("Criando cliente ERP do tipo: {}", erpType);
         
@@ -45,18 +122,26 @@ public class ErpClientFactory {
         };
     }
     
+    /**
+     * Campos que definem o cliente; mudanças de status de sincronização não contam
+     */
+    static String versao(LojistaErpConfig config) {
+        return config.getErpType() + "|" + Objects.toString(config.getApiUrl(), "")
+            + "|" + Objects.toString(config.getApiKeyEncrypted(), "");
+    }
+    
     private ErpApiClient createNavSoftClient(LojistaErpConfig config) {
         String apiKey = decryptApiKey(config);
         String apiUrl = config.getApiUrl() != null ? config.getApiUrl() : ErpType.NAVSOFT.getDefaultApiUrl();
         
-        return new NavSoftApiClient(apiUrl, apiKey);
+        return new NavSoftApiClient(apiUrl, apiKey, lojistaId(config), httpPool);
     }
     
     private ErpApiClient createTinyClient(LojistaErpConfig config) {
         String apiToken = decryptApiKey(config);
         String apiUrl = config.getApiUrl() != null ? config.getApiUrl() : ErpType.TINY.getDefaultApiUrl();
         
-        return new TinyApiClient(apiUrl, apiToken);
+        return new TinyApiClient(apiUrl, apiToken, lojistaId(config), httpPool);
     }
     
     private ErpApiClient createCustomApiClient(LojistaErpConfig config) {
@@ -66,6 +151,10 @@ public class ErpClientFactory {
         return new ManualErpClient();
     }
     
+    private static UUID lojistaId(LojistaErpConfig config) {
+        return config.getLojista() != null ? config.getLojista().getId() : config.getId();
+    }
+    
     private String decryptApiKey(LojistaErpConfig config) {
         if (config.getApiKeyEncrypted() == null) {
             throw new ErpIntegrationException("API Key não configurada para o lojista");
@@ -78,4 +167,7 @@ public class ErpClientFactory {
             throw new ErpIntegrationException("Erro ao descriptografar credenciais do ERP", e);
         }
     }
+    
+    private record ClienteVersionado(String versao, ErpApiClient client) {
+    }
 }
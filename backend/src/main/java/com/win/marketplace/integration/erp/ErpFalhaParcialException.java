@@ -0,0 +1,36 @@
+package com.win.marketplace.integration.erp;
+
+import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
+
+import java.util.List;
+
+/**
+ * Consulta de estoque em que parte dos SKUs ou lotes falhou.
+ * Carrega os saldos obtidos para que o chamador possa aplicá-los, mas a
+ * sincronização deve ser registrada como falha (o cursor não avança).
+ */
+public class ErpFalhaParcialException extends ErpIntegrationException {
+
+    private final List<ErpStockUpdateDTO> atualizacoes;
+    private final int falhas;
+    private final int total;
+
+    public ErpFalhaParcialException(List<ErpStockUpdateDTO> atualizacoes, int falhas, int total) {
+        super(falhas + " de " + total + " consultas de estoque ao ERP falharam");
+        this.atualizacoes = atualizacoes;
+        this.falhas = falhas;
+        this.total = total;
+    }
+
+    public List<ErpStockUpdateDTO> getAtualizacoes() {
+        return atualizacoes;
+    }
+
+    public int getFalhas() {
+        return falhas;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,317 @@
+package com.win.marketplace.integration.erp;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Camada HTTP compartilhada pelos clientes de ERP.
+ *
+ * - Um RestTemplate por host de ERP sobre java.net.http.HttpClient (pool de
+ *   conexões keep-alive/HTTP2 reaproveitado entre sincronizações, em vez de um
+ *   RestTemplate novo por cliente)
+ * - Retentativa com backoff exponencial e jitter para erros transitórios
+ *   (rede e 5xx); erros 4xx sobem direto
+ * - Circuit breaker por host e credencial: ERP fora do ar falha rápido em vez
+ *   de prender a sincronização nos timeouts, e a conta de um lojista (token
+ *   inválido, cota estourada) não derruba os outros lojistas do mesmo host
+ * - 429 não conta para o circuito (o ERP está de pé, só pediu calma): a
+ *   credencial inteira pausa pelo Retry-After (ou pelo backoff) e a chamada é
+ *   repetida
+ * - Fan-out em virtual threads limitado por lojista (semáforo), para que um
+ *   catálogo grande não monopolize o ERP nem as conexões
+ */
+@Slf4j
+@Component
+public class ErpHttpClientPool {
+
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final int tentativas;
+    private final long backoffBaseMs;
+    private final int concorrenciaPorLojista;
+    private final int limiteFalhasCircuito;
+    private final Duration esperaCircuito;
+    private final long esperaMaximaLimiteMs;
+
+    private final Map<String, RestTemplate> restTemplates = new ConcurrentHashMap<>();
+    private final Map<String, ErpCircuitBreaker> circuitos = new ConcurrentHashMap<>();
+    // Até quando cada credencial está pausada por ter recebido 429
+    private final Map<String, Instant> pausas = new ConcurrentHashMap<>();
+    private final Map<UUID, Semaphore> limitesPorLojista = new ConcurrentHashMap<>();
+    // Recursos opcionais que o host já respondeu não ter (ex.: endpoint de lote)
+    private final Set<String> recursosIndisponiveis = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ErpHttpClientPool(@Value("${app.erp.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                             @Value("${app.erp.http.read-timeout-ms:15000}") long readTimeoutMs,
+                             @Value("${app.erp.http.tentativas:3}") int tentativas,
+                             @Value("${app.erp.http.backoff-base-ms:200}") long backoffBaseMs,
+                             @Value("${app.erp.http.concorrencia-por-lojista:16}") int concorrenciaPorLojista,
+                             @Value("${app.erp.http.circuito.falhas:5}") int limiteFalhasCircuito,
+                             @Value("${app.erp.http.circuito.espera-segundos:30}") long esperaCircuitoSegundos,
+                             @Value("${app.erp.http.espera-maxima-429-ms:30000}") long esperaMaximaLimiteMs) {
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMs);
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.tentativas = Math.max(1, tentativas);
+        this.backoffBaseMs = backoffBaseMs;
+        this.concorrenciaPorLojista = Math.max(1, concorrenciaPorLojista);
+        this.limiteFalhasCircuito = limiteFalhasCircuito;
+        this.esperaCircuito = Duration.ofSeconds(esperaCircuitoSegundos);
+        this.esperaMaximaLimiteMs = esperaMaximaLimiteMs;
+    }
+
+    /**
+     * RestTemplate compartilhado do host da URL base
+     */
+    public RestTemplate restTemplate(String baseUrl) {
+        return restTemplates.computeIfAbsent(host(baseUrl), h -> {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+            factory.setReadTimeout(readTimeout);
+            return new RestTemplate(factory);
+        });
+    }
+
+    /**
+     * Executa uma chamada ao ERP com circuit breaker e retentativas, contando
+     * falhas no circuito do par host + credencial
+     *
+     * @throws ErpIntegrationException se o circuito estiver aberto
+     */
+    public <T> T executar(String baseUrl, String credencial, Supplier<T> chamada) {
+        String chave = chave(baseUrl, credencial);
+        ErpCircuitBreaker circuito = circuito(chave);
+        for (int tentativa = 1; ; tentativa++) {
+            aguardarPausa(chave);
+            if (!circuito.permitir()) {
+                throw new ErpCircuitBreaker.CircuitoAbertoException(host(baseUrl));
+            }
+            try {
+                T resultado = chamada.get();
+                circuito.registrarSucesso();
+                return resultado;
+            } catch (RuntimeException e) {
+                if (e instanceof HttpStatusCodeException limite && limite.getStatusCode().value() == 429) {
+                    // Cota da credencial: não é falha do host, só espera e tenta de novo
+                    circuito.liberarTeste();
+                    if (tentativa >= tentativas) {
+                        throw e;
+                    }
+                    pausar(chave, esperaLimite(limite, tentativa));
+                    continue;
+                }
+                if (!transitorio(e)) {
+                    // Resposta do ERP (ex.: 404 de SKU inexistente): o host está saudável
+                    circuito.registrarSucesso();
+                    throw e;
+                }
+                circuito.registrarFalha();
+                if (tentativa >= tentativas) {
+                    throw e;
+                }
+                aguardar(backoff(tentativa, backoffBaseMs));
+            }
+        }
+    }
+
+    /**
+     * Aplica a tarefa a cada item em paralelo, com no máximo
+     * concorrencia-por-lojista chamadas simultâneas para o mesmo lojista.
+     * Itens que retornam null ficam de fora do resultado; itens que lançam
+     * exceção também, mas são contados em falhas para o chamador decidir. Se o
+     * circuito do ERP abrir no meio, a exceção sobe para o chamador.
+     */
+    public <T, R> Resultado<R> paraCada(UUID lojistaId, List<T> itens, Function<T, R> tarefa) {
+        Semaphore limite = lojistaId != null
+                ? limitesPorLojista.computeIfAbsent(lojistaId, id -> new Semaphore(concorrenciaPorLojista))
+                : new Semaphore(concorrenciaPorLojista);
+
+        List<Future<R>> futuros = new ArrayList<>(itens.size());
+        for (T item : itens) {
+            futuros.add(executor.submit(() -> {
+                limite.acquire();
+                try {
+                    return tarefa.apply(item);
+                } finally {
+                    limite.release();
+                }
+            }));
+        }
+
+        List<R> resultados = new ArrayList<>(itens.size());
+        ErpCircuitBreaker.CircuitoAbertoException circuitoAberto = null;
+        int falhas = 0;
+        for (Future<R> futuro : futuros) {
+            try {
+                R resultado = futuro.get();
+                if (resultado != null) {
+                    resultados.add(resultado);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futuros.forEach(f -> f.cancel(true));
+                throw new ErpIntegrationException("Consulta ao ERP interrompida", e);
+            } catch (ExecutionException e) {
+                falhas++;
+                if (e.getCause() instanceof ErpCircuitBreaker.CircuitoAbertoException aberto) {
+                    circuitoAberto = aberto;
+                }
+            }
+        }
+
+        if (circuitoAberto != null) {
+            throw circuitoAberto;
+        }
+        if (falhas > 0) {
+            log.warn("⚠️ {} de {} consultas ao ERP falharam para o lojista {}", falhas, itens.size(), lojistaId);
+        }
+        return new Resultado<>(resultados, falhas);
+    }
+
+    /**
+     * Resultados do fan-out e quantos itens falharam
+     */
+    public record Resultado<R>(List<R> itens, int falhas) {
+    }
+
+    /**
+     * Se o host ainda não respondeu que não tem o recurso opcional informado
+     */
+    public boolean suporta(String baseUrl, String recurso) {
+        return !recursosIndisponiveis.contains(host(baseUrl) + "|" + recurso);
+    }
+
+    public void marcarSemSuporte(String baseUrl, String recurso) {
+        if (recursosIndisponiveis.add(host(baseUrl) + "|" + recurso)) {
+            log.info("ERP {} não oferece '{}'; usando alternativa", host(baseUrl), recurso);
+        }
+    }
+
+    public ErpCircuitBreaker.Estado estadoCircuito(String baseUrl, String credencial) {
+        return circuito(chave(baseUrl, credencial)).getEstado();
+    }
+
+    private ErpCircuitBreaker circuito(String chave) {
+        return circuitos.computeIfAbsent(chave, c -> new ErpCircuitBreaker(limiteFalhasCircuito, esperaCircuito));
+    }
+
+    /**
+     * Host + impressão da credencial (a credencial em si não fica nas chaves)
+     */
+    static String chave(String baseUrl, String credencial) {
+        return host(baseUrl) + "#" + Integer.toHexString(Objects.hashCode(credencial));
+    }
+
+    /**
+     * Pausa a credencial; chamadas paralelas do mesmo lojista também esperam
+     */
+    private void pausar(String chave, long ms) {
+        Instant ate = Instant.now().plusMillis(ms);
+        pausas.merge(chave, ate, (atual, nova) -> nova.isAfter(atual) ? nova : atual);
+    }
+
+    private void aguardarPausa(String chave) {
+        Instant ate = pausas.get(chave);
+        if (ate == null) {
+            return;
+        }
+        // Arredonda para cima: truncar em ms voltaria a chamar antes do fim da pausa
+        long restante = Duration.between(Instant.now(), ate).plusNanos(999_999).toMillis();
+        if (restante > 0) {
+            aguardar(restante);
+        } else {
+            pausas.remove(chave, ate);
+        }
+    }
+
+    /**
+     * Retry-After em segundos quando o ERP informa; senão o backoff normal.
+     * Limitado a espera-maxima-429-ms para não prender o worker.
+     */
+    long esperaLimite(HttpStatusCodeException e, int tentativa) {
+        long ms = backoff(tentativa, backoffBaseMs);
+        HttpHeaders headers = e.getResponseHeaders();
+        String retryAfter = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (retryAfter != null) {
+            try {
+                ms = Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException ignorado) {
+                // Formato de data HTTP: fica o backoff
+            }
+        }
+        return Math.min(Math.max(ms, 0), esperaMaximaLimiteMs);
+    }
+
+    /**
+     * Backoff exponencial com jitter completo: aleatório em [0, base * 2^(tentativa-1)]
+     */
+    static long backoff(int tentativa, long baseMs) {
+        long teto = baseMs * (1L << Math.min(tentativa - 1, 10));
+        return ThreadLocalRandom.current().nextLong(teto + 1);
+    }
+
+    static boolean transitorio(RuntimeException e) {
+        if (e instanceof ResourceAccessException) {
+            return true;
+        }
+        if (e instanceof HttpStatusCodeException httpException) {
+            HttpStatusCode status = httpException.getStatusCode();
+            return status.is5xxServerError();
+        }
+        return false;
+    }
+
+    static String host(String baseUrl) {
+        try {
+            URI uri = URI.create(baseUrl);
+            return Objects.requireNonNullElse(uri.getHost(), baseUrl) + (uri.getPort() > 0 ? ":" + uri.getPort() : "");
+        } catch (IllegalArgumentException e) {
+            return baseUrl;
+        }
+    }
+
+    private static void aguardar(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ErpIntegrationException("Retentativa ao ERP interrompida", e);
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+}
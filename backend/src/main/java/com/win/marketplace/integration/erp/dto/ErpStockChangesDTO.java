@@ -0,0 +1,30 @@
+package com.win.marketplace.integration.erp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uma página de alterações de estoque retornada pelo modo incremental do ERP
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ErpStockChangesDTO {
+    
+    /**
+     * Saldos alterados desde o cursor informado
+     */
+    @Builder.Default
+    private List<ErpStockUpdateDTO> alteracoes = new ArrayList<>();
+    
+    /**
+     * Se há mais páginas a buscar para o mesmo cursor
+     */
+    private boolean temMaisPaginas;
+}
@@ -3,34 +3,57 @@ package com.win.marketplace.integration.erp.impl;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.win.marketplace.integration.erp.ErpApiClient;
+import com.win.marketplace.integration.erp.ErpFalhaParcialException;
+import com.win.marketplace.integration.erp.ErpHttpClientPool;
 import com.win.marketplace.integration.erp.ErpIntegrationException;
 import com.win.marketplace.integration.erp.dto.ErpProductDTO;
+import com.win.marketplace.integration.erp.dto.ErpStockChangesDTO;
 import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Cliente de integração com NavSoft ERP
  * Documentação: https://api.navsoft.com.br/docs
+ * 
+ * As chamadas usam o RestTemplate compartilhado do host (ErpHttpClientPool),
+ * com retentativa e circuit breaker. A consulta de estoque usa o endpoint de
+ * lote quando disponível e, senão, consulta SKU a SKU em paralelo, limitado
+ * pela concorrência por lojista.
  */
 @Slf4j
 public class NavSoftApiClient implements ErpApiClient {
     
+    static final int TAMANHO_LOTE = 100;
+    private static final String RECURSO_LOTE = "estoque-lote";
+    private static final String RECURSO_ALTERACOES = "estoque-alteracoes";
+    
     private final String apiUrl;
     private final String apiKey;
+    private final UUID lojistaId;
+    private final ErpHttpClientPool httpPool;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     
-    public NavSoftApiClient(String apiUrl, String apiKey) {
+    public NavSoftApiClient(String apiUrl, String apiKey, UUID lojistaId, ErpHttpClientPool httpPool) {
         this.apiUrl = apiUrl;
         this.apiKey = apiKey;
-        this.restTemplate = new RestTemplate();
+        this.lojistaId = lojistaId;
+        this.httpPool = httpPool;
+        this.restTemplate = httpPool.restTemplate(apiUrl);
         this.objectMapper = new ObjectMapper();
     }
     
@@ -40,15 +63,14 @@ public class NavSoftApiClient implements ErpApiClient {
             log.info("Buscando produto no NavSoft - SKU: {}", sku);
             
             String url = apiUrl + "/produtos/" + sku;
-            HttpHeaders headers = createHeaders();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
             
-            ResponseEntity<String> response = restTemplate.exchange(
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiKey, () -> restTemplate.exchange(
                 url, 
                 HttpMethod.GET, 
                 entity, 
                 String.class
-            );
+            ));
             
             if (response.getStatusCode() == HttpStatus.OK) {
                 JsonNode json = objectMapper.readTree(response.getBody());
@@ -65,43 +87,152 @@ public class NavSoftApiClient implements ErpApiClient {
     
     @Override
     public List<ErpStockUpdateDTO> getStockUpdates(List<String> skus) {
-        try {
-            log.info("Buscando estoque no NavSoft - {} SKUs", skus.size());
-            
-            List<ErpStockUpdateDTO> updates = new ArrayList<>();
-            
-            // NavSoft requer uma requisição por SKU
-            for (String sku : skus) {
-                try {
-                    String url = apiUrl + "/estoque/" + sku;
-                    HttpHeaders headers = createHeaders();
-                    HttpEntity<String> entity = new HttpEntity<>(headers);
-                    
-                    ResponseEntity<String> response = restTemplate.exchange(
-                        url,
-                        HttpMethod.GET,
-                        entity,
-                        String.class
-                    );
-                    
-                    if (response.getStatusCode() == HttpStatus.OK) {
-                        JsonNode json = objectMapper.readTree(response.getBody());
-                        updates.add(parseStockFromJson(sku, json));
-                    }
-                    
-                    // Rate limiting: aguardar 100ms entre requisições
-                    Thread.sleep(100);
-                    
-                } catch (Exception e) {
-                    log.warn("Erro ao buscar estoque do SKU {} no NavSoft: {}", sku, e.getMessage());
+        log.info("Buscando estoque no NavSoft - {} SKUs", skus.size());
+        
+        if (httpPool.suporta(apiUrl, RECURSO_LOTE)) {
+            List<List<String>> lotes = new ArrayList<>();
+            for (int i = 0; i < skus.size(); i += TAMANHO_LOTE) {
+                lotes.add(skus.subList(i, Math.min(i + TAMANHO_LOTE, skus.size())));
+            }
+            
+            // O primeiro lote descobre se o endpoint existe antes do fan-out
+            List<ErpStockUpdateDTO> primeiro = lotes.isEmpty() ? List.of() : buscarLote(lotes.get(0));
+            if (primeiro != null) {
+                List<ErpStockUpdateDTO> updates = new ArrayList<>(primeiro);
+                ErpHttpClientPool.Resultado<List<ErpStockUpdateDTO>> resultado = httpPool.paraCada(
+                    lojistaId, lotes.subList(Math.min(1, lotes.size()), lotes.size()), this::buscarLote);
+                resultado.itens().forEach(updates::addAll);
+                if (resultado.falhas() > 0) {
+                    throw new ErpFalhaParcialException(updates, resultado.falhas(), lotes.size());
                 }
+                return updates;
             }
+        }
+        
+        // NavSoft sem endpoint de lote: uma requisição por SKU, em paralelo
+        ErpHttpClientPool.Resultado<ErpStockUpdateDTO> resultado = httpPool.paraCada(lojistaId, skus, this::buscarSku);
+        if (resultado.falhas() > 0) {
+            throw new ErpFalhaParcialException(resultado.itens(), resultado.falhas(), skus.size());
+        }
+        return resultado.itens();
+    }
+    
+    /**
+     * POST /estoque/consulta com até TAMANHO_LOTE SKUs.
+     * 
+     * @return saldos do lote, ou null se o NavSoft não tiver o endpoint
+     */
+    private List<ErpStockUpdateDTO> buscarLote(List<String> skus) {
+        try {
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(Map.of("skus", skus), createHeaders());
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiKey, () -> restTemplate.exchange(
+                apiUrl + "/estoque/consulta",
+                HttpMethod.POST,
+                entity,
+                String.class
+            ));
             
+            List<ErpStockUpdateDTO> updates = new ArrayList<>(skus.size());
+            JsonNode json = objectMapper.readTree(response.getBody());
+            for (JsonNode item : json.path("itens")) {
+                updates.add(parseStockFromJson(item.path("sku").asText(), item));
+            }
             return updates;
             
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+            httpPool.marcarSemSuporte(apiUrl, RECURSO_LOTE);
+            return null;
+        } catch (ErpIntegrationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ErpIntegrationException("Erro ao consultar lote de estoque no NavSoft: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * @return saldo do SKU, ou null se o NavSoft não conhece o SKU (404);
+     *         demais erros sobem e contam como falha da sincronização
+     */
+    private ErpStockUpdateDTO buscarSku(String sku) {
+        try {
+            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiKey, () -> restTemplate.exchange(
+                apiUrl + "/estoque/" + sku,
+                HttpMethod.GET,
+                entity,
+                String.class
+            ));
+            
+            if (response.getStatusCode() != HttpStatus.OK) {
+                return null;
+            }
+            return parseStockFromJson(sku, objectMapper.readTree(response.getBody()));
+            
+        } catch (HttpClientErrorException.NotFound e) {
+            log.debug("SKU {} não encontrado no NavSoft", sku);
+            return null;
+        } catch (ErpIntegrationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Erro ao buscar estoque do SKU {} no NavSoft: {}", sku, e.getMessage());
+            throw new ErpIntegrationException("Erro ao buscar estoque do SKU " + sku + " no NavSoft: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Incremental até o host responder que não tem o feed de alterações; a
+     * resposta fica guardada no pool (por host), como o endpoint de lote
+     */
+    @Override
+    public boolean supportsIncrementalSync() {
+        return httpPool.suporta(apiUrl, RECURSO_ALTERACOES);
+    }
+    
+    /**
+     * Feed de alterações de estoque (GET /estoque/alteracoes?desde=&pagina=).
+     * Instalações antigas do NavSoft não expõem o feed (404): nesse caso marca
+     * o host como sem suporte, retorna null e o chamador segue com a
+     * reconciliação completa.
+     */
+    @Override
+    public ErpStockChangesDTO getStockChangesSince(LocalDateTime desde, int pagina) {
+        try {
+            log.debug("Buscando alterações de estoque no NavSoft desde {} (página {})", desde, pagina);
+            
+            URI uri = UriComponentsBuilder.fromUriString(apiUrl + "/estoque/alteracoes")
+                .queryParam("desde", desde.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .queryParam("pagina", pagina)
+                .encode()
+                .build()
+                .toUri();
+            
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiKey, () -> restTemplate.exchange(
+                uri,
+                HttpMethod.GET,
+                new HttpEntity<>(createHeaders()),
+                String.class
+            ));
+            
+            ErpStockChangesDTO changes = new ErpStockChangesDTO();
+            if (response.getStatusCode() != HttpStatus.OK) {
+                return changes;
+            }
+            
+            JsonNode json = objectMapper.readTree(response.getBody());
+            for (JsonNode item : json.path("itens")) {
+                changes.getAlteracoes().add(parseStockFromJson(item.path("sku").asText(), item));
+            }
+            changes.setTemMaisPaginas(json.path("temMais").asBoolean(false));
+            return changes;
+            
+        } catch (HttpClientErrorException.NotFound e) {
+            httpPool.marcarSemSuporte(apiUrl, RECURSO_ALTERACOES);
+            return null;
+        } catch (ErpIntegrationException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Erro ao buscar estoques do NavSoft", e);
-            throw new ErpIntegrationException("Erro ao buscar estoques do NavSoft: " + e.getMessage(), e);
+            log.error("Erro ao buscar alterações de estoque do NavSoft", e);
+            throw new ErpIntegrationException("Erro ao buscar alterações de estoque do NavSoft: " + e.getMessage(), e);
         }
     }
     
@@ -111,8 +242,7 @@ public class NavSoftApiClient implements ErpApiClient {
             log.info("Testando conexão com NavSoft");
             
             String url = apiUrl + "/health";
-            HttpHeaders headers = createHeaders();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
             
             ResponseEntity<String> response = restTemplate.exchange(
                 url,
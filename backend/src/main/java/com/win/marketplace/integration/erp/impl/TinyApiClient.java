@@ -3,34 +3,57 @@ package com.win.marketplace.integration.erp.impl;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.win.marketplace.integration.erp.ErpApiClient;
+import com.win.marketplace.integration.erp.ErpFalhaParcialException;
+import com.win.marketplace.integration.erp.ErpHttpClientPool;
 import com.win.marketplace.integration.erp.ErpIntegrationException;
 import com.win.marketplace.integration.erp.dto.ErpProductDTO;
+import com.win.marketplace.integration.erp.dto.ErpStockChangesDTO;
 import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Cliente de integração com Tiny ERP
  * Documentação: https://tiny.com.br/api-docs
+ * 
+ * Usa o RestTemplate compartilhado do host (ErpHttpClientPool), com
+ * retentativa e circuit breaker. A consulta de estoque é feita em lotes de
+ * TAMANHO_LOTE SKUs (limite prático do tamanho da URL), em paralelo.
  */
 @Slf4j
 public class TinyApiClient implements ErpApiClient {
     
+    static final int TAMANHO_LOTE = 100;
+    
+    private static final DateTimeFormatter FORMATO_DATA_ALTERACAO = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    
+    // Código de "A consulta não retornou registros"
+    private static final String ERRO_SEM_REGISTROS = "20";
+    
     private final String apiUrl;
     private final String apiToken;
+    private final UUID lojistaId;
+    private final ErpHttpClientPool httpPool;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     
-    public TinyApiClient(String apiUrl, String apiToken) {
+    public TinyApiClient(String apiUrl, String apiToken, UUID lojistaId, ErpHttpClientPool httpPool) {
         this.apiUrl = apiUrl != null ? apiUrl : "https://api.tiny.com.br/api2";
         this.apiToken = apiToken;
-        this.restTemplate = new RestTemplate();
+        this.lojistaId = lojistaId;
+        this.httpPool = httpPool;
+        this.restTemplate = httpPool.restTemplate(this.apiUrl);
         this.objectMapper = new ObjectMapper();
     }
     
@@ -43,7 +66,7 @@ public class TinyApiClient implements ErpApiClient {
             String url = String.format("%s/produto.obter.php?token=%s&sku=%s&formato=json",
                 apiUrl, apiToken, sku);
             
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiToken, () -> restTemplate.getForEntity(url, String.class));
             
             if (response.getStatusCode() == HttpStatus.OK) {
                 JsonNode json = objectMapper.readTree(response.getBody());
@@ -65,18 +88,38 @@ public class TinyApiClient implements ErpApiClient {
     
     @Override
     public List<ErpStockUpdateDTO> getStockUpdates(List<String> skus) {
+        log.info("Buscando estoque no Tiny - {} SKUs", skus.size());
+        
+        List<List<String>> lotes = new ArrayList<>();
+        for (int i = 0; i < skus.size(); i += TAMANHO_LOTE) {
+            lotes.add(skus.subList(i, Math.min(i + TAMANHO_LOTE, skus.size())));
+        }
+        
+        List<ErpStockUpdateDTO> updates = new ArrayList<>(skus.size());
+        ErpHttpClientPool.Resultado<List<ErpStockUpdateDTO>> resultado = httpPool.paraCada(lojistaId, lotes, this::buscarLote);
+        resultado.itens().forEach(updates::addAll);
+        if (resultado.falhas() > 0) {
+            throw new ErpFalhaParcialException(updates, resultado.falhas(), lotes.size());
+        }
+        return updates;
+    }
+    
+    /**
+     * Tiny permite consultar múltiplos produtos em uma requisição
+     */
+    private List<ErpStockUpdateDTO> buscarLote(List<String> skus) {
         try {
-            log.info("Buscando estoque no Tiny - {} SKUs", skus.size());
+            URI uri = UriComponentsBuilder.fromUriString(apiUrl + "/produtos.obter.estoques.php")
+                .queryParam("token", apiToken)
+                .queryParam("skus", String.join(",", skus))
+                .queryParam("formato", "json")
+                .encode()
+                .build()
+                .toUri();
             
-            List<ErpStockUpdateDTO> updates = new ArrayList<>();
-            
-            // Tiny permite consultar múltiplos produtos em uma requisição
-            String skusParam = String.join(",", skus);
-            String url = String.format("%s/produtos.obter.estoques.php?token=%s&skus=%s&formato=json",
-                apiUrl, apiToken, skusParam);
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiToken, () -> restTemplate.getForEntity(uri, String.class));
             
+            List<ErpStockUpdateDTO> updates = new ArrayList<>(skus.size());
             if (response.getStatusCode() == HttpStatus.OK) {
                 JsonNode json = objectMapper.readTree(response.getBody());
                 
@@ -93,12 +136,67 @@ public class TinyApiClient implements ErpApiClient {
             
             return updates;
             
+        } catch (ErpIntegrationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Erro ao buscar estoques do Tiny", e);
             throw new ErpIntegrationException("Erro ao buscar estoques do Tiny: " + e.getMessage(), e);
         }
     }
     
+    @Override
+    public boolean supportsIncrementalSync() {
+        return true;
+    }
+    
+    /**
+     * Usa a lista de atualizações de estoque do Tiny (lista.atualizacoes.estoque),
+     * que retorna apenas os produtos cujo saldo mudou desde dataAlteracao
+     */
+    @Override
+    public ErpStockChangesDTO getStockChangesSince(LocalDateTime desde, int pagina) {
+        try {
+            log.debug("Buscando alterações de estoque no Tiny desde {} (página {})", desde, pagina);
+            
+            URI uri = UriComponentsBuilder.fromUriString(apiUrl + "/lista.atualizacoes.estoque.php")
+                .queryParam("token", apiToken)
+                .queryParam("formato", "json")
+                .queryParam("dataAlteracao", desde.format(FORMATO_DATA_ALTERACAO))
+                .queryParam("pagina", pagina)
+                .encode()
+                .build()
+                .toUri();
+            
+            ResponseEntity<String> response = httpPool.executar(apiUrl, apiToken, () -> restTemplate.getForEntity(uri, String.class));
+            ErpStockChangesDTO changes = new ErpStockChangesDTO();
+            
+            if (response.getStatusCode() != HttpStatus.OK) {
+                return changes;
+            }
+            
+            JsonNode retorno = objectMapper.readTree(response.getBody()).path("retorno");
+            if ("Erro".equalsIgnoreCase(retorno.path("status").asText())) {
+                if (ERRO_SEM_REGISTROS.equals(retorno.path("codigo_erro").asText())) {
+                    return changes;
+                }
+                throw new ErpIntegrationException("Tiny recusou a consulta de alterações: " + retorno.path("erros"));
+            }
+            
+            for (JsonNode item : retorno.path("produtos")) {
+                JsonNode produto = item.has("produto") ? item.get("produto") : item;
+                changes.getAlteracoes().add(parseStockFromJson(produto));
+            }
+            changes.setTemMaisPaginas(pagina < retorno.path("numero_paginas").asInt(1));
+            return changes;
+            
+        } catch (ErpIntegrationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Erro ao buscar alterações de estoque do Tiny", e);
+            throw new ErpIntegrationException("Erro ao buscar alterações de estoque do Tiny: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public boolean testConnection() {
         try {
@@ -0,0 +1,41 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Coordenadas geocodificadas de um CEP (nível durável do cache de geocodificação).
+ *
+ * Coordenadas de CEP praticamente não mudam: uma vez resolvido via
+ * Nominatim/Google, o CEP nunca mais precisa de chamada externa, mesmo após
+ * restart ou em outra réplica. Aproximações (coordenadas fixas da cidade) não
+ * são gravadas aqui.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "cep_coordenadas",
+        indexes = @Index(name = "idx_cep_coordenadas_atualizado_em", columnList = "atualizado_em DESC"))
+public class CepCoordenada {
+
+    @Id
+    @Column(name = "cep", length = 8)
+    private String cep;
+
+    @Column(name = "latitude", nullable = false)
+    private Double latitude;
+
+    @Column(name = "longitude", nullable = false)
+    private Double longitude;
+
+    @Column(name = "fonte", nullable = false, length = 20)
+    private String fonte;
+
+    @Column(name = "atualizado_em", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime atualizadoEm;
+}
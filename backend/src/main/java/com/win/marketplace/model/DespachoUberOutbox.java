@@ -0,0 +1,67 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Solicitação automática de corrida Uber pendente (outbox).
+ *
+ * Gravada na transação que marca o pedido como PRONTO (no máximo uma por
+ * pedido). O DespachoUberService chama a Uber fora dessa transação, com
+ * retentativas e backoff; a chave de idempotência é enviada à Uber para que
+ * uma retentativa após timeout não crie uma segunda corrida.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "despachos_uber_outbox",
+        uniqueConstraints = {
+            @UniqueConstraint(name = "uk_despachos_uber_outbox_pedido", columnNames = "pedido_id"),
+            @UniqueConstraint(name = "uk_despachos_uber_outbox_chave", columnNames = "chave_idempotencia")
+        },
+        indexes = @Index(name = "idx_despachos_uber_outbox_fila", columnList = "status, proxima_tentativa_em"))
+public class DespachoUberOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "pedido_id", nullable = false)
+    private UUID pedidoId;
+
+    @Column(name = "chave_idempotencia", nullable = false, length = 100)
+    private String chaveIdempotencia;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusDespacho status = StatusDespacho.PENDENTE;
+
+    @Column(name = "tentativas", nullable = false)
+    private Integer tentativas = 0;
+
+    @Column(name = "proxima_tentativa_em", nullable = false)
+    private OffsetDateTime proximaTentativaEm;
+
+    // Lease do worker: passado esse instante, um PROCESSANDO é considerado abandonado
+    @Column(name = "travado_ate")
+    private OffsetDateTime travadoAte;
+
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+
+    @Column(name = "criado_em", nullable = false, updatable = false)
+    private OffsetDateTime criadoEm;
+
+    @Column(name = "atualizado_em", nullable = false)
+    private OffsetDateTime atualizadoEm;
+
+    public enum StatusDespacho {
+        PENDENTE, PROCESSANDO, CONCLUIDO, FALHOU
+    }
+}
@@ -92,6 +92,9 @@ public class Entrega {
     @Column(name = "longitude_motorista")
     private Double longitudeMotorista; // Atualizado via webhooks da Uber
 
+    @Column(name = "localizacao_motorista_em")
+    private OffsetDateTime localizacaoMotoristaEm; // Captura da posição na Uber: posição mais antiga não sobrescreve
+
     // ========================================
     // IDs e Códigos Uber
     // ========================================
@@ -108,6 +111,14 @@ public class Entrega {
     @Column(name = "url_rastreamento_uber", length = 500)
     private String urlRastreamentoUber; // Link de rastreamento em tempo real
 
+    // Reconciliação com a Uber (ReconciliacaoEntregaUberService): consulta de status
+    // em segundo plano caso algum webhook se perca
+    @Column(name = "proxima_consulta_uber")
+    private OffsetDateTime proximaConsultaUber;
+
+    @Column(name = "consultas_uber_sem_mudanca")
+    private Integer consultasUberSemMudanca = 0;
+
     // ========================================
     // Quote ID e Valores (para garantir preço)
     // ========================================
@@ -0,0 +1,82 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Execução da geocodificação em massa (lojistas, endereços ou usuários).
+ *
+ * O progresso é persistido a cada página: ultimoIdProcessado é o checkpoint
+ * (keyset por id) a partir do qual o job continua após restart ou retomada
+ * manual. atualizadoEm funciona como heartbeat da instância que executa.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "jobs_geocodificacao",
+        indexes = @Index(name = "idx_jobs_geocodificacao_alvo_status", columnList = "alvo, status"))
+public class JobGeocodificacao {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "alvo", nullable = false, length = 20)
+    private Alvo alvo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusJob status = StatusJob.EXECUTANDO;
+
+    @Column(name = "total", nullable = false)
+    private Integer total = 0;
+
+    @Column(name = "processados", nullable = false)
+    private Integer processados = 0;
+
+    @Column(name = "sucessos", nullable = false)
+    private Integer sucessos = 0;
+
+    @Column(name = "falhas", nullable = false)
+    private Integer falhas = 0;
+
+    @Column(name = "ultimo_id_processado")
+    private UUID ultimoIdProcessado;
+
+    @Column(name = "instancia", length = 100)
+    private String instancia;
+
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+
+    @Column(name = "iniciado_em", nullable = false, updatable = false)
+    private OffsetDateTime iniciadoEm;
+
+    /** Início da execução corrente (criação ou última retomada): base da vazão e do ETA */
+    @Column(name = "execucao_iniciada_em")
+    private OffsetDateTime execucaoIniciadaEm;
+
+    @Column(name = "processados_inicio_execucao")
+    private Integer processadosNoInicioExecucao;
+
+    @Column(name = "atualizado_em", nullable = false)
+    private OffsetDateTime atualizadoEm;
+
+    @Column(name = "concluido_em")
+    private OffsetDateTime concluidoEm;
+
+    public enum Alvo {
+        LOJISTA, ENDERECO, USUARIO
+    }
+
+    public enum StatusJob {
+        EXECUTANDO, CONCLUIDO, CANCELADO, FALHOU
+    }
+}
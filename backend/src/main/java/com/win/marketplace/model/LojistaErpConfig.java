@@ -23,6 +23,9 @@ import java.util.UUID;
 @Builder
 public class LojistaErpConfig {
 
+    /** Intervalo do polling de reconciliação enquanto o ERP envia webhooks */
+    public static final int FREQUENCIA_COM_WEBHOOK_MINUTOS = 60;
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
@@ -93,6 +96,32 @@ public class LojistaErpConfig {
     @Column(name = "last_sync_error", columnDefinition = "TEXT")
     private String lastSyncError;
 
+    /**
+     * Cursor da sincronização incremental: alterações de estoque posteriores a
+     * este instante ainda não foram aplicadas. Null força sincronização completa.
+     */
+    @Column(name = "stock_cursor_at")
+    private LocalDateTime stockCursorAt;
+
+    /**
+     * Última reconciliação completa (todos os SKUs vinculados)
+     */
+    @Column(name = "last_full_sync_at")
+    private LocalDateTime lastFullSyncAt;
+
+    /**
+     * Segredo (criptografado) que autentica os webhooks de estoque enviados pelo ERP
+     */
+    @Column(name = "webhook_secret_encrypted", length = 500)
+    private String webhookSecretEncrypted;
+
+    /**
+     * Último lote de webhooks de estoque aplicado. Enquanto o ERP estiver
+     * enviando, o polling vira só reconciliação (FREQUENCIA_COM_WEBHOOK_MINUTOS).
+     */
+    @Column(name = "last_webhook_at")
+    private LocalDateTime lastWebhookAt;
+
     /**
      * Configuração ativa
      */
@@ -123,14 +152,35 @@ public class LojistaErpConfig {
             return false;
         }
         
-        if (lastSyncAt == null) {
+        LocalDateTime nextSync = proximaSincronizacao();
+        if (nextSync == null) {
             return true; // Primeira sincronização
         }
         
-        LocalDateTime nextSync = lastSyncAt.plusMinutes(syncFrequencyMinutes);
         return LocalDateTime.now().isAfter(nextSync);
     }
 
+    /**
+     * Quando a próxima sincronização vence (null se nunca sincronizou)
+     */
+    public LocalDateTime proximaSincronizacao() {
+        if (lastSyncAt == null) {
+            return null;
+        }
+        int frequencia = recebendoWebhooks()
+            ? Math.max(syncFrequencyMinutes, FREQUENCIA_COM_WEBHOOK_MINUTOS)
+            : syncFrequencyMinutes;
+        return lastSyncAt.plusMinutes(frequencia);
+    }
+
+    /**
+     * Se o ERP enviou webhooks de estoque recentemente (o saldo já chega por push)
+     */
+    public boolean recebendoWebhooks() {
+        return lastWebhookAt != null
+            && lastWebhookAt.isAfter(LocalDateTime.now().minusMinutes(FREQUENCIA_COM_WEBHOOK_MINUTOS));
+    }
+
     /**
      * Marca sincronização como bem-sucedida
      */
@@ -140,6 +190,14 @@ public class LojistaErpConfig {
         this.lastSyncError = null;
     }
 
+    /**
+     * Se a reconciliação completa está vencida (ou nunca foi feita)
+     */
+    public boolean precisaReconciliacaoCompleta(int intervaloHoras) {
+        return stockCursorAt == null || lastFullSyncAt == null
+            || LocalDateTime.now().isAfter(lastFullSyncAt.plusHours(intervaloHoras));
+    }
+
     /**
      * Marca sincronização como falha
      */
@@ -0,0 +1,75 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Evento de notificação pendente (outbox).
+ *
+ * Gravado na mesma transação da mudança de status do pedido (uma linha por
+ * transição, independente do número de destinatários). O
+ * NotificacaoOutboxDispatcher consome os eventos em lote, grava as
+ * notificações de cliente e admins e faz o push via WebSocket.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "notificacoes_outbox", indexes = {
+    @Index(name = "idx_notificacoes_outbox_pendentes", columnList = "status, criado_em")
+})
+public class NotificacaoOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "pedido_id", nullable = false)
+    private UUID pedidoId;
+
+    @Column(name = "numero_pedido", nullable = false, length = 50)
+    private String numeroPedido;
+
+    @Column(name = "usuario_id", nullable = false)
+    private UUID usuarioId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_anterior", nullable = false, length = 30)
+    private Pedido.StatusPedido statusAnterior;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_novo", nullable = false, length = 30)
+    private Pedido.StatusPedido statusNovo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusEvento status = StatusEvento.PENDENTE;
+
+    @Column(name = "tentativas", nullable = false)
+    private Integer tentativas = 0;
+
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+
+    @Column(name = "criado_em", nullable = false, updatable = false)
+    private OffsetDateTime criadoEm;
+
+    @Column(name = "processado_em")
+    private OffsetDateTime processadoEm;
+
+    public enum StatusEvento {
+        PENDENTE, ENVIADO, FALHOU
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        if (criadoEm == null) {
+            criadoEm = OffsetDateTime.now();
+        }
+    }
+}
@@ -17,7 +17,15 @@ import java.util.UUID;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+    // Paginação por cursor das listagens (ver V22)
+    @Index(name = "idx_pedidos_usuario_criado_em", columnList = "usuario_id, criado_em DESC, id DESC"),
+    @Index(name = "idx_pedidos_motorista_criado_em", columnList = "motorista_id, criado_em DESC, id DESC"),
+    @Index(name = "idx_pedidos_lojista_criado_em", columnList = "lojista_id, criado_em DESC, id DESC"),
+    @Index(name = "idx_pedidos_lojista_status_criado_em", columnList = "lojista_id, status, criado_em DESC, id DESC"),
+    @Index(name = "idx_pedidos_status_criado_em", columnList = "status, criado_em DESC, id DESC"),
+    @Index(name = "idx_pedidos_criado_em_id", columnList = "criado_em DESC, id DESC")
+})
 public class Pedido {
 
     @Id
@@ -92,6 +100,10 @@ public class Pedido {
     @Column(name = "codigo_entrega", length = 10)
     private String codigoEntrega;
 
+    // true enquanto o estoque dos itens estiver baixado por este pedido (devolvido no cancelamento)
+    @Column(name = "estoque_reservado", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private Boolean estoqueReservado = false;
+
     @Column(name = "peso_total_kg", precision = 10, scale = 3)
     private BigDecimal pesoTotalKg;
 
@@ -0,0 +1,44 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Total de unidades vendidas por produto (ranking "mais vendidos" de todo o período).
+ *
+ * Mantido incrementalmente pelo RankingVendasService na confirmação/cancelamento
+ * de pedidos; categoria e lojista são desnormalizados para permitir o top-k
+ * filtrado direto pelo índice.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "produto_vendas_agregadas", indexes = {
+        @Index(name = "idx_produto_vendas_agregadas_quantidade", columnList = "quantidade_vendida DESC, produto_id"),
+        @Index(name = "idx_produto_vendas_agregadas_categoria", columnList = "categoria_id, quantidade_vendida DESC, produto_id"),
+        @Index(name = "idx_produto_vendas_agregadas_lojista", columnList = "lojista_id, quantidade_vendida DESC, produto_id")
+})
+public class ProdutoVendaAgregada {
+
+    @Id
+    @Column(name = "produto_id")
+    private UUID produtoId;
+
+    @Column(name = "categoria_id", nullable = false)
+    private UUID categoriaId;
+
+    @Column(name = "lojista_id", nullable = false)
+    private UUID lojistaId;
+
+    @Column(name = "quantidade_vendida", nullable = false)
+    private Long quantidadeVendida = 0L;
+
+    @Column(name = "atualizado_em", nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime atualizadoEm;
+}
@@ -0,0 +1,38 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Unidades vendidas por produto e dia de confirmação do pedido.
+ *
+ * Base dos rankings por janela (7 e 30 dias); buckets mais antigos que a maior
+ * janela são removidos pelo job de manutenção.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "produto_vendas_diarias",
+        uniqueConstraints = @UniqueConstraint(name = "uk_produto_vendas_diarias_produto_dia", columnNames = {"produto_id", "dia"}),
+        indexes = @Index(name = "idx_produto_vendas_diarias_dia", columnList = "dia, produto_id"))
+public class ProdutoVendaDiaria {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "produto_id", nullable = false)
+    private UUID produtoId;
+
+    @Column(name = "dia", nullable = false)
+    private LocalDate dia;
+
+    @Column(name = "quantidade_vendida", nullable = false)
+    private Long quantidadeVendida = 0L;
+}
@@ -0,0 +1,72 @@
+package com.win.marketplace.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Evento de webhook da Uber recebido e ainda não (ou já) processado (inbox).
+ *
+ * O endpoint só valida a assinatura, grava o corpo bruto aqui e responde 200;
+ * o UberWebhookInboxService processa em workers. O event_id é único: uma
+ * retentativa da Uber com o mesmo evento não é gravada de novo.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "uber_webhook_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_uber_webhook_inbox_evento", columnNames = "event_id"),
+        indexes = {
+            @Index(name = "idx_uber_webhook_inbox_fila", columnList = "status, proxima_tentativa_em"),
+            @Index(name = "idx_uber_webhook_inbox_entrega", columnList = "delivery_id, recebido_em")
+        })
+public class UberWebhookEvento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "event_id", nullable = false, length = 120)
+    private String eventId;
+
+    @Column(name = "delivery_id", length = 100)
+    private String deliveryId;
+
+    @Column(name = "event_type", length = 100)
+    private String eventType;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusEvento status = StatusEvento.PENDENTE;
+
+    @Column(name = "tentativas", nullable = false)
+    private Integer tentativas = 0;
+
+    @Column(name = "proxima_tentativa_em", nullable = false)
+    private OffsetDateTime proximaTentativaEm;
+
+    // Lease do worker: passado esse instante, um PROCESSANDO é considerado abandonado
+    @Column(name = "travado_ate")
+    private OffsetDateTime travadoAte;
+
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+
+    @Column(name = "recebido_em", nullable = false, updatable = false)
+    private OffsetDateTime recebidoEm;
+
+    @Column(name = "processado_em")
+    private OffsetDateTime processadoEm;
+
+    public enum StatusEvento {
+        PENDENTE, PROCESSANDO, CONCLUIDO, FALHOU
+    }
+}
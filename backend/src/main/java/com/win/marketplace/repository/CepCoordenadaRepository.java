@@ -0,0 +1,40 @@
+package com.win.marketplace.repository;
+
+import com.win.marketplace.model.CepCoordenada;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface CepCoordenadaRepository extends JpaRepository<CepCoordenada, String> {
+
+    /**
+     * CEPs mais recentes, para pré-aquecer o cache local na subida
+     */
+    List<CepCoordenada> findAllByOrderByAtualizadoEmDesc(Pageable pageable);
+
+    /**
+     * Grava/atualiza as coordenadas do CEP. Transação própria: a geocodificação
+     * costuma ser chamada de dentro de transações somente leitura (ex.: frete).
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(nativeQuery = true, value = """
+        INSERT INTO cep_coordenadas (cep, latitude, longitude, fonte, atualizado_em)
+        VALUES (:cep, :latitude, :longitude, :fonte, NOW())
+        ON CONFLICT (cep) DO UPDATE
+           SET latitude = EXCLUDED.latitude,
+               longitude = EXCLUDED.longitude,
+               fonte = EXCLUDED.fonte,
+               atualizado_em = EXCLUDED.atualizado_em
+    """)
+    int salvar(@Param("cep") String cep, @Param("latitude") Double latitude,
+               @Param("longitude") Double longitude, @Param("fonte") String fonte);
+}
@@ -0,0 +1,76 @@
+package com.win.marketplace.repository;
+
+import com.win.marketplace.model.DespachoUberOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface DespachoUberOutboxRepository extends JpaRepository<DespachoUberOutbox, UUID> {
+
+    Optional<DespachoUberOutbox> findByPedidoId(UUID pedidoId);
+
+    /**
+     * Enfileira o despacho do pedido (idempotente: um pedido tem no máximo um despacho)
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO despachos_uber_outbox
+            (id, pedido_id, chave_idempotencia, status, tentativas, proxima_tentativa_em, criado_em, atualizado_em)
+        VALUES (gen_random_uuid(), :pedidoId, :chave, 'PENDENTE', 0, NOW(), NOW(), NOW())
+        ON CONFLICT (pedido_id) DO NOTHING
+    """)
+    int agendar(@Param("pedidoId") UUID pedidoId, @Param("chave") String chave);
+
+    /**
+     * Despachos prontos para execução: pendentes vencidos e PROCESSANDO com lease expirado
+     * (worker que caiu no meio). SKIP LOCKED evita que duas instâncias peguem o mesmo.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT * FROM despachos_uber_outbox
+        WHERE (status = 'PENDENTE' AND proxima_tentativa_em <= NOW())
+           OR (status = 'PROCESSANDO' AND travado_ate < NOW())
+        ORDER BY proxima_tentativa_em
+        LIMIT :limite
+        FOR UPDATE SKIP LOCKED
+    """)
+    List<DespachoUberOutbox> reivindicarProntos(@Param("limite") int limite);
+
+    /*
+     * concluir/reagendar/falhar só valem para quem ainda detém o lease: se ele
+     * expirou e outra instância reivindicou o despacho, travado_ate mudou e o
+     * UPDATE não afeta nenhuma linha (retorno 0).
+     */
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE DespachoUberOutbox d SET d.status = com.win.marketplace.model.DespachoUberOutbox.StatusDespacho.CONCLUIDO, " +
+           "d.tentativas = d.tentativas + 1, d.travadoAte = null, d.atualizadoEm = :agora WHERE d.id = :id " +
+           "AND d.status = com.win.marketplace.model.DespachoUberOutbox.StatusDespacho.PROCESSANDO AND d.travadoAte = :lease")
+    int concluir(@Param("id") UUID id, @Param("lease") OffsetDateTime lease, @Param("agora") OffsetDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE DespachoUberOutbox d SET d.status = com.win.marketplace.model.DespachoUberOutbox.StatusDespacho.PENDENTE, " +
+           "d.tentativas = d.tentativas + 1, d.ultimoErro = :erro, d.proximaTentativaEm = :proximaTentativa, " +
+           "d.travadoAte = null, d.atualizadoEm = :agora WHERE d.id = :id " +
+           "AND d.status = com.win.marketplace.model.DespachoUberOutbox.StatusDespacho.PROCESSANDO AND d.travadoAte = :lease")
+    int reagendar(@Param("id") UUID id, @Param("lease") OffsetDateTime lease, @Param("erro") String erro,
+                  @Param("proximaTentativa") OffsetDateTime proximaTentativa, @Param("agora") OffsetDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE DespachoUberOutbox d SET d.status = com.win.marketplace.model.DespachoUberOutbox.StatusDespacho.FALHOU, " +
+           "d.tentativas = d.tentativas + 1, d.ultimoErro = :erro, d.travadoAte = null, d.atualizadoEm = :agora WHERE d.id = :id " +
+           "AND d.status = com.win.marketplace.model.DespachoUberOutbox.StatusDespacho.PROCESSANDO AND d.travadoAte = :lease")
+    int falhar(@Param("id") UUID id, @Param("lease") OffsetDateTime lease, @Param("erro") String erro,
+               @Param("agora") OffsetDateTime agora);
+}
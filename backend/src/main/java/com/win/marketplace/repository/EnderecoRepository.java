@@ -1,8 +1,13 @@
 package com.win.marketplace.repository;
 
 import com.win.marketplace.model.Endereco;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,4 +23,30 @@ public interface EnderecoRepository extends JpaRepository<Endereco, UUID> {
     Optional<Endereco> findByUsuarioIdAndPrincipalTrueAndAtivoTrue(UUID usuarioId);
     
     Optional<Endereco> findByUsuarioIdAndTemporarioTrueAndAtivoTrue(UUID usuarioId);
+
+    /**
+     * Próxima página de endereços ativos sem coordenadas (keyset por id, para geocodificação em lote)
+     */
+    @Query("SELECT e FROM Endereco e WHERE e.ativo = true AND (e.latitude IS NULL OR e.longitude IS NULL) " +
+           "AND e.id > :depoisDe ORDER BY e.id")
+    List<Endereco> findSemCoordenadasApos(@Param("depoisDe") UUID depoisDe, Pageable pageable);
+
+    @Query("SELECT COUNT(e) FROM Endereco e WHERE e.ativo = true AND (e.latitude IS NULL OR e.longitude IS NULL)")
+    long countSemCoordenadas();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Endereco e SET e.latitude = :latitude, e.longitude = :longitude WHERE e.id = :id")
+    int atualizarCoordenadas(@Param("id") UUID id, @Param("latitude") Double latitude, @Param("longitude") Double longitude);
+
+    /**
+     * Endereço principal dos usuários ainda sem coordenadas (keyset pelo id do usuário)
+     */
+    @Query("SELECT e FROM Endereco e JOIN FETCH e.usuario u WHERE e.principal = true AND e.ativo = true " +
+           "AND (u.latitude IS NULL OR u.longitude IS NULL) AND u.id > :depoisDe ORDER BY u.id")
+    List<Endereco> findPrincipaisDeUsuariosSemCoordenadasApos(@Param("depoisDe") UUID depoisDe, Pageable pageable);
+
+    @Query("SELECT COUNT(e) FROM Endereco e JOIN e.usuario u WHERE e.principal = true AND e.ativo = true " +
+           "AND (u.latitude IS NULL OR u.longitude IS NULL)")
+    long countPrincipaisDeUsuariosSemCoordenadas();
 }
@@ -3,9 +3,11 @@ package com.win.marketplace.repository;
 import com.win.marketplace.model.Entrega;
 import com.win.marketplace.model.enums.StatusEntrega;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -65,4 +67,78 @@ public interface EntregaRepository extends JpaRepository<Entrega, UUID> {
     @Query("SELECT e FROM Entrega e WHERE e.statusEntrega = 'FALHA_SOLICITACAO' " +
            "AND e.criadoEm > :dataLimite ORDER BY e.criadoEm DESC")
     List<Entrega> findFalhasRecentesParaRetry(@Param("dataLimite") OffsetDateTime dataLimite);
+
+    /**
+     * Grava em lote a última localização dos motoristas (LocalizacaoMotoristaService).
+     * Parâmetros são arrays literais ('{a,b}') alinhados por id_corrida_uber.
+     * Só grava se a posição foi capturada depois da que está no banco: cada
+     * réplica grava as suas, e uma posição antiga não sobrescreve a mais nova.
+     */
+    @Modifying
+    @Transactional
+    @Query(value =
+        "UPDATE entregas e SET latitude_motorista = u.latitude, longitude_motorista = u.longitude, " +
+        "localizacao_motorista_em = u.capturada_em, atualizado_em = NOW() " +
+        "FROM unnest(CAST(:ids AS text[]), CAST(:latitudes AS float8[]), CAST(:longitudes AS float8[]), " +
+        "CAST(:capturadas AS timestamptz[])) AS u(id, latitude, longitude, capturada_em) " +
+        "WHERE e.id_corrida_uber = u.id " +
+        "AND (e.localizacao_motorista_em IS NULL OR e.localizacao_motorista_em < u.capturada_em)",
+        nativeQuery = true)
+    int atualizarLocalizacaoMotoristas(@Param("ids") String ids,
+                                       @Param("latitudes") String latitudes,
+                                       @Param("longitudes") String longitudes,
+                                       @Param("capturadas") String capturadas);
+
+    /**
+     * Entregas em andamento na Uber com consulta de status vencida (reconciliação).
+     * SKIP LOCKED: réplicas diferentes não consultam a mesma entrega na mesma rodada.
+     */
+    @Query(value =
+        "SELECT e.id AS id, e.id_corrida_uber AS idCorridaUber, e.status_entrega AS statusEntrega, " +
+        "e.consultas_uber_sem_mudanca AS consultasSemMudanca " +
+        "FROM entregas e " +
+        "WHERE e.id_corrida_uber IS NOT NULL " +
+        "AND e.status_entrega IN ('AGUARDANDO_PREPARACAO', 'AGUARDANDO_MOTORISTA', 'MOTORISTA_A_CAMINHO_RETIRADA', 'EM_TRANSITO') " +
+        "AND (e.proxima_consulta_uber IS NULL OR e.proxima_consulta_uber <= NOW()) " +
+        "ORDER BY e.proxima_consulta_uber NULLS FIRST " +
+        "LIMIT :limite " +
+        "FOR UPDATE SKIP LOCKED",
+        nativeQuery = true)
+    List<ConsultaStatusUber> reivindicarConsultasUber(@Param("limite") int limite);
+
+    /**
+     * Adia a próxima consulta das entregas reivindicadas (lease enquanto a rodada roda)
+     */
+    @Modifying
+    @Query(value =
+        "UPDATE entregas SET proxima_consulta_uber = NOW() + make_interval(secs => :segundos) " +
+        "WHERE id = ANY(CAST(:ids AS uuid[]))",
+        nativeQuery = true)
+    int adiarConsultasUber(@Param("ids") String ids, @Param("segundos") long segundos);
+
+    /**
+     * Agenda a próxima consulta de cada entrega após a rodada. Parâmetros são
+     * arrays literais ('{a,b}') alinhados.
+     */
+    @Modifying
+    @Transactional
+    @Query(value =
+        "UPDATE entregas e SET proxima_consulta_uber = u.proxima, consultas_uber_sem_mudanca = u.sem_mudanca " +
+        "FROM unnest(CAST(:ids AS uuid[]), CAST(:proximas AS timestamptz[]), CAST(:semMudanca AS int[])) " +
+        "AS u(id, proxima, sem_mudanca) " +
+        "WHERE e.id = u.id",
+        nativeQuery = true)
+    int agendarConsultasUber(@Param("ids") String ids,
+                             @Param("proximas") String proximas,
+                             @Param("semMudanca") String semMudanca);
+
+    /**
+     * Projeção de uma entrega a consultar na Uber
+     */
+    interface ConsultaStatusUber {
+        UUID getId();
+        String getIdCorridaUber();
+        String getStatusEntrega();
+        Integer getConsultasSemMudanca();
+    }
 }
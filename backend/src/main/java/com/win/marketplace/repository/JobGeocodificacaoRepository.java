@@ -0,0 +1,65 @@
+package com.win.marketplace.repository;
+
+import com.win.marketplace.model.JobGeocodificacao;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface JobGeocodificacaoRepository extends JpaRepository<JobGeocodificacao, UUID> {
+
+    Optional<JobGeocodificacao> findFirstByAlvoAndStatus(JobGeocodificacao.Alvo alvo, JobGeocodificacao.StatusJob status);
+
+    List<JobGeocodificacao> findTop20ByOrderByIniciadoEmDesc();
+
+    /**
+     * Jobs em execução cujo heartbeat parou (instância caiu no meio)
+     */
+    @Query("SELECT j FROM JobGeocodificacao j WHERE j.status = com.win.marketplace.model.JobGeocodificacao.StatusJob.EXECUTANDO " +
+           "AND j.atualizadoEm < :limite")
+    List<JobGeocodificacao> findAbandonados(@Param("limite") OffsetDateTime limite);
+
+    /**
+     * Assume um job abandonado; só uma instância consegue (atualização condicional)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobGeocodificacao j SET j.instancia = :instancia, j.atualizadoEm = :agora, " +
+           "j.execucaoIniciadaEm = :agora, j.processadosNoInicioExecucao = j.processados " +
+           "WHERE j.id = :id AND j.status = com.win.marketplace.model.JobGeocodificacao.StatusJob.EXECUTANDO " +
+           "AND j.atualizadoEm < :limite")
+    int assumir(@Param("id") UUID id, @Param("instancia") String instancia,
+                @Param("agora") OffsetDateTime agora, @Param("limite") OffsetDateTime limite);
+
+    /**
+     * Checkpoint de uma página processada (também serve de heartbeat)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobGeocodificacao j SET j.processados = j.processados + :processados, " +
+           "j.sucessos = j.sucessos + :sucessos, j.falhas = j.falhas + :falhas, " +
+           "j.ultimoIdProcessado = :ultimoId, j.ultimoErro = COALESCE(:erro, j.ultimoErro), j.atualizadoEm = :agora " +
+           "WHERE j.id = :id")
+    int registrarProgresso(@Param("id") UUID id, @Param("processados") int processados,
+                           @Param("sucessos") int sucessos, @Param("falhas") int falhas,
+                           @Param("ultimoId") UUID ultimoId, @Param("erro") String erro,
+                           @Param("agora") OffsetDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobGeocodificacao j SET j.status = :status, j.atualizadoEm = :agora, j.concluidoEm = :agora " +
+           "WHERE j.id = :id AND j.status = com.win.marketplace.model.JobGeocodificacao.StatusJob.EXECUTANDO")
+    int finalizar(@Param("id") UUID id, @Param("status") JobGeocodificacao.StatusJob status,
+                  @Param("agora") OffsetDateTime agora);
+
+    @Query("SELECT j.status FROM JobGeocodificacao j WHERE j.id = :id")
+    JobGeocodificacao.StatusJob findStatusById(@Param("id") UUID id);
+}
@@ -4,9 +4,14 @@ import com.win.marketplace.model.Lojista;
 import com.win.marketplace.model.LojistaErpConfig;
 import com.win.marketplace.model.enums.ErpType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -39,4 +44,12 @@ public interface LojistaErpConfigRepository extends JpaRepository<LojistaErpConf
      * Verifica se lojista já tem configuração ERP
      */
     boolean existsByLojistaId(UUID lojistaId);
+    
+    /**
+     * Registra o recebimento de webhooks de estoque (sem carregar as entidades)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LojistaErpConfig c SET c.lastWebhookAt = :recebidoEm WHERE c.id IN :ids")
+    int registrarWebhooks(@Param("ids") Collection<UUID> ids, @Param("recebidoEm") LocalDateTime recebidoEm);
 }
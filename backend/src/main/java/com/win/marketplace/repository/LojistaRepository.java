@@ -1,8 +1,13 @@
 package com.win.marketplace.repository;
 
 import com.win.marketplace.model.Lojista;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,4 +25,18 @@ public interface LojistaRepository extends JpaRepository<Lojista, UUID> {
     List<Lojista> findByAtivoTrue();
     
     List<Lojista> findByNomeFantasiaContainingIgnoreCase(String nomeFantasia);
+
+    /**
+     * Próxima página de lojistas sem coordenadas (keyset por id, para geocodificação em lote)
+     */
+    @Query("SELECT l FROM Lojista l WHERE (l.latitude IS NULL OR l.longitude IS NULL) AND l.id > :depoisDe ORDER BY l.id")
+    List<Lojista> findSemCoordenadasApos(@Param("depoisDe") UUID depoisDe, Pageable pageable);
+
+    @Query("SELECT COUNT(l) FROM Lojista l WHERE l.latitude IS NULL OR l.longitude IS NULL")
+    long countSemCoordenadas();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Lojista l SET l.latitude = :latitude, l.longitude = :longitude WHERE l.id = :id")
+    int atualizarCoordenadas(@Param("id") UUID id, @Param("latitude") Double latitude, @Param("longitude") Double longitude);
 }
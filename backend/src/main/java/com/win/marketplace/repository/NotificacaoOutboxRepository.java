@@ -0,0 +1,55 @@
+package com.win.marketplace.repository;
+
+import com.win.marketplace.model.NotificacaoOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface NotificacaoOutboxRepository extends JpaRepository<NotificacaoOutbox, UUID> {
+
+    /**
+     * Reivindica um lote de eventos pendentes (mais antigos primeiro).
+     * SKIP LOCKED permite várias instâncias consumindo a outbox sem processar o mesmo evento.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT * FROM notificacoes_outbox
+        WHERE status = 'PENDENTE'
+        ORDER BY criado_em
+        LIMIT :limite
+        FOR UPDATE SKIP LOCKED
+    """)
+    List<NotificacaoOutbox> reivindicarPendentes(@Param("limite") int limite);
+
+    @Modifying
+    @Query("UPDATE NotificacaoOutbox e SET e.status = com.win.marketplace.model.NotificacaoOutbox.StatusEvento.ENVIADO, " +
+           "e.processadoEm = :agora WHERE e.id IN :ids")
+    int marcarEnviados(@Param("ids") Collection<UUID> ids, @Param("agora") OffsetDateTime agora);
+
+    /**
+     * Registra falha do lote: volta para PENDENTE até atingir o máximo de tentativas
+     */
+    @Modifying
+    @Query("UPDATE NotificacaoOutbox e SET e.tentativas = e.tentativas + 1, e.ultimoErro = :erro, " +
+           "e.status = CASE WHEN e.tentativas + 1 >= :maxTentativas " +
+           "THEN com.win.marketplace.model.NotificacaoOutbox.StatusEvento.FALHOU " +
+           "ELSE com.win.marketplace.model.NotificacaoOutbox.StatusEvento.PENDENTE END " +
+           "WHERE e.id IN :ids")
+    int registrarFalha(@Param("ids") Collection<UUID> ids,
+                       @Param("erro") String erro,
+                       @Param("maxTentativas") int maxTentativas);
+
+    @Modifying
+    @Query("DELETE FROM NotificacaoOutbox e " +
+           "WHERE e.status = com.win.marketplace.model.NotificacaoOutbox.StatusEvento.ENVIADO AND e.processadoEm < :limite")
+    int removerEnviadosAntesDe(@Param("limite") OffsetDateTime limite);
+
+    long countByStatus(NotificacaoOutbox.StatusEvento status);
+}
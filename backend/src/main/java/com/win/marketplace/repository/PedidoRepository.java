@@ -1,14 +1,18 @@
 package com.win.marketplace.repository;
 
 import com.win.marketplace.model.Pedido;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,16 +21,76 @@ import java.util.UUID;
 public interface PedidoRepository extends JpaRepository<Pedido, UUID> {
     
     /**
-     * Busca pedidos do usuário com join fetch de itens, produtos e imagens
-     * Evita problema de LazyInitializationException ao mapear para DTO
+     * Condição de keyset (criadoEm DESC, id DESC): pedidos estritamente depois do cursor.
+     * O "criadoEm <= :cursorCriadoEm" redundante permite ao Postgres usar o índice como faixa.
+     */
+    String KEYSET_PEDIDOS = "AND p.criadoEm <= :cursorCriadoEm " +
+           "AND (p.criadoEm < :cursorCriadoEm OR p.id < :cursorId) " +
+           "ORDER BY p.criadoEm DESC, p.id DESC";
+
+    // ========================================
+    // LISTAGENS PAGINADAS (fase 1: só os IDs da página)
+    // ========================================
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.usuario.id = :usuarioId " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIdsPorUsuario(@Param("usuarioId") UUID usuarioId,
+                                       @Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                                       @Param("cursorId") UUID cursorId,
+                                       Pageable pageable);
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.motorista.id = :motoristaId " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIdsPorMotorista(@Param("motoristaId") UUID motoristaId,
+                                         @Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                                         @Param("cursorId") UUID cursorId,
+                                         Pageable pageable);
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.lojista.id = :lojistaId " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIdsPorLojista(@Param("lojistaId") UUID lojistaId,
+                                       @Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                                       @Param("cursorId") UUID cursorId,
+                                       Pageable pageable);
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.lojista.id = :lojistaId AND p.status = :status " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIdsPorLojistaEStatus(@Param("lojistaId") UUID lojistaId,
+                                              @Param("status") Pedido.StatusPedido status,
+                                              @Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                                              @Param("cursorId") UUID cursorId,
+                                              Pageable pageable);
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.lojista.id = :lojistaId " +
+           "AND p.statusPagamento = :statusPagamento AND p.status IN :statuses " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIdsPorLojistaEStatusPagamento(@Param("lojistaId") UUID lojistaId,
+                                                       @Param("statusPagamento") Pedido.StatusPagamento statusPagamento,
+                                                       @Param("statuses") List<Pedido.StatusPedido> statuses,
+                                                       @Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                                                       @Param("cursorId") UUID cursorId,
+                                                       Pageable pageable);
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.status = :status " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIdsPorStatus(@Param("status") Pedido.StatusPedido status,
+                                      @Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                                      @Param("cursorId") UUID cursorId,
+                                      Pageable pageable);
+
+    @Query("SELECT p.id FROM Pedido p WHERE 1 = 1 " + KEYSET_PEDIDOS)
+    List<UUID> findPaginaIds(@Param("cursorCriadoEm") OffsetDateTime cursorCriadoEm,
+                             @Param("cursorId") UUID cursorId,
+                             Pageable pageable);
+
+    /**
+     * Fase 2: carrega só os pedidos da página com itens, produtos e imagens
+     * (evita LazyInitializationException e N+1 ao mapear para DTO)
      */
     @Query("SELECT DISTINCT p FROM Pedido p " +
+           "LEFT JOIN FETCH p.usuario " +
+           "LEFT JOIN FETCH p.lojista " +
+           "LEFT JOIN FETCH p.motorista m " +
+           "LEFT JOIN FETCH m.usuario " +
            "LEFT JOIN FETCH p.itens i " +
            "LEFT JOIN FETCH i.produto prod " +
            "LEFT JOIN FETCH prod.imagens " +
-           "WHERE p.usuario.id = :usuarioId " +
-           "ORDER BY p.criadoEm DESC")
-    List<Pedido> findByUsuarioIdWithDetails(@Param("usuarioId") UUID usuarioId);
+           "WHERE p.id IN :ids")
+    List<Pedido> findComDetalhesByIdIn(@Param("ids") Collection<UUID> ids);
     
     List<Pedido> findByUsuarioId(UUID usuarioId);
     
@@ -36,7 +100,25 @@ public interface PedidoRepository extends JpaRepository<Pedido, UUID> {
     
     Optional<Pedido> findByNumeroPedido(String numeroPedido);
 
-       boolean existsByCodigoEntrega(String codigoEntrega);
+    /**
+     * Reserva o próximo bloco de números de pedido (hi/lo).
+     * O INCREMENT BY da sequência é o tamanho do bloco (ver NumeroPedidoGenerator).
+     */
+    @Query(value = "SELECT nextval('pedido_numero_seq')", nativeQuery = true)
+    long proximoBlocoNumeroPedido();
+
+    /**
+     * Garante a sequência em bancos sem a migração V21 (schema via ddl-auto)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "CREATE SEQUENCE IF NOT EXISTS pedido_numero_seq START WITH 1 INCREMENT BY 100", nativeQuery = true)
+    void criarSequenciaNumeroPedido();
+
+    boolean existsByCodigoEntregaAndStatusIn(String codigoEntrega, List<Pedido.StatusPedido> status);
+
+    @Query("SELECT p.codigoEntrega FROM Pedido p WHERE p.status IN :status AND p.codigoEntrega IS NOT NULL")
+    List<String> findCodigosEntregaPorStatus(@Param("status") List<Pedido.StatusPedido> status);
     
     @Query("SELECT p FROM Pedido p WHERE p.usuario.id = :usuarioId AND p.status = :status")
     List<Pedido> findByUsuarioIdAndStatus(@Param("usuarioId") UUID usuarioId, @Param("status") Pedido.StatusPedido status);
@@ -59,22 +141,6 @@ public interface PedidoRepository extends JpaRepository<Pedido, UUID> {
     @Query("SELECT p FROM Pedido p WHERE p.status = :status AND p.motorista IS NULL")
     List<Pedido> findPedidosSemMotorista(@Param("status") Pedido.StatusPedido status);
     
-    @Query("SELECT DISTINCT p FROM Pedido p JOIN p.itens i WHERE i.lojista.id = :lojistaId ORDER BY p.criadoEm DESC")
-    List<Pedido> findByLojistaId(@Param("lojistaId") UUID lojistaId);
-    
-    @Query("SELECT DISTINCT p FROM Pedido p JOIN p.itens i WHERE i.lojista.id = :lojistaId AND p.status = :status ORDER BY p.criadoEm DESC")
-    List<Pedido> findByLojistaIdAndStatus(@Param("lojistaId") UUID lojistaId, @Param("status") Pedido.StatusPedido status);
-
-    @Query("SELECT DISTINCT p FROM Pedido p JOIN p.itens i " +
-          "WHERE i.lojista.id = :lojistaId " +
-          "AND p.statusPagamento = :statusPagamento " +
-          "AND p.status IN :statuses " +
-          "ORDER BY p.criadoEm DESC")
-    List<Pedido> findByLojistaIdAndStatusPagamentoAndStatusIn(
-           @Param("lojistaId") UUID lojistaId,
-           @Param("statusPagamento") Pedido.StatusPagamento statusPagamento,
-           @Param("statuses") List<Pedido.StatusPedido> statuses);
-    
     @Query("SELECT COUNT(DISTINCT p) FROM Pedido p JOIN p.itens i WHERE i.lojista.id = :lojistaId")
     long countByLojistaId(@Param("lojistaId") UUID lojistaId);
     
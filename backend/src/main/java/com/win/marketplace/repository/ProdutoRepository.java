@@ -4,11 +4,14 @@ import com.win.marketplace.model.Produto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -52,11 +55,174 @@ public interface ProdutoRepository extends JpaRepository<Produto, UUID> {
     List<Produto> findByCategoriaIdAndAtivoTrue(UUID categoriaId);
     
     /**
-     * Busca produtos por nome (busca parcial, case insensitive, apenas ativos)
-     * ✅ FIX-004: Carrega relacionamentos mesmo em buscas textuais
+     * Carrega um lote de produtos por ID (hidratação dos resultados da busca)
+     * Inclui imagens para montar a imagem principal sem N+1
      */
-    @EntityGraph(attributePaths = {"lojista", "categoria"})
-    List<Produto> findByNomeContainingIgnoreCaseAndAtivoTrue(String nome);
+    @EntityGraph(attributePaths = {"lojista", "categoria", "imagens"})
+    List<Produto> findByIdIn(List<UUID> ids);
+
+    /**
+     * Carrega os produtos de um carrinho com o lojista em uma única query (checkout)
+     */
+    @EntityGraph(attributePaths = {"lojista"})
+    @Query("SELECT p FROM Produto p WHERE p.id IN :ids")
+    List<Produto> findComLojistaByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Baixa o estoque de vários produtos em um único comando, apenas onde há saldo.
+     * As linhas são travadas em ordem de id para que checkouts concorrentes não
+     * entrem em deadlock. Parâmetros são arrays literais ('{a,b}') alinhados.
+     *
+     * @return quantidade de produtos efetivamente atualizados
+     */
+    @Modifying
+    @Query(value =
+        "WITH reserva(id, quantidade) AS (" +
+        "  SELECT * FROM unnest(CAST(:ids AS uuid[]), CAST(:quantidades AS int[]))), " +
+        "travados AS (" +
+        "  SELECT p.id FROM produtos p JOIN reserva r ON r.id = p.id ORDER BY p.id FOR UPDATE OF p) " +
+        "UPDATE produtos p SET estoque = p.estoque - r.quantidade, atualizado_em = NOW() " +
+        "FROM reserva r JOIN travados t ON t.id = r.id " +
+        "WHERE p.id = r.id AND p.ativo = true AND p.estoque >= r.quantidade",
+        nativeQuery = true)
+    int reservarEstoque(@Param("ids") String ids, @Param("quantidades") String quantidades);
+
+    /**
+     * Devolve ao estoque as quantidades informadas (cancelamento de pedido)
+     */
+    @Modifying
+    @Query(value =
+        "WITH devolucao(id, quantidade) AS (" +
+        "  SELECT * FROM unnest(CAST(:ids AS uuid[]), CAST(:quantidades AS int[]))), " +
+        "travados AS (" +
+        "  SELECT p.id FROM produtos p JOIN devolucao d ON d.id = p.id ORDER BY p.id FOR UPDATE OF p) " +
+        "UPDATE produtos p SET estoque = p.estoque + d.quantidade, atualizado_em = NOW() " +
+        "FROM devolucao d JOIN travados t ON t.id = d.id " +
+        "WHERE p.id = d.id",
+        nativeQuery = true)
+    int devolverEstoque(@Param("ids") String ids, @Param("quantidades") String quantidades);
+
+    /**
+     * Aplica saldos e desativações vindos do ERP em um único comando (sincronização
+     * em lote). Só toca linhas em que o estoque mudou ou que foram desativadas no
+     * ERP; ativos = false desativa, true mantém o status atual. Parâmetros são
+     * arrays literais ('{a,b}') alinhados.
+     *
+     * @return quantidade de produtos efetivamente alterados
+     */
+    @Modifying
+    @Query(value =
+        "UPDATE produtos p SET estoque = u.estoque, ativo = p.ativo AND u.ativo, atualizado_em = NOW() " +
+        "FROM unnest(CAST(:ids AS uuid[]), CAST(:estoques AS int[]), CAST(:ativos AS boolean[])) AS u(id, estoque, ativo) " +
+        "WHERE p.id = u.id AND (p.estoque <> u.estoque OR (p.ativo AND NOT u.ativo))",
+        nativeQuery = true)
+    int aplicarEstoqueErp(@Param("ids") String ids, @Param("estoques") String estoques, @Param("ativos") String ativos);
+
+    /**
+     * Busca full-text (V18): casa o tsvector (nome + categoria + descrição) ou
+     * trigramas do nome normalizado, ordena por relevância e pagina por keyset
+     * em (rank, id). Filtros opcionais usam '' como "sem filtro".
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT r.id AS id, r.rank AS rank
+        FROM (
+            SELECT p.id AS id,
+                   CAST(ts_rank_cd(p.busca_vetor, to_tsquery('portuguese_unaccent', :consulta), 32)
+                        + similarity(f_unaccent(lower(p.nome)), f_unaccent(lower(:termo))) AS double precision) AS rank
+            FROM produtos p
+            WHERE p.ativo = true
+              AND (p.busca_vetor @@ to_tsquery('portuguese_unaccent', :consulta)
+                   OR f_unaccent(lower(p.nome)) % f_unaccent(lower(:termo)))
+              AND (:categoriaId = '' OR p.categoria_id = CAST(NULLIF(:categoriaId, '') AS uuid))
+              AND (:lojistaId = '' OR p.lojista_id = CAST(NULLIF(:lojistaId, '') AS uuid))
+              AND p.preco BETWEEN :precoMin AND :precoMax
+        ) r
+        WHERE (:cursorId = '' OR (r.rank, r.id) < (:cursorRank, CAST(NULLIF(:cursorId, '') AS uuid)))
+        ORDER BY r.rank DESC, r.id DESC
+        LIMIT :limite
+    """)
+    List<ResultadoBusca> buscarFullText(@Param("consulta") String consulta,
+                                        @Param("termo") String termo,
+                                        @Param("categoriaId") String categoriaId,
+                                        @Param("lojistaId") String lojistaId,
+                                        @Param("precoMin") BigDecimal precoMin,
+                                        @Param("precoMax") BigDecimal precoMax,
+                                        @Param("cursorRank") double cursorRank,
+                                        @Param("cursorId") String cursorId,
+                                        @Param("limite") int limite);
+
+    /**
+     * Faceta de categorias da busca full-text: [categoriaId, nome, quantidade]
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT CAST(c.id AS varchar), c.nome, COUNT(*)
+        FROM produtos p
+        JOIN categorias c ON c.id = p.categoria_id
+        WHERE p.ativo = true
+          AND (p.busca_vetor @@ to_tsquery('portuguese_unaccent', :consulta)
+               OR f_unaccent(lower(p.nome)) % f_unaccent(lower(:termo)))
+          AND (:lojistaId = '' OR p.lojista_id = CAST(NULLIF(:lojistaId, '') AS uuid))
+          AND p.preco BETWEEN :precoMin AND :precoMax
+        GROUP BY c.id, c.nome
+        ORDER BY COUNT(*) DESC
+        LIMIT 20
+    """)
+    List<Object[]> contarFacetaCategorias(@Param("consulta") String consulta,
+                                          @Param("termo") String termo,
+                                          @Param("lojistaId") String lojistaId,
+                                          @Param("precoMin") BigDecimal precoMin,
+                                          @Param("precoMax") BigDecimal precoMax);
+
+    /**
+     * Faceta de lojistas da busca full-text: [lojistaId, nomeFantasia, quantidade]
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT CAST(l.id AS varchar), l.nome_fantasia, COUNT(*)
+        FROM produtos p
+        JOIN lojistas l ON l.id = p.lojista_id
+        WHERE p.ativo = true
+          AND (p.busca_vetor @@ to_tsquery('portuguese_unaccent', :consulta)
+               OR f_unaccent(lower(p.nome)) % f_unaccent(lower(:termo)))
+          AND (:categoriaId = '' OR p.categoria_id = CAST(NULLIF(:categoriaId, '') AS uuid))
+          AND p.preco BETWEEN :precoMin AND :precoMax
+        GROUP BY l.id, l.nome_fantasia
+        ORDER BY COUNT(*) DESC
+        LIMIT 20
+    """)
+    List<Object[]> contarFacetaLojistas(@Param("consulta") String consulta,
+                                        @Param("termo") String termo,
+                                        @Param("categoriaId") String categoriaId,
+                                        @Param("precoMin") BigDecimal precoMin,
+                                        @Param("precoMax") BigDecimal precoMax);
+
+    /**
+     * Faceta de faixas de preço da busca full-text: [indiceFaixa, quantidade]
+     * O índice corresponde à posição em limites (width_bucket, 0 = abaixo do primeiro)
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT width_bucket(p.preco, CAST(:limites AS numeric[])) AS faixa, COUNT(*)
+        FROM produtos p
+        WHERE p.ativo = true
+          AND (p.busca_vetor @@ to_tsquery('portuguese_unaccent', :consulta)
+               OR f_unaccent(lower(p.nome)) % f_unaccent(lower(:termo)))
+          AND (:categoriaId = '' OR p.categoria_id = CAST(NULLIF(:categoriaId, '') AS uuid))
+          AND (:lojistaId = '' OR p.lojista_id = CAST(NULLIF(:lojistaId, '') AS uuid))
+        GROUP BY faixa
+        ORDER BY faixa
+    """)
+    List<Object[]> contarFacetaFaixasPreco(@Param("consulta") String consulta,
+                                           @Param("termo") String termo,
+                                           @Param("categoriaId") String categoriaId,
+                                           @Param("lojistaId") String lojistaId,
+                                           @Param("limites") String limites);
+
+    /**
+     * Projeção de um resultado da busca full-text
+     */
+    interface ResultadoBusca {
+        UUID getId();
+        Double getRank();
+    }
     
     /**
      * Conta quantos itens de pedido estão associados a este produto
@@ -70,18 +236,6 @@ public interface ProdutoRepository extends JpaRepository<Produto, UUID> {
     @Query("SELECT p FROM Produto p WHERE p.estoque <= :quantidade AND p.ativo = true")
     List<Produto> findProdutosComEstoqueBaixo(@Param("quantidade") Integer quantidade);
     
-    /**
-     * Busca produtos mais vendidos (baseado em quantidade de itens de pedido)
-     * ✅ FIX-004: @EntityGraph com @Query para evitar lazy loading em grupo
-     */
-    @EntityGraph(attributePaths = {"lojista", "categoria"})
-    @Query("SELECT p FROM Produto p " +
-           "LEFT JOIN ItemPedido ip ON p.id = ip.produto.id " +
-           "WHERE p.ativo = true " +
-           "GROUP BY p.id " +
-           "ORDER BY COUNT(ip.id) DESC")
-    List<Produto> findProdutosMaisVendidos(Pageable pageable);
-    
     /**
      * Busca produtos mais bem avaliados
      * ✅ FIX-004: @EntityGraph com @Query
@@ -104,6 +258,12 @@ public interface ProdutoRepository extends JpaRepository<Produto, UUID> {
     @EntityGraph(attributePaths = {"lojista", "categoria"})
     List<Produto> findByLojistaIdAndErpSkuIsNotNull(UUID lojistaId);
     
+    /**
+     * Produtos do lojista vinculados aos SKUs informados (sincronização incremental)
+     */
+    @EntityGraph(attributePaths = {"categoria"})
+    List<Produto> findByLojistaIdAndErpSkuIn(UUID lojistaId, Collection<String> erpSkus);
+    
     /**
      * ✅ Busca produto por erpSku (para validar duplicação)
      * ✅ FIX-004: @EntityGraph carrega relacionamentos
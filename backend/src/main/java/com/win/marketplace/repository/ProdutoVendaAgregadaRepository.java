@@ -0,0 +1,140 @@
+package com.win.marketplace.repository;
+
+import com.win.marketplace.model.ProdutoVendaAgregada;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Contadores de vendas pré-calculados (tabelas produto_vendas_agregadas e
+ * produto_vendas_diarias). Filtros opcionais usam '' como "sem filtro".
+ */
+@Repository
+public interface ProdutoVendaAgregadaRepository extends JpaRepository<ProdutoVendaAgregada, UUID> {
+
+    /**
+     * Top-k de todo o período: percorre o índice (quantidade_vendida DESC) e para em k linhas
+     */
+    @Query(value =
+        "SELECT a.produto_id FROM produto_vendas_agregadas a " +
+        "JOIN produtos p ON p.id = a.produto_id AND p.ativo = true " +
+        "WHERE a.quantidade_vendida > 0 " +
+        "AND (:categoriaId = '' OR a.categoria_id = CAST(NULLIF(:categoriaId, '') AS uuid)) " +
+        "AND (:lojistaId = '' OR a.lojista_id = CAST(NULLIF(:lojistaId, '') AS uuid)) " +
+        "ORDER BY a.quantidade_vendida DESC, a.produto_id " +
+        "LIMIT :limite",
+        nativeQuery = true)
+    List<UUID> findTopProdutoIds(@Param("categoriaId") String categoriaId,
+                                 @Param("lojistaId") String lojistaId,
+                                 @Param("limite") int limite);
+
+    /**
+     * Top-k de uma janela: soma no máximo 30 buckets diários por produto vendido no período
+     */
+    @Query(value =
+        "SELECT d.produto_id FROM produto_vendas_diarias d " +
+        "JOIN produtos p ON p.id = d.produto_id AND p.ativo = true " +
+        "WHERE d.dia >= :desde " +
+        "AND (:categoriaId = '' OR p.categoria_id = CAST(NULLIF(:categoriaId, '') AS uuid)) " +
+        "AND (:lojistaId = '' OR p.lojista_id = CAST(NULLIF(:lojistaId, '') AS uuid)) " +
+        "GROUP BY d.produto_id " +
+        "HAVING SUM(d.quantidade_vendida) > 0 " +
+        "ORDER BY SUM(d.quantidade_vendida) DESC, d.produto_id " +
+        "LIMIT :limite",
+        nativeQuery = true)
+    List<UUID> findTopProdutoIdsDesde(@Param("desde") LocalDate desde,
+                                      @Param("categoriaId") String categoriaId,
+                                      @Param("lojistaId") String lojistaId,
+                                      @Param("limite") int limite);
+
+    /**
+     * Soma (ou subtrai, com delta negativo) unidades no total do produto
+     */
+    @Modifying
+    @Query(value =
+        "INSERT INTO produto_vendas_agregadas (produto_id, categoria_id, lojista_id, quantidade_vendida, atualizado_em) " +
+        "SELECT p.id, p.categoria_id, p.lojista_id, GREATEST(:delta, 0), NOW() FROM produtos p WHERE p.id = :produtoId " +
+        "ON CONFLICT (produto_id) DO UPDATE SET " +
+        "quantidade_vendida = GREATEST(produto_vendas_agregadas.quantidade_vendida + :delta, 0), " +
+        "categoria_id = EXCLUDED.categoria_id, " +
+        "lojista_id = EXCLUDED.lojista_id, " +
+        "atualizado_em = NOW()",
+        nativeQuery = true)
+    int acumularTotal(@Param("produtoId") UUID produtoId, @Param("delta") long delta);
+
+    /**
+     * Soma (ou subtrai) unidades no bucket diário do produto
+     */
+    @Modifying
+    @Query(value =
+        "INSERT INTO produto_vendas_diarias (id, produto_id, dia, quantidade_vendida) " +
+        "VALUES (gen_random_uuid(), :produtoId, :dia, GREATEST(:delta, 0)) " +
+        "ON CONFLICT (produto_id, dia) DO UPDATE SET " +
+        "quantidade_vendida = GREATEST(produto_vendas_diarias.quantidade_vendida + :delta, 0)",
+        nativeQuery = true)
+    int acumularDia(@Param("produtoId") UUID produtoId, @Param("dia") LocalDate dia, @Param("delta") long delta);
+
+    /**
+     * Lock de sessão transacional para que só uma réplica reconstrua o ranking por vez
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:chave)", nativeQuery = true)
+    boolean tentarLockReconstrucao(@Param("chave") long chave);
+
+    /**
+     * Bloqueia escritas concorrentes nos contadores até o fim da transação da
+     * reconstrução. Confirmações em andamento esperam e somam o delta sobre o
+     * valor reconstruído (o pedido delas ainda não estava visível no histórico);
+     * sem isso o primeiro upsert de um produto colidiria com o INSERT da reconstrução.
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE produto_vendas_agregadas, produto_vendas_diarias IN SHARE ROW EXCLUSIVE MODE",
+        nativeQuery = true)
+    void bloquearEscritas();
+
+    @Modifying
+    @Query(value = "DELETE FROM produto_vendas_agregadas", nativeQuery = true)
+    int limparTotais();
+
+    @Modifying
+    @Query(value = "DELETE FROM produto_vendas_diarias", nativeQuery = true)
+    int limparDias();
+
+    /**
+     * Recalcula os totais a partir do histórico (pedidos confirmados e não cancelados)
+     */
+    @Modifying
+    @Query(value =
+        "INSERT INTO produto_vendas_agregadas (produto_id, categoria_id, lojista_id, quantidade_vendida, atualizado_em) " +
+        "SELECT p.id, p.categoria_id, p.lojista_id, SUM(ip.quantidade), NOW() " +
+        "FROM itens_pedidos ip " +
+        "JOIN pedidos pe ON pe.id = ip.pedido_id " +
+        "JOIN produtos p ON p.id = ip.produto_id " +
+        "WHERE pe.confirmado_em IS NOT NULL AND pe.status <> 'CANCELADO' " +
+        "GROUP BY p.id, p.categoria_id, p.lojista_id",
+        nativeQuery = true)
+    int reconstruirTotais();
+
+    /**
+     * Recalcula os buckets diários a partir de uma data (no fuso informado)
+     */
+    @Modifying
+    @Query(value =
+        "INSERT INTO produto_vendas_diarias (id, produto_id, dia, quantidade_vendida) " +
+        "SELECT gen_random_uuid(), x.produto_id, x.dia, x.quantidade FROM (" +
+        "  SELECT ip.produto_id AS produto_id, CAST(pe.confirmado_em AT TIME ZONE :fuso AS date) AS dia, " +
+        "         SUM(ip.quantidade) AS quantidade " +
+        "  FROM itens_pedidos ip " +
+        "  JOIN pedidos pe ON pe.id = ip.pedido_id " +
+        "  WHERE pe.confirmado_em IS NOT NULL AND pe.status <> 'CANCELADO' " +
+        "  AND CAST(pe.confirmado_em AT TIME ZONE :fuso AS date) >= :desde " +
+        "  GROUP BY 1, 2" +
+        ") x",
+        nativeQuery = true)
+    int reconstruirDiasDesde(@Param("desde") LocalDate desde, @Param("fuso") String fuso);
+}
@@ -0,0 +1,93 @@
+package com.win.marketplace.repository;
+
+import com.win.marketplace.model.UberWebhookEvento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UberWebhookInboxRepository extends JpaRepository<UberWebhookEvento, UUID> {
+
+    /**
+     * Grava o evento recebido (idempotente pelo event_id)
+     *
+     * @return 0 se o evento já havia sido recebido
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+        INSERT INTO uber_webhook_inbox
+            (id, event_id, delivery_id, event_type, payload, status, tentativas, proxima_tentativa_em, recebido_em)
+        VALUES (gen_random_uuid(), :eventId, :deliveryId, :eventType, :payload, 'PENDENTE', 0, NOW(), NOW())
+        ON CONFLICT (event_id) DO NOTHING
+    """)
+    int registrar(@Param("eventId") String eventId, @Param("deliveryId") String deliveryId,
+                  @Param("eventType") String eventType, @Param("payload") String payload);
+
+    /**
+     * Eventos prontos para processar: pendentes vencidos e PROCESSANDO com lease
+     * expirado. Só entra o evento mais antigo ainda não resolvido de cada
+     * entrega, o que mantém a ordem por entrega mesmo entre instâncias; SKIP
+     * LOCKED evita que duas instâncias peguem o mesmo evento.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT * FROM uber_webhook_inbox e
+        WHERE ((e.status = 'PENDENTE' AND e.proxima_tentativa_em <= NOW())
+            OR (e.status = 'PROCESSANDO' AND e.travado_ate < NOW()))
+          AND NOT EXISTS (
+              SELECT 1 FROM uber_webhook_inbox anterior
+              WHERE anterior.delivery_id = e.delivery_id
+                AND anterior.status IN ('PENDENTE', 'PROCESSANDO')
+                AND (anterior.recebido_em, anterior.id) < (e.recebido_em, e.id))
+        ORDER BY e.recebido_em
+        LIMIT :limite
+        FOR UPDATE SKIP LOCKED
+    """)
+    List<UberWebhookEvento> reivindicarProntos(@Param("limite") int limite);
+
+    /*
+     * concluir/reagendar/falhar só valem para quem ainda detém o lease: se ele
+     * expirou e outra instância reivindicou o evento, travado_ate mudou e o
+     * UPDATE não afeta nenhuma linha (retorno 0).
+     */
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UberWebhookEvento e SET e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.CONCLUIDO, " +
+           "e.tentativas = e.tentativas + 1, e.travadoAte = null, e.processadoEm = :agora WHERE e.id = :id " +
+           "AND e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.PROCESSANDO AND e.travadoAte = :lease")
+    int concluir(@Param("id") UUID id, @Param("lease") OffsetDateTime lease, @Param("agora") OffsetDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UberWebhookEvento e SET e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.PENDENTE, " +
+           "e.tentativas = e.tentativas + 1, e.ultimoErro = :erro, e.proximaTentativaEm = :proximaTentativa, " +
+           "e.travadoAte = null WHERE e.id = :id " +
+           "AND e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.PROCESSANDO AND e.travadoAte = :lease")
+    int reagendar(@Param("id") UUID id, @Param("lease") OffsetDateTime lease, @Param("erro") String erro,
+                  @Param("proximaTentativa") OffsetDateTime proximaTentativa);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UberWebhookEvento e SET e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.FALHOU, " +
+           "e.tentativas = e.tentativas + 1, e.ultimoErro = :erro, e.travadoAte = null, e.processadoEm = :agora WHERE e.id = :id " +
+           "AND e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.PROCESSANDO AND e.travadoAte = :lease")
+    int falhar(@Param("id") UUID id, @Param("lease") OffsetDateTime lease, @Param("erro") String erro,
+               @Param("agora") OffsetDateTime agora);
+
+    /**
+     * Remove eventos já concluídos (a deduplicação só precisa cobrir a janela de retentativas da Uber)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UberWebhookEvento e WHERE e.status = com.win.marketplace.model.UberWebhookEvento.StatusEvento.CONCLUIDO " +
+           "AND e.processadoEm < :limite")
+    int removerConcluidosAntes(@Param("limite") OffsetDateTime limite);
+}
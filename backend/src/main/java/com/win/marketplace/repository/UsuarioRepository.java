@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -75,6 +76,9 @@ public interface UsuarioRepository extends JpaRepository<Usuario, UUID> {
 
     @Query("SELECT DISTINCT u FROM Usuario u JOIN u.usuarioPerfis up JOIN up.perfil p WHERE u.ativo = true AND p.nome = :perfilNome")
     List<Usuario> findByPerfilAtivo(@Param("perfilNome") String perfilNome);
+
+    @Query("SELECT DISTINCT u.id FROM Usuario u JOIN u.usuarioPerfis up JOIN up.perfil p WHERE u.ativo = true AND p.nome = :perfilNome")
+    List<UUID> findIdsByPerfilAtivo(@Param("perfilNome") String perfilNome);
     
     /**
      * Verifica se existe usuário com o email
@@ -126,4 +130,13 @@ public interface UsuarioRepository extends JpaRepository<Usuario, UUID> {
      * Conta usuários inativos
      */
     Long countByAtivoFalse();
+
+    /**
+     * Atualiza as coordenadas do usuário (geocodificação em lote)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Usuario u SET u.latitude = :latitude, u.longitude = :longitude WHERE u.id = :usuarioId")
+    int atualizarCoordenadas(@Param("usuarioId") UUID usuarioId, @Param("latitude") Double latitude,
+                             @Param("longitude") Double longitude);
 }
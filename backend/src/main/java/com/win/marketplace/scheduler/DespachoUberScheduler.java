@@ -0,0 +1,31 @@
+package com.win.marketplace.scheduler;
+
+import com.win.marketplace.service.DespachoUberService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Varredura periódica da outbox de despachos Uber.
+ *
+ * O caminho normal é acordar os workers logo após o commit do PRONTO; esta
+ * varredura cobre retentativas com backoff, leases expirados (worker que caiu)
+ * e despachos que não couberam no pool.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DespachoUberScheduler {
+
+    private final DespachoUberService despachoUberService;
+
+    @Scheduled(fixedDelayString = "${app.uber.despacho.intervalo-ms:5000}")
+    public void despachar() {
+        try {
+            despachoUberService.processarPendentes();
+        } catch (Exception e) {
+            log.error("❌ Erro ao processar outbox de despachos Uber: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -2,36 +2,106 @@ package com.win.marketplace.scheduler;
 
 import com.win.marketplace.integration.erp.ErpApiClient;
 import com.win.marketplace.integration.erp.ErpClientFactory;
+import com.win.marketplace.integration.erp.ErpFalhaParcialException;
+import com.win.marketplace.integration.erp.dto.ErpStockChangesDTO;
 import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
 import com.win.marketplace.model.LojistaErpConfig;
 import com.win.marketplace.model.Produto;
 import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.service.EstoqueErpService;
 import com.win.marketplace.service.LojistaErpConfigService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Scheduler para sincronização automática de estoque com múltiplos ERPs.
  * Executa a cada minuto, verificando quais lojistas estão prontos para sincronizar.
+ * ERPs com modo incremental recebem só as alterações desde o último cursor, com
+ * reconciliação completa periódica como rede de segurança.
+ *
+ * A rodada só despacha: cada lojista roda no pool erpSyncExecutor e o
+ * agendador não espera ninguém terminar. Lojistas mais atrasados em relação à
+ * própria frequência entram primeiro; quem ainda está sincronizando da rodada
+ * anterior é pulado; e a sincronização que passar de timeout-minutos é
+ * interrompida e registrada como falha.
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class MultiErpStockScheduler {
     
     private final LojistaErpConfigService erpConfigService;
     private final ErpClientFactory erpClientFactory;
     private final ProdutoRepository produtoRepository;
+    private final EstoqueErpService estoqueErpService;
+    private final ThreadPoolTaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    
+    private final int reconciliacaoHoras;
+    private final long sobreposicaoSegundos;
+    private final int maxPaginasIncremental;
+    private final Duration timeout;
+    
+    /** Sincronizações despachadas e ainda não terminadas, por configuração */
+    private final Map<UUID, Execucao> emAndamento = new ConcurrentHashMap<>();
+    
+    private final Counter ignoradosEmAndamento;
+    private final Counter ignoradosFilaCheia;
+    private final Counter interrompidos;
+    
+    public MultiErpStockScheduler(LojistaErpConfigService erpConfigService,
+                                  ErpClientFactory erpClientFactory,
+                                  ProdutoRepository produtoRepository,
+                                  EstoqueErpService estoqueErpService,
+                                  @Qualifier("erpSyncExecutor") ThreadPoolTaskExecutor executor,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.erp.sync.reconciliacao-horas:24}") int reconciliacaoHoras,
+                                  @Value("${app.erp.sync.sobreposicao-segundos:120}") long sobreposicaoSegundos,
+                                  @Value("${app.erp.sync.max-paginas-incremental:20}") int maxPaginasIncremental,
+                                  @Value("${app.erp.sync.timeout-minutos:10}") long timeoutMinutos) {
+        this.erpConfigService = erpConfigService;
+        this.erpClientFactory = erpClientFactory;
+        this.produtoRepository = produtoRepository;
+        this.estoqueErpService = estoqueErpService;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.reconciliacaoHoras = reconciliacaoHoras;
+        this.sobreposicaoSegundos = sobreposicaoSegundos;
+        this.maxPaginasIncremental = maxPaginasIncremental;
+        this.timeout = Duration.ofMinutes(timeoutMinutos);
+        
+        this.ignoradosEmAndamento = contador(meterRegistry, "em-andamento");
+        this.ignoradosFilaCheia = contador(meterRegistry, "fila-cheia");
+        this.interrompidos = Counter.builder("erp.sync.timeout").register(meterRegistry);
+        Gauge.builder("erp.sync.em-andamento", emAndamento, Map::size).register(meterRegistry);
+    }
+    
+    private static Counter contador(MeterRegistry registry, String motivo) {
+        return Counter.builder("erp.sync.ignorados").tag("motivo", motivo).register(registry);
+    }
     
     /**
-     * Executa sincronização de estoque a cada minuto para todos os lojistas configurados.
+     * Despacha a sincronização de estoque dos lojistas cuja frequência venceu.
      * Cada lojista tem sua própria frequência de sincronização respeitada.
      */
     @Scheduled(fixedDelay = 60000, initialDelay = 60000) // 1 minuto
@@ -39,6 +109,8 @@ public class MultiErpStockScheduler {
         log.debug("Iniciando verificação de sincronização de estoques ERP");
         
         try {
+            interromperVencidas();
+            
             List<LojistaErpConfig> configs = erpConfigService.buscarConfiguracoesParaSync();
             
             if (configs.isEmpty()) {
@@ -46,11 +118,18 @@ public class MultiErpStockScheduler {
                 return;
             }
             
-            log.info("Encontradas {} configurações ERP ativas", configs.size());
-            
             // Filtra apenas configurações que devem ser sincronizadas agora
             List<LojistaErpConfig> configsParaSync = configs.stream()
                 .filter(LojistaErpConfig::shouldSync)
+                .filter(config -> {
+                    if (emAndamento.containsKey(config.getId())) {
+                        ignoradosEmAndamento.increment();
+                        log.debug("Lojista {} ainda sincronizando da rodada anterior; pulando", lojistaId(config));
+                        return false;
+                    }
+                    return true;
+                })
+                .sorted(POR_ATRASO)
                 .collect(Collectors.toList());
             
             if (configsParaSync.isEmpty()) {
@@ -58,17 +137,19 @@ public class MultiErpStockScheduler {
                 return;
             }
             
-            log.info("Sincronizando {} lojistas", configsParaSync.size());
-            
-            // Executa sincronização de cada lojista em paralelo
-            List<CompletableFuture<Void>> futures = configsParaSync.stream()
-                .map(this::sincronizarLojistaAsync)
-                .collect(Collectors.toList());
-            
-            // Aguarda todas as sincronizações completarem
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            int despachados = 0;
+            for (LojistaErpConfig config : configsParaSync) {
+                if (!despachar(config)) {
+                    int restantes = configsParaSync.size() - despachados;
+                    ignoradosFilaCheia.increment(restantes);
+                    log.warn("⚠️ Pool de sincronização ERP cheio; {} lojistas ficam para a próxima rodada", restantes);
+                    break;
+                }
+                despachados++;
+            }
             
-            log.info("Sincronização de estoques concluída");
+            log.info("Sincronização de estoque despachada para {} de {} lojistas ({} em andamento)",
+                despachados, configs.size(), emAndamento.size());
             
         } catch (Exception e) {
             log.error("Erro ao executar sincronização de estoques", e);
@@ -76,80 +157,217 @@ public class MultiErpStockScheduler {
     }
     
     /**
-     * Sincroniza produtos de um lojista específico de forma assíncrona
+     * Mais atrasado primeiro em relação à própria frequência (nunca sincronizado
+     * vem antes de todos). Como quem não coube no pool continua atrasado, ele
+     * entra na frente na rodada seguinte.
      */
-    @Async
-    public CompletableFuture<Void> sincronizarLojistaAsync(LojistaErpConfig config) {
-        return CompletableFuture.runAsync(() -> sincronizarLojista(config));
+    static final Comparator<LojistaErpConfig> POR_ATRASO = Comparator.comparing(
+        LojistaErpConfig::proximaSincronizacao, Comparator.nullsFirst(Comparator.naturalOrder()));
+    
+    private boolean despachar(LojistaErpConfig config) {
+        Execucao execucao = new Execucao(config);
+        emAndamento.put(config.getId(), execucao);
+        try {
+            execucao.futuro = executor.submit(() -> executar(execucao));
+            return true;
+        } catch (TaskRejectedException e) {
+            emAndamento.remove(config.getId(), execucao);
+            return false;
+        }
     }
     
     /**
-     * Sincroniza produtos de um lojista específico
+     * Interrompe sincronizações que passaram do tempo limite. A thread do
+     * worker é interrompida (as chamadas HTTP ao ERP respondem à interrupção) e
+     * o próprio worker registra a falha e libera o lojista.
      */
-    private void sincronizarLojista(LojistaErpConfig config) {
-        log.info("Iniciando sincronização para lojista {} - ERP: {}", 
-            config.getLojista().getId(), config.getErpType());
-        
-        try {
-            // Busca produtos vinculados ao ERP deste lojista
-            List<Produto> produtos = produtoRepository.findByLojistaIdAndErpSkuIsNotNull(
-                config.getLojista().getId()
-            );
-            
-            if (produtos.isEmpty()) {
-                log.info("Lojista {} não possui produtos vinculados ao ERP", 
-                    config.getLojista().getId());
-                config.markSyncSuccess();
-                erpConfigService.atualizarStatusSync(config.getId(), true, null);
+    private void interromperVencidas() {
+        long agora = System.nanoTime();
+        emAndamento.values().forEach(execucao -> {
+            long iniciadaEm = execucao.iniciadaEm;
+            if (iniciadaEm == 0 || execucao.interrompida || agora - iniciadaEm < timeout.toNanos()) {
                 return;
             }
-            
-            log.info("Sincronizando {} produtos do lojista {}", 
-                produtos.size(), config.getLojista().getId());
-            
-            // Cria cliente ERP
-            ErpApiClient client = erpClientFactory.createClient(config);
-            
-            // Coleta SKUs
-            List<String> skus = produtos.stream()
-                .map(Produto::getErpSku)
-                .collect(Collectors.toList());
-            
-            // Busca atualizações de estoque em lote
-            List<ErpStockUpdateDTO> updates = client.getStockUpdates(skus);
-            
-            // Aplica atualizações
-            int atualizados = 0;
-            for (ErpStockUpdateDTO update : updates) {
-                produtos.stream()
-                    .filter(p -> update.getSku().equals(p.getErpSku()))
-                    .findFirst()
-                    .ifPresent(produto -> {
-                        produto.setEstoque(update.getEstoque());
-                        
-                        // Se produto inativo no ERP, desativa no Win
-                        if (Boolean.FALSE.equals(update.getAtivo())) {
-                            produto.setAtivo(false);
-                        }
-                        
-                        produtoRepository.save(produto);
-                    });
-                atualizados++;
+            execucao.interrompida = true;
+            interrompidos.increment();
+            log.warn("⏱️ Sincronização do lojista {} passou de {} min; interrompendo",
+                execucao.lojistaId, timeout.toMinutes());
+            Future<?> futuro = execucao.futuro;
+            if (futuro != null) {
+                futuro.cancel(true);
             }
-            
-            log.info("Sincronização concluída - Lojista: {}, Produtos atualizados: {}/{}", 
-                config.getLojista().getId(), atualizados, produtos.size());
-            
-            config.markSyncSuccess();
-            erpConfigService.atualizarStatusSync(config.getId(), true, null);
-            
+        });
+    }
+    
+    /**
+     * Corpo do worker: mede atraso e duração e sempre libera o lojista ao final
+     */
+    void executar(Execucao execucao) {
+        LojistaErpConfig config = execucao.config;
+        execucao.iniciadaEm = System.nanoTime();
+        LocalDateTime vencimento = config.proximaSincronizacao();
+        if (vencimento != null) {
+            Duration atraso = Duration.between(vencimento, LocalDateTime.now());
+            Timer.builder("erp.sync.atraso")
+                .tag("lojista", String.valueOf(execucao.lojistaId))
+                .register(meterRegistry)
+                .record(atraso.isNegative() ? Duration.ZERO : atraso);
+        }
+        
+        String resultado = "sucesso";
+        try {
+            sincronizarLojista(config);
         } catch (Exception e) {
+            resultado = execucao.interrompida ? "timeout" : "falha";
+            String errorMsg = execucao.interrompida
+                ? "Erro: tempo limite de " + timeout.toMinutes() + " min excedido"
+                : "Erro: " + e.getMessage();
             log.error("Erro ao sincronizar lojista {} - ERP: {}", 
-                config.getLojista().getId(), config.getErpType(), e);
-            
-            String errorMsg = "Erro: " + e.getMessage();
+                execucao.lojistaId, config.getErpType(), e);
             config.markSyncFailure(errorMsg);
             erpConfigService.atualizarStatusSync(config.getId(), false, errorMsg);
+        } finally {
+            Timer.builder("erp.sync.duracao")
+                .tag("lojista", String.valueOf(execucao.lojistaId))
+                .tag("erp", String.valueOf(config.getErpType()))
+                .tag("resultado", resultado)
+                .register(meterRegistry)
+                .record(System.nanoTime() - execucao.iniciadaEm, TimeUnit.NANOSECONDS);
+            emAndamento.remove(config.getId(), execucao);
         }
     }
+    
+    /**
+     * Sincroniza produtos de um lojista específico.
+     * 
+     * Se o ERP suporta modo incremental e a reconciliação completa não está
+     * vencida, busca apenas os saldos alterados desde o cursor (o custo acompanha
+     * a taxa de mudança, não o tamanho do catálogo). Caso contrário consulta
+     * todos os SKUs vinculados. O cursor só avança quando a sincronização termina
+     * sem erro.
+     */
+    private void sincronizarLojista(LojistaErpConfig config) {
+        log.info("Iniciando sincronização para lojista {} - ERP: {}", 
+            lojistaId(config), config.getErpType());
+        
+        // Cria cliente ERP
+        ErpApiClient client = erpClientFactory.createClient(config);
+        LocalDateTime inicio = LocalDateTime.now();
+        
+        if (client.supportsIncrementalSync() && !config.precisaReconciliacaoCompleta(reconciliacaoHoras)
+                && sincronizarIncremental(config, client)) {
+            erpConfigService.registrarSyncEstoque(config.getId(), inicio, false);
+            return;
+        }
+        
+        sincronizarCompleto(config, client);
+        erpConfigService.registrarSyncEstoque(config.getId(), inicio, true);
+    }
+    
+    private static UUID lojistaId(LojistaErpConfig config) {
+        return config.getLojista() != null ? config.getLojista().getId() : null;
+    }
+    
+    /**
+     * Sincronização despachada para o pool
+     */
+    static final class Execucao {
+        final LojistaErpConfig config;
+        final UUID lojistaId;
+        volatile Future<?> futuro;
+        /** System.nanoTime() do início no worker; 0 enquanto está na fila */
+        volatile long iniciadaEm;
+        volatile boolean interrompida;
+        
+        Execucao(LojistaErpConfig config) {
+            this.config = config;
+            this.lojistaId = lojistaId(config);
+        }
+    }
+    
+    /**
+     * Aplica as alterações desde o cursor (com sobreposição para tolerar
+     * diferença de relógio; reaplicar um saldo é inócuo).
+     * 
+     * @return false se o ERP recusou o modo incremental ou há alterações demais
+     *         para uma rodada (o chamador faz a reconciliação completa)
+     */
+    private boolean sincronizarIncremental(LojistaErpConfig config, ErpApiClient client) {
+        UUID lojistaId = config.getLojista().getId();
+        LocalDateTime desde = config.getStockCursorAt().minusSeconds(sobreposicaoSegundos);
+        
+        Map<String, ErpStockUpdateDTO> porSku = new LinkedHashMap<>();
+        int pagina = 1;
+        ErpStockChangesDTO changes;
+        do {
+            if (pagina > maxPaginasIncremental) {
+                log.info("Lojista {}: alterações excedem {} páginas, fazendo reconciliação completa",
+                    lojistaId, maxPaginasIncremental);
+                return false;
+            }
+            changes = client.getStockChangesSince(desde, pagina++);
+            if (changes == null) {
+                return false;
+            }
+            changes.getAlteracoes().stream()
+                .filter(update -> update.getSku() != null)
+                .forEach(update -> porSku.put(update.getSku(), update));
+        } while (changes.isTemMaisPaginas());
+        
+        if (porSku.isEmpty()) {
+            log.debug("Lojista {}: nenhuma alteração de estoque desde {}", lojistaId, desde);
+            return true;
+        }
+        
+        List<Produto> produtos = produtoRepository.findByLojistaIdAndErpSkuIn(lojistaId, porSku.keySet());
+        EstoqueErpService.ResultadoAplicacao resultado = estoqueErpService.aplicar(produtos, porSku.values());
+        
+        log.info("Sincronização incremental concluída - Lojista: {}, Alterações: {}, Produtos alterados: {} (desativados: {})",
+            lojistaId, porSku.size(), resultado.alterados(), resultado.desativados());
+        return true;
+    }
+    
+    /**
+     * Reconciliação completa: consulta todos os SKUs vinculados. Se parte das
+     * consultas falhar, aplica os saldos obtidos e relança a falha para a
+     * sincronização ser registrada como erro sem avançar o cursor.
+     */
+    private void sincronizarCompleto(LojistaErpConfig config, ErpApiClient client) {
+        // Busca produtos vinculados ao ERP deste lojista
+        List<Produto> produtos = produtoRepository.findByLojistaIdAndErpSkuIsNotNull(
+            config.getLojista().getId()
+        );
+        
+        if (produtos.isEmpty()) {
+            log.info("Lojista {} não possui produtos vinculados ao ERP", 
+                config.getLojista().getId());
+            return;
+        }
+        
+        log.info("Sincronizando {} produtos do lojista {}", 
+            produtos.size(), config.getLojista().getId());
+        
+        // Coleta SKUs
+        List<String> skus = produtos.stream()
+            .map(Produto::getErpSku)
+            .collect(Collectors.toList());
+        
+        // Busca atualizações de estoque em lote
+        List<ErpStockUpdateDTO> updates;
+        try {
+            updates = client.getStockUpdates(skus);
+        } catch (ErpFalhaParcialException e) {
+            EstoqueErpService.ResultadoAplicacao parcial = estoqueErpService.aplicar(produtos, e.getAtualizacoes());
+            log.warn("⚠️ Sincronização parcial - Lojista: {}, Produtos alterados: {}/{}, consultas com falha: {}/{}",
+                config.getLojista().getId(), parcial.alterados(), produtos.size(), e.getFalhas(), e.getTotal());
+            throw e;
+        }
+        
+        // Aplica em lote apenas o que mudou
+        EstoqueErpService.ResultadoAplicacao resultado = estoqueErpService.aplicar(produtos, updates);
+        
+        log.info("Sincronização concluída - Lojista: {}, Produtos alterados: {}/{} (desativados: {}, SKUs sem produto: {})", 
+            config.getLojista().getId(), resultado.alterados(), produtos.size(),
+            resultado.desativados(), resultado.naoEncontrados());
+    }
 }
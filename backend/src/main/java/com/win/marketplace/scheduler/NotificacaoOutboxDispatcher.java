@@ -0,0 +1,51 @@
+package com.win.marketplace.scheduler;
+
+import com.win.marketplace.service.NotificacaoOutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumidor da outbox de notificações de pedido.
+ *
+ * - A cada intervalo drena a outbox em lotes (limitado por execução para não monopolizar o scheduler)
+ * - Limpeza diária dos eventos já enviados
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificacaoOutboxDispatcher {
+
+    private static final int MAX_LOTES_POR_EXECUCAO = 20;
+
+    private final NotificacaoOutboxService notificacaoOutboxService;
+
+    @Value("${app.notificacoes.outbox.retencao-dias:7}")
+    private int retencaoDias;
+
+    @Scheduled(fixedDelayString = "${app.notificacoes.outbox.intervalo-ms:1000}")
+    public void despachar() {
+        try {
+            int lotes = 0;
+            int processados;
+            do {
+                processados = notificacaoOutboxService.processarLote();
+                lotes++;
+            } while (processados >= notificacaoOutboxService.getTamanhoLote() && lotes < MAX_LOTES_POR_EXECUCAO);
+        } catch (Exception e) {
+            log.error("❌ Erro ao despachar outbox de notificações: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${app.notificacoes.outbox.limpeza-cron:0 15 4 * * *}")  // 04:15 todos os dias
+    public void limparEnviados() {
+        try {
+            int removidos = notificacaoOutboxService.removerEnviadosAntigos(retencaoDias);
+            log.info("🧹 Outbox de notificações: {} eventos enviados removidos", removidos);
+        } catch (Exception e) {
+            log.error("❌ Erro ao limpar outbox de notificações: {}", e.getMessage(), e);
+        }
+    }
+}
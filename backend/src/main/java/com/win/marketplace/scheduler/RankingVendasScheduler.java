@@ -0,0 +1,45 @@
+package com.win.marketplace.scheduler;
+
+import com.win.marketplace.service.RankingVendasService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Manutenção do ranking de "mais vendidos" pré-calculado.
+ *
+ * - Backfill na subida quando a tabela ainda está vazia
+ * - Reconstrução diária (corrige divergências e descarta buckets fora da janela de 30 dias)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RankingVendasScheduler {
+
+    private final RankingVendasService rankingVendasService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void popularSeVazio() {
+        try {
+            if (rankingVendasService.vazio()) {
+                log.info("Ranking de vendas vazio, executando backfill inicial...");
+                rankingVendasService.reconstruir();
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro no backfill do ranking de vendas: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${app.vendas.ranking.reconstrucao-cron:0 30 3 * * *}")  // 03:30 todos os dias
+    public void reconstruirAgendado() {
+        try {
+            log.info("⏰ Reconstruindo ranking de vendas (agendado)...");
+            rankingVendasService.reconstruir();
+        } catch (Exception e) {
+            log.error("❌ Erro ao reconstruir ranking de vendas: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.win.marketplace.scheduler;
+
+import com.win.marketplace.service.ReconciliacaoEntregaUberService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reconciliação periódica do status das entregas com a Uber.
+ *
+ * Cada rodada consulta só as entregas em andamento cuja próxima consulta
+ * venceu, dentro do orçamento por minuto; o intervalo de cada entrega é
+ * adaptado pelo ReconciliacaoEntregaUberService.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliacaoEntregaUberScheduler {
+
+    private final ReconciliacaoEntregaUberService reconciliacaoService;
+
+    @Scheduled(fixedDelayString = "${app.uber.reconciliacao.intervalo-ms:5000}")
+    public void reconciliar() {
+        try {
+            int consultadas = reconciliacaoService.reconciliar();
+            if (consultadas > 0) {
+                log.debug("Reconciliação Uber: {} entregas consultadas", consultadas);
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro na reconciliação de entregas Uber: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.win.marketplace.scheduler;
+
+import com.win.marketplace.service.UberWebhookInboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Varredura periódica da inbox de webhooks Uber.
+ *
+ * O caminho normal é acordar os workers logo após gravar o evento; esta
+ * varredura cobre retentativas com backoff, leases expirados, eventos que
+ * esperavam um anterior da mesma entrega e os que não couberam no pool.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UberWebhookInboxScheduler {
+
+    private final UberWebhookInboxService inboxService;
+
+    @Scheduled(fixedDelayString = "${app.uber.webhook-inbox.intervalo-ms:2000}")
+    public void processar() {
+        try {
+            inboxService.processarPendentes();
+        } catch (Exception e) {
+            log.error("❌ Erro ao processar inbox de webhooks Uber: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${app.uber.webhook-inbox.limpeza-cron:0 30 3 * * *}")
+    public void limpar() {
+        try {
+            int removidos = inboxService.limparConcluidos();
+            log.info("🧹 Inbox de webhooks Uber: {} eventos concluídos removidos", removidos);
+        } catch (Exception e) {
+            log.error("❌ Erro ao limpar inbox de webhooks Uber: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.win.marketplace.repository.LojistaRepository;
 import com.win.marketplace.repository.PedidoRepository;
 import com.win.marketplace.repository.ProdutoRepository;
 import com.win.marketplace.repository.UsuarioRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,10 @@ public class AdminActionService {
     private final ProdutoRepository produtoRepository;
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CatalogoCacheService catalogoCacheService;
+    private final RankingVendasService rankingVendasService;
+    private final ProdutoService produtoService;
+    private final CodigoEntregaAllocator codigoEntregaAllocator;
 
     /**
      * Atualiza status de um pedido (ação administrativa)
@@ -44,8 +49,23 @@ public class AdminActionService {
         
         try {
             Pedido.StatusPedido status = Pedido.StatusPedido.valueOf(novoStatus);
+            Pedido.StatusPedido statusAnterior = pedido.getStatus();
             pedido.setStatus(status);
             
+            if (status == Pedido.StatusPedido.CONFIRMADO && statusAnterior == Pedido.StatusPedido.PENDENTE) {
+                if (pedido.getConfirmadoEm() == null) {
+                    pedido.setConfirmadoEm(OffsetDateTime.now());
+                }
+                rankingVendasService.registrarConfirmacao(pedido);
+            } else if (status == Pedido.StatusPedido.CANCELADO && statusAnterior != Pedido.StatusPedido.CANCELADO) {
+                rankingVendasService.registrarCancelamento(pedido, statusAnterior);
+                produtoService.devolverEstoqueReservado(pedido);
+            }
+            
+            if (status == Pedido.StatusPedido.ENTREGUE || status == Pedido.StatusPedido.CANCELADO) {
+                codigoEntregaAllocator.liberar(pedido.getCodigoEntrega(), statusAnterior);
+            }
+            
             pedidoRepository.save(pedido);
             log.info("Status do pedido {} atualizado com sucesso para {}", pedidoId, novoStatus);
         } catch (IllegalArgumentException e) {
@@ -72,9 +92,14 @@ public class AdminActionService {
             throw new IllegalStateException("Não é possível cancelar pedido já entregue");
         }
         
+        Pedido.StatusPedido statusAnterior = pedido.getStatus();
         pedido.setStatus(Pedido.StatusPedido.CANCELADO);
         // Adicionar motivo em observações se houver campo
         
+        rankingVendasService.registrarCancelamento(pedido, statusAnterior);
+        produtoService.devolverEstoqueReservado(pedido);
+        codigoEntregaAllocator.liberar(pedido.getCodigoEntrega(), statusAnterior);
+        
         pedidoRepository.save(pedido);
         log.info("Pedido {} cancelado com sucesso pelo admin", pedidoId);
     }
@@ -110,6 +135,7 @@ public class AdminActionService {
         produto.setAtualizadoEm(OffsetDateTime.now());
         
         produtoRepository.save(produto);
+        catalogoCacheService.invalidarProdutoEListagens(produtoId, produto.getCategoria().getId());
         log.info("Produto {} {} com sucesso", produtoId, ativar ? "ativado" : "desativado");
     }
 
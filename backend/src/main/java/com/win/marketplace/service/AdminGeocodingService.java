@@ -8,16 +8,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Serviço administrativo profissional para geocodificação de lojistas
  * 
  * Responsabilidades:
- * - Geocodificar TODOS os lojistas sem coordenadas (batch processing)
  * - Geocodificar lojista individual sob demanda
  * - Atualizar persistência com coordenadas obtidas
  * - Rate limiting respeitando APIs externas
@@ -28,10 +25,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * - GeocodingService: Chamadas para Nominatim/Google Maps
  * - LojistaRepository: Persistência de dados
  * 
- * Performance:
- * - Rate limit: 600ms entre requisições (1 req/s = 3600 req/hora)
- * - Cache automático via GeocodingService (24h TTL)
- * - Transações isoladas por lojista para resiliência
+ * A geocodificação em massa (lojistas, endereços e usuários) roda como job
+ * retomável em GeocodificacaoLoteService; o rate limit do Nominatim é o token
+ * bucket compartilhado do GeocodingService.
  * 
  * @author WinMarketplace Team
  * @version 1.0-PROFESSIONAL
@@ -45,141 +41,6 @@ public class AdminGeocodingService {
     private final GeocodingService geocodingService;
     private final LojistaRepository lojistasRepository;
 
-    // ================== CONFIGURAÇÕES DE RATE LIMITING ==================
-    private static final long RATE_LIMIT_MS = 600;  // Rate limiting: 600ms entre requisições
-    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-
-    /**
-     * Geocodificar TODOS os lojistas sem coordenadas.
-     * 
-     * Algoritmo:
-     * 1. Buscar lojistas sem latitude/longitude
-     * 2. Para cada lojista:
-     *    - Montar endereço completo (CEP + logradouro + número)
-     *    - Chamar GeocodingService.geocodificar()
-     *    - Se sucesso: atualizar banco de dados
-     *    - Se falha: registrar no relatório
-     *    - Respeitar rate limit (600ms entre requisições)
-     * 3. Retornar relatório com estatísticas
-     * 
-     * ⚠️ TIMEOUT: Operação pode levar MINUTOS se houver muitos lojistas (1 req/s)
-     * 
-     * @return Mapa com estatísticas da geocodificação
-     *         - total_lojistas: Total processado
-     *         - geocodificados: Sucesso
-     *         - falhados: Falhas
-     *         - saltados: Já tinha coordenadas
-     */
-    @Transactional
-    public Map<String, Object> geocodificarTodosLojistas() {
-        long startTime = System.currentTimeMillis();
-        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMATTER);
-        
-        log.info("========================================");
-        log.info("[GEOCODIFICACAO-BATCH] ✅ INICIANDO");
-        log.info("Timestamp: {}", timestamp);
-        log.info("========================================");
-        
-        List<Lojista> allLojistas = lojistasRepository.findAll();
-        List<Lojista> toGeocode = allLojistas.stream()
-                .filter(l -> l.getLatitude() == null || l.getLongitude() == null)
-                .toList();
-        
-        AtomicInteger success = new AtomicInteger(0);
-        AtomicInteger failed = new AtomicInteger(0);
-        AtomicInteger skipped = new AtomicInteger(allLojistas.size() - toGeocode.size());
-        List<Map<String, String>> erros = new ArrayList<>();
-        
-        log.info("Total de lojistas no banco: {}", allLojistas.size());
-        log.info("Lojistas sem coordenadas: {}", toGeocode.size());
-        log.info("Lojistas já geocodificados: {}", skipped.get());
-
-        for (int i = 0; i < toGeocode.size(); i++) {
-            Lojista lojista = toGeocode.get(i);
-            log.info("[{}/{}] Processando: {} (ID: {})", 
-                    i + 1, toGeocode.size(), lojista.getNomeFantasia(), lojista.getId());
-            
-            try {
-                // Construir endereço
-                String endereco = construirEnderecoCompleto(
-                        lojista.getLogradouro(), lojista.getNumero(), 
-                        lojista.getBairro(), lojista.getCidade(), 
-                        lojista.getUf(), lojista.getCep()
-                );
-
-                if (endereco.isEmpty()) {
-                    failed.incrementAndGet();
-                    String erro = "Dados de endereço insuficientes";
-                    erros.add(Map.of("lojista", lojista.getId().toString(), "nome", lojista.getNomeFantasia(), "motivo", erro));
-                    log.warn("  ❌ Falha: {}", erro);
-                    continue;
-                }
-
-                // Chamar geocoding service
-                Double[] coords = geocodingService.geocodificar(lojista.getCep(), endereco);
-
-                if (coords != null && coords.length == 2 && coords[0] != null && coords[1] != null) {
-                    lojista.setLatitude(coords[0]);
-                    lojista.setLongitude(coords[1]);
-                    lojistasRepository.save(lojista);
-                    success.incrementAndGet();
-                    log.info("  ✅ Sucesso: {}, {}", coords[0], coords[1]);
-                } else {
-                    failed.incrementAndGet();
-                    String erro = "Falha ao obter coordenadas da API";
-                    erros.add(Map.of("lojista", lojista.getId().toString(), "nome", lojista.getNomeFantasia(), "motivo", erro));
-                    log.warn("  ❌ Falha: {}", erro);
-                }
-
-                // Rate limiting entre requisições
-                if (i < toGeocode.size() - 1) {
-                    Thread.sleep(RATE_LIMIT_MS);
-                }
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                failed.incrementAndGet();
-                log.error("  ❌ Interrupção de thread ao processar lojista {}: {}", lojista.getId(), e.getMessage());
-                erros.add(Map.of("lojista", lojista.getId().toString(), "nome", lojista.getNomeFantasia(), "motivo", "Interrupção de thread"));
-            } catch (Exception e) {
-                failed.incrementAndGet();
-                log.error("  ❌ Erro ao processar lojista {}: {}", lojista.getId(), e.getMessage(), e);
-                erros.add(Map.of("lojista", lojista.getId().toString(), "nome", lojista.getNomeFantasia(), "motivo", e.getMessage()));
-            }
-        }
-
-        long durationMs = System.currentTimeMillis() - startTime;
-        double taxa = toGeocode.size() > 0 ? (success.get() * 100.0) / toGeocode.size() : 0;
-        
-        Map<String, Object> resultado = new LinkedHashMap<>();
-        resultado.put("timestamp", timestamp);
-        resultado.put("total_lojistas", allLojistas.size());
-        resultado.put("processados", toGeocode.size());
-        resultado.put("geocodificados", success.get());
-        resultado.put("falhados", failed.get());
-        resultado.put("saltados", skipped.get());
-        resultado.put("taxa_sucesso_percentual", String.format("%.1f%%", taxa));
-        resultado.put("duracao_ms", durationMs);
-        resultado.put("mensagem", String.format(
-                "Geocodificação em lote concluída: %d sucesso, %d falha, %d saltados em %dms",
-                success.get(), failed.get(), skipped.get(), durationMs));
-        resultado.put("status", failed.get() == 0 ? "SUCESSO" : "PARCIAL");
-        
-        if (!erros.isEmpty()) {
-            resultado.put("erros", erros);
-        }
-
-        log.info("========================================");
-        log.info("[GEOCODIFICACAO-BATCH] ✅ FINALIZADO");
-        log.info("Resultado: {} sucesso, {} falha, {} saltados", success.get(), failed.get(), skipped.get());
-        log.info("Taxa de sucesso: {}", String.format("%.1f%%", taxa));
-        log.info("Duração total: {}ms", durationMs);
-        log.info("Status: {}", (String) resultado.get("status"));
-        log.info("========================================");
-        
-        return resultado;
-    }
-
     /**
      * Geocodificar um lojista específico.
      * 
@@ -301,7 +162,7 @@ public class AdminGeocodingService {
      * @param cep CEP (com ou sem hífen)
      * @return Endereço completo ou vazio se dados insuficientes
      */
-    private String construirEnderecoCompleto(
+    static String construirEnderecoCompleto(
             String logradouro, String numero, String bairro, 
             String cidade, String uf, String cep) {
         
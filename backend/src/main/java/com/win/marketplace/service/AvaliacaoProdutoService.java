@@ -10,6 +10,7 @@ import com.win.marketplace.model.Usuario;
 import com.win.marketplace.repository.AvaliacaoProdutoRepository;
 import com.win.marketplace.repository.ProdutoRepository;
 import com.win.marketplace.repository.UsuarioRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import com.win.marketplace.exception.ResourceNotFoundException;
 import com.win.marketplace.exception.BusinessException;
 import lombok.RequiredArgsConstructor;
@@ -33,6 +34,7 @@ public class AvaliacaoProdutoService {
     private final ProdutoRepository produtoRepository;
     private final UsuarioRepository usuarioRepository;
     private final AvaliacaoProdutoMapper avaliacaoMapper;
+    private final CatalogoCacheService catalogoCacheService;
 
     /**
      * Cria uma nova avaliação
@@ -61,6 +63,7 @@ public class AvaliacaoProdutoService {
         log.info("Avaliação criada com sucesso. ID: {}", savedAvaliacao.getId());
         
         // Nota: O trigger do banco atualiza automaticamente produto.avaliacao e produto.quantidadeAvaliacoes
+        invalidarCache(produto);
         
         return avaliacaoMapper.toResponseDTO(savedAvaliacao);
     }
@@ -125,6 +128,7 @@ public class AvaliacaoProdutoService {
 
         AvaliacaoProduto savedAvaliacao = avaliacaoRepository.save(avaliacao);
         log.info("Avaliação atualizada com sucesso. ID: {}", savedAvaliacao.getId());
+        invalidarCache(avaliacao.getProduto());
         
         return avaliacaoMapper.toResponseDTO(savedAvaliacao);
     }
@@ -147,6 +151,7 @@ public class AvaliacaoProdutoService {
         log.info("Avaliação deletada com sucesso. ID: {}", id);
         
         // Nota: O trigger do banco atualiza automaticamente produto.avaliacao e produto.quantidadeAvaliacoes
+        invalidarCache(avaliacao.getProduto());
     }
 
     /**
@@ -159,4 +164,13 @@ public class AvaliacaoProdutoService {
         Page<AvaliacaoProduto> avaliacoes = avaliacaoRepository.findByProdutoLojistaId(lojistaId, pageable);
         return avaliacoes.map(avaliacaoMapper::toResponseDTO);
     }
+
+    /**
+     * Nota média e quantidade de avaliações vão no DTO do produto e ordenam o
+     * mais-avaliados: derruba o produto e as listagens em cache após o commit
+     */
+    private void invalidarCache(Produto produto) {
+        catalogoCacheService.invalidarProdutoEListagens(produto.getId(),
+                produto.getCategoria() != null ? produto.getCategoria().getId() : null);
+    }
 }
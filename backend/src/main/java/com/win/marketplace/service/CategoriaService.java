@@ -5,6 +5,7 @@ import com.win.marketplace.dto.response.CategoriaResponseDTO;
 import com.win.marketplace.dto.mapper.CategoriaMapper;
 import com.win.marketplace.model.Categoria;
 import com.win.marketplace.repository.CategoriaRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +20,7 @@ public class CategoriaService {
 
     private final CategoriaRepository categoriaRepository;
     private final CategoriaMapper categoriaMapper;
+    private final CatalogoCacheService catalogoCacheService;
 
     public CategoriaResponseDTO criarCategoria(CategoriaCreateRequestDTO requestDTO) {
         Categoria categoria = categoriaMapper.toEntity(requestDTO);
@@ -76,6 +78,8 @@ public class CategoriaService {
         categoriaMapper.updateEntityFromDTO(requestDTO, categoria);
 
         Categoria savedCategoria = categoriaRepository.save(categoria);
+        // O nome da categoria vai no DTO de cada produto em cache
+        catalogoCacheService.invalidarCategoria(id);
         return categoriaMapper.toResponseDTO(savedCategoria);
     }
 
@@ -95,5 +99,6 @@ public class CategoriaService {
         // }
 
         categoriaRepository.delete(categoria);
+        catalogoCacheService.invalidarCategoria(id);
     }
 }
@@ -0,0 +1,289 @@
+package com.win.marketplace.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Índice offline de CEP → coordenadas (centroide por prefixo de CEP).
+ *
+ * Arquivo binário mapeado em memória, gerado a partir de um CSV importado
+ * pelo admin. O GeocodingService consulta este índice depois do cache de
+ * geocodificação e antes de qualquer chamada de rede: estimativas só com CEP
+ * resolvem em microssegundos e ViaCEP/Nominatim ficam para o que o índice não cobre.
+ *
+ * Formato: cabeçalho (MAGIC, VERSAO, total) seguido de registros de 12 bytes
+ * ordenados por chave: int chave, float latitude, float longitude. A chave
+ * codifica quantidade de dígitos e prefixo (digitos * 10^8 + prefixo), e a
+ * busca tenta do prefixo mais longo (8) até app.geocoding.cep-index.digitos-minimos
+ * (padrão 5): um centroide regional de 3 dígitos erra por dezenas de km e não
+ * serve para frete.
+ *
+ * CSV: "cep,latitude,longitude" (separador vírgula ou ponto e vírgula; CEP
+ * com 3 a 8 dígitos). CEPs completos são mantidos com a própria coordenada e
+ * agregados em centroides de 5 e 3 dígitos; prefixos informados diretamente
+ * são mantidos como estão.
+ *
+ * Com várias réplicas o arquivo deve ficar em volume compartilhado (ou na
+ * imagem); cada réplica recarrega sozinha quando o arquivo muda.
+ */
+@Slf4j
+@Component
+public class CepCentroideIndex {
+
+    static final int MAGIC = 0x57434550; // "WCEP"
+    static final int VERSAO = 1;
+    static final int TAMANHO_CABECALHO = 12;
+    static final int TAMANHO_REGISTRO = 12;
+
+    private static final int MIN_DIGITOS = 3;
+    private static final int MAX_DIGITOS = 8;
+    private static final int[] DIGITOS_AGREGADOS = {8, 5, 3};
+
+    // Limites aproximados do território brasileiro, para descartar linhas com lat/lon trocadas
+    private static final double LAT_MIN = -34.0, LAT_MAX = 6.0, LON_MIN = -74.5, LON_MAX = -28.5;
+
+    private final Path arquivo;
+    private final int digitosMinimos;
+    private volatile Snapshot snapshot;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public CepCentroideIndex(MeterRegistry meterRegistry,
+                             @Value("${app.geocoding.cep-index.arquivo:./data/cep-centroides.idx}") String arquivo,
+                             @Value("${app.geocoding.cep-index.digitos-minimos:5}") int digitosMinimos) {
+        this.arquivo = Path.of(arquivo);
+        this.digitosMinimos = Math.max(MIN_DIGITOS, Math.min(digitosMinimos, MAX_DIGITOS));
+        this.hits = Counter.builder("geocoding.cep-index.consultas").tag("resultado", "hit").register(meterRegistry);
+        this.misses = Counter.builder("geocoding.cep-index.consultas").tag("resultado", "miss").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void carregar() {
+        if (!Files.isRegularFile(arquivo)) {
+            log.info("🗺️ Índice de CEPs não encontrado em {} (geocodificação por CEP usará a rede)", arquivo);
+            return;
+        }
+        try {
+            snapshot = mapear(arquivo);
+            log.info("🗺️ Índice de CEPs carregado: {} prefixos ({})", snapshot.total(), arquivo);
+        } catch (Exception e) {
+            log.error("❌ Falha ao carregar índice de CEPs {}: {}", arquivo, e.getMessage());
+        }
+    }
+
+    /**
+     * Recarrega o índice se o arquivo foi substituído (ex.: importado em outra réplica)
+     */
+    @Scheduled(fixedDelayString = "${app.geocoding.cep-index.verificacao-ms:60000}")
+    public void recarregarSeAlterado() {
+        try {
+            if (!Files.isRegularFile(arquivo)) {
+                return;
+            }
+            long modificadoEm = Files.getLastModifiedTime(arquivo).toMillis();
+            Snapshot atual = snapshot;
+            if (atual == null || atual.modificadoEm() != modificadoEm) {
+                carregar();
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ Não foi possível verificar o índice de CEPs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Centroide do prefixo mais longo conhecido para o CEP, com pelo menos
+     * digitos-minimos dígitos
+     *
+     * @param cepLimpo CEP com 8 dígitos
+     * @return [latitude, longitude] ou null se o índice não cobre o CEP com a precisão exigida
+     */
+    public Double[] buscar(String cepLimpo) {
+        Snapshot atual = snapshot;
+        if (atual == null || cepLimpo == null || cepLimpo.length() != MAX_DIGITOS) {
+            return null;
+        }
+        for (int digitos = MAX_DIGITOS; digitos >= digitosMinimos; digitos--) {
+            int posicao = atual.buscar(chave(digitos, Integer.parseInt(cepLimpo.substring(0, digitos))));
+            if (posicao >= 0) {
+                hits.increment();
+                return atual.coordenadas(posicao);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public boolean isCarregado() {
+        return snapshot != null;
+    }
+
+    /**
+     * Gera um novo arquivo de índice a partir do CSV e passa a usá-lo.
+     * O arquivo é escrito ao lado do atual e trocado atomicamente.
+     */
+    public Map<String, Object> importarCsv(InputStream csv) throws IOException {
+        long inicio = System.currentTimeMillis();
+        TreeMap<Integer, double[]> acumulado = new TreeMap<>();
+        int linhas = 0;
+        int descartadas = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                linhas++;
+                String[] campos = linha.split("[,;]");
+                if (campos.length < 3) {
+                    descartadas++;
+                    continue;
+                }
+                String cep = campos[0].replaceAll("\\D", "");
+                double lat;
+                double lon;
+                try {
+                    lat = Double.parseDouble(campos[1].trim());
+                    lon = Double.parseDouble(campos[2].trim());
+                } catch (NumberFormatException e) {
+                    descartadas++; // inclui a linha de cabeçalho
+                    continue;
+                }
+                if (cep.length() < MIN_DIGITOS || cep.length() > MAX_DIGITOS
+                        || lat < LAT_MIN || lat > LAT_MAX || lon < LON_MIN || lon > LON_MAX) {
+                    descartadas++;
+                    continue;
+                }
+
+                if (cep.length() == MAX_DIGITOS) {
+                    for (int digitos : DIGITOS_AGREGADOS) {
+                        acumular(acumulado, chave(digitos, Integer.parseInt(cep.substring(0, digitos))), lat, lon);
+                    }
+                } else {
+                    acumular(acumulado, chave(cep.length(), Integer.parseInt(cep)), lat, lon);
+                }
+            }
+        }
+
+        if (acumulado.isEmpty()) {
+            throw new IllegalArgumentException("CSV sem linhas válidas (esperado: cep,latitude,longitude)");
+        }
+
+        Path diretorio = arquivo.toAbsolutePath().getParent();
+        Files.createDirectories(diretorio);
+        Path temporario = Files.createTempFile(diretorio, "cep-centroides", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSAO);
+            out.writeInt(acumulado.size());
+            for (Map.Entry<Integer, double[]> e : acumulado.entrySet()) {
+                double[] soma = e.getValue();
+                out.writeInt(e.getKey());
+                out.writeFloat((float) (soma[0] / soma[2]));
+                out.writeFloat((float) (soma[1] / soma[2]));
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        carregar();
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("linhasLidas", linhas);
+        resultado.put("linhasDescartadas", descartadas);
+        resultado.put("prefixos", acumulado.size());
+        resultado.put("arquivo", arquivo.toString());
+        resultado.put("duracaoMs", System.currentTimeMillis() - inicio);
+        log.info("🗺️ Índice de CEPs importado: {}", resultado);
+        return resultado;
+    }
+
+    public Map<String, Object> estatisticas() {
+        Snapshot atual = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("carregado", atual != null);
+        stats.put("arquivo", arquivo.toString());
+        stats.put("prefixos", atual != null ? atual.total() : 0);
+        stats.put("carregadoEm", atual != null ? atual.carregadoEm() : null);
+        stats.put("hits", (long) hits.count());
+        stats.put("misses", (long) misses.count());
+        return stats;
+    }
+
+    static int chave(int digitos, int prefixo) {
+        return digitos * 100_000_000 + prefixo;
+    }
+
+    private static void acumular(TreeMap<Integer, double[]> acumulado, int chave, double lat, double lon) {
+        double[] soma = acumulado.computeIfAbsent(chave, k -> new double[3]);
+        soma[0] += lat;
+        soma[1] += lon;
+        soma[2]++;
+    }
+
+    private static Snapshot mapear(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (buffer.limit() < TAMANHO_CABECALHO || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSAO) {
+                throw new IOException("Arquivo de índice de CEPs inválido");
+            }
+            int total = buffer.getInt(8);
+            if (buffer.limit() != TAMANHO_CABECALHO + (long) total * TAMANHO_REGISTRO) {
+                throw new IOException("Arquivo de índice de CEPs truncado");
+            }
+            return new Snapshot(buffer, total, Files.getLastModifiedTime(arquivo).toMillis(), OffsetDateTime.now());
+        }
+    }
+
+    /**
+     * Arquivo mapeado; leituras absolutas no buffer são seguras entre threads
+     */
+    private record Snapshot(ByteBuffer buffer, int total, long modificadoEm, OffsetDateTime carregadoEm) {
+
+        int buscar(int chave) {
+            int inicio = 0;
+            int fim = total - 1;
+            while (inicio <= fim) {
+                int meio = (inicio + fim) >>> 1;
+                int atual = buffer.getInt(TAMANHO_CABECALHO + meio * TAMANHO_REGISTRO);
+                if (atual < chave) {
+                    inicio = meio + 1;
+                } else if (atual > chave) {
+                    fim = meio - 1;
+                } else {
+                    return meio;
+                }
+            }
+            return -1;
+        }
+
+        Double[] coordenadas(int posicao) {
+            int offset = TAMANHO_CABECALHO + posicao * TAMANHO_REGISTRO;
+            return new Double[]{arredondar(buffer.getFloat(offset + 4)), arredondar(buffer.getFloat(offset + 8))};
+        }
+
+        // float guarda ~7 dígitos; 5 casas decimais (~1 m) evitam ruído como -23.549999237
+        private static double arredondar(float valor) {
+            return Math.round(valor * 100_000d) / 100_000d;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.repository.PedidoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pool dos códigos de retirada de 4 dígitos (0000-9999).
+ *
+ * Só os pedidos em PRONTO/EM_TRANSITO seguram um código; ao chegar em ENTREGUE
+ * ou CANCELADO o código volta ao pool. Os códigos em uso ficam num bitmap
+ * Redis de 10.000 bits e a alocação é um script Lua (BITPOS + SETBIT) que
+ * encontra e marca um bit livre em uma única ida ao Redis, independente de
+ * quantos pedidos estão ativos.
+ *
+ * O bitmap é reconstruído a partir do banco na subida e periodicamente (um
+ * liberar() perdido deixaria o código preso para sempre). A reconstrução roda
+ * sob um lock no Redis (uma réplica por vez): monta uma chave temporária com
+ * os códigos ativos no banco e, num script, soma os códigos alocados nos
+ * últimos margem-segundos (transações ainda não commitadas não aparecem na
+ * leitura do banco) e faz RENAME sobre a chave em uso.
+ *
+ * Sem Redis, cai para sorteio com verificação no banco restrita aos pedidos
+ * ativos (e não à tabela inteira, que só cresce).
+ */
+@Slf4j
+@Component
+public class CodigoEntregaAllocator {
+
+    static final int TOTAL_CODIGOS = 10_000;
+    static final String CHAVE_BITMAP = "pedido:codigo-entrega:em-uso";
+    // Códigos alocados recentemente (score = epoch ms), somados na reconstrução
+    static final String CHAVE_RECENTES = "pedido:codigo-entrega:alocados-recentes";
+    static final String CHAVE_LOCK = "pedido:codigo-entrega:reconstrucao-lock";
+    private static final String PREFIXO_TEMPORARIA = "pedido:codigo-entrega:reconstrucao:";
+
+    private static final List<Pedido.StatusPedido> STATUS_COM_CODIGO = List.of(
+            Pedido.StatusPedido.PRONTO, Pedido.StatusPedido.EM_TRANSITO);
+
+    private static final int MAX_TENTATIVAS_BANCO = 100;
+
+    // KEYS = bitmap, recentes; ARGV[1] = byte inicial aleatório, ARGV[2] = total de códigos, ARGV[3] = agora (ms).
+    // Retorna o bit marcado ou -1 (pool esgotado).
+    private static final RedisScript<Long> SCRIPT_ALOCAR = new DefaultRedisScript<>(
+            "local total = tonumber(ARGV[2]) " +
+            "local pos = redis.call('BITPOS', KEYS[1], 0, ARGV[1]) " +
+            "if pos < 0 or pos >= total then pos = redis.call('BITPOS', KEYS[1], 0) end " +
+            "if pos < 0 or pos >= total then return -1 end " +
+            "redis.call('SETBIT', KEYS[1], pos, 1) " +
+            "redis.call('ZADD', KEYS[2], ARGV[3], pos) " +
+            "return pos",
+            Long.class);
+
+    // KEYS = bitmap, recentes; ARGV[1] = posição
+    private static final RedisScript<Long> SCRIPT_LIBERAR = new DefaultRedisScript<>(
+            "redis.call('ZREM', KEYS[2], ARGV[1]) " +
+            "return redis.call('SETBIT', KEYS[1], ARGV[1], 0)",
+            Long.class);
+
+    // KEYS = temporária, bitmap, recentes; ARGV[1] = alocados a partir de (ms).
+    // Soma na temporária os alocados recentes, descarta os antigos e troca a chave em uso.
+    private static final RedisScript<Long> SCRIPT_PUBLICAR = new DefaultRedisScript<>(
+            "redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', '(' .. ARGV[1]) " +
+            "local recentes = redis.call('ZRANGE', KEYS[3], 0, -1) " +
+            "for _, pos in ipairs(recentes) do redis.call('SETBIT', KEYS[1], pos, 1) end " +
+            "redis.call('PERSIST', KEYS[1]) " +
+            "redis.call('RENAME', KEYS[1], KEYS[2]) " +
+            "return #recentes",
+            Long.class);
+
+    // KEYS = lock; ARGV[1] = dono
+    private static final RedisScript<Long> SCRIPT_SOLTAR_LOCK = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final PedidoRepository pedidoRepository;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final boolean useRedis;
+    private final Duration margemAlocacao;
+    private final Duration duracaoLock;
+
+    public CodigoEntregaAllocator(PedidoRepository pedidoRepository,
+                                  ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                                  @Value("${app.pedidos.codigo-entrega.use-redis:true}") boolean useRedis,
+                                  @Value("${app.pedidos.codigo-entrega.margem-segundos:300}") long margemSegundos,
+                                  @Value("${app.pedidos.codigo-entrega.lock-segundos:60}") long lockSegundos) {
+        this.pedidoRepository = pedidoRepository;
+        this.redisTemplateProvider = redisTemplateProvider;
+        this.useRedis = useRedis;
+        this.margemAlocacao = Duration.ofSeconds(margemSegundos);
+        this.duracaoLock = Duration.ofSeconds(lockSegundos);
+    }
+
+    /**
+     * Reconstrói o bitmap a partir dos pedidos ativos no banco, na subida e
+     * periodicamente. Bits presos por liberações perdidas são descartados; os
+     * alocados durante a reconstrução são preservados.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.pedidos.codigo-entrega.reconstrucao-ms:600000}",
+            fixedDelayString = "${app.pedidos.codigo-entrega.reconstrucao-ms:600000}")
+    public void sincronizarCodigosAtivos() {
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        if (redisTemplate == null) {
+            return;
+        }
+        String dono = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(CHAVE_LOCK, dono, duracaoLock))) {
+                log.debug("Reconstrução do pool de códigos de retirada em andamento em outra instância");
+                return;
+            }
+            // Alocações a partir daqui (com margem para transações em curso) podem não estar na leitura do banco
+            long alocadosDesde = System.currentTimeMillis() - margemAlocacao.toMillis();
+            List<String> ativos = pedidoRepository.findCodigosEntregaPorStatus(STATUS_COM_CODIGO);
+
+            String temporaria = PREFIXO_TEMPORARIA + dono;
+            redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                byte[] chave = temporaria.getBytes(StandardCharsets.UTF_8);
+                // Garante que a chave exista mesmo sem códigos ativos; expira se a réplica cair no meio
+                conn.stringCommands().setBit(chave, TOTAL_CODIGOS - 1, false);
+                conn.keyCommands().expire(chave, duracaoLock.toSeconds());
+                for (String codigo : ativos) {
+                    Integer posicao = posicao(codigo);
+                    if (posicao != null) {
+                        conn.stringCommands().setBit(chave, posicao, true);
+                    }
+                }
+                return null;
+            });
+            Long recentes = redisTemplate.execute(SCRIPT_PUBLICAR,
+                    List.of(temporaria, CHAVE_BITMAP, CHAVE_RECENTES), String.valueOf(alocadosDesde));
+            log.info("Pool de códigos de retirada reconstruído: {} códigos em uso (+{} alocados recentemente)",
+                    ativos.size(), recentes);
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível reconstruir o pool de códigos de retirada: {}", e.getMessage());
+        } finally {
+            try {
+                redisTemplate.execute(SCRIPT_SOLTAR_LOCK, List.of(CHAVE_LOCK), dono);
+            } catch (Exception e) {
+                log.debug("Lock da reconstrução do pool de códigos não liberado (expira sozinho): {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reserva um código livre. Se a transação corrente for desfeita, o código
+     * volta ao pool automaticamente.
+     */
+    public String alocar() {
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        if (redisTemplate != null) {
+            try {
+                String inicio = String.valueOf(ThreadLocalRandom.current().nextInt(TOTAL_CODIGOS / 8));
+                Long posicao = redisTemplate.execute(SCRIPT_ALOCAR, List.of(CHAVE_BITMAP, CHAVE_RECENTES),
+                        inicio, String.valueOf(TOTAL_CODIGOS), String.valueOf(System.currentTimeMillis()));
+                if (posicao != null && posicao < 0) {
+                    throw new BusinessException("Não há códigos de retirada disponíveis no momento");
+                }
+                if (posicao != null) {
+                    String codigo = formatar(posicao.intValue());
+                    liberarSeTransacaoFalhar(codigo);
+                    return codigo;
+                }
+            } catch (BusinessException e) {
+                throw e;
+            } catch (Exception e) {
+                log.warn("⚠️ Pool de códigos indisponível no Redis, usando banco: {}", e.getMessage());
+            }
+        }
+        return alocarPeloBanco();
+    }
+
+    /**
+     * Devolve o código ao pool após o commit, se o pedido estava segurando-o
+     * (saindo de PRONTO/EM_TRANSITO). Pedidos já finalizados não liberam de
+     * novo: o código pode ter sido realocado para outro pedido.
+     */
+    public void liberar(String codigo, Pedido.StatusPedido statusAnterior) {
+        Integer posicao = posicao(codigo);
+        if (posicao == null || !STATUS_COM_CODIGO.contains(statusAnterior)) {
+            return;
+        }
+        aposCommit(() -> desmarcar(posicao));
+    }
+
+    private String alocarPeloBanco() {
+        for (int tentativa = 0; tentativa < MAX_TENTATIVAS_BANCO; tentativa++) {
+            String codigo = formatar(ThreadLocalRandom.current().nextInt(TOTAL_CODIGOS));
+            if (!pedidoRepository.existsByCodigoEntregaAndStatusIn(codigo, STATUS_COM_CODIGO)) {
+                return codigo;
+            }
+        }
+        throw new BusinessException("Não foi possível gerar código de retirada único no momento");
+    }
+
+    private void liberarSeTransacaoFalhar(String codigo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        int posicao = Integer.parseInt(codigo);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    desmarcar(posicao);
+                }
+            }
+        });
+    }
+
+    private void desmarcar(int posicao) {
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            // Sai também dos recentes, para a reconstrução não religar o bit
+            redisTemplate.execute(SCRIPT_LIBERAR, List.of(CHAVE_BITMAP, CHAVE_RECENTES), String.valueOf(posicao));
+        } catch (Exception e) {
+            log.warn("⚠️ Falha ao atualizar código de retirada {} no pool: {}", formatar(posicao), e.getMessage());
+        }
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    static String formatar(int posicao) {
+        return String.format("%04d", posicao);
+    }
+
+    static Integer posicao(String codigo) {
+        if (codigo == null || !codigo.matches("\\d{4}")) {
+            return null;
+        }
+        return Integer.parseInt(codigo);
+    }
+
+    private StringRedisTemplate getRedisTemplate() {
+        if (!useRedis) {
+            return null;
+        }
+        return redisTemplateProvider.getIfAvailable();
+    }
+}
@@ -0,0 +1,308 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.request.SolicitacaoCorridaUberRequestDTO;
+import com.win.marketplace.dto.response.SolicitacaoCorridaUberResponseDTO;
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.model.DespachoUberOutbox;
+import com.win.marketplace.repository.DespachoUberOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Despacho automático de corridas Uber via outbox.
+ *
+ * Marcar o pedido como PRONTO só grava uma linha em despachos_uber_outbox e,
+ * após o commit, acorda os workers; a resposta ao lojista não espera a Uber.
+ * Os workers chamam a Uber sem transação aberta (nem lock no pedido):
+ *
+ * 1. Reivindica despachos vencidos com lease (FOR UPDATE SKIP LOCKED, commit imediato)
+ * 2. Monta o request (transação curta, somente leitura)
+ * 3. Chama a Uber com a chave de idempotência do despacho
+ * 4. Grava o resultado na entrega (transação curta)
+ *
+ * Falhas da Uber são reagendadas com backoff exponencial + jitter até
+ * max-tentativas; erros de validação (dados incompletos) falham na hora.
+ * O resultado só é gravado por quem ainda detém o lease do despacho.
+ */
+@Slf4j
+@Service
+public class DespachoUberService {
+
+    private final DespachoUberOutboxRepository despachoRepository;
+    private final EntregaService entregaService;
+    private final UberFlashService uberFlashService;
+    private final ThreadPoolTaskExecutor executor;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int tamanhoLote;
+    private final int maxTentativas;
+    private final Duration backoffBase;
+    private final Duration backoffMaximo;
+    private final Duration lease;
+
+    private final AtomicBoolean reivindicando = new AtomicBoolean(false);
+
+    private final Counter sucessos;
+    private final Counter retentativas;
+    private final Counter falhas;
+    private final Counter ignorados;
+    private final Counter leasesPerdidos;
+    private final Timer tempoChamadaUber;
+
+    public DespachoUberService(DespachoUberOutboxRepository despachoRepository,
+                               EntregaService entregaService,
+                               UberFlashService uberFlashService,
+                               @Qualifier("despachoUberExecutor") ThreadPoolTaskExecutor executor,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.uber.despacho.tamanho-lote:20}") int tamanhoLote,
+                               @Value("${app.uber.despacho.max-tentativas:6}") int maxTentativas,
+                               @Value("${app.uber.despacho.backoff-base-segundos:5}") long backoffBaseSegundos,
+                               @Value("${app.uber.despacho.backoff-maximo-segundos:300}") long backoffMaximoSegundos,
+                               @Value("${app.uber.despacho.lease-segundos:120}") long leaseSegundos) {
+        this.despachoRepository = despachoRepository;
+        this.entregaService = entregaService;
+        this.uberFlashService = uberFlashService;
+        this.executor = executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanhoLote = tamanhoLote;
+        this.maxTentativas = maxTentativas;
+        this.backoffBase = Duration.ofSeconds(backoffBaseSegundos);
+        this.backoffMaximo = Duration.ofSeconds(backoffMaximoSegundos);
+        this.lease = Duration.ofSeconds(leaseSegundos);
+
+        this.sucessos = contador(meterRegistry, "sucesso");
+        this.retentativas = contador(meterRegistry, "retentativa");
+        this.falhas = contador(meterRegistry, "falha");
+        this.ignorados = contador(meterRegistry, "ignorado");
+        this.leasesPerdidos = contador(meterRegistry, "lease-perdido");
+        this.tempoChamadaUber = Timer.builder("uber.despacho.chamada").register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("uber.despacho").tag("resultado", resultado).register(registry);
+    }
+
+    /**
+     * Enfileira a solicitação da corrida na transação do chamador e acorda os workers após o commit
+     */
+    @Transactional
+    public void agendar(UUID pedidoId) {
+        int inseridos = despachoRepository.agendar(pedidoId, chaveIdempotencia(pedidoId));
+        if (inseridos == 0) {
+            log.info("Despacho Uber do pedido {} já estava agendado", pedidoId);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acordar();
+                }
+            });
+        } else {
+            acordar();
+        }
+    }
+
+    static String chaveIdempotencia(UUID pedidoId) {
+        return "win-pedido-" + pedidoId + "-uber";
+    }
+
+    /**
+     * Dispara uma rodada de reivindicação fora da thread chamadora
+     */
+    public void acordar() {
+        try {
+            executor.execute(this::processarPendentes);
+        } catch (TaskRejectedException e) {
+            log.debug("Pool de despacho Uber cheio; o agendador reprocessa em seguida");
+        }
+    }
+
+    /**
+     * Reivindica despachos vencidos e os distribui no pool de workers
+     */
+    public void processarPendentes() {
+        // Evita várias threads reivindicando ao mesmo tempo na mesma instância
+        if (!reivindicando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int capacidade = Math.min(tamanhoLote, executor.getThreadPoolExecutor().getQueue().remainingCapacity());
+            if (capacidade <= 0) {
+                return;
+            }
+            List<DespachoUberOutbox> despachos = reivindicar(capacidade);
+            for (DespachoUberOutbox despacho : despachos) {
+                try {
+                    executor.execute(() -> processar(despacho));
+                } catch (TaskRejectedException e) {
+                    // O lease expira e o despacho volta a ser elegível
+                    log.warn("⚠️ Pool de despacho Uber cheio; pedido {} será reprocessado", despacho.getPedidoId());
+                }
+            }
+        } finally {
+            reivindicando.set(false);
+        }
+    }
+
+    private List<DespachoUberOutbox> reivindicar(int limite) {
+        List<DespachoUberOutbox> despachos = transactionTemplate.execute(status -> {
+            OffsetDateTime agora = OffsetDateTime.now();
+            List<DespachoUberOutbox> prontos = despachoRepository.reivindicarProntos(limite);
+            for (DespachoUberOutbox despacho : prontos) {
+                despacho.setStatus(DespachoUberOutbox.StatusDespacho.PROCESSANDO);
+                // Microssegundos: o valor volta do banco igual e serve de guarda nos UPDATEs de saída
+                despacho.setTravadoAte(agora.plus(lease).truncatedTo(ChronoUnit.MICROS));
+                despacho.setAtualizadoEm(agora);
+            }
+            return prontos;
+        });
+        return despachos != null ? despachos : List.of();
+    }
+
+    /**
+     * Executa um despacho (thread do pool, sem transação aberta durante a chamada à Uber)
+     */
+    void processar(DespachoUberOutbox despacho) {
+        UUID pedidoId = despacho.getPedidoId();
+        try {
+            if (!entregaService.aguardandoSolicitacaoCorrida(pedidoId)) {
+                log.info("Corrida do pedido {} já solicitada ou entrega fora de AGUARDANDO_PREPARACAO", pedidoId);
+                if (concluir(despacho)) {
+                    ignorados.increment();
+                }
+                return;
+            }
+
+            SolicitacaoCorridaUberRequestDTO request;
+            try {
+                request = entregaService.montarSolicitacaoCorrida(pedidoId);
+            } catch (BusinessException e) {
+                log.error("❌ Despacho Uber do pedido {} inválido: {}", pedidoId, e.getMessage());
+                if (falhar(despacho, e.getMessage())) {
+                    falhas.increment();
+                }
+                return;
+            }
+            request.setChaveIdempotencia(despacho.getChaveIdempotencia());
+
+            SolicitacaoCorridaUberResponseDTO response = tempoChamadaUber.record(
+                    () -> uberFlashService.solicitarCorrida(request));
+
+            if (Boolean.TRUE.equals(response.getSucesso())) {
+                entregaService.registrarResultadoSolicitacao(pedidoId, response);
+                if (!concluir(despacho)) {
+                    return;
+                }
+                sucessos.increment();
+                log.info("🚗 Corrida Uber despachada para pedido {} (tentativa {})", pedidoId, despacho.getTentativas() + 1);
+            } else if (despacho.getTentativas() + 1 >= maxTentativas) {
+                // Esgotou: registra a falha na entrega (lojista pode solicitar manualmente)
+                entregaService.registrarResultadoSolicitacao(pedidoId, response);
+                if (!falhar(despacho, response.getErro())) {
+                    return;
+                }
+                falhas.increment();
+                log.error("❌ Despacho Uber do pedido {} falhou após {} tentativas: {}",
+                        pedidoId, maxTentativas, response.getErro());
+            } else {
+                reagendar(despacho, response.getErro());
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro no despacho Uber do pedido {}: {}", pedidoId, e.getMessage(), e);
+            try {
+                if (despacho.getTentativas() + 1 >= maxTentativas) {
+                    if (falhar(despacho, e.getMessage())) {
+                        falhas.increment();
+                    }
+                } else {
+                    reagendar(despacho, e.getMessage());
+                }
+            } catch (Exception erroRegistro) {
+                // Lease expira e o despacho é retomado
+                log.error("❌ Não foi possível registrar falha do despacho {}: {}", despacho.getId(), erroRegistro.getMessage());
+            }
+        }
+    }
+
+    private void reagendar(DespachoUberOutbox despacho, String erro) {
+        Duration espera = calcularBackoff(despacho.getTentativas() + 1, backoffBase, backoffMaximo,
+                ThreadLocalRandom.current().nextDouble());
+        OffsetDateTime agora = OffsetDateTime.now();
+        if (despachoRepository.reagendar(despacho.getId(), despacho.getTravadoAte(), truncar(erro),
+                agora.plus(espera), agora) == 0) {
+            leasePerdido(despacho);
+            return;
+        }
+        retentativas.increment();
+        log.warn("⚠️ Despacho Uber do pedido {} reagendado em {}s (tentativa {}): {}",
+                despacho.getPedidoId(), espera.toSeconds(), despacho.getTentativas() + 1, erro);
+    }
+
+    private boolean concluir(DespachoUberOutbox despacho) {
+        if (despachoRepository.concluir(despacho.getId(), despacho.getTravadoAte(), OffsetDateTime.now()) == 0) {
+            leasePerdido(despacho);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean falhar(DespachoUberOutbox despacho, String erro) {
+        if (despachoRepository.falhar(despacho.getId(), despacho.getTravadoAte(), truncar(erro),
+                OffsetDateTime.now()) == 0) {
+            leasePerdido(despacho);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * O lease expirou durante o processamento e o despacho já é de outra
+     * instância (ou foi resolvido por ela): o resultado desta é descartado
+     */
+    private void leasePerdido(DespachoUberOutbox despacho) {
+        leasesPerdidos.increment();
+        log.warn("⚠️ Lease do despacho Uber do pedido {} expirou durante o processamento; resultado descartado",
+                despacho.getPedidoId());
+    }
+
+    /**
+     * Backoff exponencial com jitter: base * 2^(tentativa-1), limitado ao máximo,
+     * mais até uma base aleatória (evita retentativas sincronizadas)
+     */
+    static Duration calcularBackoff(int tentativa, Duration base, Duration maximo, double aleatorio) {
+        long exponencial = base.toMillis() << Math.min(Math.max(tentativa - 1, 0), 20);
+        long limitado = Math.min(exponencial, maximo.toMillis());
+        long jitter = (long) (base.toMillis() * aleatorio);
+        return Duration.ofMillis(limitado + jitter);
+    }
+
+    private static String truncar(String erro) {
+        if (erro == null) {
+            return null;
+        }
+        return erro.length() > 500 ? erro.substring(0, 500) : erro;
+    }
+}
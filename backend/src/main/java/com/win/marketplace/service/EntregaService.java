@@ -1,5 +1,6 @@
 package com.win.marketplace.service;
 
+import com.win.marketplace.dto.request.SolicitacaoCorridaUberRequestDTO;
 import com.win.marketplace.dto.request.UberWebhookDTO;
 import com.win.marketplace.dto.response.DeliveryStatusResponseDTO;
 import com.win.marketplace.dto.response.EntregaResponseDTO;
@@ -79,11 +80,39 @@ public class EntregaService {
      * 
      * ⚠️ IMPORTANTE: Só deve ser chamado quando lojista marcar como "Pronto para Retirada"
      * Se solicitar muito cedo (logo após pagamento), motorista chega antes do produto estar pronto.
+     * 
+     * Solicitação manual (síncrona). O fluxo automático do PRONTO passa pela
+     * outbox de despacho (DespachoUberService), que usa as mesmas etapas abaixo
+     * sem manter transação aberta durante a chamada à Uber.
      */
     @Transactional
     public SolicitacaoCorridaUberResponseDTO solicitarCorridaUber(UUID pedidoId) {
         log.info("Solicitando corrida Uber para pedido: {}", pedidoId);
 
+        var request = montarSolicitacaoCorrida(pedidoId);
+        var response = uberFlashService.solicitarCorrida(request);
+        registrarResultadoSolicitacao(pedidoId, response);
+
+        return response;
+    }
+
+    /**
+     * true se a entrega do pedido ainda aguarda a solicitação da corrida
+     * (usado pelo despacho automático para não solicitar duas vezes)
+     */
+    @Transactional(readOnly = true)
+    public boolean aguardandoSolicitacaoCorrida(UUID pedidoId) {
+        return entregaRepository.findByPedidoId(pedidoId)
+                .map(entrega -> entrega.getStatusEntrega() == StatusEntrega.AGUARDANDO_PREPARACAO
+                        && entrega.getIdCorridaUber() == null)
+                .orElse(false);
+    }
+
+    /**
+     * Valida a entrega e monta o request para a Uber (sem chamar a API)
+     */
+    @Transactional(readOnly = true)
+    public SolicitacaoCorridaUberRequestDTO montarSolicitacaoCorrida(UUID pedidoId) {
         var entrega = entregaRepository.findByPedidoId(pedidoId)
                 .orElseThrow(() -> new BusinessException("Entrega não encontrada para o pedido"));
 
@@ -101,7 +130,7 @@ public class EntregaService {
         validarDadosCompletosParaSolicitacao(entrega, pedido, lojista);
 
         // Montar request para Uber
-        var request = com.win.marketplace.dto.request.SolicitacaoCorridaUberRequestDTO.builder()
+        return SolicitacaoCorridaUberRequestDTO.builder()
                 .pedidoId(pedidoId)
                 .quoteId(entrega.getQuoteIdUber()) // ✅ PASSAR QUOTE ID
                 .tipoVeiculo(entrega.getTipoVeiculoSolicitado())
@@ -120,10 +149,23 @@ public class EntregaService {
                 .destinoLatitude(entrega.getDestinoLatitude())
                 .destinoLongitude(entrega.getDestinoLongitude())
                 .build();
+    }
 
-        var response = uberFlashService.solicitarCorrida(request);
+    /**
+     * Grava na entrega o resultado da solicitação à Uber
+     */
+    @Transactional
+    public void registrarResultadoSolicitacao(UUID pedidoId, SolicitacaoCorridaUberResponseDTO response) {
+        var entrega = entregaRepository.findByPedidoId(pedidoId)
+                .orElseThrow(() -> new BusinessException("Entrega não encontrada para o pedido"));
 
         if (response.getSucesso()) {
+            if (entrega.getIdCorridaUber() != null && !entrega.getIdCorridaUber().equals(response.getIdCorridaUber())) {
+                log.warn("⚠️ Entrega {} já possui corrida {}; ignorando corrida {}",
+                        entrega.getId(), entrega.getIdCorridaUber(), response.getIdCorridaUber());
+                return;
+            }
+
             // Atualizar entrega com dados da corrida
             entrega.setIdCorridaUber(response.getIdCorridaUber());
             entrega.setNomeMotorista(response.getNomeMotorista());
@@ -143,8 +185,6 @@ public class EntregaService {
             entrega.setObservacoes("Erro: " + response.getErro());
             entregaRepository.save(entrega);
         }
-
-        return response;
     }
 
     private String montarInstrucoesRetirada(Pedido pedido) {
@@ -155,15 +195,6 @@ public class EntregaService {
         return "Coleta no balcão da loja. Código de retirada: " + pedido.getCodigoEntrega();
     }
 
-    /**
-     * Alias/wrapper para solicitarCorridaUber - facilita a integração.
-     * Útil para chamadas automáticas no fluxo de pedido.
-     */
-    @Transactional
-    public void solicitarEntrega(UUID pedidoId) {
-        solicitarCorridaUber(pedidoId);
-    }
-
     /**
      * Processa webhook da Uber com atualização de status.
      */
@@ -0,0 +1,312 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
+import com.win.marketplace.model.LojistaErpConfig;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.repository.LojistaErpConfigRepository;
+import com.win.marketplace.repository.ProdutoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recebimento de saldos de estoque enviados pelo ERP (push).
+ *
+ * O webhook só autentica, interpreta e enfileira: os saldos ficam em memória
+ * por configuração, com o mesmo SKU coalescido no valor mais recente. A cada
+ * intervalo-ms as filas são drenadas e aplicadas em micro-lotes pelo
+ * EstoqueErpService (um UPDATE em lote por lojista, só do que mudou).
+ *
+ * Perder a fila (restart) é tolerável: o polling continua como reconciliação
+ * e corrige qualquer saldo que tenha ficado para trás.
+ */
+@Slf4j
+@Service
+public class ErpWebhookService {
+
+    private final LojistaErpConfigRepository erpConfigRepository;
+    private final ProdutoRepository produtoRepository;
+    private final EstoqueErpService estoqueErpService;
+    private final EncryptionService encryptionService;
+    private final ObjectMapper objectMapper;
+    private final int maxPendentes;
+
+    /** Saldos aguardando aplicação, por configuração ERP */
+    private final Map<UUID, Pendentes> filas = new ConcurrentHashMap<>();
+    private final AtomicInteger totalPendentes = new AtomicInteger();
+    /** Última gravação de last_webhook_at por configuração (no máximo uma por minuto) */
+    private final Map<UUID, LocalDateTime> ultimoRegistro = new ConcurrentHashMap<>();
+
+    private final Counter recebidos;
+    private final Counter rejeitados;
+    private final Counter aplicados;
+
+    public ErpWebhookService(LojistaErpConfigRepository erpConfigRepository,
+                             ProdutoRepository produtoRepository,
+                             EstoqueErpService estoqueErpService,
+                             EncryptionService encryptionService,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.erp.webhook.max-pendentes:50000}") int maxPendentes) {
+        this.erpConfigRepository = erpConfigRepository;
+        this.produtoRepository = produtoRepository;
+        this.estoqueErpService = estoqueErpService;
+        this.encryptionService = encryptionService;
+        this.objectMapper = objectMapper;
+        this.maxPendentes = maxPendentes;
+
+        this.recebidos = contador(meterRegistry, "recebido");
+        this.rejeitados = contador(meterRegistry, "rejeitado");
+        this.aplicados = contador(meterRegistry, "aplicado");
+        Gauge.builder("erp.webhook.pendentes", totalPendentes, AtomicInteger::get).register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("erp.webhook.saldos").tag("resultado", resultado).register(registry);
+    }
+
+    /**
+     * Autentica e enfileira os saldos de um webhook.
+     *
+     * @param assinatura HMAC-SHA256 (hex) do corpo com o segredo do lojista
+     * @param token      alternativa para ERPs que não assinam: o próprio segredo
+     * @return quantidade de saldos enfileirados
+     */
+    public int receber(UUID configId, String corpo, String assinatura, String token) {
+        LojistaErpConfig config = erpConfigRepository.findById(configId)
+            .filter(c -> Boolean.TRUE.equals(c.getAtivo()) && c.getWebhookSecretEncrypted() != null)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Webhook ERP não configurado"));
+
+        String segredo = encryptionService.decrypt(config.getWebhookSecretEncrypted());
+        if (!autenticar(corpo, assinatura, token, segredo)) {
+            log.warn("❌ Webhook ERP com assinatura inválida para a configuração {}", configId);
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Assinatura inválida");
+        }
+
+        List<ErpStockUpdateDTO> updates = interpretar(corpo);
+        if (updates.isEmpty()) {
+            return 0;
+        }
+
+        if (totalPendentes.get() + updates.size() > maxPendentes) {
+            // O ERP tenta de novo mais tarde; a reconciliação cobre o que se perder
+            rejeitados.increment(updates.size());
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Fila de estoque cheia");
+        }
+
+        UUID lojistaId = config.getLojista().getId();
+        filas.compute(configId, (id, pendentes) -> {
+            Pendentes fila = pendentes != null ? pendentes : new Pendentes(lojistaId);
+            for (ErpStockUpdateDTO update : updates) {
+                if (fila.porSku.put(update.getSku(), update) == null) {
+                    totalPendentes.incrementAndGet();
+                }
+            }
+            return fila;
+        });
+        recebidos.increment(updates.size());
+
+        log.debug("📩 Webhook ERP: {} saldos enfileirados para o lojista {}", updates.size(), lojistaId);
+        return updates.size();
+    }
+
+    /**
+     * Drena as filas e aplica um micro-lote por lojista
+     */
+    @Scheduled(fixedDelayString = "${app.erp.webhook.intervalo-ms:2000}")
+    public void aplicarPendentes() {
+        List<UUID> configsAplicadas = new ArrayList<>();
+
+        for (UUID configId : filas.keySet()) {
+            Pendentes pendentes = filas.remove(configId);
+            if (pendentes == null) {
+                continue;
+            }
+            totalPendentes.addAndGet(-pendentes.porSku.size());
+
+            try {
+                List<Produto> produtos = produtoRepository.findByLojistaIdAndErpSkuIn(
+                    pendentes.lojistaId, pendentes.porSku.keySet());
+                EstoqueErpService.ResultadoAplicacao resultado =
+                    estoqueErpService.aplicar(produtos, pendentes.porSku.values());
+                aplicados.increment(pendentes.porSku.size());
+                configsAplicadas.add(configId);
+
+                log.info("📦 Webhook ERP aplicado - Lojista: {}, Saldos: {}, Produtos alterados: {} (desativados: {})",
+                    pendentes.lojistaId, pendentes.porSku.size(), resultado.alterados(), resultado.desativados());
+            } catch (Exception e) {
+                log.error("❌ Erro ao aplicar webhooks ERP do lojista {}: {}", pendentes.lojistaId, e.getMessage(), e);
+                devolver(configId, pendentes);
+            }
+        }
+
+        registrarRecebimento(configsAplicadas);
+    }
+
+    /**
+     * Devolve um lote que falhou para a fila, sem sobrescrever saldos que chegaram depois
+     */
+    private void devolver(UUID configId, Pendentes lote) {
+        filas.compute(configId, (id, atual) -> {
+            Pendentes fila = atual != null ? atual : new Pendentes(lote.lojistaId);
+            lote.porSku.forEach((sku, update) -> {
+                if (fila.porSku.putIfAbsent(sku, update) == null) {
+                    totalPendentes.incrementAndGet();
+                }
+            });
+            return fila;
+        });
+    }
+
+    /**
+     * Marca last_webhook_at (que espaça o polling) no máximo uma vez por minuto por configuração
+     */
+    private void registrarRecebimento(List<UUID> configIds) {
+        if (configIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime agora = LocalDateTime.now();
+        List<UUID> registrar = configIds.stream()
+            .filter(id -> {
+                LocalDateTime ultimo = ultimoRegistro.get(id);
+                return ultimo == null || Duration.between(ultimo, agora).toMinutes() >= 1;
+            })
+            .toList();
+        if (registrar.isEmpty()) {
+            return;
+        }
+        try {
+            erpConfigRepository.registrarWebhooks(registrar, agora);
+            registrar.forEach(id -> ultimoRegistro.put(id, agora));
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível registrar o recebimento de webhooks ERP: {}", e.getMessage());
+        }
+    }
+
+    static boolean autenticar(String corpo, String assinatura, String token, String segredo) {
+        if (assinatura != null && !assinatura.isBlank()) {
+            String esperada = hmacSha256(corpo, segredo);
+            String recebida = assinatura.trim().toLowerCase().replaceFirst("^sha256=", "");
+            return MessageDigest.isEqual(esperada.getBytes(StandardCharsets.UTF_8),
+                recebida.getBytes(StandardCharsets.UTF_8));
+        }
+        if (token != null && !token.isBlank()) {
+            return MessageDigest.isEqual(segredo.getBytes(StandardCharsets.UTF_8),
+                token.trim().getBytes(StandardCharsets.UTF_8));
+        }
+        return false;
+    }
+
+    static String hmacSha256(String corpo, String segredo) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(segredo.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(corpo.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+    }
+
+    /**
+     * Aceita o formato genérico ({"atualizacoes": [{sku, estoque, ativo}]} ou
+     * a lista direto) e a notificação de estoque do Tiny
+     * ({"tipo": "estoque", "dados": {sku, saldo}}).
+     */
+    List<ErpStockUpdateDTO> interpretar(String corpo) {
+        JsonNode raiz;
+        try {
+            raiz = objectMapper.readTree(corpo);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "JSON inválido");
+        }
+
+        List<JsonNode> itens = new ArrayList<>();
+        if (raiz == null) {
+            return List.of();
+        } else if (raiz.isArray()) {
+            raiz.forEach(itens::add);
+        } else if (raiz.has("atualizacoes")) {
+            raiz.get("atualizacoes").forEach(itens::add);
+        } else if (raiz.has("dados")) {
+            itens.add(raiz.get("dados"));
+        } else {
+            itens.add(raiz);
+        }
+
+        Map<String, ErpStockUpdateDTO> porSku = new LinkedHashMap<>();
+        for (JsonNode item : itens) {
+            String sku = texto(item, "sku", "codigo");
+            JsonNode saldo = item.has("estoque") ? item.get("estoque") : item.get("saldo");
+            if (sku == null || (saldo == null && !item.has("ativo"))) {
+                continue;
+            }
+            porSku.put(sku, ErpStockUpdateDTO.builder()
+                .sku(sku)
+                .estoque(inteiro(saldo))
+                .ativo(item.has("ativo") ? item.get("ativo").asBoolean() : null)
+                .build());
+        }
+        return new ArrayList<>(porSku.values());
+    }
+
+    /**
+     * Saldo numérico ou texto ("12.00", como o Tiny envia); negativo vira zero
+     */
+    private static Integer inteiro(JsonNode saldo) {
+        if (saldo == null || saldo.isNull()) {
+            return null;
+        }
+        if (saldo.isNumber()) {
+            return Math.max(0, saldo.intValue());
+        }
+        try {
+            return Math.max(0, (int) Double.parseDouble(saldo.asText().trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String texto(JsonNode item, String... campos) {
+        for (String campo : campos) {
+            JsonNode valor = item.get(campo);
+            if (valor != null && !valor.isNull() && !valor.asText().isBlank()) {
+                return valor.asText();
+            }
+        }
+        return null;
+    }
+
+    private static final class Pendentes {
+        final UUID lojistaId;
+        final Map<String, ErpStockUpdateDTO> porSku = new LinkedHashMap<>();
+
+        Pendentes(UUID lojistaId) {
+            this.lojistaId = lojistaId;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Aplicação em lote dos saldos de estoque recebidos do ERP.
+ *
+ * Os produtos do lojista são indexados por SKU e comparados com as
+ * atualizações em memória; apenas os que realmente mudaram (saldo diferente ou
+ * desativados no ERP) são gravados, com um UPDATE ... FROM unnest(...) por
+ * bloco de BLOCO_UPDATE linhas, todos na mesma transação. O cache do catálogo
+ * é invalidado só para esses produtos, após o commit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EstoqueErpService {
+
+    /** Linhas por comando UPDATE (mantém o tamanho dos arrays literais razoável) */
+    static final int BLOCO_UPDATE = 1000;
+
+    private final ProdutoRepository produtoRepository;
+    private final CatalogoCacheService catalogoCacheService;
+
+    /**
+     * Aplica as atualizações do ERP aos produtos informados (já carregados do lojista)
+     */
+    @Transactional
+    public ResultadoAplicacao aplicar(Collection<Produto> produtos, Collection<ErpStockUpdateDTO> updates) {
+        List<Alteracao> alteracoes = calcularAlteracoes(produtos, updates);
+        int naoEncontrados = contarNaoEncontrados(produtos, updates);
+
+        if (alteracoes.isEmpty()) {
+            return new ResultadoAplicacao(updates.size(), 0, 0, naoEncontrados);
+        }
+
+        int gravados = 0;
+        for (int inicio = 0; inicio < alteracoes.size(); inicio += BLOCO_UPDATE) {
+            List<Alteracao> bloco = alteracoes.subList(inicio, Math.min(inicio + BLOCO_UPDATE, alteracoes.size()));
+            gravados += produtoRepository.aplicarEstoqueErp(
+                    arrayLiteral(bloco.stream().map(a -> a.produto().getId()).toList()),
+                    arrayLiteral(bloco.stream().map(Alteracao::estoque).toList()),
+                    arrayLiteral(bloco.stream().map(a -> !a.desativar()).toList()));
+        }
+
+        invalidarCache(alteracoes);
+
+        int desativados = (int) alteracoes.stream().filter(Alteracao::desativar).count();
+        return new ResultadoAplicacao(updates.size(), gravados, desativados, naoEncontrados);
+    }
+
+    /**
+     * Compara produtos e atualizações por SKU (O(n + m)). Se o mesmo SKU vier
+     * repetido, vale a última atualização.
+     */
+    static List<Alteracao> calcularAlteracoes(Collection<Produto> produtos, Collection<ErpStockUpdateDTO> updates) {
+        Map<String, Produto> porSku = indexarPorSku(produtos);
+
+        Map<UUID, Alteracao> alteracoes = new LinkedHashMap<>();
+        for (ErpStockUpdateDTO update : updates) {
+            Produto produto = update.getSku() != null ? porSku.get(update.getSku()) : null;
+            if (produto == null) {
+                continue;
+            }
+
+            int estoqueAtual = produto.getEstoque() != null ? produto.getEstoque() : 0;
+            int novoEstoque = update.getEstoque() != null ? update.getEstoque() : estoqueAtual;
+            boolean desativar = Boolean.FALSE.equals(update.getAtivo()) && !Boolean.FALSE.equals(produto.getAtivo());
+
+            if (novoEstoque != estoqueAtual || desativar) {
+                alteracoes.put(produto.getId(), new Alteracao(produto, novoEstoque, desativar));
+            } else {
+                alteracoes.remove(produto.getId());
+            }
+        }
+        return new ArrayList<>(alteracoes.values());
+    }
+
+    private static int contarNaoEncontrados(Collection<Produto> produtos, Collection<ErpStockUpdateDTO> updates) {
+        Set<String> skus = produtos.stream()
+                .map(Produto::getErpSku)
+                .collect(Collectors.toCollection(HashSet::new));
+        return (int) updates.stream().filter(u -> !skus.contains(u.getSku())).count();
+    }
+
+    private static Map<String, Produto> indexarPorSku(Collection<Produto> produtos) {
+        Map<String, Produto> porSku = new HashMap<>(produtos.size() * 2);
+        for (Produto produto : produtos) {
+            if (produto.getErpSku() != null) {
+                porSku.putIfAbsent(produto.getErpSku(), produto);
+            }
+        }
+        return porSku;
+    }
+
+    /**
+     * Saldo alterado: só o produto. Desativado: também as listagens, uma vez por categoria.
+     */
+    private void invalidarCache(List<Alteracao> alteracoes) {
+        Set<UUID> categoriasInvalidadas = new HashSet<>();
+        List<UUID> somenteProduto = new ArrayList<>();
+        for (Alteracao alteracao : alteracoes) {
+            Produto produto = alteracao.produto();
+            UUID categoriaId = produto.getCategoria() != null ? produto.getCategoria().getId() : null;
+            if (alteracao.desativar() && categoriasInvalidadas.add(categoriaId)) {
+                catalogoCacheService.invalidarProdutoEListagens(produto.getId(), categoriaId);
+            } else {
+                somenteProduto.add(produto.getId());
+            }
+        }
+        if (!somenteProduto.isEmpty()) {
+            catalogoCacheService.invalidarProdutos(somenteProduto);
+        }
+    }
+
+    private static String arrayLiteral(Collection<?> valores) {
+        return valores.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    record Alteracao(Produto produto, int estoque, boolean desativar) {
+    }
+
+    /**
+     * @param recebidos      atualizações recebidas do ERP
+     * @param alterados      produtos gravados (saldo mudou ou foram desativados)
+     * @param desativados    produtos desativados por estarem inativos no ERP
+     * @param naoEncontrados SKUs sem produto vinculado no Win
+     */
+    public record ResultadoAplicacao(int recebidos, int alterados, int desativados, int naoEncontrados) {
+    }
+}
@@ -8,6 +8,7 @@ import com.win.marketplace.model.Endereco;
 import com.win.marketplace.model.Lojista;
 import com.win.marketplace.repository.EnderecoRepository;
 import com.win.marketplace.repository.LojistaRepository;
+import com.win.marketplace.service.cache.CotacaoFreteCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +36,7 @@ public class FreteService {
     private final EnderecoRepository enderecoRepository;
     private final UberFlashService uberFlashService;
     private final GeocodingService geocodingService;
+    private final CotacaoFreteCache cotacaoFreteCache;
 
     @Value("${uber.api.enabled:false}")
     private Boolean uberApiEnabled;
@@ -46,10 +48,11 @@ public class FreteService {
      * Não requer endereço completo nem autenticação.
      * 
      * Fluxo:
-     * 1. Buscar lojista (origem) com coordenadas
-     * 2. Geocodificar CEP de destino via ViaCEP + Nominatim
-     * 3. Calcular frete via Uber API
-     * 4. Retornar estimativa
+     * 1. Procurar estimativa em cache (lojista + prefixo do CEP + faixa de peso)
+     * 2. Em caso de miss: buscar lojista (origem) com coordenadas
+     * 3. Geocodificar CEP de destino via ViaCEP + Nominatim
+     * 4. Calcular frete via Uber API
+     * 5. Retornar estimativa (sem quoteId: o checkout cota de novo em calcularFrete)
      * 
      * @param cepDestino CEP do cliente (8 dígitos)
      * @param lojistaId UUID do lojista
@@ -57,93 +60,104 @@ public class FreteService {
      * @return Estimativa de frete
      */
     public FreteResponseDTO estimarFretePorCep(String cepDestino, java.util.UUID lojistaId, Double pesoKg) {
-        log.info("📍 Estimando frete - CEP destino: {}, Lojista: {}", cepDestino, lojistaId);
+        log.debug("📍 Estimando frete - CEP destino: {}, Lojista: {}", cepDestino, lojistaId);
 
         try {
-            // 1. BUSCAR LOJISTA
-            Lojista lojista = lojistaRepository.findById(lojistaId)
-                    .orElseThrow(() -> new RuntimeException("Lojista não encontrado"));
-
-            if (!lojista.getAtivo()) {
-                throw new RuntimeException("Lojista inativo");
-            }
-
-            // 2. OBTER COORDENADAS DO LOJISTA
-            Double origemLat = lojista.getLatitude();
-            Double origemLon = lojista.getLongitude();
-
-            if (origemLat == null || origemLon == null) {
-                // Tentar geocodificar lojista em tempo real
-                String enderecoOrigem = construirEnderecoCompleto(
-                        lojista.getLogradouro(), lojista.getNumero(),
-                        lojista.getBairro(), lojista.getCidade(), lojista.getUf()
-                );
-                Double[] coordsOrigem = geocodingService.geocodificar(lojista.getCep(), enderecoOrigem);
-                if (coordsOrigem != null) {
-                    origemLat = coordsOrigem[0];
-                    origemLon = coordsOrigem[1];
-                } else {
-                    throw new RuntimeException("Não foi possível geocodificar endereço do lojista");
-                }
-            }
-
-            // 3. GEOCODIFICAR CEP DE DESTINO
             String cepLimpo = cepDestino.replaceAll("\\D", "");
-            log.info("🔍 Geocodificando CEP destino: {}", cepLimpo);
-            
-            Double[] coordsDestino = geocodingService.geocodificarPorCEP(cepLimpo);
-            
-            if (coordsDestino == null) {
-                log.error("❌ Falha ao geocodificar CEP: {}", cepLimpo);
+            if (cepLimpo.length() != 8) {
                 throw new RuntimeException("CEP inválido ou não encontrado");
             }
+            return cotacaoFreteCache.obter(cotacaoFreteCache.chave(lojistaId, cepLimpo, pesoKg),
+                    () -> cotarEstimativa(cepLimpo, lojistaId, pesoKg));
+        } catch (Exception e) {
+            log.error("❌ Erro ao estimar frete por CEP", e);
+            return FreteResponseDTO.builder()
+                    .sucesso(false)
+                    .erro("Erro ao estimar frete: " + e.getMessage())
+                    .valorFreteTotal(new BigDecimal("15.00")) // Fallback
+                    .tempoEstimadoMinutos(30)
+                    .modoProducao(false)
+                    .build();
+        }
+    }
 
-            log.info("📍 Coordenadas destino: lat={}, lon={}", coordsDestino[0], coordsDestino[1]);
-            Double destinoLat = coordsDestino[0];
-            Double destinoLon = coordsDestino[1];
+    /**
+     * Cotação da estimativa na Uber (executada só em miss/revalidação do cache)
+     */
+    private FreteResponseDTO cotarEstimativa(String cepLimpo, java.util.UUID lojistaId, Double pesoKg) {
+        log.info("📍 Cotando estimativa de frete - CEP destino: {}, Lojista: {}", cepLimpo, lojistaId);
 
-            // 4. PREPARAR REQUEST PARA UBER API
-            SimulacaoFreteRequestDTO simulacaoRequest = SimulacaoFreteRequestDTO.builder()
-                    .cepOrigem(lojista.getCep())
-                    .cepDestino(cepLimpo)
-                    .origemLatitude(origemLat)
-                    .origemLongitude(origemLon)
-                    .destinoLatitude(destinoLat)
-                    .destinoLongitude(destinoLon)
-                    .pesoTotalKg(pesoKg != null ? pesoKg : 1.0)
-                    .build();
+        // 1. BUSCAR LOJISTA
+        Lojista lojista = lojistaRepository.findById(lojistaId)
+                .orElseThrow(() -> new RuntimeException("Lojista não encontrado"));
 
-            // 5. CHAMAR UBER API
-            SimulacaoFreteResponseDTO simulacao = uberFlashService.simularFrete(simulacaoRequest);
+        if (!lojista.getAtivo()) {
+            throw new RuntimeException("Lojista inativo");
+        }
 
-            if (simulacao.getSucesso()) {
-                return FreteResponseDTO.builder()
-                        .sucesso(true)
-                        .quoteId(simulacao.getQuoteId())
-                        .valorFreteTotal(simulacao.getValorFreteTotal())
-                        .valorCorridaUber(simulacao.getValorCorridaUber())
-                        .taxaWin(simulacao.getTaxaWinmarket())
-                        .distanciaKm(simulacao.getDistanciaKm())
-                        .tempoEstimadoMinutos(simulacao.getTempoEstimadoMinutos())
-                        .tipoVeiculo(simulacao.getTipoVeiculo())
-                        .mensagem("Estimativa baseada no CEP. Valor final confirmado no checkout.")
-                        .modoProducao(uberApiEnabled)
-                        .build();
+        // 2. OBTER COORDENADAS DO LOJISTA
+        Double origemLat = lojista.getLatitude();
+        Double origemLon = lojista.getLongitude();
+
+        if (origemLat == null || origemLon == null) {
+            // Tentar geocodificar lojista em tempo real
+            String enderecoOrigem = construirEnderecoCompleto(
+                    lojista.getLogradouro(), lojista.getNumero(),
+                    lojista.getBairro(), lojista.getCidade(), lojista.getUf()
+            );
+            Double[] coordsOrigem = geocodingService.geocodificar(lojista.getCep(), enderecoOrigem);
+            if (coordsOrigem != null) {
+                origemLat = coordsOrigem[0];
+                origemLon = coordsOrigem[1];
             } else {
-                return FreteResponseDTO.builder()
-                        .sucesso(false)
-                        .erro(simulacao.getErro())
-                        .build();
+                throw new RuntimeException("Não foi possível geocodificar endereço do lojista");
             }
+        }
 
-        } catch (Exception e) {
-            log.error("❌ Erro ao estimar frete por CEP", e);
+        // 3. GEOCODIFICAR CEP DE DESTINO
+        log.info("🔍 Geocodificando CEP destino: {}", cepLimpo);
+        
+        Double[] coordsDestino = geocodingService.geocodificarPorCEP(cepLimpo);
+        
+        if (coordsDestino == null) {
+            log.error("❌ Falha ao geocodificar CEP: {}", cepLimpo);
+            throw new RuntimeException("CEP inválido ou não encontrado");
+        }
+
+        log.info("📍 Coordenadas destino: lat={}, lon={}", coordsDestino[0], coordsDestino[1]);
+        Double destinoLat = coordsDestino[0];
+        Double destinoLon = coordsDestino[1];
+
+        // 4. PREPARAR REQUEST PARA UBER API
+        SimulacaoFreteRequestDTO simulacaoRequest = SimulacaoFreteRequestDTO.builder()
+                .cepOrigem(lojista.getCep())
+                .cepDestino(cepLimpo)
+                .origemLatitude(origemLat)
+                .origemLongitude(origemLon)
+                .destinoLatitude(destinoLat)
+                .destinoLongitude(destinoLon)
+                .pesoTotalKg(pesoKg != null ? pesoKg : 1.0)
+                .build();
+
+        // 5. CHAMAR UBER API
+        SimulacaoFreteResponseDTO simulacao = uberFlashService.simularFrete(simulacaoRequest);
+
+        if (simulacao.getSucesso()) {
+            return FreteResponseDTO.builder()
+                    .sucesso(true)
+                    .valorFreteTotal(simulacao.getValorFreteTotal())
+                    .valorCorridaUber(simulacao.getValorCorridaUber())
+                    .taxaWin(simulacao.getTaxaWinmarket())
+                    .distanciaKm(simulacao.getDistanciaKm())
+                    .tempoEstimadoMinutos(simulacao.getTempoEstimadoMinutos())
+                    .tipoVeiculo(simulacao.getTipoVeiculo())
+                    .mensagem("Estimativa baseada no CEP. Valor final confirmado no checkout.")
+                    .modoProducao(uberApiEnabled)
+                    .build();
+        } else {
             return FreteResponseDTO.builder()
                     .sucesso(false)
-                    .erro("Erro ao estimar frete: " + e.getMessage())
-                    .valorFreteTotal(new BigDecimal("15.00")) // Fallback
-                    .tempoEstimadoMinutos(30)
-                    .modoProducao(false)
+                    .erro(simulacao.getErro())
                     .build();
         }
     }
@@ -0,0 +1,415 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.response.JobGeocodificacaoResponseDTO;
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.exception.ResourceNotFoundException;
+import com.win.marketplace.model.JobGeocodificacao;
+import com.win.marketplace.model.JobGeocodificacao.Alvo;
+import com.win.marketplace.model.JobGeocodificacao.StatusJob;
+import com.win.marketplace.repository.EnderecoRepository;
+import com.win.marketplace.repository.JobGeocodificacaoRepository;
+import com.win.marketplace.repository.LojistaRepository;
+import com.win.marketplace.repository.UsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Geocodificação em massa como job em segundo plano, retomável.
+ *
+ * Cada job percorre os registros sem coordenadas (lojistas, endereços ou
+ * usuários) em páginas ordenadas por id. As páginas são geocodificadas em
+ * paralelo, mas as chamadas ao Nominatim vão para a fila de lote do
+ * NominatimGeocoder: cada worker espera a sua resposta (sem o limite de
+ * espera das requisições interativas), então o lote anda no ritmo do token
+ * bucket e nunca ocupa a fila interativa. A concorrência só acelera acertos
+ * de cache, índice de CEPs e Google. Ao fim de cada página o progresso e o último id
+ * (checkpoint) são gravados; se a instância cair, o job é retomado do
+ * checkpoint na próxima subida (ou manualmente pelo admin).
+ *
+ * Registros que falham não são repetidos dentro do mesmo job: ficam sem
+ * coordenadas e entram no próximo lote.
+ */
+@Slf4j
+@Service
+public class GeocodificacaoLoteService {
+
+    /** Menor UUID possível: início do keyset */
+    static final UUID INICIO = new UUID(0L, 0L);
+
+    private static final String INSTANCIA = ManagementFactory.getRuntimeMXBean().getName();
+    private static final int TAMANHO_MAXIMO_ERRO = 500;
+
+    private final JobGeocodificacaoRepository jobRepository;
+    private final LojistaRepository lojistaRepository;
+    private final EnderecoRepository enderecoRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final GeocodingService geocodingService;
+    private final Executor executor;
+    private final int concorrencia;
+    private final int tamanhoPagina;
+    private final Duration abandono;
+
+    // Jobs rodando nesta instância (evita disparar o mesmo job duas vezes)
+    private final Set<UUID> emExecucao = ConcurrentHashMap.newKeySet();
+
+    public GeocodificacaoLoteService(JobGeocodificacaoRepository jobRepository,
+                                     LojistaRepository lojistaRepository,
+                                     EnderecoRepository enderecoRepository,
+                                     UsuarioRepository usuarioRepository,
+                                     GeocodingService geocodingService,
+                                     @Qualifier("geocodificacaoLoteExecutor") Executor executor,
+                                     @Value("${app.geocoding.lote.concorrencia:4}") int concorrencia,
+                                     @Value("${app.geocoding.lote.tamanho-pagina:50}") int tamanhoPagina,
+                                     @Value("${app.geocoding.lote.abandono-minutos:10}") long abandonoMinutos) {
+        this.jobRepository = jobRepository;
+        this.lojistaRepository = lojistaRepository;
+        this.enderecoRepository = enderecoRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.geocodingService = geocodingService;
+        this.executor = executor;
+        this.concorrencia = Math.max(1, concorrencia);
+        this.tamanhoPagina = Math.max(1, tamanhoPagina);
+        this.abandono = Duration.ofMinutes(abandonoMinutos);
+    }
+
+    /**
+     * Inicia um job para o alvo. Se já houver um em execução, devolve o existente.
+     */
+    public JobGeocodificacaoResponseDTO iniciar(Alvo alvo) {
+        var existente = jobRepository.findFirstByAlvoAndStatus(alvo, StatusJob.EXECUTANDO);
+        if (existente.isPresent()) {
+            log.info("Geocodificação em lote de {} já em execução: {}", alvo, existente.get().getId());
+            return toResponse(existente.get(), OffsetDateTime.now());
+        }
+
+        OffsetDateTime agora = OffsetDateTime.now();
+        JobGeocodificacao job = new JobGeocodificacao();
+        job.setAlvo(alvo);
+        job.setTotal((int) contarPendentes(alvo));
+        job.setInstancia(INSTANCIA);
+        job.setIniciadoEm(agora);
+        job.setExecucaoIniciadaEm(agora);
+        job.setProcessadosNoInicioExecucao(0);
+        job.setAtualizadoEm(agora);
+        try {
+            job = jobRepository.save(job);
+        } catch (DataIntegrityViolationException e) {
+            // Outra requisição criou o job do mesmo alvo ao mesmo tempo (índice único parcial)
+            return jobRepository.findFirstByAlvoAndStatus(alvo, StatusJob.EXECUTANDO)
+                    .map(j -> toResponse(j, OffsetDateTime.now()))
+                    .orElseThrow(() -> e);
+        }
+
+        log.info("🗺️ Geocodificação em lote de {} criada: job {} com {} registros pendentes",
+                alvo, job.getId(), job.getTotal());
+        disparar(job.getId());
+        return toResponse(job, agora);
+    }
+
+    /**
+     * Retoma um job cancelado, com falha ou abandonado a partir do último checkpoint
+     */
+    public JobGeocodificacaoResponseDTO retomar(UUID jobId) {
+        JobGeocodificacao job = buscarJob(jobId);
+        if (emExecucao.contains(jobId)) {
+            return toResponse(job, OffsetDateTime.now());
+        }
+
+        OffsetDateTime agora = OffsetDateTime.now();
+        switch (job.getStatus()) {
+            case CONCLUIDO -> throw new BusinessException("Job já concluído; inicie um novo lote para os registros restantes");
+            case EXECUTANDO -> {
+                // Só assume se o heartbeat parou: outra instância pode estar executando
+                if (jobRepository.assumir(jobId, INSTANCIA, agora, agora.minus(abandono)) == 0) {
+                    return toResponse(job, agora);
+                }
+            }
+            default -> {
+                job.setStatus(StatusJob.EXECUTANDO);
+                job.setInstancia(INSTANCIA);
+                job.setAtualizadoEm(agora);
+                job.setExecucaoIniciadaEm(agora);
+                job.setProcessadosNoInicioExecucao(job.getProcessados());
+                job.setConcluidoEm(null);
+                try {
+                    jobRepository.save(job);
+                } catch (DataIntegrityViolationException e) {
+                    throw new BusinessException("Já existe um job de geocodificação em execução para " + job.getAlvo());
+                }
+            }
+        }
+
+        log.info("🗺️ Retomando geocodificação em lote {} a partir de {}", jobId, job.getUltimoIdProcessado());
+        disparar(jobId);
+        return toResponse(buscarJob(jobId), OffsetDateTime.now());
+    }
+
+    /**
+     * Solicita o cancelamento; o job para ao fim da página corrente
+     */
+    public JobGeocodificacaoResponseDTO cancelar(UUID jobId) {
+        buscarJob(jobId);
+        if (jobRepository.finalizar(jobId, StatusJob.CANCELADO, OffsetDateTime.now()) > 0) {
+            log.info("🛑 Geocodificação em lote {} cancelada", jobId);
+        }
+        return toResponse(buscarJob(jobId), OffsetDateTime.now());
+    }
+
+    public JobGeocodificacaoResponseDTO status(UUID jobId) {
+        return toResponse(buscarJob(jobId), OffsetDateTime.now());
+    }
+
+    public List<JobGeocodificacaoResponseDTO> listarRecentes() {
+        OffsetDateTime agora = OffsetDateTime.now();
+        return jobRepository.findTop20ByOrderByIniciadoEmDesc().stream()
+                .map(job -> toResponse(job, agora))
+                .toList();
+    }
+
+    /**
+     * Retoma jobs que estavam em execução numa instância que caiu
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void retomarAbandonados() {
+        try {
+            OffsetDateTime agora = OffsetDateTime.now();
+            OffsetDateTime limite = agora.minus(abandono);
+            for (JobGeocodificacao job : jobRepository.findAbandonados(limite)) {
+                if (jobRepository.assumir(job.getId(), INSTANCIA, agora, limite) > 0) {
+                    log.info("🗺️ Retomando geocodificação em lote abandonada {} ({})", job.getId(), job.getAlvo());
+                    disparar(job.getId());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível retomar jobs de geocodificação: {}", e.getMessage());
+        }
+    }
+
+    private void disparar(UUID jobId) {
+        if (!emExecucao.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> executar(jobId));
+        } catch (TaskRejectedException e) {
+            emExecucao.remove(jobId);
+            log.warn("⚠️ Executor de geocodificação em lote cheio; job {} será retomado depois", jobId);
+        }
+    }
+
+    void executar(UUID jobId) {
+        ExecutorService pool = Executors.newFixedThreadPool(concorrencia,
+                new CustomizableThreadFactory("geocodificacao-lote-item-"));
+        UUID cursor = INICIO;
+        try {
+            JobGeocodificacao job = jobRepository.findById(jobId).orElse(null);
+            if (job == null) {
+                return;
+            }
+            if (job.getUltimoIdProcessado() != null) {
+                cursor = job.getUltimoIdProcessado();
+            }
+            Pageable pagina = PageRequest.of(0, tamanhoPagina);
+
+            while (true) {
+                if (jobRepository.findStatusById(jobId) != StatusJob.EXECUTANDO) {
+                    log.info("Geocodificação em lote {} interrompida (status alterado)", jobId);
+                    return;
+                }
+
+                List<ItemLote> itens = carregarPagina(job.getAlvo(), cursor, pagina);
+                if (itens.isEmpty()) {
+                    jobRepository.finalizar(jobId, StatusJob.CONCLUIDO, OffsetDateTime.now());
+                    log.info("✅ Geocodificação em lote {} ({}) concluída", jobId, job.getAlvo());
+                    return;
+                }
+
+                List<CompletableFuture<String>> resultados = itens.stream()
+                        .map(item -> CompletableFuture.supplyAsync(() -> processar(item), pool))
+                        .toList();
+
+                int sucessos = 0;
+                String ultimoErro = null;
+                for (CompletableFuture<String> resultado : resultados) {
+                    String erro = resultado.join();
+                    if (erro == null) {
+                        sucessos++;
+                    } else {
+                        ultimoErro = erro;
+                    }
+                }
+
+                cursor = itens.get(itens.size() - 1).id();
+                jobRepository.registrarProgresso(jobId, itens.size(), sucessos, itens.size() - sucessos,
+                        cursor, truncar(ultimoErro), OffsetDateTime.now());
+                log.debug("Geocodificação em lote {}: página com {} itens ({} sucessos)", jobId, itens.size(), sucessos);
+            }
+        } catch (Exception e) {
+            log.error("❌ Geocodificação em lote {} falhou no checkpoint {}: {}", jobId, cursor, e.getMessage(), e);
+            try {
+                jobRepository.registrarProgresso(jobId, 0, 0, 0, cursor,
+                        truncar(e.getMessage()), OffsetDateTime.now());
+                jobRepository.finalizar(jobId, StatusJob.FALHOU, OffsetDateTime.now());
+            } catch (Exception ex) {
+                log.warn("⚠️ Não foi possível registrar a falha do job {}: {}", jobId, ex.getMessage());
+            }
+        } finally {
+            pool.shutdownNow();
+            emExecucao.remove(jobId);
+        }
+    }
+
+    /**
+     * Geocodifica e grava um item. Retorna null em caso de sucesso ou o motivo da falha.
+     */
+    private String processar(ItemLote item) {
+        try {
+            if (item.coordenadas() != null) {
+                item.gravar().accept(item.coordenadas()[0], item.coordenadas()[1]);
+                return null;
+            }
+            if (item.endereco().isEmpty()) {
+                return "Dados de endereço insuficientes: " + item.id();
+            }
+            Double[] coords = geocodingService.geocodificarEmLote(item.cep(), item.endereco());
+            if (coords == null || coords.length != 2 || coords[0] == null || coords[1] == null) {
+                return "Coordenadas não encontradas: " + item.id();
+            }
+            item.gravar().accept(coords[0], coords[1]);
+            return null;
+        } catch (Exception e) {
+            log.warn("⚠️ Falha ao geocodificar {} em lote: {}", item.id(), e.getMessage());
+            return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+    }
+
+    private List<ItemLote> carregarPagina(Alvo alvo, UUID cursor, Pageable pagina) {
+        return switch (alvo) {
+            case LOJISTA -> lojistaRepository.findSemCoordenadasApos(cursor, pagina).stream()
+                    .map(l -> new ItemLote(l.getId(), l.getCep(),
+                            AdminGeocodingService.construirEnderecoCompleto(l.getLogradouro(), l.getNumero(),
+                                    l.getBairro(), l.getCidade(), l.getUf(), l.getCep()),
+                            null,
+                            (lat, lon) -> lojistaRepository.atualizarCoordenadas(l.getId(), lat, lon)))
+                    .toList();
+            case ENDERECO -> enderecoRepository.findSemCoordenadasApos(cursor, pagina).stream()
+                    .map(e -> new ItemLote(e.getId(), e.getCep(),
+                            AdminGeocodingService.construirEnderecoCompleto(e.getLogradouro(), e.getNumero(),
+                                    e.getBairro(), e.getCidade(), e.getEstado(), e.getCep()),
+                            null,
+                            (lat, lon) -> enderecoRepository.atualizarCoordenadas(e.getId(), lat, lon)))
+                    .toList();
+            // Usuário recebe as coordenadas do endereço principal (geocodificando-o se preciso)
+            case USUARIO -> enderecoRepository.findPrincipaisDeUsuariosSemCoordenadasApos(cursor, pagina).stream()
+                    .map(e -> {
+                        UUID usuarioId = e.getUsuario().getId();
+                        Double[] conhecidas = e.getLatitude() != null && e.getLongitude() != null
+                                ? new Double[]{e.getLatitude(), e.getLongitude()} : null;
+                        return new ItemLote(usuarioId, e.getCep(),
+                                AdminGeocodingService.construirEnderecoCompleto(e.getLogradouro(), e.getNumero(),
+                                        e.getBairro(), e.getCidade(), e.getEstado(), e.getCep()),
+                                conhecidas,
+                                (lat, lon) -> {
+                                    usuarioRepository.atualizarCoordenadas(usuarioId, lat, lon);
+                                    if (conhecidas == null) {
+                                        enderecoRepository.atualizarCoordenadas(e.getId(), lat, lon);
+                                    }
+                                });
+                    })
+                    .toList();
+        };
+    }
+
+    private long contarPendentes(Alvo alvo) {
+        return switch (alvo) {
+            case LOJISTA -> lojistaRepository.countSemCoordenadas();
+            case ENDERECO -> enderecoRepository.countSemCoordenadas();
+            case USUARIO -> enderecoRepository.countPrincipaisDeUsuariosSemCoordenadas();
+        };
+    }
+
+    private JobGeocodificacao buscarJob(UUID jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Job de geocodificação não encontrado: " + jobId));
+    }
+
+    /**
+     * Progresso, vazão e ETA do job. A vazão é a da execução corrente (desde a
+     * última retomada), para o tempo parado não entrar na conta.
+     */
+    static JobGeocodificacaoResponseDTO toResponse(JobGeocodificacao job, OffsetDateTime agora) {
+        int total = job.getTotal() != null ? job.getTotal() : 0;
+        int processados = job.getProcessados() != null ? job.getProcessados() : 0;
+        boolean executando = job.getStatus() == StatusJob.EXECUTANDO;
+
+        double percentual = total > 0
+                ? Math.min(100.0, processados * 100.0 / total)
+                : (job.getStatus() == StatusJob.CONCLUIDO ? 100.0 : 0.0);
+
+        OffsetDateTime fim = job.getConcluidoEm() != null ? job.getConcluidoEm() : agora;
+        OffsetDateTime inicioExecucao = job.getExecucaoIniciadaEm() != null ? job.getExecucaoIniciadaEm() : job.getIniciadoEm();
+        int processadosNaExecucao = processados
+                - (job.getProcessadosNoInicioExecucao() != null ? job.getProcessadosNoInicioExecucao() : 0);
+        long segundos = inicioExecucao != null ? Math.max(0, Duration.between(inicioExecucao, fim).toSeconds()) : 0;
+        double porSegundo = segundos > 0 ? (double) Math.max(0, processadosNaExecucao) / segundos : 0.0;
+
+        Long eta = null;
+        if (executando && porSegundo > 0 && total > processados) {
+            eta = Math.round((total - processados) / porSegundo);
+        }
+
+        return JobGeocodificacaoResponseDTO.builder()
+                .id(job.getId())
+                .alvo(job.getAlvo().name())
+                .status(job.getStatus().name())
+                .total(total)
+                .processados(processados)
+                .sucessos(job.getSucessos())
+                .falhas(job.getFalhas())
+                .percentual(Math.round(percentual * 10) / 10.0)
+                .itensPorMinuto(Math.round(porSegundo * 600) / 10.0)
+                .etaSegundos(eta)
+                .ultimoErro(job.getUltimoErro())
+                .iniciadoEm(job.getIniciadoEm())
+                .atualizadoEm(job.getAtualizadoEm())
+                .concluidoEm(job.getConcluidoEm())
+                .build();
+    }
+
+    private static String truncar(String texto) {
+        if (texto == null || texto.length() <= TAMANHO_MAXIMO_ERRO) {
+            return texto;
+        }
+        return texto.substring(0, TAMANHO_MAXIMO_ERRO);
+    }
+
+    /**
+     * Registro a geocodificar: id (checkpoint), CEP, endereço montado,
+     * coordenadas já conhecidas (ou null) e como gravar o resultado
+     */
+    private record ItemLote(UUID id, String cep, String endereco, Double[] coordenadas,
+                            BiConsumer<Double, Double> gravar) {
+    }
+}
@@ -2,6 +2,7 @@ package com.win.marketplace.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.service.cache.GeocodificacaoCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,23 +13,28 @@ import org.springframework.web.client.RestTemplate;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Serviço profissional de Geocodificação com cache, fallbacks e rate limiting.
  * 
  * Estratégia de Geocodificação:
- * 1. Verifica cache local (TTL: 24h)
- * 2. Tenta Nominatim (OpenStreetMap) - Gratuito, rate limit de 1 req/s
+ * 0. Só CEP: índice offline de centroides por prefixo (CepCentroideIndex), sem rede
+ * 1. Verifica cache em três níveis (memória, Redis, tabela cep_coordenadas)
+ * 2. Tenta Nominatim (OpenStreetMap) - Gratuito, fila com rate limit global (NominatimGeocoder)
  * 3. Fallback para Google Maps (se configurado)
  * 4. Retorna coordenadas aproximadas baseadas em cidade (último recurso)
  * 
  * Performance:
- * - Cache reduz 90% das requisições externas
- * - Tempo médio: 50ms (cache hit) vs 1-2s (API externa)
+ * - CEPs resolvidos ficam no banco: restart/nova réplica não refaz chamadas externas
+ * - CEPs inexistentes ficam em cache negativo (TTL curto)
+ * - Tempo médio: <1ms (cache local) vs 1-2s (API externa)
  * 
  * @author WinMarketplace Team
  * @version 2.0
@@ -40,19 +46,24 @@ public class GeocodingService {
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final GeocodificacaoCacheService geocodificacaoCache;
+    private final NominatimGeocoder nominatimGeocoder;
+    private final CepCentroideIndex cepCentroideIndex;
 
     @Value("${Maps_API_KEY:}")
     private String googleMapsApiKey;
 
+    @Value("${app.geocoding.nominatim.espera-maxima-ms:5000}")
+    private long esperaMaximaNominatimMs;
+
     // ========================================
     // CONFIGURAÇÕES
     // ========================================
     private static final String VIACEP_URL = "https://viacep.com.br/ws/%s/json/";
-    private static final String NOMINATIM_URL = "https://nominatim.openstreetmap.org/search?format=json&q=%s&limit=1";
     private static final String GOOGLE_MAPS_URL = "https://maps.googleapis.com/maps/api/geocode/json?address=%s&key=%s";
     
-    private static final Duration CACHE_TTL = Duration.ofHours(24);
-    private static final Duration NOMINATIM_RATE_LIMIT = Duration.ofMillis(2000); // 2s entre requisições
+    private static final String FONTE_NOMINATIM = "NOMINATIM";
+    private static final String FONTE_GOOGLE = "GOOGLE";
     private static final int MAX_RETRIES = 2;
 
     // Coordenadas de fallback para principais cidades brasileiras
@@ -69,12 +80,6 @@ public class GeocodingService {
             Map.entry("manaus-am", new Double[]{-3.1190, -60.0217})
     );
 
-    // ========================================
-    // CACHE E RATE LIMITING
-    // ========================================
-    private final Map<String, CachedCoordinates> cache = new ConcurrentHashMap<>();
-    private Instant lastNominatimCall = Instant.EPOCH;
-
     /**
      * Geocodifica endereço completo (CEP + logradouro + número).
      * 
@@ -83,6 +88,19 @@ public class GeocodingService {
      * @return [latitude, longitude] ou null se falhar
      */
     public Double[] geocodificar(String cep, String enderecoCompleto) {
+        return geocodificar(cep, enderecoCompleto, false);
+    }
+
+    /**
+     * Igual a geocodificar, para a geocodificação em massa: usa a fila de lote
+     * do Nominatim (atrás das requisições interativas) e espera a resposta sem
+     * o limite de espera-maxima-ms, no ritmo do rate limit.
+     */
+    public Double[] geocodificarEmLote(String cep, String enderecoCompleto) {
+        return geocodificar(cep, enderecoCompleto, true);
+    }
+
+    private Double[] geocodificar(String cep, String enderecoCompleto, boolean lote) {
         if (cep == null && (enderecoCompleto == null || enderecoCompleto.trim().isEmpty())) {
             log.warn("⚠️ Geocodificação impossível: CEP e endereço ausentes");
             return null;
@@ -91,10 +109,10 @@ public class GeocodingService {
         String cacheKey = buildCacheKey(cep, enderecoCompleto);
         
         // 1. Verificar cache
-        CachedCoordinates cached = cache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
+        Optional<GeocodificacaoCacheService.Entrada> cached = geocodificacaoCache.buscar(cacheKey);
+        if (cached.isPresent()) {
             log.debug("✅ Cache HIT para: {}", cacheKey);
-            return cached.coordinates;
+            return cached.get().coordenadas();
         }
 
         log.info("🔍 Geocodificando - CEP: {}, Endereço: {}", cep, enderecoCompleto);
@@ -104,17 +122,21 @@ public class GeocodingService {
             String enderecoEnriquecido = enriquecerComViaCEP(cep, enderecoCompleto);
             
             // 3. Tentar Nominatim
-            Double[] coords = tentarNominatim(enderecoEnriquecido);
+            Double[] coords = lote
+                ? tentarNominatimEmLote(enderecoEnriquecido)
+                : tentarNominatim(enderecoEnriquecido, cacheKey);
+            String fonte = FONTE_NOMINATIM;
             
             // 4. Fallback: Google Maps
             if (coords == null && isGoogleMapsEnabled()) {
                 log.info("🔄 Fallback: Tentando Google Maps...");
                 coords = tentarGoogleMaps(enderecoEnriquecido);
+                fonte = FONTE_GOOGLE;
             }
             
             // 5. Cache e retorno
             if (coords != null) {
-                cache.put(cacheKey, new CachedCoordinates(coords));
+                geocodificacaoCache.salvar(cacheKey, coords, fonte);
                 log.info("✅ Geocodificação bem-sucedida - Lat: {}, Lon: {}", coords[0], coords[1]);
                 return coords;
             } else {
@@ -147,13 +169,21 @@ public class GeocodingService {
             return null;
         }
 
-        String cacheKey = "cep:" + cepLimpo;
+        String cacheKey = GeocodificacaoCacheService.chaveCep(cepLimpo);
         
-        // Verificar cache
-        CachedCoordinates cached = cache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
+        // Verificar cache (memória, Redis, banco) primeiro: coordenada já conhecida do
+        // próprio CEP vale mais que um centroide de prefixo; hit negativo = CEP inexistente
+        Optional<GeocodificacaoCacheService.Entrada> cached = geocodificacaoCache.buscar(cacheKey);
+        if (cached.isPresent()) {
             log.debug("✅ Cache HIT para CEP: {}", cepLimpo);
-            return cached.coordinates;
+            return cached.get().coordenadas();
+        }
+
+        // Índice offline (centroide do prefixo do CEP): resolve sem nenhuma chamada de rede
+        Double[] centroide = cepCentroideIndex.buscar(cepLimpo);
+        if (centroide != null) {
+            log.debug("✅ Índice offline HIT para CEP: {}", cepLimpo);
+            return centroide;
         }
 
         log.info("🔍 Geocodificando por CEP: {}", cepLimpo);
@@ -161,8 +191,14 @@ public class GeocodingService {
         try {
             // 1. Consultar ViaCEP
             JsonNode viaCepData = consultarViaCEP(cepLimpo);
-            if (viaCepData == null || viaCepData.has("erro")) {
+            if (viaCepData == null) {
+                // ViaCEP indisponível: não é cache negativo, tenta de novo na próxima
+                log.warn("❌ ViaCEP indisponível para CEP: {}", cepLimpo);
+                return null;
+            }
+            if (viaCepData.has("erro")) {
                 log.warn("❌ CEP não encontrado no ViaCEP: {}", cepLimpo);
+                geocodificacaoCache.salvarNegativo(cacheKey);
                 return null;
             }
 
@@ -172,6 +208,7 @@ public class GeocodingService {
 
             if (cidade.isEmpty() || estado.isEmpty()) {
                 log.warn("❌ Dados insuficientes do ViaCEP para: {}", cepLimpo);
+                geocodificacaoCache.salvarNegativo(cacheKey);
                 return null;
             }
 
@@ -183,23 +220,29 @@ public class GeocodingService {
             log.debug("📍 Query de geocodificação: {}", query);
 
             // 4. Tentar Nominatim
-            Double[] coords = tentarNominatim(query);
+            Double[] coords = tentarNominatim(query, cacheKey);
+            String fonte = FONTE_NOMINATIM;
 
             // 5. Fallback: Google Maps
             if (coords == null && isGoogleMapsEnabled()) {
                 log.info("🔄 Fallback: Google Maps para CEP {}", cepLimpo);
                 coords = tentarGoogleMaps(query);
+                fonte = FONTE_GOOGLE;
             }
 
-            // 6. Fallback final: Coordenadas fixas da cidade
+            // 6. Fallback final: Coordenadas fixas da cidade (aproximação, cache curto e fora do banco)
             if (coords == null) {
                 log.info("🔄 Fallback: Coordenadas fixas para {}, {}", cidade, estado);
                 coords = obterCoordenadasFixas(cidade, estado);
+                if (coords != null) {
+                    geocodificacaoCache.salvarAproximacao(cacheKey, coords);
+                    return coords;
+                }
             }
 
             // 7. Cache e retorno
             if (coords != null) {
-                cache.put(cacheKey, new CachedCoordinates(coords));
+                geocodificacaoCache.salvar(cacheKey, coords, fonte);
                 log.info("✅ CEP {} geocodificado - Lat: {}, Lon: {}", cepLimpo, coords[0], coords[1]);
                 return coords;
             } else {
@@ -299,59 +342,51 @@ public class GeocodingService {
     }
 
     /**
-     * Geocodifica com Nominatim (OpenStreetMap) com rate limiting.
+     * Geocodifica com Nominatim (OpenStreetMap) via fila com rate limiting global.
+     *
+     * Espera no máximo app.geocoding.nominatim.espera-maxima-ms; se a resposta
+     * chegar depois, ela ainda é gravada no cache para as próximas consultas.
      */
-    private Double[] tentarNominatim(String endereco) {
+    private Double[] tentarNominatim(String endereco, String cacheKey) {
         if (endereco == null || endereco.trim().isEmpty()) {
             log.error("❌ Nominatim: endereço vazio");
             return null;
         }
 
+        CompletableFuture<Double[]> futuro = nominatimGeocoder.geocodificar(endereco);
         try {
-            // Rate limiting: 1 requisição por segundo
-            log.info("⏱️ Respeitando rate limit Nominatim...");
-            respeitarRateLimitNominatim();
-
-            String enderecoEncoded = URLEncoder.encode(endereco, StandardCharsets.UTF_8);
-            String url = String.format(NOMINATIM_URL, enderecoEncoded);
-
-            log.info("📡 Nominatim query: {}", endereco);
-            log.info("📡 Nominatim URL: {}", url);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("User-Agent", "WinMarketplace/2.0 (suporte@winmarketplace.com.br)");
-            headers.set("Accept-Language", "pt-BR,pt;q=0.9");
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            @SuppressWarnings("null")
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, String.class);
-
-            log.info("✅ Nominatim status: {}", response.getStatusCode());
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                log.info("📦 Nominatim response: {}", response.getBody());
-                JsonNode resultados = objectMapper.readTree(response.getBody());
-
-                if (resultados.isArray() && resultados.size() > 0) {
-                    JsonNode primeiro = resultados.get(0);
-                    String latStr = primeiro.path("lat").asText();
-                    String lonStr = primeiro.path("lon").asText();
-
-                    if (!latStr.isEmpty() && !lonStr.isEmpty()) {
-                        Double lat = Double.parseDouble(latStr);
-                        Double lon = Double.parseDouble(lonStr);
-                        log.info("✅ Nominatim sucesso: lat={}, lon={}", lat, lon);
-                        return new Double[]{lat, lon};
-                    }
-                } else {
-                    log.error("❌ Nominatim retornou array vazio");
+            return futuro.get(esperaMaximaNominatimMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("⏱️ Nominatim não respondeu em {}ms para: {} (resultado tardio irá para o cache)",
+                    esperaMaximaNominatimMs, endereco);
+            futuro.thenAcceptAsync(coords -> {
+                if (coords != null) {
+                    geocodificacaoCache.salvar(cacheKey, coords, FONTE_NOMINATIM);
                 }
-            }
-        } catch (Exception e) {
-            log.error("❌ Falha Nominatim: {} - {}", e.getClass().getSimpleName(), e.getMessage(), e);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("❌ Falha Nominatim: {}", e.getMessage());
         }
+        return null;
+    }
 
+    /**
+     * Nominatim pela fila de lote: espera a vez (e a resposta) sem limite de tempo
+     */
+    private Double[] tentarNominatimEmLote(String endereco) {
+        if (endereco == null || endereco.trim().isEmpty()) {
+            log.error("❌ Nominatim: endereço vazio");
+            return null;
+        }
+        try {
+            return nominatimGeocoder.geocodificarEmLote(endereco).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("❌ Falha Nominatim: {}", e.getMessage());
+        }
         return null;
     }
 
@@ -399,19 +434,6 @@ public class GeocodingService {
         return null;
     }
 
-    /**
-     * Respeita rate limit do Nominatim (1 req/s).
-     */
-    private synchronized void respeitarRateLimitNominatim() {
-        Duration elapsed = Duration.between(lastNominatimCall, Instant.now());
-        if (elapsed.compareTo(NOMINATIM_RATE_LIMIT) < 0) {
-            long sleepMs = NOMINATIM_RATE_LIMIT.minus(elapsed).toMillis();
-            log.debug("⏱️ Rate limit: aguardando {}ms", sleepMs);
-            sleep(sleepMs);
-        }
-        lastNominatimCall = Instant.now();
-    }
-
     /**
      * Verifica se Google Maps está habilitado.
      */
@@ -477,42 +499,22 @@ public class GeocodingService {
     }
 
     /**
-     * Limpa cache expirado (pode ser chamado por scheduler).
+     * Limpa cache local expirado (pode ser chamado por scheduler).
+     * Redis expira sozinho e a tabela cep_coordenadas não expira.
      */
     public void limparCacheExpirado() {
-        long antes = cache.size();
-        cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-        long depois = cache.size();
-        if (antes > depois) {
-            log.info("🧹 Cache limpo: {} entradas removidas ({} -> {})", antes - depois, antes, depois);
+        int removidas = geocodificacaoCache.limparExpirados();
+        if (removidas > 0) {
+            log.info("🧹 Cache limpo: {} entradas removidas", removidas);
         }
     }
 
     /**
-     * Estatísticas do cache.
+     * Estatísticas do cache (tamanho e acertos por nível).
      */
     public Map<String, Object> getEstatisticasCache() {
-        return Map.of(
-                "totalEntradas", cache.size(),
-                "ttlHoras", CACHE_TTL.toHours()
-        );
-    }
-
-    // ========================================
-    // CLASSE INTERNA: CACHE
-    // ========================================
-
-    private static class CachedCoordinates {
-        private final Double[] coordinates;
-        private final Instant timestamp;
-
-        public CachedCoordinates(Double[] coordinates) {
-            this.coordinates = coordinates;
-            this.timestamp = Instant.now();
-        }
-
-        public boolean isExpired() {
-            return Duration.between(timestamp, Instant.now()).compareTo(CACHE_TTL) > 0;
-        }
+        Map<String, Object> stats = new LinkedHashMap<>(geocodificacaoCache.estatisticas());
+        stats.put("indiceCep", cepCentroideIndex.estatisticas());
+        return stats;
     }
 }
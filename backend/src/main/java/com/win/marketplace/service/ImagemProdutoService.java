@@ -6,6 +6,7 @@ import com.win.marketplace.model.ImagemProduto;
 import com.win.marketplace.model.Produto;
 import com.win.marketplace.repository.ImagemProdutoRepository;
 import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -26,6 +27,7 @@ public class ImagemProdutoService {
     private final ProdutoRepository produtoRepository;
     private final ImagemProdutoMapper imagemProdutoMapper;
     private final FileStorageService fileStorageService;
+    private final CatalogoCacheService catalogoCacheService;
 
     public ImagemProdutoResponseDTO adicionarImagem(UUID produtoId, MultipartFile arquivo, Integer ordemExibicao) {
         Produto produto = produtoRepository.findById(produtoId)
@@ -55,6 +57,7 @@ public class ImagemProdutoService {
 
             ImagemProduto savedImagem = imagemProdutoRepository.save(imagemProduto);
             log.info("Imagem adicionada ao produto {}: {}", produtoId, url);
+            invalidarCache(produto);
             
             return imagemProdutoMapper.toResponseDTO(savedImagem);
 
@@ -76,6 +79,7 @@ public class ImagemProdutoService {
 
         ImagemProduto savedImagem = imagemProdutoRepository.save(imagemProduto);
         log.info("Imagem com URL externa adicionada ao produto {}: {}", produtoId, url);
+        invalidarCache(produto);
         
         return imagemProdutoMapper.toResponseDTO(savedImagem);
     }
@@ -99,6 +103,7 @@ public class ImagemProdutoService {
 
         imagem.setOrdemExibicao(novaOrdem);
         ImagemProduto savedImagem = imagemProdutoRepository.save(imagem);
+        invalidarCache(imagem.getProduto());
         return imagemProdutoMapper.toResponseDTO(savedImagem);
     }
 
@@ -124,6 +129,7 @@ public class ImagemProdutoService {
 
         imagemProdutoRepository.delete(imagem);
         log.info("Imagem deletada: {}", id);
+        invalidarCache(imagem.getProduto());
     }
 
     public void deletarTodasImagensProduto(UUID produtoId) {
@@ -140,5 +146,17 @@ public class ImagemProdutoService {
 
         imagemProdutoRepository.deleteByProdutoId(produtoId);
         log.info("Todas as imagens do produto {} foram deletadas", produtoId);
+        if (!imagens.isEmpty()) {
+            invalidarCache(imagens.get(0).getProduto());
+        }
+    }
+
+    /**
+     * imagensUrls e imagemPrincipal vão no DTO do produto: derruba o detalhe e as
+     * listagens em cache após o commit
+     */
+    private void invalidarCache(Produto produto) {
+        catalogoCacheService.invalidarProdutoEListagens(produto.getId(),
+                produto.getCategoria() != null ? produto.getCategoria().getId() : null);
     }
 }
@@ -0,0 +1,310 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.repository.EntregaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Localização ao vivo dos motoristas Uber, por entrega.
+ *
+ * Os webhooks só registram a posição aqui (última posição por entrega, em
+ * memória); nada vai direto ao broker nem ao banco:
+ *
+ * - Posições com capturadaEm anterior à última conhecida são descartadas, assim
+ *   como posições de entregas já encerradas (webhooks atrasados ou reenviados)
+ * - Envio para /topic/entrega/{id}/courier no máximo a cada intervalo-minimo,
+ *   e só se o motorista andou distancia-minima-metros; a mensagem leva só o
+ *   que mudou (motorista/veículo vão no primeiro envio, quando mudam e a cada
+ *   quadro-completo-segundos)
+ * - Gravação em entregas (latitude/longitude_motorista) em lote a cada
+ *   persistencia-ms, apenas das entregas com posição nova; o UPDATE compara o
+ *   instante de captura, então outra réplica com posição mais antiga não
+ *   sobrescreve a mais nova
+ *
+ * O estado é local à instância; o banco continua sendo a fonte para quem
+ * abre a tela de rastreamento.
+ */
+@Slf4j
+@Service
+public class LocalizacaoMotoristaService {
+
+    private final WebSocketNotificationService webSocketService;
+    private final EntregaRepository entregaRepository;
+
+    private final Duration intervaloMinimo;
+    private final double distanciaMinimaMetros;
+    private final Duration quadroCompleto;
+    private final Duration inatividade;
+
+    private final Map<String, Rastro> rastros = new ConcurrentHashMap<>();
+    // Entregas concluídas/canceladas e quando foram encerradas (descartadas após a inatividade)
+    private final Map<String, Instant> encerradas = new ConcurrentHashMap<>();
+
+    private final Counter recebidas;
+    private final Counter antigas;
+    private final Counter ignoradas;
+    private final Counter enviadas;
+    private final Counter suprimidas;
+    private final Counter gravadas;
+
+    public LocalizacaoMotoristaService(WebSocketNotificationService webSocketService,
+                                       EntregaRepository entregaRepository,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.entrega.localizacao.intervalo-minimo-ms:2000}") long intervaloMinimoMs,
+                                       @Value("${app.entrega.localizacao.distancia-minima-metros:10}") double distanciaMinimaMetros,
+                                       @Value("${app.entrega.localizacao.quadro-completo-segundos:30}") long quadroCompletoSegundos,
+                                       @Value("${app.entrega.localizacao.inatividade-minutos:30}") long inatividadeMinutos) {
+        this.webSocketService = webSocketService;
+        this.entregaRepository = entregaRepository;
+        this.intervaloMinimo = Duration.ofMillis(intervaloMinimoMs);
+        this.distanciaMinimaMetros = distanciaMinimaMetros;
+        this.quadroCompleto = Duration.ofSeconds(quadroCompletoSegundos);
+        this.inatividade = Duration.ofMinutes(inatividadeMinutos);
+
+        this.recebidas = contador(meterRegistry, "recebida");
+        this.antigas = contador(meterRegistry, "antiga");
+        this.ignoradas = contador(meterRegistry, "encerrada");
+        this.enviadas = contador(meterRegistry, "enviada");
+        this.suprimidas = contador(meterRegistry, "suprimida");
+        this.gravadas = contador(meterRegistry, "gravada");
+        meterRegistry.gauge("entrega.localizacao.ativas", rastros, Map::size);
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("entrega.localizacao").tag("resultado", resultado).register(registry);
+    }
+
+    /**
+     * Registra a posição do motorista (não envia nem grava na hora)
+     *
+     * @param capturadaEm instante da posição na Uber (null = agora)
+     * @return false se a posição é mais antiga que a última conhecida ou se a
+     *         entrega já foi encerrada
+     */
+    public boolean registrar(String deliveryId, Double latitude, Double longitude, Instant capturadaEm,
+                             String nomeMotorista, String telefone, String veiculo) {
+        if (deliveryId == null || latitude == null || longitude == null) {
+            return false;
+        }
+        Posicao posicao = new Posicao(latitude, longitude, capturadaEm != null ? capturadaEm : Instant.now());
+        Motorista motorista = new Motorista(nomeMotorista, telefone, veiculo);
+        if (encerradas.containsKey(deliveryId)) {
+            ignoradas.increment();
+            return false;
+        }
+
+        Rastro rastro = rastros.computeIfAbsent(deliveryId, id -> new Rastro());
+        synchronized (rastro) {
+            // encerrar() pode ter rodado entre a checagem acima e o computeIfAbsent
+            if (encerradas.containsKey(deliveryId)) {
+                rastros.remove(deliveryId, rastro);
+                ignoradas.increment();
+                return false;
+            }
+            if (rastro.ultima != null && posicao.capturadaEm().isBefore(rastro.ultima.capturadaEm())) {
+                antigas.increment();
+                return false;
+            }
+            rastro.ultima = posicao;
+            rastro.motorista = motorista;
+            rastro.gravada = false;
+            rastro.atualizadoEm = Instant.now();
+        }
+        recebidas.increment();
+        return true;
+    }
+
+    /**
+     * Última posição conhecida da entrega (inclusive ainda não gravada)
+     */
+    public Optional<Posicao> ultimaPosicao(String deliveryId) {
+        if (deliveryId == null) {
+            return Optional.empty();
+        }
+        Rastro rastro = rastros.get(deliveryId);
+        if (rastro == null) {
+            return Optional.empty();
+        }
+        synchronized (rastro) {
+            return Optional.ofNullable(rastro.ultima);
+        }
+    }
+
+    /**
+     * Entrega concluída ou cancelada: para de transmitir (a posição final vai
+     * junto com o save da entrega) e passa a ignorar posições dessa entrega
+     */
+    public void encerrar(String deliveryId) {
+        if (deliveryId != null) {
+            encerradas.put(deliveryId, Instant.now());
+            rastros.remove(deliveryId);
+        }
+    }
+
+    /**
+     * Envia as posições novas, respeitando o intervalo mínimo por entrega
+     */
+    @Scheduled(fixedDelayString = "${app.entrega.localizacao.envio-ms:500}")
+    public void transmitir() {
+        Instant agora = Instant.now();
+        rastros.forEach((deliveryId, rastro) -> {
+            Map<String, Object> mensagem;
+            synchronized (rastro) {
+                mensagem = proximaMensagem(deliveryId, rastro, agora);
+            }
+            if (mensagem != null) {
+                webSocketService.enviarAtualizacaoMotorista(deliveryId, mensagem);
+                enviadas.increment();
+            }
+        });
+    }
+
+    /**
+     * Mensagem a enviar agora (delta desde o último envio), ou null se não há
+     * nada novo, se ainda não passou o intervalo mínimo ou se o motorista
+     * praticamente não se moveu. Chamado com o lock do rastro.
+     */
+    Map<String, Object> proximaMensagem(String deliveryId, Rastro rastro, Instant agora) {
+        Posicao ultima = rastro.ultima;
+        if (ultima == null || ultima == rastro.enviada || ultima == rastro.suprimida) {
+            return null;
+        }
+        if (rastro.enviadoEm != null && Duration.between(rastro.enviadoEm, agora).compareTo(intervaloMinimo) < 0) {
+            return null;
+        }
+
+        boolean completo = rastro.completoEm == null
+                || Duration.between(rastro.completoEm, agora).compareTo(quadroCompleto) >= 0;
+        boolean motoristaMudou = !Objects.equals(rastro.motorista, rastro.motoristaEnviado);
+        if (!completo && !motoristaMudou && rastro.enviada != null
+                && distanciaMetros(rastro.enviada, ultima) < distanciaMinimaMetros) {
+            rastro.suprimida = ultima;
+            suprimidas.increment();
+            return null;
+        }
+
+        Map<String, Object> mensagem = new LinkedHashMap<>();
+        mensagem.put("tipo", "COURIER_UPDATE");
+        mensagem.put("deliveryId", deliveryId);
+        mensagem.put("completo", completo);
+        mensagem.put("localizacao", Map.of("latitude", ultima.latitude(), "longitude", ultima.longitude()));
+        if (completo || motoristaMudou) {
+            Motorista motorista = rastro.motorista;
+            mensagem.put("motorista", Map.of(
+                    "nome", motorista.nome() != null ? motorista.nome() : "Motorista",
+                    "telefone", motorista.telefone() != null ? motorista.telefone() : ""));
+            mensagem.put("veiculo", motorista.veiculo() != null ? motorista.veiculo() : "");
+            rastro.motoristaEnviado = motorista;
+        }
+        mensagem.put("timestamp", ultima.capturadaEm().toEpochMilli());
+
+        rastro.enviada = ultima;
+        rastro.enviadoEm = agora;
+        if (completo) {
+            rastro.completoEm = agora;
+        }
+        return mensagem;
+    }
+
+    /**
+     * Grava em lote as posições novas e descarta entregas sem atualização há muito tempo
+     */
+    @Scheduled(fixedDelayString = "${app.entrega.localizacao.persistencia-ms:15000}")
+    public void gravarPendentes() {
+        Map<Rastro, Posicao> pendentes = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>();
+        rastros.forEach((deliveryId, rastro) -> {
+            synchronized (rastro) {
+                if (!rastro.gravada && rastro.ultima != null) {
+                    pendentes.put(rastro, rastro.ultima);
+                    ids.add(deliveryId);
+                }
+            }
+        });
+
+        if (!pendentes.isEmpty()) {
+            List<Posicao> posicoes = new ArrayList<>(pendentes.values());
+            try {
+                entregaRepository.atualizarLocalizacaoMotoristas(
+                        arrayLiteral(ids.stream().map(LocalizacaoMotoristaService::texto).toList()),
+                        arrayLiteral(posicoes.stream().map(Posicao::latitude).toList()),
+                        arrayLiteral(posicoes.stream().map(Posicao::longitude).toList()),
+                        arrayLiteral(posicoes.stream().map(p -> texto(p.capturadaEm().toString())).toList()));
+                pendentes.forEach((rastro, posicao) -> {
+                    synchronized (rastro) {
+                        // Se chegou posição nova durante a gravação, fica para a próxima rodada
+                        if (rastro.ultima == posicao) {
+                            rastro.gravada = true;
+                        }
+                    }
+                });
+                gravadas.increment(pendentes.size());
+            } catch (Exception e) {
+                log.error("❌ Erro ao gravar localização de {} motoristas: {}", pendentes.size(), e.getMessage());
+            }
+        }
+
+        Instant limite = Instant.now().minus(inatividade);
+        rastros.entrySet().removeIf(entrada -> {
+            Rastro rastro = entrada.getValue();
+            synchronized (rastro) {
+                return rastro.gravada && rastro.atualizadoEm.isBefore(limite);
+            }
+        });
+        encerradas.values().removeIf(encerradaEm -> encerradaEm.isBefore(limite));
+    }
+
+    /**
+     * Distância aproximada (equiretangular), suficiente para poucos metros
+     */
+    static double distanciaMetros(Posicao a, Posicao b) {
+        double latitudeMedia = Math.toRadians((a.latitude() + b.latitude()) / 2);
+        double dx = Math.toRadians(b.longitude() - a.longitude()) * Math.cos(latitudeMedia);
+        double dy = Math.toRadians(b.latitude() - a.latitude());
+        return Math.sqrt(dx * dx + dy * dy) * 6_371_000;
+    }
+
+    private static String texto(String valor) {
+        return "\"" + valor.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String arrayLiteral(List<?> valores) {
+        return valores.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    public record Posicao(double latitude, double longitude, Instant capturadaEm) {
+    }
+
+    record Motorista(String nome, String telefone, String veiculo) {
+    }
+
+    static final class Rastro {
+        Posicao ultima;
+        Motorista motorista;
+        boolean gravada = true;
+        Instant atualizadoEm = Instant.now();
+
+        Posicao enviada;
+        Posicao suprimida;
+        Motorista motoristaEnviado;
+        Instant enviadoEm;
+        Instant completoEm;
+    }
+}
@@ -2,6 +2,7 @@ package com.win.marketplace.service;
 
 import com.win.marketplace.dto.request.ErpConfigDTO;
 import com.win.marketplace.dto.response.ErpConfigResponseDTO;
+import com.win.marketplace.exception.ResourceNotFoundException;
 import com.win.marketplace.integration.erp.ErpApiClient;
 import com.win.marketplace.integration.erp.ErpClientFactory;
 import com.win.marketplace.integration.erp.ErpIntegrationException;
@@ -12,9 +13,14 @@ import com.win.marketplace.repository.LojistaErpConfigRepository;
 import com.win.marketplace.repository.LojistaRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +37,8 @@ public class LojistaErpConfigService {
     private final EncryptionService encryptionService;
     private final ErpClientFactory erpClientFactory;
     
+    private final SecureRandom secureRandom = new SecureRandom();
+    
     /**
      * Configura ou atualiza integração ERP do lojista
      */
@@ -47,6 +55,12 @@ public class LojistaErpConfigService {
                 .lojista(lojista)
                 .build());
         
+        // Trocar de ERP ou de endpoint invalida o cursor incremental
+        if (config.getErpType() != dto.erpType()
+                || (dto.apiUrl() != null && !dto.apiUrl().equals(config.getApiUrl()))) {
+            config.setStockCursorAt(null);
+        }
+        
         // Atualiza dados
         config.setErpType(dto.erpType());
         config.setApiUrl(dto.apiUrl() != null ? dto.apiUrl() : dto.erpType().getDefaultApiUrl());
@@ -78,6 +92,7 @@ public class LojistaErpConfigService {
         }
         
         LojistaErpConfig saved = erpConfigRepository.save(config);
+        erpClientFactory.invalidar(saved.getId());
         log.info("Configuração ERP salva com sucesso - ID: {}", saved.getId());
         
         return ErpConfigResponseDTO.fromEntity(saved);
@@ -107,10 +122,42 @@ public class LojistaErpConfigService {
                 config.setAtivo(false);
                 config.setSyncEnabled(false);
                 erpConfigRepository.save(config);
+                erpClientFactory.invalidar(config.getId());
                 log.info("ERP desvinculado com sucesso");
             });
     }
     
+    /**
+     * Gera (ou troca) o segredo dos webhooks de estoque do lojista.
+     * O valor em claro só é devolvido aqui; o banco guarda a versão criptografada.
+     * Só o dono do lojista pode gerar: quem tem o segredo escreve no estoque dele.
+     *
+     * @param emailUsuario e-mail do usuário autenticado
+     * @throws ResponseStatusException 403 se o lojista não pertence ao usuário
+     */
+    @Transactional
+    public String gerarSegredoWebhook(UUID lojistaId, String emailUsuario) {
+        Lojista lojista = lojistaRepository.findById(lojistaId)
+            .orElseThrow(() -> new ResourceNotFoundException("Lojista não encontrado"));
+        if (emailUsuario == null || !emailUsuario.equalsIgnoreCase(lojista.getUsuario().getEmail())) {
+            log.warn("🚫 Usuário {} tentou gerar segredo de webhook ERP do lojista {}", emailUsuario, lojistaId);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Lojista não pertence ao usuário autenticado");
+        }
+        
+        LojistaErpConfig config = erpConfigRepository.findByLojistaIdAndAtivoTrue(lojistaId)
+            .orElseThrow(() -> new ResourceNotFoundException("Lojista não possui integração ERP ativa"));
+        
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        String segredo = HexFormat.of().formatHex(bytes);
+        
+        config.setWebhookSecretEncrypted(encryptionService.encrypt(segredo));
+        erpConfigRepository.save(config);
+        log.info("Segredo de webhook ERP gerado para lojista: {}", lojistaId);
+        
+        return segredo;
+    }
+    
     /**
      * Lista todas as configurações ativas para sincronização
      */
@@ -143,4 +190,23 @@ public class LojistaErpConfigService {
                 erpConfigRepository.save(config);
             });
     }
+    
+    /**
+     * Registra sincronização de estoque bem-sucedida avançando o cursor incremental
+     * 
+     * @param cursor Instante em que a sincronização começou (próxima busca parte daqui)
+     * @param completa Se foi uma reconciliação completa de todos os SKUs
+     */
+    @Transactional
+    public void registrarSyncEstoque(UUID configId, LocalDateTime cursor, boolean completa) {
+        erpConfigRepository.findById(configId)
+            .ifPresent(config -> {
+                config.markSyncSuccess();
+                config.setStockCursorAt(cursor);
+                if (completa) {
+                    config.setLastFullSyncAt(cursor);
+                }
+                erpConfigRepository.save(config);
+            });
+    }
 }
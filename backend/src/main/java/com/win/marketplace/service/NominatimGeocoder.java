@@ -0,0 +1,302 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acesso ao Nominatim (OpenStreetMap) respeitando o limite de uso entre todas as réplicas.
+ *
+ * - Chamadores recebem um CompletableFuture e nunca dormem esperando o rate limit
+ * - Um único dispatcher por instância consome a fila de consultas pendentes
+ * - Antes de cada chamada o dispatcher pega um token de um token bucket no
+ *   Redis (script Lua atômico, relógio do próprio Redis), compartilhado entre
+ *   réplicas; sem Redis o bucket é local (limite por instância)
+ * - Consultas idênticas em andamento são agrupadas em um único future
+ * - Fila cheia: o future é concluído com null na hora (chamador usa fallback)
+ * - A geocodificação em lote tem fila própria, atendida só quando a fila
+ *   interativa está vazia; quem enfileira em lote espera vaga, então os
+ *   workers do lote andam no ritmo do bucket sem tomar a vez das requisições
+ */
+@Slf4j
+@Component
+public class NominatimGeocoder {
+
+    private static final String NOMINATIM_URL = "https://nominatim.openstreetmap.org/search?format=json&q=%s&limit=1";
+    private static final String CHAVE_BUCKET = "geocoding:nominatim:bucket";
+
+    // ARGV[1] = tokens por ms, ARGV[2] = capacidade. Retorna 0 (token obtido) ou ms até o próximo token.
+    private static final RedisScript<Long> SCRIPT_TOKEN = new DefaultRedisScript<>(
+            "local taxa = tonumber(ARGV[1]) " +
+            "local capacidade = tonumber(ARGV[2]) " +
+            "local t = redis.call('TIME') " +
+            "local agora = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "local estado = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(estado[1]) or capacidade " +
+            "local ts = tonumber(estado[2]) or agora " +
+            "tokens = math.min(capacidade, tokens + math.max(0, agora - ts) * taxa) " +
+            "local espera = 0 " +
+            "if tokens >= 1 then tokens = tokens - 1 else espera = math.ceil((1 - tokens) / taxa) end " +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(agora)) " +
+            "redis.call('PEXPIRE', KEYS[1], math.ceil(capacidade / taxa) + 1000) " +
+            "return espera",
+            Long.class);
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final boolean useRedis;
+    private final double tokensPorMs;
+    private final double capacidadeBucket;
+
+    private final BlockingQueue<Solicitacao> fila;
+    private final BlockingQueue<Solicitacao> filaLote;
+    /** Uma permissão por solicitação nas duas filas: o dispatcher dorme enquanto não há nada */
+    private final Semaphore pendentes = new Semaphore(0);
+    private final ConcurrentHashMap<String, CompletableFuture<Double[]>> emAndamento = new ConcurrentHashMap<>();
+    private volatile Thread dispatcher;
+
+    // Bucket local (fallback sem Redis)
+    private double tokensLocais;
+    private long ultimoAbastecimentoMs = System.currentTimeMillis();
+
+    private final Counter sucessos;
+    private final Counter semResultado;
+    private final Counter erros;
+    private final Counter agrupadas;
+    private final Counter rejeitadas;
+
+    public NominatimGeocoder(RestTemplate restTemplate,
+                             ObjectMapper objectMapper,
+                             ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.geocoding.nominatim.requisicoes-por-segundo:0.5}") double requisicoesPorSegundo,
+                             @Value("${app.geocoding.nominatim.rajada:1}") int rajada,
+                             @Value("${app.geocoding.nominatim.fila:500}") int capacidadeFila,
+                             @Value("${app.geocoding.nominatim.fila-lote:100}") int capacidadeFilaLote,
+                             @Value("${app.geocoding.nominatim.use-redis:true}") boolean useRedis) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.redisTemplateProvider = redisTemplateProvider;
+        this.useRedis = useRedis;
+        this.tokensPorMs = requisicoesPorSegundo / 1000.0;
+        this.capacidadeBucket = Math.max(1, rajada);
+        this.tokensLocais = capacidadeBucket;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.filaLote = new ArrayBlockingQueue<>(Math.max(1, capacidadeFilaLote));
+
+        this.sucessos = contador(meterRegistry, "sucesso");
+        this.semResultado = contador(meterRegistry, "vazio");
+        this.erros = contador(meterRegistry, "erro");
+        this.agrupadas = contador(meterRegistry, "agrupada");
+        this.rejeitadas = contador(meterRegistry, "rejeitada");
+        Gauge.builder("geocoding.nominatim.fila", fila, BlockingQueue::size).tag("fila", "interativa").register(meterRegistry);
+        Gauge.builder("geocoding.nominatim.fila", filaLote, BlockingQueue::size).tag("fila", "lote").register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("geocoding.nominatim.requisicoes").tag("resultado", resultado).register(registry);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        dispatcher = Thread.ofPlatform().daemon().name("nominatim-dispatcher").start(this::despachar);
+    }
+
+    @PreDestroy
+    public void parar() {
+        Thread thread = dispatcher;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        Solicitacao pendente;
+        while ((pendente = proxima()) != null) {
+            pendente.futuro().complete(null);
+        }
+    }
+
+    /**
+     * Enfileira a consulta (ou reaproveita uma idêntica em andamento)
+     *
+     * @return future com [latitude, longitude], ou null se não houver resultado
+     */
+    public CompletableFuture<Double[]> geocodificar(String consulta) {
+        String chave = consulta.trim().toLowerCase(Locale.ROOT);
+        CompletableFuture<Double[]> novo = new CompletableFuture<>();
+        CompletableFuture<Double[]> existente = emAndamento.putIfAbsent(chave, novo);
+        if (existente != null) {
+            agrupadas.increment();
+            return existente;
+        }
+        novo.whenComplete((coords, erro) -> emAndamento.remove(chave, novo));
+
+        if (fila.offer(new Solicitacao(consulta, novo))) {
+            pendentes.release();
+        } else {
+            rejeitadas.increment();
+            log.warn("⚠️ Fila do Nominatim cheia ({}), consulta descartada: {}", fila.size(), consulta);
+            novo.complete(null);
+        }
+        return novo;
+    }
+
+    /**
+     * Enfileira uma consulta da geocodificação em lote. Bloqueia enquanto a
+     * fila do lote estiver cheia e só é atendida com a fila interativa vazia.
+     *
+     * @return future com [latitude, longitude], ou null se não houver resultado
+     */
+    public CompletableFuture<Double[]> geocodificarEmLote(String consulta) throws InterruptedException {
+        String chave = consulta.trim().toLowerCase(Locale.ROOT);
+        CompletableFuture<Double[]> novo = new CompletableFuture<>();
+        CompletableFuture<Double[]> existente = emAndamento.putIfAbsent(chave, novo);
+        if (existente != null) {
+            agrupadas.increment();
+            return existente;
+        }
+        novo.whenComplete((coords, erro) -> emAndamento.remove(chave, novo));
+
+        try {
+            filaLote.put(new Solicitacao(consulta, novo));
+        } catch (InterruptedException e) {
+            novo.complete(null);
+            throw e;
+        }
+        pendentes.release();
+        return novo;
+    }
+
+    /**
+     * Próxima solicitação: interativas primeiro
+     */
+    Solicitacao proxima() {
+        Solicitacao solicitacao = fila.poll();
+        return solicitacao != null ? solicitacao : filaLote.poll();
+    }
+
+    private void despachar() {
+        log.info("🗺️ Dispatcher do Nominatim iniciado ({} req/s)", tokensPorMs * 1000);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                pendentes.acquire();
+                // Token antes de escolher: uma interativa que chegue durante a espera passa à frente do lote
+                aguardarToken();
+                Solicitacao solicitacao = proxima();
+                if (solicitacao != null) {
+                    solicitacao.futuro().complete(consultar(solicitacao.consulta()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("❌ Erro no dispatcher do Nominatim: {}", e.getMessage(), e);
+            }
+        }
+        log.info("Dispatcher do Nominatim encerrado");
+    }
+
+    /**
+     * Bloqueia só o dispatcher até haver token disponível no bucket
+     */
+    private void aguardarToken() throws InterruptedException {
+        long espera;
+        while ((espera = tentarObterToken()) > 0) {
+            TimeUnit.MILLISECONDS.sleep(espera);
+        }
+    }
+
+    long tentarObterToken() {
+        StringRedisTemplate redisTemplate = useRedis ? redisTemplateProvider.getIfAvailable() : null;
+        if (redisTemplate != null) {
+            try {
+                Long espera = redisTemplate.execute(SCRIPT_TOKEN, List.of(CHAVE_BUCKET),
+                        String.valueOf(tokensPorMs), String.valueOf(capacidadeBucket));
+                if (espera != null) {
+                    return espera;
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Token bucket do Nominatim indisponível no Redis, usando limite local: {}", e.getMessage());
+            }
+        }
+        return tentarObterTokenLocal(System.currentTimeMillis());
+    }
+
+    synchronized long tentarObterTokenLocal(long agoraMs) {
+        tokensLocais = Math.min(capacidadeBucket, tokensLocais + Math.max(0, agoraMs - ultimoAbastecimentoMs) * tokensPorMs);
+        ultimoAbastecimentoMs = agoraMs;
+        if (tokensLocais >= 1) {
+            tokensLocais -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokensLocais) / tokensPorMs);
+    }
+
+    private Double[] consultar(String endereco) {
+        try {
+            String url = String.format(NOMINATIM_URL, URLEncoder.encode(endereco, StandardCharsets.UTF_8));
+            log.info("📡 Nominatim query: {}", endereco);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("User-Agent", "WinMarketplace/2.0 (suporte@winmarketplace.com.br)");
+            headers.set("Accept-Language", "pt-BR,pt;q=0.9");
+            HttpEntity<String> entity = new HttpEntity<>(headers);
+
+            @SuppressWarnings("null")
+            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+
+            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+                JsonNode resultados = objectMapper.readTree(response.getBody());
+
+                if (resultados.isArray() && resultados.size() > 0) {
+                    JsonNode primeiro = resultados.get(0);
+                    String latStr = primeiro.path("lat").asText();
+                    String lonStr = primeiro.path("lon").asText();
+
+                    if (!latStr.isEmpty() && !lonStr.isEmpty()) {
+                        Double lat = Double.parseDouble(latStr);
+                        Double lon = Double.parseDouble(lonStr);
+                        log.info("✅ Nominatim sucesso: lat={}, lon={}", lat, lon);
+                        sucessos.increment();
+                        return new Double[]{lat, lon};
+                    }
+                }
+            }
+            log.warn("❌ Nominatim sem resultado para: {}", endereco);
+            semResultado.increment();
+        } catch (Exception e) {
+            erros.increment();
+            log.error("❌ Falha Nominatim: {} - {}", e.getClass().getSimpleName(), e.getMessage());
+        }
+        return null;
+    }
+
+    record Solicitacao(String consulta, CompletableFuture<Double[]> futuro) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.model.Notificacao;
+import com.win.marketplace.model.NotificacaoOutbox;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.repository.NotificacaoOutboxRepository;
+import com.win.marketplace.repository.NotificacaoRepository;
+import com.win.marketplace.repository.UsuarioRepository;
+import com.win.marketplace.service.cache.LocalTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Pipeline de notificações de mudança de status de pedido (padrão outbox).
+ *
+ * A transição de status grava apenas um evento em notificacoes_outbox, na
+ * mesma transação do pedido. O dispatcher consome os eventos em lote:
+ * monta as notificações do cliente e de todos os admins, grava tudo com
+ * saveAll (batch insert do Hibernate) e, após o commit, faz o push via
+ * WebSocket. A lista de admins fica em cache local por alguns segundos.
+ *
+ * Se um lote falhar, os eventos são reprocessados um a um para isolar o
+ * evento problemático; após max-tentativas o evento fica como FALHOU.
+ */
+@Slf4j
+@Service
+public class NotificacaoOutboxService {
+
+    static final String CANAL_SISTEMA = "SISTEMA";
+    static final String CANAL_WEBSOCKET = "WEBSOCKET";
+
+    private static final String CHAVE_ADMINS = "ADMIN";
+
+    private final NotificacaoOutboxRepository outboxRepository;
+    private final NotificacaoRepository notificacaoRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final WebSocketNotificationService webSocketNotificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalTtlCache<String, List<UUID>> destinatariosAdmin;
+    private final int tamanhoLote;
+    private final int maxTentativas;
+
+    private final Counter enviadasSistema;
+    private final Counter enviadasWebSocket;
+    private final Counter falhasSistema;
+    private final Counter falhasWebSocket;
+    private final Counter eventosProcessados;
+    private final Counter eventosComFalha;
+    private final Timer tempoLote;
+
+    public NotificacaoOutboxService(NotificacaoOutboxRepository outboxRepository,
+                                    NotificacaoRepository notificacaoRepository,
+                                    UsuarioRepository usuarioRepository,
+                                    WebSocketNotificationService webSocketNotificationService,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.notificacoes.outbox.tamanho-lote:200}") int tamanhoLote,
+                                    @Value("${app.notificacoes.outbox.max-tentativas:5}") int maxTentativas,
+                                    @Value("${app.notificacoes.outbox.admins-cache-ttl-segundos:60}") long ttlAdminsSegundos) {
+        this.outboxRepository = outboxRepository;
+        this.notificacaoRepository = notificacaoRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.webSocketNotificationService = webSocketNotificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.destinatariosAdmin = new LocalTtlCache<>(1, Duration.ofSeconds(ttlAdminsSegundos));
+        this.tamanhoLote = tamanhoLote;
+        this.maxTentativas = maxTentativas;
+
+        this.enviadasSistema = contador(meterRegistry, "notificacoes.enviadas", CANAL_SISTEMA);
+        this.enviadasWebSocket = contador(meterRegistry, "notificacoes.enviadas", CANAL_WEBSOCKET);
+        this.falhasSistema = contador(meterRegistry, "notificacoes.falhas", CANAL_SISTEMA);
+        this.falhasWebSocket = contador(meterRegistry, "notificacoes.falhas", CANAL_WEBSOCKET);
+        this.eventosProcessados = Counter.builder("notificacoes.outbox.eventos").tag("resultado", "processado").register(meterRegistry);
+        this.eventosComFalha = Counter.builder("notificacoes.outbox.eventos").tag("resultado", "falha").register(meterRegistry);
+        this.tempoLote = Timer.builder("notificacoes.outbox.lote").register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String nome, String canal) {
+        return Counter.builder(nome).tag("canal", canal).register(registry);
+    }
+
+    /**
+     * Grava o evento de mudança de status (uma linha, na transação do chamador)
+     */
+    @Transactional
+    public void registrarMudancaStatus(Pedido pedido, Pedido.StatusPedido statusAnterior, Pedido.StatusPedido statusNovo) {
+        NotificacaoOutbox evento = new NotificacaoOutbox();
+        evento.setPedidoId(pedido.getId());
+        evento.setNumeroPedido(pedido.getNumeroPedido());
+        evento.setUsuarioId(pedido.getUsuario().getId());
+        evento.setStatusAnterior(statusAnterior);
+        evento.setStatusNovo(statusNovo);
+        outboxRepository.save(evento);
+    }
+
+    public int getTamanhoLote() {
+        return tamanhoLote;
+    }
+
+    /**
+     * Processa um lote de eventos pendentes
+     *
+     * @return quantidade de eventos reivindicados (0 = outbox vazia)
+     */
+    public int processarLote() {
+        List<UUID> reivindicados = new ArrayList<>();
+        try {
+            Integer processados = tempoLote.record(() -> transactionTemplate.execute(status -> {
+                List<NotificacaoOutbox> eventos = outboxRepository.reivindicarPendentes(tamanhoLote);
+                eventos.forEach(evento -> reivindicados.add(evento.getId()));
+                entregar(eventos);
+                return eventos.size();
+            }));
+            return processados != null ? processados : 0;
+        } catch (Exception e) {
+            falhasSistema.increment();
+            log.warn("⚠️ Falha no lote de {} notificações, reprocessando individualmente: {}",
+                    reivindicados.size(), e.getMessage());
+            reivindicados.forEach(this::processarIndividualmente);
+            return reivindicados.size();
+        }
+    }
+
+    private void processarIndividualmente(UUID eventoId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.findById(eventoId)
+                    .filter(evento -> evento.getStatus() == NotificacaoOutbox.StatusEvento.PENDENTE)
+                    .ifPresent(evento -> entregar(List.of(evento))));
+        } catch (Exception e) {
+            falhasSistema.increment();
+            eventosComFalha.increment();
+            log.error("❌ Evento de notificação {} falhou: {}", eventoId, e.getMessage());
+            String erro = e.getMessage() != null && e.getMessage().length() > 500
+                    ? e.getMessage().substring(0, 500) : e.getMessage();
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.registrarFalha(List.of(eventoId), erro, maxTentativas));
+        }
+    }
+
+    /**
+     * Grava as notificações dos eventos em lote e agenda o push WebSocket para após o commit
+     */
+    private void entregar(List<NotificacaoOutbox> eventos) {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        List<UUID> admins = listarAdmins();
+        List<Notificacao> notificacoes = new ArrayList<>(eventos.size() * (admins.size() + 1));
+        for (NotificacaoOutbox evento : eventos) {
+            notificacoes.add(criarNotificacao(evento.getUsuarioId(),
+                    "Atualização do seu pedido #" + evento.getNumeroPedido(),
+                    mensagemCliente(evento)));
+            for (UUID adminId : admins) {
+                notificacoes.add(criarNotificacao(adminId,
+                        "Pedido " + evento.getNumeroPedido() + " alterado",
+                        "Pedido " + evento.getNumeroPedido() + " mudou de " + evento.getStatusAnterior()
+                                + " para " + evento.getStatusNovo() + "."));
+            }
+        }
+
+        notificacaoRepository.saveAll(notificacoes);
+        outboxRepository.marcarEnviados(eventos.stream().map(NotificacaoOutbox::getId).toList(), OffsetDateTime.now());
+
+        enviadasSistema.increment(notificacoes.size());
+        eventosProcessados.increment(eventos.size());
+        aposCommit(() -> notificacoes.forEach(this::enviarWebSocket));
+        log.debug("Outbox: {} eventos -> {} notificações", eventos.size(), notificacoes.size());
+    }
+
+    private String mensagemCliente(NotificacaoOutbox evento) {
+        return switch (evento.getStatusNovo()) {
+            case PRONTO -> "Seu pedido está pronto e AGUARDANDO MOTORISTA para retirada.";
+            default -> "Status alterado de " + evento.getStatusAnterior() + " para " + evento.getStatusNovo() + ".";
+        };
+    }
+
+    private Notificacao criarNotificacao(UUID usuarioId, String titulo, String mensagem) {
+        Notificacao notificacao = new Notificacao();
+        notificacao.setUsuario(usuarioRepository.getReferenceById(usuarioId));
+        notificacao.setTipo("INFO");
+        notificacao.setCanal(CANAL_SISTEMA);
+        notificacao.setTitulo(titulo);
+        notificacao.setMensagem(mensagem);
+        notificacao.setLida(false);
+        return notificacao;
+    }
+
+    private void enviarWebSocket(Notificacao notificacao) {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("tipo", "NOTIFICACAO");
+        dados.put("id", notificacao.getId());
+        dados.put("titulo", notificacao.getTitulo());
+        dados.put("mensagem", notificacao.getMensagem());
+        dados.put("timestamp", System.currentTimeMillis());
+        boolean enviado = webSocketNotificationService.notificarUsuario(notificacao.getUsuario().getId(), dados);
+        (enviado ? enviadasWebSocket : falhasWebSocket).increment();
+    }
+
+    private List<UUID> listarAdmins() {
+        List<UUID> admins = destinatariosAdmin.get(CHAVE_ADMINS);
+        if (admins == null) {
+            admins = List.copyOf(usuarioRepository.findIdsByPerfilAtivo("ADMIN"));
+            destinatariosAdmin.put(CHAVE_ADMINS, admins);
+        }
+        return admins;
+    }
+
+    /**
+     * Remove eventos já enviados mais antigos que a retenção
+     */
+    @Transactional
+    public int removerEnviadosAntigos(int retencaoDias) {
+        return outboxRepository.removerEnviadosAntesDe(OffsetDateTime.now().minusDays(retencaoDias));
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.repository.PedidoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Gerador de números de pedido únicos e legíveis: PEDaaMMdd-NNNNNNNN
+ *
+ * A parte numérica vem da sequência pedido_numero_seq alocada em blocos (hi/lo):
+ * cada nextval reserva TAMANHO_BLOCO números para esta instância, que os
+ * distribui em memória. Só 1 em cada TAMANHO_BLOCO pedidos faz ida ao banco e
+ * não há colisão entre instâncias nem entre checkouts simultâneos. A data no
+ * prefixo torna o número ordenável e fácil de ler no atendimento.
+ *
+ * Números de um bloco não usados (restart da instância) são simplesmente pulados.
+ */
+@Slf4j
+@Component
+public class NumeroPedidoGenerator {
+
+    /** Deve ser igual ao INCREMENT BY de pedido_numero_seq (migração V21) */
+    static final int TAMANHO_BLOCO = 100;
+
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private final LongSupplier proximoBloco;
+    private final Runnable criarSequencia;
+    private final Clock relogio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long proximo;
+    private long limite; // exclusivo: bloco atual = [proximo, limite)
+
+    @Autowired
+    public NumeroPedidoGenerator(PedidoRepository pedidoRepository,
+                                 @Value("${app.pedidos.fuso:America/Sao_Paulo}") String fuso) {
+        this(pedidoRepository::proximoBlocoNumeroPedido, pedidoRepository::criarSequenciaNumeroPedido,
+                Clock.system(ZoneId.of(fuso)));
+    }
+
+    NumeroPedidoGenerator(LongSupplier proximoBloco, Runnable criarSequencia, Clock relogio) {
+        this.proximoBloco = proximoBloco;
+        this.criarSequencia = criarSequencia;
+        this.relogio = relogio;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void garantirSequencia() {
+        try {
+            criarSequencia.run();
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível garantir a sequência pedido_numero_seq: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gera o próximo número de pedido
+     */
+    public String gerar() {
+        return "PED" + LocalDate.now(relogio).format(FORMATO_DATA) + "-" + String.format("%08d", proximoValor());
+    }
+
+    long proximoValor() {
+        lock.lock();
+        try {
+            if (proximo >= limite) {
+                long inicioBloco = proximoBloco.getAsLong();
+                proximo = inicioBloco;
+                limite = inicioBloco + TAMANHO_BLOCO;
+                log.debug("Novo bloco de números de pedido alocado: [{}, {})", proximo, limite);
+            }
+            return proximo++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,22 +2,35 @@ package com.win.marketplace.service;
 
 import com.win.marketplace.dto.request.ItemPedidoRequestDTO;
 import com.win.marketplace.dto.request.PedidoCreateRequestDTO;
+import com.win.marketplace.dto.response.PedidoPaginaResponseDTO;
 import com.win.marketplace.dto.response.PedidoResponseDTO;
 import com.win.marketplace.dto.mapper.PedidoMapper;
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.exception.ResourceNotFoundException;
 import com.win.marketplace.model.*;
 import com.win.marketplace.repository.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -29,10 +42,15 @@ public class PedidoService {
     private final UsuarioRepository usuarioRepository;
     private final MotoristaRepository motoristaRepository;
     private final ProdutoRepository produtoRepository;
+    private final ProdutoService produtoService;
     private final PedidoMapper pedidoMapper;
     private final ObjectMapper objectMapper;
 
     private final PedidoStatusService pedidoStatusService;
+    private final NumeroPedidoGenerator numeroPedidoGenerator;
+
+    static final int LIMITE_PADRAO_PAGINA = 50;
+    static final int LIMITE_MAXIMO_PAGINA = 100;
 
     @SuppressWarnings("null")
     public PedidoResponseDTO criarPedido(PedidoCreateRequestDTO requestDTO) {
@@ -41,7 +59,7 @@ public class PedidoService {
 
         Pedido pedido = new Pedido();
         pedido.setUsuario(usuario);
-        pedido.setNumeroPedido(gerarNumeroPedido());
+        pedido.setNumeroPedido(numeroPedidoGenerator.gerar());
         pedido.setStatus(Pedido.StatusPedido.PENDENTE);
         
         // Mapear endereço de entrega
@@ -66,38 +84,36 @@ public class PedidoService {
         pedido.setDesconto(requestDTO.desconto() != null ? requestDTO.desconto() : BigDecimal.ZERO);
         pedido.setFrete(requestDTO.frete() != null ? requestDTO.frete() : BigDecimal.ZERO);
         
-        // Mapear itens e determinar lojista
-        List<ItemPedido> itens = new ArrayList<>();
-        Lojista lojistaDoPedido = null;
+        // Carregar todos os produtos do carrinho (com lojista) em uma única query
+        Map<UUID, Integer> quantidadePorProduto = new TreeMap<>();
+        for (ItemPedidoRequestDTO itemDTO : requestDTO.itens()) {
+            quantidadePorProduto.merge(itemDTO.produtoId(), itemDTO.quantidade(), Integer::sum);
+        }
+        Map<UUID, Produto> produtos = produtoRepository.findComLojistaByIdIn(quantidadePorProduto.keySet()).stream()
+                .collect(Collectors.toMap(Produto::getId, Function.identity()));
         
+        // Validar em memória: existência, lojista único, preço e estoque
+        Lojista lojistaDoPedido = validarProdutosDoCarrinho(requestDTO.itens(), quantidadePorProduto, produtos);
+        
+        // Reservar estoque de forma atômica (UPDATE ... WHERE estoque >= quantidade)
+        produtoService.reservarEstoque(quantidadePorProduto);
+        pedido.setEstoqueReservado(true);
+        
+        // Itens são inseridos em lote via cascade (hibernate.jdbc.batch_size + order_inserts)
+        List<ItemPedido> itens = new ArrayList<>(requestDTO.itens().size());
         for (ItemPedidoRequestDTO itemDTO : requestDTO.itens()) {
-            Produto produto = produtoRepository.findById(itemDTO.produtoId())
-                    .orElseThrow(() -> new RuntimeException("Produto não encontrado: " + itemDTO.produtoId()));
-            
-            // ✅ FIX: Definir lojista do pedido baseado no primeiro produto
-            if (lojistaDoPedido == null) {
-                lojistaDoPedido = produto.getLojista();
-                if (lojistaDoPedido == null) {
-                    throw new RuntimeException("Produto sem lojista associado: " + produto.getNome());
-                }
-            } else {
-                // Validar que todos os produtos são do mesmo lojista
-                if (!lojistaDoPedido.getId().equals(produto.getLojista().getId())) {
-                    throw new RuntimeException("Todos os produtos devem ser do mesmo lojista. " +
-                            "Produto '" + produto.getNome() + "' pertence a outro lojista.");
-                }
-            }
+            Produto produto = produtos.get(itemDTO.produtoId());
             
             ItemPedido item = new ItemPedido();
             item.setPedido(pedido);
             item.setProduto(produto);
-            item.setLojista(produto.getLojista());
+            item.setLojista(lojistaDoPedido);
             item.setNomeProduto(produto.getNome());
             item.setQuantidade(itemDTO.quantidade());
-            item.setPrecoUnitario(itemDTO.precoUnitario());
+            item.setPrecoUnitario(produto.getPreco());
             
             // Calcular subtotal e preco total do item
-            BigDecimal subtotal = itemDTO.precoUnitario().multiply(BigDecimal.valueOf(itemDTO.quantidade()));
+            BigDecimal subtotal = produto.getPreco().multiply(BigDecimal.valueOf(itemDTO.quantidade()));
             item.setSubtotal(subtotal);
             item.setPrecoTotal(subtotal);
             
@@ -116,32 +132,31 @@ public class PedidoService {
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarPedidosPorUsuario(UUID usuarioId) {
-        // Usa query com join fetch para evitar LazyInitializationException
-        List<Pedido> pedidos = pedidoRepository.findByUsuarioIdWithDetails(usuarioId);
-        return pedidoMapper.toResponseDTOList(pedidos);
+    public PedidoPaginaResponseDTO listarPedidosPorUsuario(UUID usuarioId, String cursor, Integer limite) {
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIdsPorUsuario(
+                usuarioId, posicao.criadoEm(), posicao.id(), pagina));
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarPedidosPorMotorista(UUID motoristaId) {
-        List<Pedido> pedidos = pedidoRepository.findByMotoristaId(motoristaId);
-        return pedidoMapper.toResponseDTOList(pedidos);
+    public PedidoPaginaResponseDTO listarPedidosPorMotorista(UUID motoristaId, String cursor, Integer limite) {
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIdsPorMotorista(
+                motoristaId, posicao.criadoEm(), posicao.id(), pagina));
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarPorStatus(Pedido.StatusPedido status) {
-        List<Pedido> pedidos = pedidoRepository.findByStatus(status);
-        return pedidoMapper.toResponseDTOList(pedidos);
+    public PedidoPaginaResponseDTO listarPorStatus(Pedido.StatusPedido status, String cursor, Integer limite) {
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIdsPorStatus(
+                status, posicao.criadoEm(), posicao.id(), pagina));
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarPedidosPorLojista(UUID lojistaId) {
-        List<Pedido> pedidos = pedidoRepository.findByLojistaId(lojistaId);
-        return pedidoMapper.toResponseDTOList(pedidos);
+    public PedidoPaginaResponseDTO listarPedidosPorLojista(UUID lojistaId, String cursor, Integer limite) {
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIdsPorLojista(
+                lojistaId, posicao.criadoEm(), posicao.id(), pagina));
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarPedidosPagosPendentesPreparacaoPorLojista(UUID lojistaId) {
+    public PedidoPaginaResponseDTO listarPedidosPagosPendentesPreparacaoPorLojista(UUID lojistaId, String cursor, Integer limite) {
         List<Pedido.StatusPedido> statusesPendentesPreparacao = Arrays.asList(
                 Pedido.StatusPedido.PENDENTE,
                 Pedido.StatusPedido.CONFIRMADO,
@@ -150,19 +165,16 @@ public class PedidoService {
                 Pedido.StatusPedido.EM_TRANSITO
         );
 
-        List<Pedido> pedidos = pedidoRepository.findByLojistaIdAndStatusPagamentoAndStatusIn(
-                lojistaId,
-                Pedido.StatusPagamento.APROVADO,
-                statusesPendentesPreparacao
-        );
-
-        return pedidoMapper.toResponseDTOList(pedidos);
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIdsPorLojistaEStatusPagamento(
+                lojistaId, Pedido.StatusPagamento.APROVADO, statusesPendentesPreparacao,
+                posicao.criadoEm(), posicao.id(), pagina));
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarPedidosPorLojistaEStatus(UUID lojistaId, Pedido.StatusPedido status) {
-        List<Pedido> pedidos = pedidoRepository.findByLojistaIdAndStatus(lojistaId, status);
-        return pedidoMapper.toResponseDTOList(pedidos);
+    public PedidoPaginaResponseDTO listarPedidosPorLojistaEStatus(UUID lojistaId, Pedido.StatusPedido status,
+                                                                  String cursor, Integer limite) {
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIdsPorLojistaEStatus(
+                lojistaId, status, posicao.criadoEm(), posicao.id(), pagina));
     }
 
     @Transactional(readOnly = true)
@@ -258,9 +270,9 @@ public class PedidoService {
     }
 
     @Transactional(readOnly = true)
-    public List<PedidoResponseDTO> listarTodos() {
-        List<Pedido> pedidos = pedidoRepository.findAll();
-        return pedidoMapper.toResponseDTOList(pedidos);
+    public PedidoPaginaResponseDTO listarTodos(String cursor, Integer limite) {
+        return paginar(cursor, limite, (posicao, pagina) -> pedidoRepository.findPaginaIds(
+                posicao.criadoEm(), posicao.id(), pagina));
     }
 
     /**
@@ -271,9 +283,51 @@ public class PedidoService {
         return pedidoRepository.countByUsuarioId(usuarioId);
     }
 
-    private String gerarNumeroPedido() {
-        // Gera um número de pedido único baseado no timestamp
-        return "PED" + System.currentTimeMillis();
+    /**
+     * Valida o carrinho contra os produtos já carregados, sem novas idas ao banco
+     *
+     * @return lojista único do pedido
+     */
+    private Lojista validarProdutosDoCarrinho(List<ItemPedidoRequestDTO> itens,
+                                              Map<UUID, Integer> quantidadePorProduto,
+                                              Map<UUID, Produto> produtos) {
+        Lojista lojistaDoPedido = null;
+        
+        for (ItemPedidoRequestDTO itemDTO : itens) {
+            Produto produto = produtos.get(itemDTO.produtoId());
+            if (produto == null) {
+                throw new ResourceNotFoundException("Produto não encontrado: " + itemDTO.produtoId());
+            }
+            if (!Boolean.TRUE.equals(produto.getAtivo())) {
+                throw new BusinessException("Produto '" + produto.getNome() + "' não está mais disponível");
+            }
+            if (produto.getLojista() == null) {
+                throw new BusinessException("Produto sem lojista associado: " + produto.getNome());
+            }
+            
+            // ✅ FIX: Definir lojista do pedido baseado no primeiro produto
+            if (lojistaDoPedido == null) {
+                lojistaDoPedido = produto.getLojista();
+            } else if (!lojistaDoPedido.getId().equals(produto.getLojista().getId())) {
+                throw new BusinessException("Todos os produtos devem ser do mesmo lojista. " +
+                        "Produto '" + produto.getNome() + "' pertence a outro lojista.");
+            }
+            
+            // O preço cobrado é sempre o do cadastro; divergência indica carrinho desatualizado
+            if (itemDTO.precoUnitario().compareTo(produto.getPreco()) != 0) {
+                throw new BusinessException(String.format(
+                        "Preço do produto '%s' foi atualizado para R$ %.2f. Atualize o carrinho.",
+                        produto.getNome(), produto.getPreco()));
+            }
+            
+            int quantidadeTotal = quantidadePorProduto.get(produto.getId());
+            if (produto.getEstoque() < quantidadeTotal) {
+                throw new BusinessException("Estoque insuficiente para '" + produto.getNome() +
+                        "'. Disponível: " + produto.getEstoque() + ", Solicitado: " + quantidadeTotal);
+            }
+        }
+        
+        return lojistaDoPedido;
     }
 
     private void calcularTotais(Pedido pedido) {
@@ -302,4 +356,74 @@ public class PedidoService {
         
         pedido.setTotal(total);
     }
+
+    /**
+     * Paginação por keyset em duas fases: primeiro só os IDs da página (index-only
+     * sobre criado_em, id), depois os pedidos dessa página com itens e imagens em
+     * uma única query. Busca limite + 1 IDs para saber se há próxima página sem COUNT(*).
+     * Sem limite usa LIMITE_PADRAO_PAGINA.
+     */
+    private PedidoPaginaResponseDTO paginar(String cursor, Integer limite, BuscaIdsPagina buscaIds) {
+        int tamanhoPagina = Math.max(1, Math.min(limite != null ? limite : LIMITE_PADRAO_PAGINA, LIMITE_MAXIMO_PAGINA));
+        CursorPedido posicao = CursorPedido.decodificar(cursor);
+
+        List<UUID> ids = buscaIds.buscar(posicao, PageRequest.ofSize(tamanhoPagina + 1));
+        boolean temProxima = ids.size() > tamanhoPagina;
+        List<UUID> idsPagina = temProxima ? ids.subList(0, tamanhoPagina) : ids;
+        if (idsPagina.isEmpty()) {
+            return new PedidoPaginaResponseDTO(List.of(), null);
+        }
+
+        // IN não preserva a ordem: reordena conforme a fase 1
+        Map<UUID, Pedido> porId = pedidoRepository.findComDetalhesByIdIn(idsPagina).stream()
+                .collect(Collectors.toMap(Pedido::getId, Function.identity(), (a, b) -> a));
+        List<Pedido> pedidos = idsPagina.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        String proximoCursor = null;
+        if (temProxima && !pedidos.isEmpty()) {
+            Pedido ultimo = pedidos.get(pedidos.size() - 1);
+            proximoCursor = new CursorPedido(ultimo.getCriadoEm(), ultimo.getId()).codificar();
+        }
+        return new PedidoPaginaResponseDTO(pedidoMapper.toResponseDTOList(pedidos), proximoCursor);
+    }
+
+    @FunctionalInterface
+    private interface BuscaIdsPagina {
+        List<UUID> buscar(CursorPedido posicao, Pageable pagina);
+    }
+
+    /**
+     * Posição do keyset (criadoEm, id) codificada em Base64 URL-safe
+     */
+    private record CursorPedido(OffsetDateTime criadoEm, UUID id) {
+
+        // Antes de qualquer pedido real: primeira página
+        private static final CursorPedido INICIO = new CursorPedido(
+                OffsetDateTime.parse("9999-12-31T23:59:59Z"),
+                UUID.fromString("ffffffff-ffff-ffff-ffff-ffffffffffff"));
+
+        String codificar() {
+            String valor = criadoEm + "_" + id;
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static CursorPedido decodificar(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return INICIO;
+            }
+            try {
+                String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separador = valor.lastIndexOf('_');
+                return new CursorPedido(
+                        OffsetDateTime.parse(valor.substring(0, separador)),
+                        UUID.fromString(valor.substring(separador + 1)));
+            } catch (RuntimeException e) {
+                throw new BusinessException("Cursor de pedidos inválido");
+            }
+        }
+    }
 }
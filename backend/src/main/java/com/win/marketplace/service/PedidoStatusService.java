@@ -4,18 +4,14 @@ import com.win.marketplace.exception.BusinessException;
 import com.win.marketplace.exception.ResourceNotFoundException;
 import com.win.marketplace.model.Pedido;
 import com.win.marketplace.model.PedidoStatusHistorico;
-import com.win.marketplace.model.Usuario;
 import com.win.marketplace.repository.PedidoRepository;
 import com.win.marketplace.repository.PedidoStatusHistoricoRepository;
-import com.win.marketplace.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.UUID;
 
 @Slf4j
@@ -26,9 +22,11 @@ public class PedidoStatusService {
 
     private final PedidoRepository pedidoRepository;
     private final PedidoStatusHistoricoRepository historicoRepository;
-    private final NotificacaoService notificacaoService;
-    private final UsuarioRepository usuarioRepository;
-    private final EntregaService entregaService;
+    private final NotificacaoOutboxService notificacaoOutboxService;
+    private final DespachoUberService despachoUberService;
+    private final RankingVendasService rankingVendasService;
+    private final ProdutoService produtoService;
+    private final CodigoEntregaAllocator codigoEntregaAllocator;
 
     public Pedido transicionarStatus(UUID pedidoId, Pedido.StatusPedido novoStatus) {
         Pedido pedido = pedidoRepository.findById(pedidoId)
@@ -47,6 +45,13 @@ public class PedidoStatusService {
 
         Pedido pedidoAtualizado = pedidoRepository.save(pedido);
 
+        // Contadores de "mais vendidos" na mesma transação da mudança de status
+        if (novoStatus == Pedido.StatusPedido.CONFIRMADO) {
+            rankingVendasService.registrarConfirmacao(pedidoAtualizado);
+        } else if (novoStatus == Pedido.StatusPedido.CANCELADO) {
+            rankingVendasService.registrarCancelamento(pedidoAtualizado, statusAnterior);
+        }
+
         try {
             registrarHistorico(pedidoAtualizado, statusAnterior, novoStatus);
         } catch (Exception exception) {
@@ -58,27 +63,11 @@ public class PedidoStatusService {
             );
         }
 
-        try {
-            solicitarUberAutomaticamenteQuandoPronto(pedidoAtualizado, novoStatus);
-        } catch (Exception exception) {
-            log.error(
-                    "Falha ao solicitar Uber automaticamente para pedido {}: {}",
-                    pedidoAtualizado.getNumeroPedido(),
-                    exception.getMessage(),
-                    exception
-            );
-        }
+        // Só enfileira o despacho (mesma transação); a chamada à Uber é feita pelos workers
+        agendarUberQuandoPronto(pedidoAtualizado, novoStatus);
 
-        try {
-            enviarNotificacoes(pedidoAtualizado, statusAnterior, novoStatus);
-        } catch (Exception exception) {
-            log.error(
-                    "Falha ao enviar notificações do pedido {}: {}",
-                    pedidoAtualizado.getNumeroPedido(),
-                    exception.getMessage(),
-                    exception
-            );
-        }
+        // Uma linha na outbox; notificações de cliente/admins são gravadas e enviadas pelo dispatcher
+        notificacaoOutboxService.registrarMudancaStatus(pedidoAtualizado, statusAnterior, novoStatus);
 
         log.info("Status do pedido {} alterado de {} para {}",
                 pedidoAtualizado.getNumeroPedido(), statusAnterior, novoStatus);
@@ -143,23 +132,21 @@ public class PedidoStatusService {
 
         if (novoStatus == Pedido.StatusPedido.PRONTO
                 && (pedido.getCodigoEntrega() == null || pedido.getCodigoEntrega().isBlank())) {
-            pedido.setCodigoEntrega(gerarCodigoEntrega4DigitosUnico());
+            pedido.setCodigoEntrega(codigoEntregaAllocator.alocar());
         }
 
         if (novoStatus == Pedido.StatusPedido.ENTREGUE) {
             pedido.setEntregueEm(OffsetDateTime.now());
         }
-    }
 
-    private String gerarCodigoEntrega4DigitosUnico() {
-        for (int tentativa = 0; tentativa < 100; tentativa++) {
-            String codigo = String.format("%04d", ThreadLocalRandom.current().nextInt(10000));
-            if (!pedidoRepository.existsByCodigoEntrega(codigo)) {
-                return codigo;
-            }
+        if (novoStatus == Pedido.StatusPedido.CANCELADO) {
+            produtoService.devolverEstoqueReservado(pedido);
         }
 
-        throw new BusinessException("Não foi possível gerar código de retirada único no momento");
+        // Código de retirada volta ao pool quando o pedido sai de PRONTO/EM_TRANSITO
+        if (novoStatus == Pedido.StatusPedido.ENTREGUE || novoStatus == Pedido.StatusPedido.CANCELADO) {
+            codigoEntregaAllocator.liberar(pedido.getCodigoEntrega(), pedido.getStatus());
+        }
     }
 
     private void registrarHistorico(Pedido pedido, Pedido.StatusPedido statusAnterior, Pedido.StatusPedido statusNovo) {
@@ -172,35 +159,12 @@ public class PedidoStatusService {
         historicoRepository.save(historico);
     }
 
-    private void enviarNotificacoes(Pedido pedido, Pedido.StatusPedido statusAnterior, Pedido.StatusPedido statusNovo) {
-        String titulo = "Atualização do seu pedido #" + pedido.getNumeroPedido();
-        String mensagemCliente = switch (statusNovo) {
-            case PRONTO -> "Seu pedido está pronto e AGUARDANDO MOTORISTA para retirada.";
-            default -> "Status alterado de " + statusAnterior + " para " + statusNovo + ".";
-        };
-
-        notificacaoService.enviarNotificacaoPedido(
-                pedido.getUsuario().getId(),
-                titulo,
-                mensagemCliente
-        );
-
-        List<Usuario> admins = usuarioRepository.findByPerfilAtivo("ADMIN");
-        for (Usuario admin : admins) {
-            notificacaoService.enviarNotificacaoPedido(
-                    admin.getId(),
-                    "Pedido " + pedido.getNumeroPedido() + " alterado",
-                    "Pedido " + pedido.getNumeroPedido() + " mudou de " + statusAnterior + " para " + statusNovo + "."
-            );
-        }
-    }
-
-    private void solicitarUberAutomaticamenteQuandoPronto(Pedido pedido, Pedido.StatusPedido statusNovo) {
+    private void agendarUberQuandoPronto(Pedido pedido, Pedido.StatusPedido statusNovo) {
         if (statusNovo != Pedido.StatusPedido.PRONTO) {
             return;
         }
 
-        entregaService.solicitarEntrega(pedido.getId());
-        log.info("Solicitação automática da Uber iniciada para pedido {}", pedido.getNumeroPedido());
+        despachoUberService.agendar(pedido.getId());
+        log.info("Despacho automático da Uber agendado para pedido {}", pedido.getNumeroPedido());
     }
 }
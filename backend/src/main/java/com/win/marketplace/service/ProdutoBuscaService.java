@@ -0,0 +1,227 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.mapper.ProdutoMapper;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO.FacetaDTO;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO.FacetasDTO;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO.FaixaPrecoDTO;
+import com.win.marketplace.dto.response.ProdutoSummaryResponseDTO;
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.repository.ProdutoRepository.ResultadoBusca;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Motor de busca full-text de produtos (ver migração V18)
+ *
+ * - Match via tsvector (nome + categoria + descrição) com stemming em português
+ *   e sem acentos, ou via trigramas do nome (tolera erros de digitação)
+ * - Ordenação por relevância e paginação por keyset em (rank, id): o custo de
+ *   cada página não depende da profundidade nem do tamanho do catálogo
+ * - Facetas (categoria, lojista, faixa de preço) calculadas só na primeira página
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProdutoBuscaService {
+
+    public static final int LIMITE_PADRAO = 20;
+    public static final int LIMITE_MAXIMO = 100;
+
+    private static final int MAX_TERMOS = 8;
+    private static final int MAX_TAMANHO_TERMO = 50;
+    // Teto da coluna preco (NUMERIC(10,2)): filtro de preço "sem limite"
+    static final BigDecimal PRECO_MAXIMO = new BigDecimal("99999999.99");
+
+    // Limites das faixas de preço das facetas (width_bucket)
+    private static final List<BigDecimal> LIMITES_FAIXAS_PRECO = List.of(
+            new BigDecimal("25"), new BigDecimal("50"), new BigDecimal("100"),
+            new BigDecimal("250"), new BigDecimal("500"));
+
+    private final ProdutoRepository produtoRepository;
+    private final ProdutoMapper produtoMapper;
+
+    /**
+     * Executa a busca full-text
+     *
+     * @param termo Texto digitado pelo usuário
+     * @param categoriaId Filtro opcional de categoria
+     * @param lojistaId Filtro opcional de lojista
+     * @param precoMin Preço mínimo opcional
+     * @param precoMax Preço máximo opcional
+     * @param cursor Cursor retornado pela página anterior (null na primeira página)
+     * @param limite Tamanho da página (1..100)
+     */
+    @Transactional(readOnly = true, timeout = 15)
+    public ProdutoBuscaResponseDTO buscar(String termo, UUID categoriaId, UUID lojistaId,
+                                          BigDecimal precoMin, BigDecimal precoMax,
+                                          String cursor, int limite) {
+        String consulta = montarConsultaTsquery(termo);
+        String termoNormalizado = termo.trim();
+        int tamanhoPagina = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+
+        String categoriaFiltro = categoriaId != null ? categoriaId.toString() : "";
+        String lojistaFiltro = lojistaId != null ? lojistaId.toString() : "";
+        BigDecimal min = precoMin != null ? precoMin : BigDecimal.ZERO;
+        BigDecimal max = precoMax != null ? precoMax : PRECO_MAXIMO;
+
+        Cursor posicao = Cursor.decodificar(cursor);
+
+        log.debug("Busca full-text: consulta='{}', categoria={}, lojista={}, cursor={}",
+                consulta, categoriaId, lojistaId, cursor);
+
+        // Busca limite + 1 para saber se existe próxima página sem COUNT(*)
+        List<ResultadoBusca> resultados = produtoRepository.buscarFullText(
+                consulta, termoNormalizado, categoriaFiltro, lojistaFiltro, min, max,
+                posicao.rank(), posicao.idTexto(), tamanhoPagina + 1);
+
+        boolean temProxima = resultados.size() > tamanhoPagina;
+        List<ResultadoBusca> pagina = temProxima ? resultados.subList(0, tamanhoPagina) : resultados;
+
+        String proximoCursor = null;
+        if (temProxima) {
+            ResultadoBusca ultimo = pagina.get(pagina.size() - 1);
+            proximoCursor = new Cursor(ultimo.getRank(), ultimo.getId()).codificar();
+        }
+
+        FacetasDTO facetas = cursor == null || cursor.isBlank()
+                ? calcularFacetas(consulta, termoNormalizado, categoriaFiltro, lojistaFiltro, min, max)
+                : null;
+
+        return new ProdutoBuscaResponseDTO(hidratar(pagina), proximoCursor, facetas);
+    }
+
+    /**
+     * Carrega as entidades da página em uma única query, preservando a ordem por relevância
+     */
+    private List<ProdutoSummaryResponseDTO> hidratar(List<ResultadoBusca> pagina) {
+        if (pagina.isEmpty()) {
+            return List.of();
+        }
+        List<UUID> ids = pagina.stream().map(ResultadoBusca::getId).toList();
+        Map<UUID, Produto> porId = produtoRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Produto::getId, Function.identity()));
+
+        return ids.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .map(produtoMapper::toSummaryResponseDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Facetas disjuntivas: cada faceta ignora o próprio filtro, para que o usuário
+     * veja as alternativas ao refinar a busca
+     */
+    private FacetasDTO calcularFacetas(String consulta, String termo, String categoriaFiltro,
+                                       String lojistaFiltro, BigDecimal min, BigDecimal max) {
+        List<FacetaDTO> categorias = produtoRepository
+                .contarFacetaCategorias(consulta, termo, lojistaFiltro, min, max).stream()
+                .map(this::toFaceta)
+                .collect(Collectors.toList());
+
+        List<FacetaDTO> lojistas = produtoRepository
+                .contarFacetaLojistas(consulta, termo, categoriaFiltro, min, max).stream()
+                .map(this::toFaceta)
+                .collect(Collectors.toList());
+
+        String limites = LIMITES_FAIXAS_PRECO.stream()
+                .map(BigDecimal::toPlainString)
+                .collect(Collectors.joining(",", "{", "}"));
+
+        List<FaixaPrecoDTO> faixas = new ArrayList<>();
+        for (Object[] linha : produtoRepository.contarFacetaFaixasPreco(
+                consulta, termo, categoriaFiltro, lojistaFiltro, limites)) {
+            int indice = ((Number) linha[0]).intValue();
+            BigDecimal inferior = indice > 0 ? LIMITES_FAIXAS_PRECO.get(indice - 1) : null;
+            BigDecimal superior = indice < LIMITES_FAIXAS_PRECO.size() ? LIMITES_FAIXAS_PRECO.get(indice) : null;
+            faixas.add(new FaixaPrecoDTO(inferior, superior, ((Number) linha[1]).longValue()));
+        }
+
+        return new FacetasDTO(categorias, lojistas, faixas);
+    }
+
+    private FacetaDTO toFaceta(Object[] linha) {
+        return new FacetaDTO(
+                UUID.fromString((String) linha[0]),
+                (String) linha[1],
+                ((Number) linha[2]).longValue());
+    }
+
+    /**
+     * Converte o texto livre em uma tsquery segura: apenas letras/dígitos,
+     * termos combinados com AND e prefixo no último (busca enquanto digita)
+     */
+    static String montarConsultaTsquery(String termo) {
+        if (termo == null || termo.trim().isEmpty()) {
+            throw new BusinessException("Termo de busca não pode ser vazio");
+        }
+
+        List<String> termos = new ArrayList<>();
+        for (String parte : termo.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (parte.isEmpty()) {
+                continue;
+            }
+            termos.add(parte.length() > MAX_TAMANHO_TERMO ? parte.substring(0, MAX_TAMANHO_TERMO) : parte);
+            if (termos.size() == MAX_TERMOS) {
+                break;
+            }
+        }
+
+        if (termos.isEmpty()) {
+            throw new BusinessException("Termo de busca deve conter letras ou números");
+        }
+
+        int ultimo = termos.size() - 1;
+        termos.set(ultimo, termos.get(ultimo) + ":*");
+        return String.join(" & ", termos);
+    }
+
+    /**
+     * Posição do keyset (rank, id) codificada em Base64 URL-safe
+     */
+    private record Cursor(double rank, UUID id) {
+
+        private static final Cursor INICIO = new Cursor(Double.MAX_VALUE, null);
+
+        String idTexto() {
+            return id != null ? id.toString() : "";
+        }
+
+        String codificar() {
+            String valor = rank + "_" + id;
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decodificar(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return INICIO;
+            }
+            try {
+                String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separador = valor.indexOf('_');
+                return new Cursor(
+                        Double.parseDouble(valor.substring(0, separador)),
+                        UUID.fromString(valor.substring(separador + 1)));
+            } catch (RuntimeException e) {
+                throw new BusinessException("Cursor de busca inválido");
+            }
+        }
+    }
+}
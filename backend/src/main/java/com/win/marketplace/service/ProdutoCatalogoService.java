@@ -0,0 +1,105 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.win.marketplace.dto.response.ProdutoResponseDTO;
+import com.win.marketplace.dto.response.ProdutoSummaryResponseDTO;
+import com.win.marketplace.service.cache.CatalogoCacheService;
+import com.win.marketplace.service.cache.CatalogoCacheService.PaginaCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Leituras públicas do catálogo servidas pelo cache de dois níveis.
+ *
+ * Propositalmente NÃO é @Transactional: em um cache hit nenhuma conexão do
+ * pool Hikari é adquirida. Só em caso de miss o ProdutoService (transacional)
+ * é chamado.
+ */
+@Slf4j
+@Service
+public class ProdutoCatalogoService {
+
+    private final ProdutoService produtoService;
+    private final CatalogoCacheService cache;
+
+    private final JavaType tipoProduto;
+    private final JavaType tipoListaProdutos;
+    private final JavaType tipoListaResumo;
+    private final JavaType tipoPaginaResumo;
+
+    public ProdutoCatalogoService(ProdutoService produtoService, CatalogoCacheService cache, ObjectMapper objectMapper) {
+        this.produtoService = produtoService;
+        this.cache = cache;
+
+        TypeFactory tf = objectMapper.getTypeFactory();
+        this.tipoProduto = tf.constructType(ProdutoResponseDTO.class);
+        this.tipoListaProdutos = tf.constructCollectionType(List.class, ProdutoResponseDTO.class);
+        this.tipoListaResumo = tf.constructCollectionType(List.class, ProdutoSummaryResponseDTO.class);
+        this.tipoPaginaResumo = tf.constructParametricType(PaginaCache.class, ProdutoSummaryResponseDTO.class);
+    }
+
+    public Page<ProdutoSummaryResponseDTO> listarProdutosPaginados(Pageable pageable) {
+        String chave = CatalogoCacheService.NS_LISTA + ":" + pageable.getPageNumber() + ":"
+                + pageable.getPageSize() + ":" + pageable.getSort();
+
+        PaginaCache<ProdutoSummaryResponseDTO> pagina = cache.obter(
+                CatalogoCacheService.NS_LISTA, chave, tipoPaginaResumo,
+                (PaginaCache<ProdutoSummaryResponseDTO> p) -> idsResumo(p.conteudo()),
+                () -> {
+                    Page<ProdutoSummaryResponseDTO> page = produtoService.listarProdutosPaginados(pageable);
+                    return new PaginaCache<>(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements());
+                });
+
+        return new PageImpl<>(pagina.conteudo(),
+                PageRequest.of(pagina.pagina(), pagina.tamanho(), pageable.getSort()),
+                pagina.total());
+    }
+
+    public List<ProdutoSummaryResponseDTO> listarMaisVendidos(int limite, RankingVendasService.Janela janela,
+                                                              UUID categoriaId, UUID lojistaId) {
+        // Ranking tolera atraso: novas vendas aparecem quando a entrada expira (TTL do Redis)
+        String chave = CatalogoCacheService.NS_MAIS_VENDIDOS + ":" + janela + ":" + categoriaId + ":"
+                + lojistaId + ":" + limite;
+        return cache.obter(
+                CatalogoCacheService.NS_MAIS_VENDIDOS, chave,
+                tipoListaResumo, this::idsResumo,
+                () -> produtoService.listarMaisVendidos(limite, janela, categoriaId, lojistaId));
+    }
+
+    public List<ProdutoSummaryResponseDTO> listarMaisAvaliados(int limite) {
+        return cache.obter(
+                CatalogoCacheService.NS_MAIS_AVALIADOS, CatalogoCacheService.NS_MAIS_AVALIADOS + ":" + limite,
+                tipoListaResumo, this::idsResumo,
+                () -> produtoService.listarMaisAvaliados(limite));
+    }
+
+    public List<ProdutoResponseDTO> listarProdutosPorCategoria(UUID categoriaId) {
+        String namespace = CatalogoCacheService.namespaceCategoria(categoriaId);
+        return cache.obter(
+                namespace, namespace, tipoListaProdutos,
+                (List<ProdutoResponseDTO> produtos) -> produtos.stream().map(ProdutoResponseDTO::id).toList(),
+                () -> produtoService.listarProdutosPorCategoria(categoriaId));
+    }
+
+    public ProdutoResponseDTO buscarPorId(UUID id) {
+        return cache.obter(
+                CatalogoCacheService.NS_PRODUTO, CatalogoCacheService.NS_PRODUTO + ":" + id,
+                tipoProduto,
+                (ProdutoResponseDTO produto) -> Set.of(produto.id()),
+                () -> produtoService.buscarPorId(id));
+    }
+
+    private List<UUID> idsResumo(List<ProdutoSummaryResponseDTO> produtos) {
+        return produtos.stream().map(ProdutoSummaryResponseDTO::id).toList();
+    }
+}
@@ -8,6 +8,7 @@ import com.win.marketplace.integration.erp.dto.ErpProductDTO;
 import com.win.marketplace.model.LojistaErpConfig;
 import com.win.marketplace.model.Produto;
 import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -28,6 +29,7 @@ public class ProdutoErpService {
     private final LojistaErpConfigService erpConfigService;
     private final ErpClientFactory erpClientFactory;
     private final ImagemProdutoService imagemProdutoService;
+    private final CatalogoCacheService catalogoCacheService;
     
     /**
      * Busca produto no ERP por SKU (preview antes de vincular)
@@ -97,7 +99,11 @@ public class ProdutoErpService {
             }
         }
         
-        return produtoRepository.save(produto);
+        Produto salvo = produtoRepository.save(produto);
+        if (dto.importarDados()) {
+            catalogoCacheService.invalidarProdutoEListagens(salvo.getId(), salvo.getCategoria().getId());
+        }
+        return salvo;
     }
     
     /**
@@ -151,6 +157,7 @@ public class ProdutoErpService {
                 }
                 
                 produtoRepository.save(produto);
+                catalogoCacheService.invalidarProdutoEListagens(produto.getId(), produto.getCategoria().getId());
                 log.info("Estoque sincronizado - SKU: {}, Novo estoque: {}", produto.getErpSku(), dados.getEstoque());
             }
         } catch (Exception e) {
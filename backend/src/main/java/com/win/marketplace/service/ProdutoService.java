@@ -5,6 +5,8 @@ import com.win.marketplace.dto.request.ProdutoUpdateRequestDTO;
 import com.win.marketplace.dto.response.ProdutoResponseDTO;
 import com.win.marketplace.dto.response.ProdutoSummaryResponseDTO;
 import com.win.marketplace.dto.mapper.ProdutoMapper;
+import com.win.marketplace.model.ItemPedido;
+import com.win.marketplace.model.Pedido;
 import com.win.marketplace.model.Produto;
 import com.win.marketplace.model.Lojista;
 import com.win.marketplace.model.Categoria;
@@ -13,6 +15,7 @@ import com.win.marketplace.repository.LojistaRepository;
 import com.win.marketplace.repository.CategoriaRepository;
 import com.win.marketplace.exception.ResourceNotFoundException;
 import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.service.cache.CatalogoCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -21,8 +24,14 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -35,6 +44,10 @@ public class ProdutoService {
     private final LojistaRepository lojistaRepository;
     private final CategoriaRepository categoriaRepository;
     private final ProdutoMapper produtoMapper;
+    private final CatalogoCacheService catalogoCacheService;
+    private final RankingVendasService rankingVendasService;
+
+    private static final int LIMITE_BUSCA_POR_NOME = 50;
 
     /**
      * Cria um novo produto
@@ -70,6 +83,7 @@ public class ProdutoService {
         }
 
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProdutoEListagens(savedProduto.getId(), categoria.getId());
         log.info("Produto criado com sucesso. ID: {}", savedProduto.getId());
         
         return produtoMapper.toResponseDTO(savedProduto);
@@ -137,7 +151,9 @@ public class ProdutoService {
     }
 
     /**
-     * Busca produtos por nome (busca parcial, case insensitive)
+     * Busca produtos por nome (endpoint legado /buscar)
+     * Usa o índice full-text (V18) e retorna apenas os resultados mais relevantes;
+     * para paginação e facetas use ProdutoBuscaService
      * ✅ FIX-003: Timeout 15s para buscas textuais
      */
     @Transactional(readOnly = true, timeout = 15)
@@ -148,8 +164,18 @@ public class ProdutoService {
             throw new BusinessException("Nome de busca não pode ser vazio");
         }
         
-        List<Produto> produtos = produtoRepository.findByNomeContainingIgnoreCaseAndAtivoTrue(nome);
-        return produtos.stream()
+        String consulta = ProdutoBuscaService.montarConsultaTsquery(nome);
+        List<UUID> ids = produtoRepository.buscarFullText(consulta, nome.trim(), "", "",
+                        BigDecimal.ZERO, ProdutoBuscaService.PRECO_MAXIMO, Double.MAX_VALUE, "", LIMITE_BUSCA_POR_NOME)
+                .stream()
+                .map(ProdutoRepository.ResultadoBusca::getId)
+                .toList();
+        
+        Map<UUID, Produto> porId = produtoRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Produto::getId, Function.identity()));
+        return ids.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
                 .map(produtoMapper::toResponseDTO)
                 .collect(Collectors.toList());
     }
@@ -182,6 +208,9 @@ public class ProdutoService {
         if (requestDTO.categoriaId() != null && !requestDTO.categoriaId().equals(produto.getCategoria().getId())) {
             Categoria novaCategoria = categoriaRepository.findById(requestDTO.categoriaId())
                     .orElseThrow(() -> new ResourceNotFoundException("Categoria não encontrada com ID: " + requestDTO.categoriaId()));
+            // Produto sai de uma listagem por categoria e entra em outra
+            catalogoCacheService.invalidarNamespace(CatalogoCacheService.namespaceCategoria(produto.getCategoria().getId()));
+            catalogoCacheService.invalidarNamespace(CatalogoCacheService.namespaceCategoria(novaCategoria.getId()));
             produto.setCategoria(novaCategoria);
         }
 
@@ -218,6 +247,7 @@ public class ProdutoService {
         }
 
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProduto(savedProduto.getId());
         log.info("Produto atualizado com sucesso. ID: {}", savedProduto.getId());
         
         return produtoMapper.toResponseDTO(savedProduto);
@@ -234,6 +264,7 @@ public class ProdutoService {
         
         produto.setAtivo(true);
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProdutoEListagens(savedProduto.getId(), savedProduto.getCategoria().getId());
         
         log.info("Produto ativado com sucesso. ID: {}", savedProduto.getId());
         return produtoMapper.toResponseDTO(savedProduto);
@@ -250,6 +281,7 @@ public class ProdutoService {
         
         produto.setAtivo(false);
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProdutoEListagens(savedProduto.getId(), savedProduto.getCategoria().getId());
         
         log.info("Produto desativado com sucesso. ID: {}", savedProduto.getId());
         return produtoMapper.toResponseDTO(savedProduto);
@@ -270,6 +302,7 @@ public class ProdutoService {
         
         produto.setEstoque(novaQuantidade);
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProduto(savedProduto.getId());
         
         log.info("Estoque atualizado com sucesso. Produto ID: {}, Nova quantidade: {}", savedProduto.getId(), novaQuantidade);
         return produtoMapper.toResponseDTO(savedProduto);
@@ -290,6 +323,7 @@ public class ProdutoService {
         
         produto.setEstoque(produto.getEstoque() + quantidade);
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProduto(savedProduto.getId());
         
         log.info("Estoque incrementado com sucesso. Produto ID: {}, Novo estoque: {}", savedProduto.getId(), savedProduto.getEstoque());
         return produtoMapper.toResponseDTO(savedProduto);
@@ -315,11 +349,65 @@ public class ProdutoService {
         
         produto.setEstoque(novoEstoque);
         Produto savedProduto = produtoRepository.save(produto);
+        catalogoCacheService.invalidarProduto(savedProduto.getId());
         
         log.info("Estoque decrementado com sucesso. Produto ID: {}, Novo estoque: {}", savedProduto.getId(), savedProduto.getEstoque());
         return produtoMapper.toResponseDTO(savedProduto);
     }
 
+    /**
+     * Reserva o estoque de um pedido com um único UPDATE condicional (estoque >= quantidade).
+     * Se algum produto não tiver saldo, lança BusinessException e a transação do pedido é desfeita.
+     *
+     * @param quantidadePorProduto Quantidade total por produto (já somada no carrinho)
+     */
+    public void reservarEstoque(Map<UUID, Integer> quantidadePorProduto) {
+        if (quantidadePorProduto.isEmpty()) {
+            return;
+        }
+        
+        int atualizados = produtoRepository.reservarEstoque(
+                arrayLiteral(quantidadePorProduto.keySet()),
+                arrayLiteral(quantidadePorProduto.values()));
+        
+        if (atualizados != quantidadePorProduto.size()) {
+            throw new BusinessException("Estoque insuficiente para um ou mais produtos do pedido");
+        }
+        
+        catalogoCacheService.invalidarProdutos(quantidadePorProduto.keySet());
+        log.debug("Estoque reservado para {} produtos", atualizados);
+    }
+
+    /**
+     * Devolve ao estoque os itens de um pedido cancelado, se ele reservou estoque na criação
+     */
+    public void devolverEstoqueReservado(Pedido pedido) {
+        if (!Boolean.TRUE.equals(pedido.getEstoqueReservado()) || pedido.getItens() == null) {
+            return;
+        }
+        
+        Map<UUID, Integer> quantidadePorProduto = new TreeMap<>();
+        for (ItemPedido item : pedido.getItens()) {
+            quantidadePorProduto.merge(item.getProduto().getId(), item.getQuantidade(), Integer::sum);
+        }
+        
+        if (!quantidadePorProduto.isEmpty()) {
+            produtoRepository.devolverEstoque(
+                    arrayLiteral(quantidadePorProduto.keySet()),
+                    arrayLiteral(quantidadePorProduto.values()));
+            catalogoCacheService.invalidarProdutos(quantidadePorProduto.keySet());
+        }
+        pedido.setEstoqueReservado(false);
+        
+        log.info("Estoque devolvido para {} produtos do pedido {}", quantidadePorProduto.size(), pedido.getNumeroPedido());
+    }
+
+    private static String arrayLiteral(Collection<?> valores) {
+        return valores.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
     /**
      * Deleta produto (soft delete - apenas desativa)
      */
@@ -338,6 +426,7 @@ public class ProdutoService {
         // Soft delete - apenas desativa
         produto.setAtivo(false);
         produtoRepository.save(produto);
+        catalogoCacheService.invalidarProdutoEListagens(id, produto.getCategoria().getId());
         
         log.info("Produto desativado (soft delete) com sucesso. ID: {}", id);
     }
@@ -357,21 +446,32 @@ public class ProdutoService {
             throw new BusinessException("Não é possível deletar permanentemente produto que possui " + countPedidos + " pedido(s) associado(s)");
         }
 
+        UUID categoriaId = produto.getCategoria().getId();
         produtoRepository.delete(produto);
+        catalogoCacheService.invalidarProdutoEListagens(id, categoriaId);
         log.warn("Produto deletado PERMANENTEMENTE. ID: {}", id);
     }
 
     /**
-     * Lista produtos mais vendidos
+     * Lista produtos mais vendidos a partir do ranking pré-calculado
+     * (top-k no índice + uma query para carregar os produtos)
      */
     @Transactional(readOnly = true)
-    public List<ProdutoSummaryResponseDTO> listarMaisVendidos(int limite) {
-        log.info("Listando {} produtos mais vendidos", limite);
-        
-        Pageable pageable = PageRequest.of(0, limite);
-        List<Produto> produtos = produtoRepository.findProdutosMaisVendidos(pageable);
+    public List<ProdutoSummaryResponseDTO> listarMaisVendidos(int limite, RankingVendasService.Janela janela,
+                                                              UUID categoriaId, UUID lojistaId) {
+        log.info("Listando {} produtos mais vendidos (janela={}, categoria={}, lojista={})",
+                limite, janela, categoriaId, lojistaId);
+        
+        List<UUID> ids = rankingVendasService.topProdutoIds(janela, categoriaId, lojistaId, limite);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
         
-        return produtos.stream()
+        Map<UUID, Produto> porId = produtoRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Produto::getId, Function.identity()));
+        return ids.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
                 .map(produtoMapper::toSummaryResponseDTO)
                 .collect(Collectors.toList());
     }
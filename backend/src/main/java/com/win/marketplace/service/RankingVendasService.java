@@ -0,0 +1,205 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.model.ItemPedido;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.repository.ProdutoVendaAgregadaRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Ranking de "mais vendidos" pré-calculado.
+ *
+ * Em vez de agrupar todos os itens de pedido a cada requisição, os contadores
+ * (total por produto e buckets diários para as janelas de 7/30 dias) são
+ * atualizados na mesma transação que confirma ou cancela o pedido. A leitura
+ * do top-k passa a custar O(k) no ranking total e O(produtos vendidos na
+ * janela) nos rankings por período.
+ *
+ * Só contam pedidos confirmados (pagamento aprovado) e não cancelados, em
+ * unidades vendidas. A reconstrução completa corrige qualquer divergência.
+ */
+@Slf4j
+@Service
+public class RankingVendasService {
+
+    public static final int LIMITE_MAXIMO = 100;
+
+    // Chave do pg_try_advisory_xact_lock da reconstrução
+    private static final long LOCK_RECONSTRUCAO = 0x52414E4B56454E44L;
+
+    private final ProdutoVendaAgregadaRepository repository;
+    private final CatalogoCacheService catalogoCacheService;
+    private final ZoneId fuso;
+
+    public RankingVendasService(ProdutoVendaAgregadaRepository repository,
+                                CatalogoCacheService catalogoCacheService,
+                                @Value("${app.vendas.ranking.fuso:America/Sao_Paulo}") String fuso) {
+        this.repository = repository;
+        this.catalogoCacheService = catalogoCacheService;
+        this.fuso = ZoneId.of(fuso);
+    }
+
+    /**
+     * Janela de tempo do ranking
+     */
+    public enum Janela {
+        SETE_DIAS(7), TRINTA_DIAS(30), TOTAL(0);
+
+        private final int dias;
+
+        Janela(int dias) {
+            this.dias = dias;
+        }
+
+        public int getDias() {
+            return dias;
+        }
+
+        /**
+         * Aceita "7d", "30d" e "total" (padrão quando ausente)
+         */
+        public static Janela deParametro(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return TOTAL;
+            }
+            return switch (valor.trim().toLowerCase()) {
+                case "7d" -> SETE_DIAS;
+                case "30d" -> TRINTA_DIAS;
+                case "total", "all" -> TOTAL;
+                default -> throw new BusinessException("Janela inválida: " + valor + " (use 7d, 30d ou total)");
+            };
+        }
+    }
+
+    // ========================================
+    // LEITURA
+    // ========================================
+
+    /**
+     * IDs dos produtos mais vendidos, em ordem decrescente de unidades
+     */
+    @Transactional(readOnly = true)
+    public List<UUID> topProdutoIds(Janela janela, UUID categoriaId, UUID lojistaId, int limite) {
+        int k = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+        String categoriaFiltro = categoriaId != null ? categoriaId.toString() : "";
+        String lojistaFiltro = lojistaId != null ? lojistaId.toString() : "";
+
+        if (janela == Janela.TOTAL) {
+            return repository.findTopProdutoIds(categoriaFiltro, lojistaFiltro, k);
+        }
+        LocalDate desde = LocalDate.now(fuso).minusDays(janela.getDias() - 1L);
+        return repository.findTopProdutoIdsDesde(desde, categoriaFiltro, lojistaFiltro, k);
+    }
+
+    // ========================================
+    // ATUALIZAÇÃO INCREMENTAL
+    // ========================================
+
+    /**
+     * Soma os itens do pedido recém-confirmado (participa da transação corrente)
+     */
+    @Transactional
+    public void registrarConfirmacao(Pedido pedido) {
+        aplicar(pedido, 1);
+    }
+
+    /**
+     * Estorna os itens de um pedido cancelado que já havia sido contabilizado.
+     * Pedidos cancelados antes da confirmação não alteram o ranking.
+     */
+    @Transactional
+    public void registrarCancelamento(Pedido pedido, Pedido.StatusPedido statusAnterior) {
+        if (statusAnterior == Pedido.StatusPedido.PENDENTE
+                || statusAnterior == Pedido.StatusPedido.CANCELADO
+                || pedido.getConfirmadoEm() == null) {
+            return;
+        }
+        aplicar(pedido, -1);
+    }
+
+    private void aplicar(Pedido pedido, int sinal) {
+        if (pedido.getItens() == null || pedido.getItens().isEmpty()) {
+            return;
+        }
+
+        // Ordenado por produto: transações concorrentes travam as linhas na mesma ordem (sem deadlock)
+        Map<UUID, Long> quantidadePorProduto = new TreeMap<>();
+        for (ItemPedido item : pedido.getItens()) {
+            quantidadePorProduto.merge(item.getProduto().getId(), item.getQuantidade().longValue(), Long::sum);
+        }
+
+        OffsetDateTime confirmadoEm = pedido.getConfirmadoEm() != null ? pedido.getConfirmadoEm() : OffsetDateTime.now();
+        LocalDate dia = confirmadoEm.atZoneSameInstant(fuso).toLocalDate();
+        boolean dentroDasJanelas = !dia.isBefore(inicioRetencaoDiaria());
+
+        quantidadePorProduto.forEach((produtoId, quantidade) -> {
+            long delta = sinal * quantidade;
+            repository.acumularTotal(produtoId, delta);
+            if (dentroDasJanelas) {
+                repository.acumularDia(produtoId, dia, delta);
+            }
+        });
+
+        log.debug("Ranking de vendas: pedido {} aplicado com sinal {} ({} produtos)",
+                pedido.getNumeroPedido(), sinal, quantidadePorProduto.size());
+    }
+
+    // ========================================
+    // MANUTENÇÃO
+    // ========================================
+
+    /**
+     * Reconstrói os contadores a partir do histórico de pedidos (backfill/correção).
+     * Apenas uma réplica executa por vez; as demais retornam sem fazer nada.
+     * Confirmações e cancelamentos concorrentes aguardam o commit da reconstrução.
+     */
+    @Transactional(timeout = 600)
+    public Map<String, Object> reconstruir() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        if (!repository.tentarLockReconstrucao(LOCK_RECONSTRUCAO)) {
+            log.info("Reconstrução do ranking de vendas já em andamento em outra instância");
+            resultado.put("executado", false);
+            return resultado;
+        }
+
+        long inicio = System.currentTimeMillis();
+        repository.bloquearEscritas();
+        repository.limparTotais();
+        int totais = repository.reconstruirTotais();
+        repository.limparDias();
+        int dias = repository.reconstruirDiasDesde(inicioRetencaoDiaria(), fuso.getId());
+
+        catalogoCacheService.invalidarNamespace(CatalogoCacheService.NS_MAIS_VENDIDOS);
+
+        long duracao = System.currentTimeMillis() - inicio;
+        log.info("✅ Ranking de vendas reconstruído: {} produtos, {} buckets diários em {} ms", totais, dias, duracao);
+
+        resultado.put("executado", true);
+        resultado.put("produtos", totais);
+        resultado.put("bucketsDiarios", dias);
+        resultado.put("duracaoMs", duracao);
+        return resultado;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean vazio() {
+        return repository.count() == 0;
+    }
+
+    private LocalDate inicioRetencaoDiaria() {
+        return LocalDate.now(fuso).minusDays(Janela.TRINTA_DIAS.getDias() - 1L);
+    }
+}
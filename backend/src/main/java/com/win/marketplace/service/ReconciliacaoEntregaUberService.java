@@ -0,0 +1,367 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.response.DeliveryStatusResponseDTO;
+import com.win.marketplace.dto.webhook.UberWebhookEventDTO;
+import com.win.marketplace.model.enums.StatusEntrega;
+import com.win.marketplace.repository.EntregaRepository;
+import com.win.marketplace.repository.EntregaRepository.ConsultaStatusUber;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciliação do status das entregas com a Uber (rede de segurança para
+ * webhooks perdidos).
+ *
+ * A cada rodada:
+ * 1. Reserva consultas no orçamento global (por minuto, compartilhado entre
+ *    réplicas via Redis; sem Redis vale o limite local)
+ * 2. Reivindica até esse número de entregas em andamento com consulta vencida
+ *    (FOR UPDATE SKIP LOCKED + lease)
+ * 3. Consulta a Uber em paralelo no pool uberConsultaExecutor
+ * 4. Status da Uber em fase à frente da nossa vira um deliveries.delivery_status_updated na
+ *    inbox de webhooks: mesma máquina de estados (UberWebhookService) e mesma
+ *    ordem por entrega. A posição do motorista vai para o rastreamento.
+ * 5. Agenda a próxima consulta de todas em um único UPDATE
+ *
+ * O intervalo se adapta: mínimo perto da coleta/entrega (ETA próximo), base
+ * conforme a fase e dobrando a cada consulta sem mudança até o máximo. Assim o
+ * custo fica limitado pelo orçamento mesmo com milhares de entregas ativas.
+ */
+@Slf4j
+@Service
+public class ReconciliacaoEntregaUberService {
+
+    static final String EVENTO_STATUS = "deliveries.delivery_status_updated";
+    private static final String CHAVE_ORCAMENTO = "win:uber:consultas:";
+
+    private final EntregaRepository entregaRepository;
+    private final UberFlashService uberFlashService;
+    private final UberWebhookInboxService inboxService;
+    private final LocalizacaoMotoristaService localizacaoMotoristaService;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Executor executor;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean uberApiHabilitada;
+    private final int tamanhoLote;
+    private final int orcamentoPorMinuto;
+    private final Duration intervaloMinimo;
+    private final Duration intervaloBase;
+    private final Duration intervaloMaximo;
+    private final Duration proximidade;
+    private final Duration lease;
+
+    /** Usado quando o Redis não responde: orçamento só desta instância */
+    private long minutoLocal;
+    private int consumidasLocal;
+
+    private final Counter consultadas;
+    private final Counter corrigidas;
+    private final Counter erros;
+    private final Counter semOrcamento;
+    private final Timer tempoConsulta;
+
+    public ReconciliacaoEntregaUberService(EntregaRepository entregaRepository,
+                                           UberFlashService uberFlashService,
+                                           UberWebhookInboxService inboxService,
+                                           LocalizacaoMotoristaService localizacaoMotoristaService,
+                                           RedisTemplate<String, String> redisTemplate,
+                                           @Qualifier("uberConsultaExecutor") Executor executor,
+                                           PlatformTransactionManager transactionManager,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${uber.api.enabled:false}") boolean uberApiHabilitada,
+                                           @Value("${app.uber.reconciliacao.tamanho-lote:50}") int tamanhoLote,
+                                           @Value("${app.uber.reconciliacao.orcamento-por-minuto:120}") int orcamentoPorMinuto,
+                                           @Value("${app.uber.reconciliacao.intervalo-minimo-segundos:15}") long intervaloMinimoSegundos,
+                                           @Value("${app.uber.reconciliacao.intervalo-base-segundos:60}") long intervaloBaseSegundos,
+                                           @Value("${app.uber.reconciliacao.intervalo-maximo-segundos:600}") long intervaloMaximoSegundos,
+                                           @Value("${app.uber.reconciliacao.proximidade-segundos:300}") long proximidadeSegundos,
+                                           @Value("${app.uber.reconciliacao.lease-segundos:120}") long leaseSegundos) {
+        this.entregaRepository = entregaRepository;
+        this.uberFlashService = uberFlashService;
+        this.inboxService = inboxService;
+        this.localizacaoMotoristaService = localizacaoMotoristaService;
+        this.redisTemplate = redisTemplate;
+        this.executor = executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.uberApiHabilitada = uberApiHabilitada;
+        this.tamanhoLote = tamanhoLote;
+        this.orcamentoPorMinuto = orcamentoPorMinuto;
+        this.intervaloMinimo = Duration.ofSeconds(intervaloMinimoSegundos);
+        this.intervaloBase = Duration.ofSeconds(intervaloBaseSegundos);
+        this.intervaloMaximo = Duration.ofSeconds(intervaloMaximoSegundos);
+        this.proximidade = Duration.ofSeconds(proximidadeSegundos);
+        this.lease = Duration.ofSeconds(leaseSegundos);
+
+        this.consultadas = contador(meterRegistry, "consultada");
+        this.corrigidas = contador(meterRegistry, "corrigida");
+        this.erros = contador(meterRegistry, "erro");
+        this.semOrcamento = contador(meterRegistry, "sem-orcamento");
+        this.tempoConsulta = Timer.builder("uber.reconciliacao.consulta").register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("uber.reconciliacao").tag("resultado", resultado).register(registry);
+    }
+
+    /**
+     * Uma rodada de reconciliação
+     *
+     * @return quantidade de entregas consultadas
+     */
+    public int reconciliar() {
+        // Em modo MOCK o status "consultado" é aleatório: não pode alimentar a máquina de estados
+        if (!uberApiHabilitada) {
+            return 0;
+        }
+
+        Reserva reserva = reservarOrcamento(tamanhoLote);
+        int permitidas = reserva.permitidas();
+        if (permitidas <= 0) {
+            semOrcamento.increment();
+            return 0;
+        }
+
+        List<ConsultaStatusUber> entregas = reivindicar(permitidas);
+        if (entregas.size() < permitidas) {
+            devolverOrcamento(reserva, permitidas - entregas.size());
+        }
+        if (entregas.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<Agendamento>> consultas = entregas.stream()
+            .map(entrega -> CompletableFuture.supplyAsync(() -> consultar(entrega), executor)
+                .exceptionally(e -> falhou(entrega, e)))
+            .toList();
+        List<Agendamento> agendamentos = consultas.stream().map(CompletableFuture::join).toList();
+
+        entregaRepository.agendarConsultasUber(
+            arrayLiteral(agendamentos.stream().map(Agendamento::entregaId).toList()),
+            arrayLiteral(agendamentos.stream().map(a -> "\"" + a.proxima() + "\"").toList()),
+            arrayLiteral(agendamentos.stream().map(Agendamento::semMudanca).toList()));
+        return entregas.size();
+    }
+
+    private List<ConsultaStatusUber> reivindicar(int limite) {
+        List<ConsultaStatusUber> entregas = transactionTemplate.execute(status -> {
+            List<ConsultaStatusUber> vencidas = entregaRepository.reivindicarConsultasUber(limite);
+            if (!vencidas.isEmpty()) {
+                entregaRepository.adiarConsultasUber(
+                    arrayLiteral(vencidas.stream().map(ConsultaStatusUber::getId).toList()), lease.toSeconds());
+            }
+            return vencidas;
+        });
+        return entregas != null ? entregas : List.of();
+    }
+
+    /**
+     * Consulta uma entrega (thread do pool) e decide quando consultar de novo
+     */
+    Agendamento consultar(ConsultaStatusUber entrega) {
+        int semMudanca = entrega.getConsultasSemMudanca() != null ? entrega.getConsultasSemMudanca() : 0;
+        StatusEntrega atual = StatusEntrega.valueOf(entrega.getStatusEntrega());
+
+        DeliveryStatusResponseDTO resposta = tempoConsulta.record(
+            () -> uberFlashService.consultarStatusEntrega(entrega.getIdCorridaUber()));
+        consultadas.increment();
+        if (resposta == null || resposta.getStatus() == null
+                || "unknown".equals(resposta.getStatus()) || "not_found".equals(resposta.getStatus())) {
+            erros.increment();
+            return agendar(entrega, atual, semMudanca + 1, null);
+        }
+
+        registrarLocalizacao(entrega.getIdCorridaUber(), resposta);
+
+        // Fase igual com status local mais detalhado (ex.: motorista a caminho durante "pickup") não é divergência
+        StatusEntrega segundoUber = UberWebhookService.statusEntregaPara(resposta.getStatus());
+        if (segundoUber != null && UberWebhookService.uberAdiantada(resposta.getStatus(), atual)) {
+            log.warn("🔄 Entrega {} estava {} mas a Uber informa '{}' (webhook perdido?); reconciliando",
+                    entrega.getIdCorridaUber(), atual, resposta.getStatus());
+            inboxService.enfileirar(evento(resposta));
+            corrigidas.increment();
+            return agendar(entrega, segundoUber, 0, resposta);
+        }
+        return agendar(entrega, atual, semMudanca + 1, resposta);
+    }
+
+    private Agendamento falhou(ConsultaStatusUber entrega, Throwable erro) {
+        erros.increment();
+        log.error("❌ Erro ao reconciliar entrega {}: {}", entrega.getIdCorridaUber(), erro.getMessage());
+        int semMudanca = entrega.getConsultasSemMudanca() != null ? entrega.getConsultasSemMudanca() : 0;
+        return agendar(entrega, StatusEntrega.valueOf(entrega.getStatusEntrega()), semMudanca + 1, null);
+    }
+
+    private Agendamento agendar(ConsultaStatusUber entrega, StatusEntrega status, int semMudanca,
+                                DeliveryStatusResponseDTO resposta) {
+        Instant agora = Instant.now();
+        Duration intervalo = proximoIntervalo(status, semMudanca, resposta, agora);
+        return new Agendamento(entrega.getId(), agora.plus(intervalo).atOffset(ZoneOffset.UTC), semMudanca);
+    }
+
+    /**
+     * Intervalo até a próxima consulta:
+     * - intervalo-minimo se o motorista deve chegar à coleta/entrega em até proximidade
+     * - senão, base da fase (em movimento = base; esperando motorista/preparo = 2x base)
+     *   dobrando a cada consulta sem mudança, limitado a intervalo-maximo
+     */
+    Duration proximoIntervalo(StatusEntrega status, int semMudanca, DeliveryStatusResponseDTO resposta, Instant agora) {
+        Instant eta = etaRelevante(status, resposta);
+        if (eta != null && Duration.between(agora, eta).compareTo(proximidade) <= 0) {
+            return intervaloMinimo;
+        }
+        Duration base = status.isEmAndamento() ? intervaloBase : intervaloBase.multipliedBy(2);
+        Duration intervalo = base.multipliedBy(1L << Math.min(semMudanca, 10));
+        return intervalo.compareTo(intervaloMaximo) > 0 ? intervaloMaximo : intervalo;
+    }
+
+    private static Instant etaRelevante(StatusEntrega status, DeliveryStatusResponseDTO resposta) {
+        if (resposta == null) {
+            return null;
+        }
+        DeliveryStatusResponseDTO.LocationInfo destino = status == StatusEntrega.EM_TRANSITO
+            ? resposta.getDropoff()
+            : resposta.getPickup();
+        return destino != null ? destino.getEta() : null;
+    }
+
+    private void registrarLocalizacao(String deliveryId, DeliveryStatusResponseDTO resposta) {
+        DeliveryStatusResponseDTO.CourierInfo courier = resposta.getCourier();
+        if (courier == null) {
+            return;
+        }
+        localizacaoMotoristaService.registrar(deliveryId, courier.getLatitude(), courier.getLongitude(),
+            resposta.getUpdatedAt(), courier.getName(), courier.getPhoneNumber(),
+            courier.getVehicle() != null ? courier.getVehicle().getLicensePlate() : null);
+    }
+
+    /**
+     * Resultado da consulta no formato do webhook de mudança de status. O
+     * event_id por status faz consultas repetidas antes da inbox aplicar
+     * virarem um único evento.
+     */
+    static UberWebhookEventDTO evento(DeliveryStatusResponseDTO resposta) {
+        DeliveryStatusResponseDTO.CourierInfo courier = resposta.getCourier();
+        UberWebhookEventDTO.CourierData motorista = null;
+        if (courier != null) {
+            motorista = UberWebhookEventDTO.CourierData.builder()
+                .name(courier.getName())
+                .phoneNumber(courier.getPhoneNumber())
+                .location(courier.getLatitude() != null && courier.getLongitude() != null
+                    ? UberWebhookEventDTO.LocationCoordinates.builder()
+                        .latitude(courier.getLatitude())
+                        .longitude(courier.getLongitude())
+                        .build()
+                    : null)
+                .vehicle(courier.getVehicle() != null
+                    ? UberWebhookEventDTO.VehicleData.builder()
+                        .licensePlate(courier.getVehicle().getLicensePlate())
+                        .build()
+                    : null)
+                .build();
+        }
+        return UberWebhookEventDTO.builder()
+            .eventId("reconciliacao:" + resposta.getDeliveryId() + ":" + resposta.getStatus().toLowerCase())
+            .eventType(EVENTO_STATUS)
+            .deliveryId(resposta.getDeliveryId())
+            .status(resposta.getStatus())
+            .timestamp(resposta.getUpdatedAt())
+            .courier(motorista)
+            .build();
+    }
+
+    /**
+     * Reserva até "desejadas" consultas no orçamento do minuto corrente
+     *
+     * @return quantas podem ser feitas agora e onde foram reservadas (para devolver no mesmo lugar)
+     */
+    Reserva reservarOrcamento(int desejadas) {
+        long minuto = Instant.now().getEpochSecond() / 60;
+        try {
+            String chave = CHAVE_ORCAMENTO + minuto;
+            Long total = redisTemplate.opsForValue().increment(chave, desejadas);
+            if (total == null) {
+                return new Reserva(minuto, reservarLocal(minuto, desejadas), false);
+            }
+            if (total == desejadas) {
+                redisTemplate.expire(chave, Duration.ofMinutes(2));
+            }
+            long usadasAntes = total - desejadas;
+            int permitidas = (int) Math.max(0, Math.min(desejadas, orcamentoPorMinuto - usadasAntes));
+            if (permitidas < desejadas) {
+                redisTemplate.opsForValue().decrement(chave, desejadas - permitidas);
+            }
+            return new Reserva(minuto, permitidas, true);
+        } catch (Exception e) {
+            log.debug("Orçamento de consultas Uber sem Redis, usando limite local: {}", e.getMessage());
+            return new Reserva(minuto, reservarLocal(minuto, desejadas), false);
+        }
+    }
+
+    private synchronized int reservarLocal(long minuto, int desejadas) {
+        if (minuto != minutoLocal) {
+            minutoLocal = minuto;
+            consumidasLocal = 0;
+        }
+        int permitidas = Math.max(0, Math.min(desejadas, orcamentoPorMinuto - consumidasLocal));
+        consumidasLocal += permitidas;
+        return permitidas;
+    }
+
+    /**
+     * Devolve a sobra no balde do minuto em que foi reservada. Se o minuto já
+     * virou, devolver no balde novo daria orçamento extra à janela seguinte.
+     */
+    private void devolverOrcamento(Reserva reserva, int quantidade) {
+        if (reserva.redis()) {
+            try {
+                String chave = CHAVE_ORCAMENTO + reserva.minuto();
+                redisTemplate.opsForValue().decrement(chave, quantidade);
+                // Se o balde já expirou o DECRBY o recria sem TTL: garante que ele expire de novo
+                redisTemplate.expire(chave, Duration.ofMinutes(2));
+            } catch (Exception e) {
+                log.debug("Não foi possível devolver orçamento de consultas Uber: {}", e.getMessage());
+            }
+            return;
+        }
+        synchronized (this) {
+            if (reserva.minuto() == minutoLocal) {
+                consumidasLocal = Math.max(0, consumidasLocal - quantidade);
+            }
+        }
+    }
+
+    private static String arrayLiteral(Collection<?> valores) {
+        return valores.stream()
+            .map(String::valueOf)
+            .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    record Agendamento(UUID entregaId, OffsetDateTime proxima, int semMudanca) {
+    }
+
+    /**
+     * Consultas reservadas no balde de um minuto (Redis ou limite local)
+     */
+    record Reserva(long minuto, int permitidas, boolean redis) {
+    }
+}
@@ -11,8 +11,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
@@ -30,7 +28,7 @@ import java.util.*;
  * - Cotação de frete em tempo real
  * - Solicitação de entregas
  * - Cancelamento de entregas
- * - Cache de token de acesso
+ * - Token de acesso compartilhado (UberTokenManager)
  * - Tratamento robusto de erros
  * 
  * Documentação: https://developer.uber.com/docs/deliveries
@@ -43,12 +41,7 @@ public class UberFlashService {
     private final RestTemplate restTemplate;
     private final GeocodingService geocodingService;
     private final ConfiguracaoService configuracaoService;
-
-    @Value("${uber.client.id:}")
-    private String uberClientId;
-
-    @Value("${uber.client.secret:}")
-    private String uberClientSecret;
+    private final UberTokenManager uberTokenManager;
 
     @Value("${uber.api.base-url:https://api.uber.com}")
     private String uberApiBaseUrl;
@@ -56,85 +49,19 @@ public class UberFlashService {
     @Value("${uber.api.enabled:false}")
     private Boolean uberApiEnabled;
 
-    // Cache simples de token OAuth
-    private String cachedAccessToken;
-    private Instant tokenExpiresAt;
-
     // ========================================
     // AUTENTICAÇÃO OAUTH 2.0
     // ========================================
 
     /**
-     * Obtém access token da Uber via OAuth 2.0 Client Credentials.
-     * Implementa cache para evitar requisições desnecessárias.
+     * Access token da Uber (OAuth 2.0 Client Credentials), compartilhado com o
+     * UberAuthService pelo UberTokenManager.
      * 
      * @return Access token válido
      * @throws RuntimeException se falhar autenticação
      */
     private String obterAccessToken() {
-        // Verifica se há token em cache válido
-        if (cachedAccessToken != null && tokenExpiresAt != null 
-                && Instant.now().isBefore(tokenExpiresAt)) {
-            log.debug("Usando access token em cache");
-            return cachedAccessToken;
-        }
-
-        log.info("Obtendo novo access token da Uber via OAuth 2.0");
-
-        try {
-            // Validar credenciais
-            if (uberClientId == null || uberClientId.isEmpty() 
-                    || uberClientSecret == null || uberClientSecret.isEmpty()) {
-                throw new RuntimeException("Credenciais Uber não configuradas. " +
-                        "Configure UBER_CLIENT_ID e UBER_CLIENT_SECRET no .env");
-            }
-
-            // Preparar requisição OAuth 2.0
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            if (uberClientId != null && uberClientSecret != null) {
-                headers.setBasicAuth(uberClientId, uberClientSecret);
-            }
-
-            MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
-            body.add("grant_type", "client_credentials");
-
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
-
-            // Fazer requisição
-            String tokenUrl = "https://auth.uber.com/oauth/v2/token";
-            ResponseEntity<JsonNode> response = restTemplate.postForEntity(
-                    tokenUrl, request, JsonNode.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                JsonNode responseBody = response.getBody();
-                
-                // Extrair token e tempo de expiração
-                if (responseBody != null) {
-                    cachedAccessToken = responseBody.get("access_token").asText();
-                    int expiresIn = responseBody.get("expires_in").asInt();
-                    
-                    // Renovar token 5 minutos antes de expirar
-                    tokenExpiresAt = Instant.now().plusSeconds(expiresIn - 300);
-                    
-                    log.info("Access token obtido com sucesso. Expira em {} segundos", expiresIn);
-                    return cachedAccessToken;
-                }
-            } else {
-                throw new RuntimeException("Resposta inválida do servidor OAuth: " + 
-                        response.getStatusCode());
-            }
-
-        } catch (HttpClientErrorException e) {
-            log.error("Erro HTTP ao autenticar na Uber: {} - {}", 
-                    e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Falha na autenticação Uber: " + e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("Erro ao obter access token da Uber", e);
-            throw new RuntimeException("Erro na autenticação Uber: " + e.getMessage(), e);
-        }
-        // Nunca atingido, mas necessário para satisfazer o compilador
-        return null;
+        return uberTokenManager.obterAccessToken();
     }
 
     /**
@@ -699,6 +626,9 @@ public class UberFlashService {
 
             // Fazer requisição
             HttpHeaders headers = criarHeadersAutenticados();
+            if (request.getChaveIdempotencia() != null) {
+                headers.set("Idempotency-Key", request.getChaveIdempotencia());
+            }
             HttpEntity<Map<String, Object>> httpRequest = new HttpEntity<>(deliveryRequest, headers);
             
             String deliveryUrl = uberApiBaseUrl + "/v1/customers/me/deliveries";
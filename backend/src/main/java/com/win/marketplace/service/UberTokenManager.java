@@ -0,0 +1,242 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.dto.response.UberOAuthTokenResponseDTO;
+import com.win.marketplace.model.UberOAuthToken;
+import com.win.marketplace.repository.UberOAuthTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token OAuth (Client Credentials) da Uber compartilhado por todas as
+ * chamadas à API (UberAuthService, UberFlashService e quem depende deles).
+ *
+ * - O token vive em memória: o caminho normal é uma leitura volátil, sem banco
+ * - Renovação single-flight: sob concorrência só uma thread vai à Uber; as
+ *   demais esperam e usam o token que ela obteve
+ * - Renovação proativa em segundo plano renovar-antes-segundos antes de
+ *   expirar, para que as requisições praticamente nunca esperem
+ * - O banco (uber_oauth_tokens) serve só para compartilhar o token entre
+ *   réplicas: antes de pedir um novo à Uber, a renovação aproveita um token
+ *   ainda folgado que outra réplica tenha gravado
+ */
+@Slf4j
+@Service
+public class UberTokenManager {
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final UberOAuthTokenRepository tokenRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final String uberOAuthUrl;
+    private final String customerId;
+    private final String clientId;
+    private final String clientSecret;
+    /** Renovação proativa começa quando falta menos que isso para expirar */
+    private final Duration renovarAntes;
+    /** Abaixo disso o token não é mais entregue; a requisição espera a renovação */
+    private final Duration margemUso;
+
+    private final ReentrantLock renovacao = new ReentrantLock();
+    private volatile TokenAtual atual;
+
+    public UberTokenManager(RestTemplate restTemplate,
+                            ObjectMapper objectMapper,
+                            UberOAuthTokenRepository tokenRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.uber.direct.oauth-url:https://auth.uber.com/oauth/v2/token}") String uberOAuthUrl,
+                            @Value("${app.uber.direct.customer-id:}") String customerId,
+                            @Value("${app.uber.direct.client-id:}") String clientId,
+                            @Value("${app.uber.direct.client-secret:}") String clientSecret,
+                            @Value("${app.uber.direct.token.renovar-antes-segundos:600}") long renovarAntesSegundos,
+                            @Value("${app.uber.direct.token.margem-uso-segundos:60}") long margemUsoSegundos) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.tokenRepository = tokenRepository;
+        this.meterRegistry = meterRegistry;
+        this.uberOAuthUrl = uberOAuthUrl;
+        this.customerId = customerId;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.renovarAntes = Duration.ofSeconds(renovarAntesSegundos);
+        this.margemUso = Duration.ofSeconds(margemUsoSegundos);
+    }
+
+    /**
+     * Token válido para a API da Uber (renova se necessário)
+     *
+     * @throws RuntimeException se não conseguir obter token
+     */
+    public String obterAccessToken() {
+        TokenAtual token = atual;
+        if (token != null && token.validoAte(Instant.now().plus(margemUso))) {
+            return token.accessToken();
+        }
+        return renovar(false);
+    }
+
+    /**
+     * Descarta o token em memória (ex.: a Uber respondeu 401)
+     */
+    public void invalidar() {
+        atual = null;
+    }
+
+    /**
+     * Renovação proativa: roda antes do vencimento, fora do caminho das requisições
+     */
+    @Scheduled(fixedDelayString = "${app.uber.direct.token.verificacao-ms:30000}")
+    public void renovarSeProximoDoVencimento() {
+        TokenAtual token = atual;
+        // Só renova o que já foi usado: sem tráfego Uber não há por que manter token
+        if (token == null || token.validoAte(Instant.now().plus(renovarAntes))) {
+            return;
+        }
+        try {
+            renovar(true);
+        } catch (Exception e) {
+            // O token atual continua valendo até expirar; a próxima verificação tenta de novo
+            log.warn("⚠️ Renovação proativa do token Uber falhou: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Single-flight: quem chega enquanto outra thread renova espera no lock e,
+     * ao entrar, encontra o token novo e sai sem ir à Uber.
+     *
+     * @param proativa se true, só aceita token com folga de renovar-antes
+     */
+    String renovar(boolean proativa) {
+        renovacao.lock();
+        try {
+            Instant agora = Instant.now();
+            Duration folgaNecessaria = proativa ? renovarAntes : margemUso;
+
+            TokenAtual token = atual;
+            if (token != null && token.validoAte(agora.plus(folgaNecessaria))) {
+                return token.accessToken();
+            }
+
+            Timer.Sample amostra = Timer.start(meterRegistry);
+            try {
+                Optional<TokenAtual> deOutraReplica = tokenRepository.findLatestValidToken(customerId)
+                    .map(TokenAtual::de)
+                    .filter(t -> t.validoAte(agora.plus(renovarAntes)));
+                if (deOutraReplica.isPresent()) {
+                    atual = deOutraReplica.get();
+                    amostra.stop(timer("banco", "sucesso"));
+                    log.info("🔐 Token Uber reaproveitado do banco (expira em {})", atual.expiraEm());
+                    return atual.accessToken();
+                }
+
+                atual = solicitarNovoToken();
+                amostra.stop(timer("uber", "sucesso"));
+                return atual.accessToken();
+            } catch (RuntimeException e) {
+                amostra.stop(timer("uber", "falha"));
+                // Falhou, mas o token atual ainda serve: melhor entregar que derrubar a chamada
+                if (token != null && token.validoAte(Instant.now())) {
+                    log.warn("⚠️ Falha ao renovar token Uber, usando o atual até expirar: {}", e.getMessage());
+                    return token.accessToken();
+                }
+                throw e;
+            }
+        } finally {
+            renovacao.unlock();
+        }
+    }
+
+    private Timer timer(String origem, String resultado) {
+        return Timer.builder("uber.oauth.renovacao")
+            .tag("origem", origem)
+            .tag("resultado", resultado)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Faz requisição POST ao servidor OAuth da Uber para obter novo token
+     *
+     * Endpoint: POST https://auth.uber.com/oauth/v2/token
+     * Body (x-www-form-urlencoded): grant_type=client_credentials, client_id, client_secret
+     */
+    private TokenAtual solicitarNovoToken() {
+        if (clientId == null || clientId.isEmpty() || clientSecret == null || clientSecret.isEmpty()) {
+            throw new RuntimeException("Credenciais Uber não configuradas. " +
+                    "Configure UBER_CLIENT_ID e UBER_CLIENT_SECRET no .env");
+        }
+
+        log.info("📡 Solicitando novo token OAuth da Uber...");
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+            headers.set("User-Agent", "WinMarketplace/2.0");
+
+            MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+            body.add("grant_type", "client_credentials");
+            body.add("client_id", clientId);
+            body.add("client_secret", clientSecret);
+
+            ResponseEntity<String> response = restTemplate.postForEntity(
+                    uberOAuthUrl, new HttpEntity<>(body, headers), String.class);
+
+            if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
+                log.error("❌ Erro na resposta OAuth da Uber. Status: {}", response.getStatusCode());
+                throw new RuntimeException("Falha ao obter token OAuth - Status: " + response.getStatusCode());
+            }
+
+            UberOAuthTokenResponseDTO tokenResponse = objectMapper.readValue(
+                    response.getBody(), UberOAuthTokenResponseDTO.class);
+
+            OffsetDateTime expiraEm = OffsetDateTime.now().plusSeconds(tokenResponse.getExpiresIn());
+            UberOAuthToken tokenSalvo = tokenRepository.save(UberOAuthToken.builder()
+                    .customerId(customerId)
+                    .accessToken(tokenResponse.getAccessToken())
+                    .tokenType(tokenResponse.getTokenType())
+                    .scope(tokenResponse.getScope())
+                    .expiraEm(expiraEm)
+                    .ativo(true)
+                    .totalUsos(1L)
+                    .ultimoUso(OffsetDateTime.now())
+                    .build());
+
+            log.info("✅ Token OAuth Uber obtido - ID: {}, Expira em: {}", tokenSalvo.getId(), expiraEm);
+            return new TokenAtual(tokenResponse.getAccessToken(), expiraEm.toInstant());
+
+        } catch (RestClientException e) {
+            log.error("❌ Erro de conexão ao OAuth Uber: {}", e.getMessage(), e);
+            throw new RuntimeException("Falha ao conectar no servidor OAuth da Uber: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("❌ Erro ao processar token OAuth: {}", e.getMessage(), e);
+            throw new RuntimeException("Erro ao processar token OAuth: " + e.getMessage(), e);
+        }
+    }
+
+    record TokenAtual(String accessToken, Instant expiraEm) {
+
+        static TokenAtual de(UberOAuthToken token) {
+            return new TokenAtual(token.getAccessToken(), token.getExpiraEm().toInstant());
+        }
+
+        boolean validoAte(Instant instante) {
+            return expiraEm.isAfter(instante);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.dto.webhook.UberWebhookEventDTO;
+import com.win.marketplace.model.UberWebhookEvento;
+import com.win.marketplace.repository.UberWebhookInboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recebimento assíncrono dos webhooks da Uber Direct (inbox).
+ *
+ * A requisição da Uber só valida a assinatura sobre o corpo bruto, grava o
+ * evento em uber_webhook_inbox e responde 200; nada de entrega, pedido ou
+ * WebSocket no caminho da resposta. Workers (pool uberWebhookExecutor)
+ * aplicam os eventos com UberWebhookService.aplicarEvento:
+ *
+ * 1. Reivindica eventos prontos com lease (FOR UPDATE SKIP LOCKED, commit imediato),
+ *    no máximo um evento pendente por entrega, o mais antigo (ordem por entrega)
+ * 2. Aplica o evento (transação própria do UberWebhookService)
+ * 3. Marca como concluído, ou reagenda com backoff até max-tentativas
+ *
+ * Retentativas da Uber com o mesmo event_id são descartadas no INSERT.
+ * Latência por etapa em uber.webhook.etapa (ingestao, fila, processamento, total).
+ */
+@Slf4j
+@Service
+public class UberWebhookInboxService {
+
+    private final UberWebhookInboxRepository inboxRepository;
+    private final UberWebhookService uberWebhookService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolTaskExecutor executor;
+    private final TransactionTemplate transactionTemplate;
+    private final String webhookSecret;
+
+    private final int tamanhoLote;
+    private final int maxTentativas;
+    private final Duration backoffBase;
+    private final Duration backoffMaximo;
+    private final Duration lease;
+    private final Duration retencao;
+
+    private final AtomicBoolean reivindicando = new AtomicBoolean(false);
+
+    private final Counter recebidos;
+    private final Counter duplicados;
+    private final Counter rejeitados;
+    private final Counter processados;
+    private final Counter retentativas;
+    private final Counter falhas;
+    private final Counter leasesPerdidos;
+    private final Timer tempoIngestao;
+    private final Timer tempoFila;
+    private final Timer tempoProcessamento;
+    private final Timer tempoTotal;
+
+    public UberWebhookInboxService(UberWebhookInboxRepository inboxRepository,
+                                   UberWebhookService uberWebhookService,
+                                   ObjectMapper objectMapper,
+                                   @Qualifier("uberWebhookExecutor") ThreadPoolTaskExecutor executor,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${uber.webhook.secret:}") String webhookSecret,
+                                   @Value("${app.uber.webhook-inbox.tamanho-lote:50}") int tamanhoLote,
+                                   @Value("${app.uber.webhook-inbox.max-tentativas:5}") int maxTentativas,
+                                   @Value("${app.uber.webhook-inbox.backoff-base-segundos:2}") long backoffBaseSegundos,
+                                   @Value("${app.uber.webhook-inbox.backoff-maximo-segundos:120}") long backoffMaximoSegundos,
+                                   @Value("${app.uber.webhook-inbox.lease-segundos:60}") long leaseSegundos,
+                                   @Value("${app.uber.webhook-inbox.retencao-dias:7}") long retencaoDias) {
+        this.inboxRepository = inboxRepository;
+        this.uberWebhookService = uberWebhookService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.webhookSecret = webhookSecret;
+        this.tamanhoLote = tamanhoLote;
+        this.maxTentativas = maxTentativas;
+        this.backoffBase = Duration.ofSeconds(backoffBaseSegundos);
+        this.backoffMaximo = Duration.ofSeconds(backoffMaximoSegundos);
+        this.lease = Duration.ofSeconds(leaseSegundos);
+        this.retencao = Duration.ofDays(retencaoDias);
+
+        this.recebidos = contador(meterRegistry, "recebido");
+        this.duplicados = contador(meterRegistry, "duplicado");
+        this.rejeitados = contador(meterRegistry, "assinatura-invalida");
+        this.processados = contador(meterRegistry, "processado");
+        this.retentativas = contador(meterRegistry, "retentativa");
+        this.falhas = contador(meterRegistry, "falha");
+        this.leasesPerdidos = contador(meterRegistry, "lease-perdido");
+        this.tempoIngestao = etapa(meterRegistry, "ingestao");
+        this.tempoFila = etapa(meterRegistry, "fila");
+        this.tempoProcessamento = etapa(meterRegistry, "processamento");
+        this.tempoTotal = etapa(meterRegistry, "total");
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("uber.webhook.eventos").tag("resultado", resultado).register(registry);
+    }
+
+    private static Timer etapa(MeterRegistry registry, String etapa) {
+        return Timer.builder("uber.webhook.etapa")
+            .tag("etapa", etapa)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    /**
+     * Valida a assinatura, grava o evento na inbox e acorda os workers.
+     *
+     * @param corpo corpo bruto da requisição (é sobre ele que a Uber assina)
+     * @param assinatura header X-Uber-Signature (HMAC-SHA256 em hex ou Base64)
+     * @return false se o evento já havia sido recebido
+     * @throws SecurityException se a assinatura for inválida
+     * @throws IllegalArgumentException se o corpo não for um evento válido
+     */
+    public boolean receber(String corpo, String assinatura) {
+        Timer.Sample amostra = Timer.start();
+        try {
+            validarAssinatura(corpo, assinatura);
+
+            UberWebhookEventDTO event;
+            try {
+                event = objectMapper.readValue(corpo, UberWebhookEventDTO.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Corpo do webhook inválido: " + e.getOriginalMessage(), e);
+            }
+
+            String eventId = Optional.ofNullable(event.getEventId()).orElseGet(() -> sha256(corpo));
+            if (!gravar(eventId, event, corpo)) {
+                return false;
+            }
+        } finally {
+            amostra.stop(tempoIngestao);
+        }
+        acordar();
+        return true;
+    }
+
+    /**
+     * Enfileira um evento gerado internamente (ex.: reconciliação de status),
+     * para passar pela mesma máquina de estados e ordem por entrega dos webhooks
+     *
+     * @param event evento com eventId preenchido (chave de deduplicação)
+     * @return false se já havia evento com esse eventId
+     */
+    public boolean enfileirar(UberWebhookEventDTO event) {
+        String corpo;
+        try {
+            corpo = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Evento não serializável: " + e.getOriginalMessage(), e);
+        }
+        if (!gravar(event.getEventId(), event, corpo)) {
+            return false;
+        }
+        acordar();
+        return true;
+    }
+
+    private boolean gravar(String eventId, UberWebhookEventDTO event, String corpo) {
+        int inseridos = inboxRepository.registrar(eventId, deliveryId(event), event.getEventType(), corpo);
+        if (inseridos == 0) {
+            duplicados.increment();
+            log.info("🔁 Evento Uber {} já recebido, ignorando", eventId);
+            return false;
+        }
+        recebidos.increment();
+        return true;
+    }
+
+    /**
+     * Dispara uma rodada de reivindicação fora da thread chamadora
+     */
+    public void acordar() {
+        try {
+            executor.execute(this::processarPendentes);
+        } catch (TaskRejectedException e) {
+            log.debug("Pool de webhooks Uber cheio; o agendador reprocessa em seguida");
+        }
+    }
+
+    /**
+     * Reivindica eventos prontos e os distribui no pool de workers
+     */
+    public void processarPendentes() {
+        if (!reivindicando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int capacidade = Math.min(tamanhoLote, executor.getThreadPoolExecutor().getQueue().remainingCapacity());
+            if (capacidade <= 0) {
+                return;
+            }
+            OffsetDateTime agora = OffsetDateTime.now();
+            for (UberWebhookEvento evento : reivindicar(capacidade)) {
+                if (evento.getTentativas() == 0) {
+                    tempoFila.record(Duration.between(evento.getRecebidoEm(), agora));
+                }
+                try {
+                    executor.execute(() -> processar(evento));
+                } catch (TaskRejectedException e) {
+                    // O lease expira e o evento volta a ser elegível
+                    log.warn("⚠️ Pool de webhooks Uber cheio; evento {} será reprocessado", evento.getEventId());
+                }
+            }
+        } finally {
+            reivindicando.set(false);
+        }
+    }
+
+    private List<UberWebhookEvento> reivindicar(int limite) {
+        List<UberWebhookEvento> eventos = transactionTemplate.execute(status -> {
+            OffsetDateTime agora = OffsetDateTime.now();
+            List<UberWebhookEvento> prontos = inboxRepository.reivindicarProntos(limite);
+            for (UberWebhookEvento evento : prontos) {
+                evento.setStatus(UberWebhookEvento.StatusEvento.PROCESSANDO);
+                // Microssegundos: o valor volta do banco igual e serve de guarda nos UPDATEs de saída
+                evento.setTravadoAte(agora.plus(lease).truncatedTo(ChronoUnit.MICROS));
+            }
+            return prontos;
+        });
+        return eventos != null ? eventos : List.of();
+    }
+
+    /**
+     * Aplica um evento (thread do pool)
+     */
+    void processar(UberWebhookEvento evento) {
+        try {
+            UberWebhookEventDTO event = objectMapper.readValue(evento.getPayload(), UberWebhookEventDTO.class);
+            tempoProcessamento.record(() -> uberWebhookService.aplicarEvento(event));
+
+            OffsetDateTime agora = OffsetDateTime.now();
+            if (inboxRepository.concluir(evento.getId(), evento.getTravadoAte(), agora) == 0) {
+                leasePerdido(evento);
+                return;
+            }
+            tempoTotal.record(Duration.between(evento.getRecebidoEm(), agora));
+            processados.increment();
+            // Pode haver evento seguinte da mesma entrega esperando este
+            acordar();
+        } catch (Exception e) {
+            log.error("❌ Erro ao aplicar webhook Uber {} ({}): {}",
+                    evento.getEventId(), evento.getEventType(), e.getMessage(), e);
+            try {
+                int tentativa = evento.getTentativas() + 1;
+                if (tentativa >= maxTentativas) {
+                    // Libera os eventos seguintes da mesma entrega
+                    if (inboxRepository.falhar(evento.getId(), evento.getTravadoAte(), truncar(e.getMessage()),
+                            OffsetDateTime.now()) == 0) {
+                        leasePerdido(evento);
+                        return;
+                    }
+                    falhas.increment();
+                } else {
+                    Duration espera = DespachoUberService.calcularBackoff(tentativa, backoffBase, backoffMaximo,
+                            ThreadLocalRandom.current().nextDouble());
+                    if (inboxRepository.reagendar(evento.getId(), evento.getTravadoAte(), truncar(e.getMessage()),
+                            OffsetDateTime.now().plus(espera)) == 0) {
+                        leasePerdido(evento);
+                        return;
+                    }
+                    retentativas.increment();
+                }
+            } catch (Exception erroRegistro) {
+                // Lease expira e o evento é retomado
+                log.error("❌ Não foi possível registrar falha do webhook {}: {}", evento.getId(), erroRegistro.getMessage());
+            }
+        }
+    }
+
+    /**
+     * O lease expirou durante o processamento e o evento já é de outra
+     * instância (ou foi resolvido por ela): o resultado desta é descartado
+     */
+    private void leasePerdido(UberWebhookEvento evento) {
+        leasesPerdidos.increment();
+        log.warn("⚠️ Lease do webhook Uber {} expirou durante o processamento; resultado descartado", evento.getEventId());
+    }
+
+    /**
+     * Remove eventos concluídos há mais de retencao-dias
+     */
+    public int limparConcluidos() {
+        return inboxRepository.removerConcluidosAntes(OffsetDateTime.now().minus(retencao));
+    }
+
+    private void validarAssinatura(String corpo, String assinatura) {
+        if (webhookSecret == null || webhookSecret.isEmpty()) {
+            log.warn("⚠️ Validação de assinatura HMAC desabilitada (webhook.secret não configurado)");
+            return;
+        }
+        if (assinatura == null || !assinaturaConfere(corpo, assinatura.trim(), webhookSecret)) {
+            rejeitados.increment();
+            throw new SecurityException("Assinatura HMAC inválida");
+        }
+    }
+
+    /**
+     * HMAC-SHA256 do corpo bruto, aceito em hex ou Base64, comparado em tempo constante
+     */
+    static boolean assinaturaConfere(String corpo, String assinatura, String segredo) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(segredo.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] esperado = mac.doFinal(corpo.getBytes(StandardCharsets.UTF_8));
+
+            byte[] hex = HexFormat.of().formatHex(esperado).getBytes(StandardCharsets.UTF_8);
+            byte[] base64 = Base64.getEncoder().encode(esperado);
+            byte[] recebida = assinatura.getBytes(StandardCharsets.UTF_8);
+            return MessageDigest.isEqual(hex, assinatura.toLowerCase().getBytes(StandardCharsets.UTF_8))
+                || MessageDigest.isEqual(base64, recebida);
+        } catch (Exception e) {
+            log.error("Erro ao validar assinatura HMAC", e);
+            return false;
+        }
+    }
+
+    private static String deliveryId(UberWebhookEventDTO event) {
+        return Optional.ofNullable(event.getDeliveryId())
+            .or(() -> Optional.ofNullable(event.getMeta()).map(UberWebhookEventDTO.MetaData::getResourceId))
+            .orElse(null);
+    }
+
+    private static String sha256(String corpo) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(corpo.getBytes(StandardCharsets.UTF_8));
+            return "sha256:" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String truncar(String erro) {
+        if (erro == null) {
+            return null;
+        }
+        return erro.length() > 500 ? erro.substring(0, 500) : erro;
+    }
+}
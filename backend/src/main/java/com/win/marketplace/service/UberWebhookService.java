@@ -15,10 +15,13 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Base64;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service otimizado para processar webhooks da Uber Direct API.
@@ -43,6 +46,11 @@ public class UberWebhookService {
     private final PedidoStatusService pedidoStatusService;
     private final WebSocketNotificationService webSocketService;
     private final ObjectMapper objectMapper;
+    private final LocalizacaoMotoristaService localizacaoMotoristaService;
+
+    /** Eventos só de posição do motorista: não tocam a entrega no banco na hora */
+    private static final Set<String> EVENTOS_LOCALIZACAO = Set.of(
+            "deliveries.courier_update", "event.courier_update");
 
     @Value("${uber.webhook.secret:}")
     private String webhookSecret;
@@ -67,6 +75,17 @@ public class UberWebhookService {
             log.warn("⚠️ Validação de assinatura HMAC desabilitada (webhook.secret não configurado)");
         }
 
+        aplicarEvento(event);
+    }
+
+    /**
+     * Aplica o evento na entrega (assinatura já validada pelo chamador).
+     * Usado pelos workers da inbox (UberWebhookInboxService), que validam a
+     * assinatura sobre o corpo bruto no recebimento.
+     *
+     * @param event DTO com dados do evento
+     */
+    public void aplicarEvento(UberWebhookEventDTO event) {
         // 2. EXTRAIR DELIVERY ID
         String deliveryId = Optional.ofNullable(event.getDeliveryId())
             .or(() -> Optional.ofNullable(event.getMeta())
@@ -80,6 +99,12 @@ public class UberWebhookService {
 
         log.info("📦 Delivery ID: {}", deliveryId);
 
+        // Posição do motorista: só alimenta o rastreamento (envio e gravação em lote)
+        if (event.getEventType() != null && EVENTOS_LOCALIZACAO.contains(event.getEventType())) {
+            registrarLocalizacao(deliveryId, event, null);
+            return;
+        }
+
         // 3. BUSCAR ENTREGA NO BANCO
         Entrega entrega = entregaRepository.findByIdCorridaUber(deliveryId)
                 .orElse(null);
@@ -136,7 +161,11 @@ public class UberWebhookService {
                 log.info("ℹ️ Evento não tratado: {}", eventType);
         }
 
-        // 5. SALVAR ALTERAÇÕES
+        // 5. SALVAR ALTERAÇÕES (com a posição mais recente do rastreamento, se houver)
+        localizacaoMotoristaService.ultimaPosicao(deliveryId).ifPresent(posicao -> {
+            entrega.setLatitudeMotorista(posicao.latitude());
+            entrega.setLongitudeMotorista(posicao.longitude());
+        });
         entregaRepository.save(entrega);
         
         log.info("✅ Webhook processado com sucesso - Delivery ID: {}, Novo Status: {}", 
@@ -184,13 +213,11 @@ public class UberWebhookService {
                 entrega.setPlacaVeiculo(vehicle.getLicensePlate());
             });
             
-            // Atualizar localização do motorista
-            Optional.ofNullable(courier.getLocation()).ifPresent(location -> {
-                entrega.setLatitudeMotorista(location.getLatitude());
-                entrega.setLongitudeMotorista(location.getLongitude());
-            });
         });
 
+        // Atualizar localização do motorista
+        atualizarLocalizacaoMotorista(entrega, event);
+
         entrega.setStatusEntrega(StatusEntrega.AGUARDANDO_MOTORISTA);
         
         // 📡 Notificar clientes WebSocket
@@ -244,18 +271,6 @@ public class UberWebhookService {
             Map.of("mensagem", "Motorista retirou do lojista e está a caminho do cliente")
         );
         
-        // 📍 Notificar localização do motorista
-        if (event.getCourier() != null && event.getCourier().getLocation() != null) {
-            webSocketService.notificarAtualizacaoMotorista(
-                entrega.getIdCorridaUber(),
-                event.getCourier().getLocation().getLatitude(),
-                event.getCourier().getLocation().getLongitude(),
-                entrega.getNomeMotorista(),
-                entrega.getContatoMotorista(),
-                entrega.getPlacaVeiculo()
-            );
-        }
-        
         // Atualizar status do pedido também
         Pedido pedido = entrega.getPedido();
         if (pedido != null) {
@@ -356,6 +371,9 @@ public class UberWebhookService {
         
         // 📧 Notificar cliente sobre conclusão
         log.info("📧 Entrega concluída - Cliente deve receber notificação de conclusão");
+        
+        // Por último: a posição final já foi registrada e vai junto com o save
+        localizacaoMotoristaService.encerrar(entrega.getIdCorridaUber());
     }
 
     private void processarEntregaCancelada(Entrega entrega, UberWebhookEventDTO event) {
@@ -391,6 +409,66 @@ public class UberWebhookService {
         
         // TODO: Notificar lojista e cliente sobre cancelamento
         log.warn("📧 TODO: Notificar lojista e cliente sobre cancelamento");
+        
+        localizacaoMotoristaService.encerrar(entrega.getIdCorridaUber());
+    }
+
+    /**
+     * Status da entrega que um deliveries.delivery_status_updated com esse
+     * status da Uber produz (mesma tradução de processarMudancaDeStatus).
+     * Usado pela reconciliação para saber se a consulta trouxe novidade.
+     *
+     * @return null se o status não altera a entrega
+     */
+    public static StatusEntrega statusEntregaPara(String statusUber) {
+        if (statusUber == null) {
+            return null;
+        }
+        return switch (statusUber.toLowerCase()) {
+            case "pending" -> StatusEntrega.AGUARDANDO_PREPARACAO;
+            case "pickup" -> StatusEntrega.AGUARDANDO_MOTORISTA;
+            case "dropoff" -> StatusEntrega.EM_TRANSITO;
+            case "delivered" -> StatusEntrega.ENTREGUE;
+            case "canceled", "cancelled" -> StatusEntrega.CANCELADA;
+            default -> null;
+        };
+    }
+
+    /**
+     * Se o status da Uber está em uma fase posterior à do status local.
+     *
+     * O status da Uber é grosso (pending → pickup → dropoff → delivered/canceled)
+     * e os webhooks de motorista detalham a fase "pickup" em vários status
+     * locais (AGUARDANDO_MOTORISTA, MOTORISTA_A_CAMINHO_RETIRADA e
+     * AGUARDANDO_PREPARACAO com o motorista na loja). Só a Uber estar
+     * estritamente à frente indica evento perdido; igual ou atrás não.
+     */
+    public static boolean uberAdiantada(String statusUber, StatusEntrega atual) {
+        return faseUber(statusUber) > faseMaxima(atual);
+    }
+
+    private static int faseUber(String statusUber) {
+        if (statusUber == null) {
+            return -1;
+        }
+        return switch (statusUber.toLowerCase()) {
+            case "pending" -> 0;
+            case "pickup" -> 1;
+            case "dropoff" -> 2;
+            case "delivered", "canceled", "cancelled" -> 3;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Fase mais adiantada da Uber em que o status local pode estar
+     */
+    private static int faseMaxima(StatusEntrega status) {
+        return switch (status) {
+            case AGUARDANDO_PREPARACAO, AGUARDANDO_MOTORISTA, MOTORISTA_A_CAMINHO_RETIRADA -> 1;
+            case EM_TRANSITO -> 2;
+            case ENTREGUE, CANCELADA, FALHA_SOLICITACAO -> 3;
+        };
     }
 
     private void processarMudancaDeStatus(Entrega entrega, UberWebhookEventDTO event) {
@@ -440,15 +518,44 @@ public class UberWebhookService {
     
     /**
      * Método auxiliar para atualizar localização do motorista.
+     * A entrega recebe a posição (vai no save do evento) e o rastreamento
+     * cuida do envio ao cliente.
      */
     private void atualizarLocalizacaoMotorista(Entrega entrega, UberWebhookEventDTO event) {
+        OffsetDateTime capturadaEm = (event.getTimestamp() != null ? event.getTimestamp() : Instant.now())
+            .atOffset(ZoneOffset.UTC);
         Optional.ofNullable(event.getCourier())
             .map(UberWebhookEventDTO.CourierData::getLocation)
+            // Evento atrasado não sobrescreve posição mais nova já gravada
+            .filter(location -> entrega.getLocalizacaoMotoristaEm() == null
+                || !capturadaEm.isBefore(entrega.getLocalizacaoMotoristaEm()))
             .ifPresent(location -> {
                 entrega.setLatitudeMotorista(location.getLatitude());
                 entrega.setLongitudeMotorista(location.getLongitude());
+                entrega.setLocalizacaoMotoristaEm(capturadaEm);
                 log.debug("📍 Localização atualizada: {}, {}", 
                     location.getLatitude(), location.getLongitude());
             });
+        registrarLocalizacao(entrega.getIdCorridaUber(), event, entrega);
+    }
+
+    /**
+     * Entrega a posição do evento ao rastreamento ao vivo (LocalizacaoMotoristaService)
+     */
+    private void registrarLocalizacao(String deliveryId, UberWebhookEventDTO event, Entrega entrega) {
+        UberWebhookEventDTO.CourierData courier = event.getCourier();
+        if (courier == null || courier.getLocation() == null) {
+            return;
+        }
+        String placa = courier.getVehicle() != null ? courier.getVehicle().getLicensePlate() : null;
+        localizacaoMotoristaService.registrar(
+            deliveryId,
+            courier.getLocation().getLatitude(),
+            courier.getLocation().getLongitude(),
+            event.getTimestamp(),
+            courier.getName() != null ? courier.getName() : entrega != null ? entrega.getNomeMotorista() : null,
+            courier.getPhoneNumber() != null ? courier.getPhoneNumber() : entrega != null ? entrega.getContatoMotorista() : null,
+            placa != null ? placa : entrega != null ? entrega.getPlacaVeiculo() : null
+        );
     }
 }
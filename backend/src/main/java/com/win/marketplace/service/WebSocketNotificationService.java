@@ -6,6 +6,7 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Serviço para notificar clientes WebSocket sobre atualizações de entrega
@@ -25,6 +26,7 @@ import java.util.Map;
  * - /topic/entrega/{deliveryId}/status
  * - /topic/entrega/{deliveryId}/courier
  * - /topic/entrega/{deliveryId}/alert
+ * - /topic/usuario/{usuarioId}/notificacoes
  * 
  * @author WinMarketplace Team
  */
@@ -105,6 +107,21 @@ public class WebSocketNotificationService {
         }
     }
 
+    /**
+     * Envia atualização de localização já montada (LocalizacaoMotoristaService,
+     * que controla frequência e conteúdo por entrega)
+     * 
+     * @param deliveryId ID da entrega
+     * @param mensagem Mensagem COURIER_UPDATE (pode conter só os campos alterados)
+     */
+    public void enviarAtualizacaoMotorista(String deliveryId, Map<String, Object> mensagem) {
+        try {
+            messagingTemplate.convertAndSend("/topic/entrega/" + deliveryId + "/courier", mensagem);
+        } catch (Exception e) {
+            log.error("❌ Erro ao enviar atualização de motorista: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Notifica alerta ou mensagem importante
      * 
@@ -163,6 +180,25 @@ public class WebSocketNotificationService {
         }
     }
 
+    /**
+     * Envia notificação in-app para um usuário (sino de notificações)
+     * 
+     * @param usuarioId ID do usuário destinatário
+     * @param dados Conteúdo da notificação (tipo, titulo, mensagem...)
+     * @return true se a mensagem foi entregue ao broker
+     */
+    public boolean notificarUsuario(UUID usuarioId, Map<String, Object> dados) {
+        try {
+            String destino = "/topic/usuario/" + usuarioId + "/notificacoes";
+            messagingTemplate.convertAndSend(destino, dados);
+            log.debug("🔔 Notificação enviada para {}", destino);
+            return true;
+        } catch (Exception e) {
+            log.error("❌ Erro ao enviar notificação ao usuário {}: {}", usuarioId, e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Broadcast de notificação para múltiplas entregas
      * Útil para alertas gerais ou atualizações em lote
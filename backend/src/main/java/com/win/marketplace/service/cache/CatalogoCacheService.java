@@ -0,0 +1,399 @@
+package com.win.marketplace.service.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache de dois níveis para as leituras públicas do catálogo de produtos.
+ *
+ * L1: LocalTtlCache em memória (limitado, TTL curto), evita até a ida ao Redis.
+ * L2: Redis compartilhado entre réplicas, com os DTOs serializados em JSON.
+ *
+ * Invalidação precisa:
+ * - Cada entrada registra quais produtos contém (índice reverso no Redis
+ *   "catalogo:produto-em:{id}" e no próprio L1), então alterar um produto
+ *   remove só as páginas/listas onde ele aparece.
+ * - Listagens cujo conjunto muda (produto ativado/desativado/criado) são
+ *   agrupadas em namespaces ("lista", "categoria:{id}", ...) e removidas em bloco.
+ * - Invalidações disparadas dentro de transação só rodam após o commit.
+ * - Toda invalidação avança um contador de geração (no Redis e no L1). Um miss
+ *   anota a geração antes de ir ao banco e só grava o valor se ela não mudou;
+ *   assim uma leitura que carregou dados antigos durante uma invalidação não os
+ *   republica por todo o TTL.
+ *
+ * Se o Redis estiver indisponível o cache degrada para apenas L1. O L1 de
+ * outras réplicas converge em até app.cache.catalogo.local.ttl-segundos.
+ */
+@Slf4j
+@Service
+public class CatalogoCacheService {
+
+    public static final String NS_PRODUTO = "produto";
+    public static final String NS_LISTA = "lista";
+    public static final String NS_MAIS_VENDIDOS = "mais-vendidos";
+    public static final String NS_MAIS_AVALIADOS = "mais-avaliados";
+
+    private static final String CHAVE_PREFIXO = "catalogo:v1:";
+    private static final String NAMESPACE_PREFIXO = "catalogo:ns:";
+    private static final String INDICE_PRODUTO_PREFIXO = "catalogo:produto-em:";
+    private static final String CHAVE_GERACAO = "catalogo:geracao";
+
+    // KEYS = geração, valor, namespace, índices de produto...; ARGV[1] = geração lida antes do carregamento,
+    // ARGV[2] = ttl (s), ARGV[3] = JSON, ARGV[4] = chave lógica. Retorna 0 se houve invalidação no meio.
+    private static final RedisScript<Long> SCRIPT_GRAVAR = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then return 0 end " +
+            "redis.call('SETEX', KEYS[2], ARGV[2], ARGV[3]) " +
+            "local ttlIndice = tonumber(ARGV[2]) * 2 " +
+            "for i = 3, #KEYS do " +
+            "redis.call('SADD', KEYS[i], ARGV[4]) " +
+            "redis.call('EXPIRE', KEYS[i], ttlIndice) " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final ObjectMapper objectMapper;
+    private final LocalTtlCache<String, EntradaCatalogo> local;
+    private final Duration redisTtl;
+    private final boolean useRedis;
+    private final AtomicLong geracaoLocal = new AtomicLong();
+
+    private final Counter hitsLocal;
+    private final Counter missesLocal;
+    private final Counter hitsRedis;
+    private final Counter missesRedis;
+    private final Counter errosRedis;
+    private final Counter invalidacoes;
+    private final Counter gravacoesDescartadas;
+
+    public CatalogoCacheService(ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.cache.catalogo.local.capacidade:2000}") int capacidadeLocal,
+                                @Value("${app.cache.catalogo.local.ttl-segundos:15}") long ttlLocalSegundos,
+                                @Value("${app.cache.catalogo.redis.ttl-segundos:300}") long ttlRedisSegundos,
+                                @Value("${app.cache.catalogo.use-redis:true}") boolean useRedis) {
+        this.redisTemplateProvider = redisTemplateProvider;
+        this.objectMapper = objectMapper;
+        this.local = new LocalTtlCache<>(capacidadeLocal, Duration.ofSeconds(ttlLocalSegundos));
+        this.redisTtl = Duration.ofSeconds(ttlRedisSegundos);
+        this.useRedis = useRedis;
+
+        this.hitsLocal = contador(meterRegistry, "catalogo.cache.requisicoes", "local", "hit");
+        this.missesLocal = contador(meterRegistry, "catalogo.cache.requisicoes", "local", "miss");
+        this.hitsRedis = contador(meterRegistry, "catalogo.cache.requisicoes", "redis", "hit");
+        this.missesRedis = contador(meterRegistry, "catalogo.cache.requisicoes", "redis", "miss");
+        this.errosRedis = Counter.builder("catalogo.cache.erros").tag("nivel", "redis").register(meterRegistry);
+        this.invalidacoes = Counter.builder("catalogo.cache.invalidacoes").register(meterRegistry);
+        this.gravacoesDescartadas = Counter.builder("catalogo.cache.gravacoes-descartadas").register(meterRegistry);
+        FunctionCounter.builder("catalogo.cache.evicoes", local, LocalTtlCache::getEvicoes)
+                .tag("nivel", "local")
+                .register(meterRegistry);
+        Gauge.builder("catalogo.cache.tamanho", local, LocalTtlCache::tamanho)
+                .tag("nivel", "local")
+                .register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String nome, String nivel, String resultado) {
+        return Counter.builder(nome).tag("nivel", nivel).tag("resultado", resultado).register(registry);
+    }
+
+    // ========================================
+    // LEITURA (READ-THROUGH)
+    // ========================================
+
+    /**
+     * Busca no L1, depois no Redis e por fim no carregador (banco).
+     * O valor carregado só é gravado se nenhuma invalidação ocorreu desde o início da busca.
+     *
+     * @param namespace Grupo de invalidação em bloco da chave
+     * @param chave Chave lógica (única dentro do catálogo)
+     * @param tipo Tipo Jackson do valor (para desserializar do Redis)
+     * @param produtosContidos Extrai os IDs de produto presentes no valor (índice reverso)
+     * @param carregador Consulta ao banco executada em caso de miss
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T obter(String namespace, String chave, JavaType tipo,
+                       Function<T, Collection<UUID>> produtosContidos, Supplier<T> carregador) {
+        long geracaoL1 = geracaoLocal.get();
+        EntradaCatalogo entrada = local.get(chave);
+        if (entrada != null) {
+            hitsLocal.increment();
+            return (T) entrada.valor();
+        }
+        missesLocal.increment();
+
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        String geracaoRedis = null;
+        if (redisTemplate != null) {
+            try {
+                // Geração e valor no mesmo round trip: a geração precisa ser lida antes do banco
+                List<String> lidos = redisTemplate.opsForValue().multiGet(List.of(CHAVE_GERACAO, CHAVE_PREFIXO + chave));
+                geracaoRedis = lidos.get(0) != null ? lidos.get(0) : "0";
+                String json = lidos.get(1);
+                if (json != null) {
+                    hitsRedis.increment();
+                    T valor = objectMapper.readValue(json, tipo);
+                    guardarLocal(chave, new EntradaCatalogo(namespace, valor, Set.copyOf(produtosContidos.apply(valor))),
+                            geracaoL1);
+                    return valor;
+                }
+                missesRedis.increment();
+            } catch (Exception e) {
+                errosRedis.increment();
+                log.warn("⚠️ Cache catálogo: falha ao ler do Redis a chave {}: {}", chave, e.getMessage());
+            }
+        }
+
+        T valor = carregador.get();
+        if (valor == null) {
+            return null;
+        }
+
+        Set<UUID> produtos = Set.copyOf(produtosContidos.apply(valor));
+        guardarLocal(chave, new EntradaCatalogo(namespace, valor, produtos), geracaoL1);
+        if (geracaoRedis != null) {
+            gravarNoRedis(redisTemplate, namespace, chave, valor, produtos, geracaoRedis);
+        }
+        return valor;
+    }
+
+    /**
+     * Grava no L1 se não houve invalidação local desde geracao. A releitura após o put
+     * cobre a invalidação que avança a geração entre a checagem e a gravação.
+     */
+    private void guardarLocal(String chave, EntradaCatalogo entrada, long geracao) {
+        if (geracaoLocal.get() != geracao) {
+            gravacoesDescartadas.increment();
+            return;
+        }
+        local.put(chave, entrada);
+        if (geracaoLocal.get() != geracao) {
+            local.invalidar(chave);
+        }
+    }
+
+    private void gravarNoRedis(StringRedisTemplate redisTemplate, String namespace, String chave,
+                               Object valor, Set<UUID> produtos, String geracao) {
+        try {
+            String json = objectMapper.writeValueAsString(valor);
+            List<String> chaves = new ArrayList<>(produtos.size() + 3);
+            chaves.add(CHAVE_GERACAO);
+            chaves.add(CHAVE_PREFIXO + chave);
+            chaves.add(NAMESPACE_PREFIXO + namespace);
+            produtos.forEach(produtoId -> chaves.add(INDICE_PRODUTO_PREFIXO + produtoId));
+
+            // Valor + registro no namespace + índice reverso atômicos e condicionados à geração
+            Long gravado = redisTemplate.execute(SCRIPT_GRAVAR, chaves,
+                    geracao, String.valueOf(redisTtl.toSeconds()), json, chave);
+            if (gravado != null && gravado == 0) {
+                gravacoesDescartadas.increment();
+                log.debug("Cache catálogo: chave {} não gravada, houve invalidação durante o carregamento", chave);
+            }
+        } catch (Exception e) {
+            errosRedis.increment();
+            log.warn("⚠️ Cache catálogo: falha ao gravar no Redis a chave {}: {}", chave, e.getMessage());
+        }
+    }
+
+    // ========================================
+    // INVALIDAÇÃO
+    // ========================================
+
+    /**
+     * Remove o detalhe do produto e toda listagem em cache que o contém.
+     * Usar quando campos exibidos mudam (preço, nome, estoque...).
+     */
+    public void invalidarProduto(UUID produtoId) {
+        aposCommit(() -> executarInvalidacaoProduto(produtoId));
+    }
+
+    /**
+     * Igual a invalidarProduto para um lote (uma única sincronização pós-commit)
+     */
+    public void invalidarProdutos(Collection<UUID> produtoIds) {
+        List<UUID> ids = List.copyOf(produtoIds);
+        aposCommit(() -> ids.forEach(this::executarInvalidacaoProduto));
+    }
+
+    /**
+     * Remove o produto e as listagens cujo conjunto de itens pode ter mudado
+     * (produto criado, ativado, desativado ou removido).
+     */
+    public void invalidarProdutoEListagens(UUID produtoId, UUID categoriaId) {
+        aposCommit(() -> {
+            executarInvalidacaoProduto(produtoId);
+            executarInvalidacaoNamespace(NS_LISTA);
+            executarInvalidacaoNamespace(NS_MAIS_VENDIDOS);
+            executarInvalidacaoNamespace(NS_MAIS_AVALIADOS);
+            if (categoriaId != null) {
+                executarInvalidacaoNamespace(namespaceCategoria(categoriaId));
+            }
+        });
+    }
+
+    /**
+     * Categoria renomeada ou removida: o nome dela vai embutido no detalhe de
+     * cada produto, então caem os detalhes e todas as listagens.
+     */
+    public void invalidarCategoria(UUID categoriaId) {
+        aposCommit(() -> {
+            executarInvalidacaoNamespace(NS_PRODUTO);
+            executarInvalidacaoNamespace(NS_LISTA);
+            executarInvalidacaoNamespace(NS_MAIS_VENDIDOS);
+            executarInvalidacaoNamespace(NS_MAIS_AVALIADOS);
+            executarInvalidacaoNamespace(namespaceCategoria(categoriaId));
+        });
+    }
+
+    /**
+     * Remove todas as entradas de um namespace (ex.: mudança de categoria)
+     */
+    public void invalidarNamespace(String namespace) {
+        aposCommit(() -> executarInvalidacaoNamespace(namespace));
+    }
+
+    public static String namespaceCategoria(UUID categoriaId) {
+        return "categoria:" + categoriaId;
+    }
+
+    private void executarInvalidacaoProduto(UUID produtoId) {
+        invalidacoes.increment();
+        geracaoLocal.incrementAndGet();
+        String chaveProduto = NS_PRODUTO + ":" + produtoId;
+        local.invalidar(chaveProduto);
+        local.invalidarSe((chave, entrada) -> entrada.produtos().contains(produtoId));
+
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            // Avança a geração antes de apagar: carregamentos em curso não regravam o valor antigo
+            redisTemplate.opsForValue().increment(CHAVE_GERACAO);
+            String indice = INDICE_PRODUTO_PREFIXO + produtoId;
+            Set<String> chaves = redisTemplate.opsForSet().members(indice);
+            List<String> remover = new ArrayList<>();
+            remover.add(CHAVE_PREFIXO + chaveProduto);
+            remover.add(indice);
+            if (chaves != null) {
+                chaves.forEach(c -> remover.add(CHAVE_PREFIXO + c));
+            }
+            redisTemplate.delete(remover);
+        } catch (Exception e) {
+            errosRedis.increment();
+            log.warn("⚠️ Cache catálogo: falha ao invalidar produto {} no Redis: {}", produtoId, e.getMessage());
+        }
+    }
+
+    private void executarInvalidacaoNamespace(String namespace) {
+        invalidacoes.increment();
+        geracaoLocal.incrementAndGet();
+        local.invalidarSe((chave, entrada) -> namespace.equals(entrada.namespace()));
+
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().increment(CHAVE_GERACAO);
+            String ns = NAMESPACE_PREFIXO + namespace;
+            Set<String> chaves = redisTemplate.opsForSet().members(ns);
+            List<String> remover = new ArrayList<>();
+            remover.add(ns);
+            if (chaves != null) {
+                chaves.forEach(c -> remover.add(CHAVE_PREFIXO + c));
+            }
+            redisTemplate.delete(remover);
+        } catch (Exception e) {
+            errosRedis.increment();
+            log.warn("⚠️ Cache catálogo: falha ao invalidar namespace {} no Redis: {}", namespace, e.getMessage());
+        }
+    }
+
+    /**
+     * Executa após o commit da transação corrente (ou imediatamente, se não houver).
+     * Invalidar antes do commit deixaria outra requisição recarregar o valor antigo.
+     */
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    // ========================================
+    // ESTATÍSTICAS
+    // ========================================
+
+    public Map<String, Object> getEstatisticas() {
+        long hitsL1 = (long) hitsLocal.count();
+        long missesL1 = (long) missesLocal.count();
+        long hitsL2 = (long) hitsRedis.count();
+        long missesL2 = (long) missesRedis.count();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localTamanho", local.tamanho());
+        stats.put("localCapacidade", local.getCapacidade());
+        stats.put("localHits", hitsL1);
+        stats.put("localMisses", missesL1);
+        stats.put("localEvicoes", local.getEvicoes());
+        stats.put("redisHabilitado", getRedisTemplate() != null);
+        stats.put("redisHits", hitsL2);
+        stats.put("redisMisses", missesL2);
+        stats.put("redisErros", (long) errosRedis.count());
+        stats.put("invalidacoes", (long) invalidacoes.count());
+        stats.put("gravacoesDescartadas", (long) gravacoesDescartadas.count());
+        long total = hitsL1 + missesL1;
+        stats.put("taxaAcertoGeral", total > 0 ? (double) (hitsL1 + hitsL2) / total : 0.0);
+        return stats;
+    }
+
+    private StringRedisTemplate getRedisTemplate() {
+        if (!useRedis) {
+            return null;
+        }
+        return redisTemplateProvider.getIfAvailable();
+    }
+
+    /**
+     * Entrada do L1: valor já desserializado + metadados de invalidação
+     */
+    private record EntradaCatalogo(String namespace, Object valor, Set<UUID> produtos) {}
+
+    /**
+     * Página serializável (PageImpl não é desserializável pelo Jackson)
+     */
+    public record PaginaCache<T>(List<T> conteudo, int pagina, int tamanho, long total) {}
+}
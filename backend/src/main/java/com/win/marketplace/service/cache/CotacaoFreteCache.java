@@ -0,0 +1,183 @@
+package com.win.marketplace.service.cache;
+
+import com.win.marketplace.dto.response.FreteResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Cache das estimativas de frete exibidas na vitrine (produto/home).
+ *
+ * Chave: lojista + prefixo do CEP de destino + faixa de peso. Visitantes da
+ * mesma região vendo a mesma loja compartilham uma cotação, em vez de uma
+ * chamada paga à Uber por visualização.
+ *
+ * - Fresca até ttl-segundos; depois disso, por mais stale-segundos, a cotação
+ *   antiga é servida enquanto uma revalidação roda em segundo plano
+ * - Chamadas concorrentes para a mesma chave são agrupadas (single-flight):
+ *   no máximo uma cotação em andamento por chave nesta instância
+ * - Só cotações com sucesso são guardadas, sempre sem quoteId (estimativa
+ *   compartilhada não é vinculável; o checkout cota de novo)
+ */
+@Slf4j
+@Component
+public class CotacaoFreteCache {
+
+    private static final double[] FAIXAS_PESO_KG = {1, 3, 5, 10, 20};
+
+    private final LocalTtlCache<String, Cotacao> local;
+    private final ConcurrentHashMap<String, CompletableFuture<FreteResponseDTO>> emAndamento = new ConcurrentHashMap<>();
+    private final Executor revalidacaoExecutor;
+    private final long frescaNanos;
+    private final int digitosPrefixoCep;
+
+    private final Counter hits;
+    private final Counter hitsObsoletos;
+    private final Counter misses;
+    private final Counter agrupadas;
+    private final Counter chamadasUpstream;
+
+    public CotacaoFreteCache(@Qualifier("freteRevalidacaoExecutor") Executor revalidacaoExecutor,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.frete.cotacao-cache.capacidade:10000}") int capacidade,
+                             @Value("${app.frete.cotacao-cache.ttl-segundos:600}") long ttlSegundos,
+                             @Value("${app.frete.cotacao-cache.stale-segundos:300}") long staleSegundos,
+                             @Value("${app.frete.cotacao-cache.digitos-prefixo-cep:5}") int digitosPrefixoCep) {
+        this.revalidacaoExecutor = revalidacaoExecutor;
+        this.frescaNanos = Duration.ofSeconds(ttlSegundos).toNanos();
+        this.local = new LocalTtlCache<>(capacidade, Duration.ofSeconds(ttlSegundos + staleSegundos));
+        this.digitosPrefixoCep = digitosPrefixoCep;
+
+        this.hits = contador(meterRegistry, "hit");
+        this.hitsObsoletos = contador(meterRegistry, "stale");
+        this.misses = contador(meterRegistry, "miss");
+        this.agrupadas = contador(meterRegistry, "agrupada");
+        this.chamadasUpstream = Counter.builder("frete.cotacao.upstream.chamadas").register(meterRegistry);
+        FunctionCounter.builder("frete.cotacao.upstream.evitadas", this, CotacaoFreteCache::chamadasEvitadas)
+                .register(meterRegistry);
+        Gauge.builder("frete.cotacao.cache.taxa-acerto", this, CotacaoFreteCache::taxaAcerto)
+                .register(meterRegistry);
+        Gauge.builder("frete.cotacao.cache.tamanho", local, LocalTtlCache::tamanho)
+                .register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("frete.cotacao.cache.requisicoes").tag("resultado", resultado).register(registry);
+    }
+
+    /**
+     * Monta a chave da estimativa: lojista + prefixo do CEP + faixa de peso
+     */
+    public String chave(UUID lojistaId, String cepLimpo, Double pesoKg) {
+        String prefixo = cepLimpo.length() > digitosPrefixoCep ? cepLimpo.substring(0, digitosPrefixoCep) : cepLimpo;
+        return lojistaId + ":" + prefixo + ":" + faixaPeso(pesoKg);
+    }
+
+    static String faixaPeso(Double pesoKg) {
+        double peso = pesoKg != null ? pesoKg : 1.0;
+        for (double limite : FAIXAS_PESO_KG) {
+            if (peso <= limite) {
+                return "ate" + String.format(Locale.ROOT, "%.0f", limite);
+            }
+        }
+        return "acima" + String.format(Locale.ROOT, "%.0f", FAIXAS_PESO_KG[FAIXAS_PESO_KG.length - 1]);
+    }
+
+    /**
+     * Retorna a estimativa em cache ou cota via carregador (uma chamada por chave em andamento)
+     */
+    public FreteResponseDTO obter(String chave, Supplier<FreteResponseDTO> carregador) {
+        Cotacao cotacao = local.get(chave);
+        if (cotacao != null) {
+            if (System.nanoTime() - cotacao.obtidaEmNanos() <= frescaNanos) {
+                hits.increment();
+            } else {
+                hitsObsoletos.increment();
+                revalidarEmSegundoPlano(chave, carregador);
+            }
+            return cotacao.valor();
+        }
+
+        misses.increment();
+        CompletableFuture<FreteResponseDTO> novo = new CompletableFuture<>();
+        CompletableFuture<FreteResponseDTO> existente = emAndamento.putIfAbsent(chave, novo);
+        if (existente != null) {
+            agrupadas.increment();
+            return aguardar(existente);
+        }
+        carregar(chave, carregador, novo);
+        return aguardar(novo);
+    }
+
+    private void revalidarEmSegundoPlano(String chave, Supplier<FreteResponseDTO> carregador) {
+        CompletableFuture<FreteResponseDTO> novo = new CompletableFuture<>();
+        if (emAndamento.putIfAbsent(chave, novo) != null) {
+            return; // Revalidação já em andamento
+        }
+        try {
+            revalidacaoExecutor.execute(() -> carregar(chave, carregador, novo));
+        } catch (RejectedExecutionException e) {
+            emAndamento.remove(chave, novo);
+            novo.cancel(false);
+            log.debug("Revalidação de frete descartada (pool cheio): {}", chave);
+        }
+    }
+
+    private void carregar(String chave, Supplier<FreteResponseDTO> carregador, CompletableFuture<FreteResponseDTO> resultado) {
+        try {
+            chamadasUpstream.increment();
+            FreteResponseDTO valor = carregador.get();
+            if (valor != null && Boolean.TRUE.equals(valor.getSucesso())) {
+                valor.setQuoteId(null);
+                local.put(chave, new Cotacao(valor, System.nanoTime()));
+            }
+            resultado.complete(valor);
+        } catch (Exception e) {
+            if (!resultado.isDone()) {
+                resultado.completeExceptionally(e);
+            }
+            log.warn("⚠️ Falha ao cotar frete para {}: {}", chave, e.getMessage());
+        } finally {
+            emAndamento.remove(chave, resultado);
+        }
+    }
+
+    private static FreteResponseDTO aguardar(CompletableFuture<FreteResponseDTO> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private double chamadasEvitadas() {
+        return hits.count() + hitsObsoletos.count() + agrupadas.count();
+    }
+
+    private double taxaAcerto() {
+        double servidas = hits.count() + hitsObsoletos.count();
+        double total = servidas + misses.count();
+        return total == 0 ? 0.0 : servidas / total;
+    }
+
+    private record Cotacao(FreteResponseDTO valor, long obtidaEmNanos) {
+    }
+}
@@ -0,0 +1,279 @@
+package com.win.marketplace.service.cache;
+
+import com.win.marketplace.model.CepCoordenada;
+import com.win.marketplace.repository.CepCoordenadaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache de geocodificação em três níveis, compartilhado entre réplicas e
+ * preservado entre restarts.
+ *
+ * L1: LocalTtlCache em memória (limitado, pré-aquecido a partir do banco na subida)
+ * L2: Redis ("geo:v1:{chave}"), TTL longo
+ * L3: tabela cep_coordenadas (só para chaves de CEP, sem expiração)
+ *
+ * CEPs inexistentes (ViaCEP respondeu "erro") são guardados como resultado
+ * negativo em L1/L2 com TTL curto, para não repetir a consulta a cada visita.
+ * Sem Redis o cache degrada para L1 + banco.
+ */
+@Slf4j
+@Service
+public class GeocodificacaoCacheService {
+
+    private static final String CHAVE_PREFIXO = "geo:v1:";
+    private static final String PREFIXO_CEP = "cep:";
+    private static final String VALOR_NEGATIVO = "-";
+
+    private final CepCoordenadaRepository cepCoordenadaRepository;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final LocalTtlCache<String, Entrada> local;
+    private final Duration ttl;
+    private final Duration ttlNegativo;
+    private final boolean useRedis;
+
+    private final Counter hitsLocal;
+    private final Counter hitsRedis;
+    private final Counter hitsBanco;
+    private final Counter hitsNegativos;
+    private final Counter misses;
+    private final Counter errosRedis;
+
+    public GeocodificacaoCacheService(CepCoordenadaRepository cepCoordenadaRepository,
+                                      ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.geocoding.cache.local.capacidade:50000}") int capacidadeLocal,
+                                      @Value("${app.geocoding.cache.ttl-dias:30}") long ttlDias,
+                                      @Value("${app.geocoding.cache.ttl-negativo-horas:6}") long ttlNegativoHoras,
+                                      @Value("${app.geocoding.cache.use-redis:true}") boolean useRedis) {
+        this.cepCoordenadaRepository = cepCoordenadaRepository;
+        this.redisTemplateProvider = redisTemplateProvider;
+        this.ttl = Duration.ofDays(ttlDias);
+        this.ttlNegativo = Duration.ofHours(ttlNegativoHoras);
+        this.local = new LocalTtlCache<>(capacidadeLocal, ttl);
+        this.useRedis = useRedis;
+
+        this.hitsLocal = contador(meterRegistry, "local", "hit");
+        this.hitsRedis = contador(meterRegistry, "redis", "hit");
+        this.hitsBanco = contador(meterRegistry, "banco", "hit");
+        this.hitsNegativos = contador(meterRegistry, "negativo", "hit");
+        this.misses = contador(meterRegistry, "todos", "miss");
+        this.errosRedis = Counter.builder("geocoding.cache.erros").tag("nivel", "redis").register(meterRegistry);
+        Gauge.builder("geocoding.cache.tamanho", local, LocalTtlCache::tamanho)
+                .tag("nivel", "local")
+                .register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry registry, String nivel, String resultado) {
+        return Counter.builder("geocoding.cache.requisicoes").tag("nivel", nivel).tag("resultado", resultado).register(registry);
+    }
+
+    public static String chaveCep(String cepLimpo) {
+        return PREFIXO_CEP + cepLimpo;
+    }
+
+    /**
+     * Carrega no L1 os CEPs geocodificados mais recentes, evitando uma
+     * rajada de chamadas ViaCEP/Nominatim logo após o deploy
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preAquecer() {
+        try {
+            List<CepCoordenada> ceps = cepCoordenadaRepository.findAllByOrderByAtualizadoEmDesc(
+                    PageRequest.of(0, local.getCapacidade()));
+            for (CepCoordenada cep : ceps) {
+                local.put(chaveCep(cep.getCep()), new Entrada(cep.getLatitude(), cep.getLongitude()));
+            }
+            log.info("🗺️ Cache de geocodificação pré-aquecido com {} CEPs", ceps.size());
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível pré-aquecer o cache de geocodificação: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Busca nos três níveis, promovendo o resultado para os níveis acima.
+     *
+     * @return entrada (positiva ou negativa) ou vazio se a chave nunca foi resolvida
+     */
+    public Optional<Entrada> buscar(String chave) {
+        Entrada entrada = local.get(chave);
+        if (entrada != null) {
+            contarHit(entrada, hitsLocal);
+            return Optional.of(entrada);
+        }
+
+        StringRedisTemplate redisTemplate = getRedisTemplate();
+        if (redisTemplate != null) {
+            try {
+                String valor = redisTemplate.opsForValue().get(CHAVE_PREFIXO + chave);
+                if (valor != null) {
+                    entrada = Entrada.deserializar(valor);
+                    if (entrada != null) {
+                        local.put(chave, entrada, entrada.negativa() ? ttlNegativo : ttl);
+                        contarHit(entrada, hitsRedis);
+                        return Optional.of(entrada);
+                    }
+                }
+            } catch (Exception e) {
+                errosRedis.increment();
+                log.warn("⚠️ Cache geocodificação: falha ao ler do Redis a chave {}: {}", chave, e.getMessage());
+            }
+        }
+
+        if (chave.startsWith(PREFIXO_CEP)) {
+            Optional<CepCoordenada> cep = cepCoordenadaRepository.findById(chave.substring(PREFIXO_CEP.length()));
+            if (cep.isPresent()) {
+                entrada = new Entrada(cep.get().getLatitude(), cep.get().getLongitude());
+                local.put(chave, entrada);
+                gravarNoRedis(redisTemplate, chave, entrada, ttl);
+                hitsBanco.increment();
+                return Optional.of(entrada);
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Guarda coordenadas resolvidas. Com fonte informada e chave de CEP, grava
+     * também no banco (nível durável); aproximações passam fonte null.
+     */
+    public void salvar(String chave, Double[] coordenadas, String fonte) {
+        Entrada entrada = new Entrada(coordenadas[0], coordenadas[1]);
+        local.put(chave, entrada);
+        gravarNoRedis(getRedisTemplate(), chave, entrada, ttl);
+
+        if (fonte != null && chave.startsWith(PREFIXO_CEP)) {
+            try {
+                cepCoordenadaRepository.salvar(chave.substring(PREFIXO_CEP.length()),
+                        coordenadas[0], coordenadas[1], fonte);
+            } catch (Exception e) {
+                log.warn("⚠️ Falha ao persistir coordenadas do {}: {}", chave, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Guarda coordenadas aproximadas só em L1/L2 e pelo TTL curto, para que
+     * uma geocodificação precisa seja tentada de novo mais tarde
+     */
+    public void salvarAproximacao(String chave, Double[] coordenadas) {
+        Entrada entrada = new Entrada(coordenadas[0], coordenadas[1]);
+        local.put(chave, entrada, ttlNegativo);
+        gravarNoRedis(getRedisTemplate(), chave, entrada, ttlNegativo);
+    }
+
+    /**
+     * Marca a chave como inexistente (ex.: CEP que o ViaCEP não conhece)
+     */
+    public void salvarNegativo(String chave) {
+        local.put(chave, Entrada.NEGATIVA, ttlNegativo);
+        gravarNoRedis(getRedisTemplate(), chave, Entrada.NEGATIVA, ttlNegativo);
+    }
+
+    public int limparExpirados() {
+        return local.limparExpirados();
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalEntradas", local.tamanho());
+        stats.put("capacidadeLocal", local.getCapacidade());
+        stats.put("hitsLocal", (long) hitsLocal.count());
+        stats.put("hitsRedis", (long) hitsRedis.count());
+        stats.put("hitsBanco", (long) hitsBanco.count());
+        stats.put("hitsNegativos", (long) hitsNegativos.count());
+        stats.put("misses", (long) misses.count());
+        double hits = hitsLocal.count() + hitsRedis.count() + hitsBanco.count();
+        double total = hits + misses.count();
+        stats.put("taxaAcerto", total == 0 ? 0.0 : hits / total);
+        stats.put("evicoesLocal", local.getEvicoes());
+        stats.put("redisAtivo", getRedisTemplate() != null);
+        try {
+            stats.put("cepsPersistidos", cepCoordenadaRepository.count());
+        } catch (Exception e) {
+            stats.put("cepsPersistidos", -1);
+        }
+        stats.put("ttlDias", ttl.toDays());
+        stats.put("ttlNegativoHoras", ttlNegativo.toHours());
+        return stats;
+    }
+
+    private void contarHit(Entrada entrada, Counter contadorNivel) {
+        contadorNivel.increment();
+        if (entrada.negativa()) {
+            hitsNegativos.increment();
+        }
+    }
+
+    private void gravarNoRedis(StringRedisTemplate redisTemplate, String chave, Entrada entrada, Duration ttlEntrada) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(CHAVE_PREFIXO + chave, entrada.serializar(), ttlEntrada);
+        } catch (Exception e) {
+            errosRedis.increment();
+            log.warn("⚠️ Cache geocodificação: falha ao gravar no Redis a chave {}: {}", chave, e.getMessage());
+        }
+    }
+
+    private StringRedisTemplate getRedisTemplate() {
+        if (!useRedis) {
+            return null;
+        }
+        return redisTemplateProvider.getIfAvailable();
+    }
+
+    /**
+     * Coordenadas em cache; latitude/longitude null indicam resultado negativo
+     */
+    public record Entrada(Double latitude, Double longitude) {
+
+        static final Entrada NEGATIVA = new Entrada(null, null);
+
+        public boolean negativa() {
+            return latitude == null || longitude == null;
+        }
+
+        public Double[] coordenadas() {
+            return negativa() ? null : new Double[]{latitude, longitude};
+        }
+
+        String serializar() {
+            return negativa() ? VALOR_NEGATIVO : String.format(Locale.ROOT, "%s,%s", latitude, longitude);
+        }
+
+        static Entrada deserializar(String valor) {
+            if (VALOR_NEGATIVO.equals(valor)) {
+                return NEGATIVA;
+            }
+            String[] partes = valor.split(",");
+            if (partes.length != 2) {
+                return null;
+            }
+            try {
+                return new Entrada(Double.parseDouble(partes[0]), Double.parseDouble(partes[1]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
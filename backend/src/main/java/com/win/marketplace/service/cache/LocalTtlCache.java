@@ -0,0 +1,181 @@
+package com.win.marketplace.service.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * Cache em memória limitado (LRU) com expiração por entrada.
+ *
+ * Pensado para ser o nível local (L1) na frente do Redis: poucos milhares de
+ * entradas, leitura muito frequente. Acesso sincronizado sobre um
+ * LinkedHashMap em ordem de acesso; os contadores usam LongAdder para não
+ * disputar o lock.
+ *
+ * @param <K> tipo da chave
+ * @param <V> tipo do valor
+ */
+public class LocalTtlCache<K, V> {
+
+    private final int capacidade;
+    private final Duration ttl;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evicoes = new LongAdder();
+
+    public LocalTtlCache(int capacidade, Duration ttl) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade do cache deve ser maior que zero");
+        }
+        this.capacidade = capacidade;
+        this.ttl = ttl;
+        this.entradas = new LinkedHashMap<>(Math.min(capacidade, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > LocalTtlCache.this.capacidade) {
+                    evicoes.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retorna o valor se presente e não expirado; caso contrário null
+     */
+    public V get(K chave) {
+        Entrada<V> entrada;
+        synchronized (entradas) {
+            entrada = entradas.get(chave);
+            if (entrada != null && entrada.expirada()) {
+                entradas.remove(chave);
+                evicoes.increment();
+                entrada = null;
+            }
+        }
+        if (entrada == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entrada.valor();
+    }
+
+    /**
+     * Retorna o valor mesmo que expirado (útil para servir conteúdo "stale"
+     * enquanto uma revalidação acontece). Não altera contadores.
+     */
+    public V getIgnorandoExpiracao(K chave) {
+        synchronized (entradas) {
+            Entrada<V> entrada = entradas.get(chave);
+            return entrada != null ? entrada.valor() : null;
+        }
+    }
+
+    /**
+     * Indica se a entrada existe mas já passou do TTL
+     */
+    public boolean expirada(K chave) {
+        synchronized (entradas) {
+            Entrada<V> entrada = entradas.get(chave);
+            return entrada == null || entrada.expirada();
+        }
+    }
+
+    public void put(K chave, V valor) {
+        put(chave, valor, ttl);
+    }
+
+    public void put(K chave, V valor, Duration ttlEntrada) {
+        long expiraEm = System.nanoTime() + ttlEntrada.toNanos();
+        synchronized (entradas) {
+            entradas.put(chave, new Entrada<>(valor, expiraEm));
+        }
+    }
+
+    public void invalidar(K chave) {
+        synchronized (entradas) {
+            entradas.remove(chave);
+        }
+    }
+
+    /**
+     * Remove todas as entradas que satisfazem o predicado
+     *
+     * @return quantidade de entradas removidas
+     */
+    public int invalidarSe(BiPredicate<K, V> predicado) {
+        int removidas = 0;
+        synchronized (entradas) {
+            Iterator<Map.Entry<K, Entrada<V>>> it = entradas.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Entrada<V>> e = it.next();
+                if (predicado.test(e.getKey(), e.getValue().valor())) {
+                    it.remove();
+                    removidas++;
+                }
+            }
+        }
+        return removidas;
+    }
+
+    /**
+     * Remove entradas expiradas (pode ser chamado por scheduler)
+     *
+     * @return quantidade de entradas removidas
+     */
+    public int limparExpirados() {
+        int removidas = 0;
+        synchronized (entradas) {
+            Iterator<Entrada<V>> it = entradas.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expirada()) {
+                    it.remove();
+                    removidas++;
+                }
+            }
+        }
+        evicoes.add(removidas);
+        return removidas;
+    }
+
+    public void limpar() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+    }
+
+    public int tamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvicoes() {
+        return evicoes.sum();
+    }
+
+    private record Entrada<V>(V valor, long expiraEmNanos) {
+        boolean expirada() {
+            return System.nanoTime() - expiraEmNanos > 0;
+        }
+    }
+}
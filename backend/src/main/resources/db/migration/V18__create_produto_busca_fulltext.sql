@@ -0,0 +1,96 @@
+-- ====================================
+-- V18: Busca full-text de produtos
+-- ====================================
+-- Descrição: Substitui o LIKE '%termo%' sobre produtos.nome por um índice
+-- tsvector (nome + categoria + descrição) com stemming em português e
+-- insensível a acentos, além de um índice de trigramas para tolerar erros
+-- de digitação. A coluna busca_vetor é mantida por trigger.
+
+CREATE EXTENSION IF NOT EXISTS "unaccent";
+CREATE EXTENSION IF NOT EXISTS "pg_trgm";
+
+-- unaccent() é STABLE; o wrapper IMMUTABLE permite usá-lo em índices de expressão
+CREATE OR REPLACE FUNCTION f_unaccent(texto TEXT)
+RETURNS TEXT AS $$
+    SELECT public.unaccent('public.unaccent', texto)
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT;
+
+-- Configuração de busca: português com remoção de acentos antes do stemming
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_ts_config WHERE cfgname = 'portuguese_unaccent') THEN
+        CREATE TEXT SEARCH CONFIGURATION portuguese_unaccent (COPY = portuguese);
+        ALTER TEXT SEARCH CONFIGURATION portuguese_unaccent
+            ALTER MAPPING FOR hword, hword_part, word WITH unaccent, portuguese_stem;
+    END IF;
+END $$;
+
+-- Pesos: nome (A) > categoria (B) > descrição (C)
+CREATE OR REPLACE FUNCTION produto_busca_vetor(nome TEXT, categoria_nome TEXT, descricao TEXT)
+RETURNS TSVECTOR AS $$
+    SELECT setweight(to_tsvector('portuguese_unaccent', coalesce(nome, '')), 'A')
+        || setweight(to_tsvector('portuguese_unaccent', coalesce(categoria_nome, '')), 'B')
+        || setweight(to_tsvector('portuguese_unaccent', coalesce(left(descricao, 10000), '')), 'C')
+$$ LANGUAGE sql STABLE PARALLEL SAFE;
+
+ALTER TABLE produtos
+    ADD COLUMN IF NOT EXISTS busca_vetor TSVECTOR;
+
+-- Trigger em produtos: recalcula o vetor quando nome, descrição ou categoria mudam
+CREATE OR REPLACE FUNCTION produtos_atualizar_busca_vetor()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.busca_vetor := produto_busca_vetor(
+        NEW.nome,
+        (SELECT c.nome FROM categorias c WHERE c.id = NEW.categoria_id),
+        NEW.descricao
+    );
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trigger_produtos_busca_vetor ON produtos;
+CREATE TRIGGER trigger_produtos_busca_vetor
+    BEFORE INSERT OR UPDATE OF nome, descricao, categoria_id ON produtos
+    FOR EACH ROW
+    EXECUTE FUNCTION produtos_atualizar_busca_vetor();
+
+-- Trigger em categorias: renomear uma categoria reindexa apenas os seus produtos
+CREATE OR REPLACE FUNCTION categorias_propagar_busca_vetor()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.nome IS DISTINCT FROM OLD.nome THEN
+        UPDATE produtos p
+           SET busca_vetor = produto_busca_vetor(p.nome, NEW.nome, p.descricao)
+         WHERE p.categoria_id = NEW.id;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trigger_categorias_busca_vetor ON categorias;
+CREATE TRIGGER trigger_categorias_busca_vetor
+    AFTER UPDATE OF nome ON categorias
+    FOR EACH ROW
+    EXECUTE FUNCTION categorias_propagar_busca_vetor();
+
+-- Backfill dos produtos existentes
+UPDATE produtos p
+   SET busca_vetor = produto_busca_vetor(p.nome, c.nome, p.descricao)
+  FROM categorias c
+ WHERE c.id = p.categoria_id;
+
+-- Índices: GIN sobre o vetor (match + ranking) e GIN de trigramas sobre o nome
+-- normalizado (tolerância a erros de digitação). Ambos parciais em ativo = true,
+-- que é o único recorte consultado pela vitrine.
+CREATE INDEX IF NOT EXISTS idx_produtos_busca_vetor
+    ON produtos USING GIN (busca_vetor)
+    WHERE ativo = true;
+
+CREATE INDEX IF NOT EXISTS idx_produtos_nome_trgm
+    ON produtos USING GIN (f_unaccent(lower(nome)) gin_trgm_ops)
+    WHERE ativo = true;
+
+COMMENT ON COLUMN produtos.busca_vetor IS 'tsvector (nome A, categoria B, descrição C) mantido por trigger para a busca full-text';
+
+DO $$ BEGIN RAISE NOTICE 'V18: Busca full-text de produtos criada.'; END $$;
@@ -0,0 +1,62 @@
+-- ====================================
+-- V19: Ranking "mais vendidos" pré-calculado
+-- ====================================
+-- Descrição: Substitui o GROUP BY sobre todos os itens de pedido por contadores
+-- mantidos incrementalmente na confirmação/cancelamento do pedido
+-- (RankingVendasService). O backfill é feito pela aplicação na subida quando a
+-- tabela está vazia, e uma reconstrução diária corrige eventuais divergências.
+
+-- Total por produto (ranking de todo o período). Categoria e lojista são
+-- desnormalizados para que o top-k filtrado seja lido direto do índice.
+CREATE TABLE IF NOT EXISTS produto_vendas_agregadas (
+    produto_id UUID PRIMARY KEY REFERENCES produtos(id) ON DELETE CASCADE,
+    categoria_id UUID NOT NULL,
+    lojista_id UUID NOT NULL,
+    quantidade_vendida BIGINT NOT NULL DEFAULT 0,
+    atualizado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_produto_vendas_agregadas_quantidade
+    ON produto_vendas_agregadas (quantidade_vendida DESC, produto_id);
+
+CREATE INDEX IF NOT EXISTS idx_produto_vendas_agregadas_categoria
+    ON produto_vendas_agregadas (categoria_id, quantidade_vendida DESC, produto_id);
+
+CREATE INDEX IF NOT EXISTS idx_produto_vendas_agregadas_lojista
+    ON produto_vendas_agregadas (lojista_id, quantidade_vendida DESC, produto_id);
+
+-- Buckets diários (janelas de 7 e 30 dias); só os últimos 30 dias são mantidos
+CREATE TABLE IF NOT EXISTS produto_vendas_diarias (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    produto_id UUID NOT NULL REFERENCES produtos(id) ON DELETE CASCADE,
+    dia DATE NOT NULL,
+    quantidade_vendida BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_produto_vendas_diarias_produto_dia UNIQUE (produto_id, dia)
+);
+
+CREATE INDEX IF NOT EXISTS idx_produto_vendas_diarias_dia
+    ON produto_vendas_diarias (dia, produto_id);
+
+-- Mantém categoria/lojista desnormalizados quando o produto muda de categoria
+CREATE OR REPLACE FUNCTION produtos_propagar_vendas_agregadas()
+RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE produto_vendas_agregadas
+       SET categoria_id = NEW.categoria_id,
+           lojista_id = NEW.lojista_id
+     WHERE produto_id = NEW.id;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trigger_produtos_vendas_agregadas ON produtos;
+CREATE TRIGGER trigger_produtos_vendas_agregadas
+    AFTER UPDATE OF categoria_id, lojista_id ON produtos
+    FOR EACH ROW
+    WHEN (OLD.categoria_id IS DISTINCT FROM NEW.categoria_id OR OLD.lojista_id IS DISTINCT FROM NEW.lojista_id)
+    EXECUTE FUNCTION produtos_propagar_vendas_agregadas();
+
+COMMENT ON TABLE produto_vendas_agregadas IS 'Unidades vendidas por produto (pedidos confirmados e não cancelados)';
+COMMENT ON TABLE produto_vendas_diarias IS 'Unidades vendidas por produto e dia de confirmação (últimos 30 dias)';
+
+DO $$ BEGIN RAISE NOTICE 'V19: Ranking de mais vendidos pré-calculado criado.'; END $$;
@@ -0,0 +1,14 @@
+-- ====================================
+-- V20: Reserva de estoque na criação do pedido
+-- ====================================
+-- Descrição: O checkout passa a baixar o estoque no momento da criação do
+-- pedido (UPDATE condicional estoque >= quantidade). A flag indica que o
+-- pedido ainda segura esse estoque e que o cancelamento deve devolvê-lo.
+-- Pedidos anteriores a esta versão não reservaram estoque (FALSE).
+
+ALTER TABLE pedidos
+    ADD COLUMN IF NOT EXISTS estoque_reservado BOOLEAN NOT NULL DEFAULT FALSE;
+
+COMMENT ON COLUMN pedidos.estoque_reservado IS 'TRUE enquanto o estoque dos itens estiver baixado por este pedido';
+
+DO $$ BEGIN RAISE NOTICE 'V20: Coluna estoque_reservado adicionada em pedidos.'; END $$;
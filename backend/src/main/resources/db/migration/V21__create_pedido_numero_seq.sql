@@ -0,0 +1,15 @@
+-- ====================================
+-- V21: Sequência dos números de pedido
+-- ====================================
+-- Descrição: Substitui "PED" + timestamp em milissegundos (colidia com dois
+-- checkouts no mesmo milissegundo) por uma sequência alocada em blocos (hi/lo).
+-- Cada instância reserva 100 números por nextval e os distribui em memória.
+-- O INCREMENT BY deve ser igual a NumeroPedidoGenerator.TAMANHO_BLOCO.
+
+CREATE SEQUENCE IF NOT EXISTS pedido_numero_seq
+    START WITH 1
+    INCREMENT BY 100;
+
+COMMENT ON SEQUENCE pedido_numero_seq IS 'Blocos de 100 números de pedido (hi/lo), ver NumeroPedidoGenerator';
+
+DO $$ BEGIN RAISE NOTICE 'V21: Sequência pedido_numero_seq criada.'; END $$;
@@ -0,0 +1,31 @@
+-- ====================================
+-- V22: Índices para paginação por cursor das listagens de pedidos
+-- ====================================
+-- Descrição: As listagens de pedidos (cliente, motorista, lojista, status e
+-- admin) passaram a ser paginadas por keyset em (criado_em DESC, id DESC).
+-- Cada índice abaixo atende a primeira fase da paginação (apenas os IDs da
+-- página) com uma varredura de faixa, sem ordenar nem ler pedidos anteriores.
+-- As listagens do lojista usam pedidos.lojista_id (pedido de um único lojista)
+-- em vez do JOIN com itens_pedidos + DISTINCT.
+
+CREATE INDEX IF NOT EXISTS idx_pedidos_usuario_criado_em
+    ON pedidos (usuario_id, criado_em DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_pedidos_motorista_criado_em
+    ON pedidos (motorista_id, criado_em DESC, id DESC)
+    WHERE motorista_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_pedidos_lojista_criado_em
+    ON pedidos (lojista_id, criado_em DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_pedidos_lojista_status_criado_em
+    ON pedidos (lojista_id, status, criado_em DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_pedidos_status_criado_em
+    ON pedidos (status, criado_em DESC, id DESC);
+
+-- Substitui idx_pedidos_criado_em (V1) na listagem geral do admin
+CREATE INDEX IF NOT EXISTS idx_pedidos_criado_em_id
+    ON pedidos (criado_em DESC, id DESC);
+
+DO $$ BEGIN RAISE NOTICE 'V22: Índices de paginação por cursor de pedidos criados.'; END $$;
@@ -0,0 +1,29 @@
+-- ====================================
+-- V23: Outbox de notificações de pedido
+-- ====================================
+-- Descrição: A mudança de status do pedido grava um único evento nesta tabela
+-- (mesma transação). O NotificacaoOutboxDispatcher consome os eventos em lote,
+-- grava as notificações do cliente e dos admins e faz o push via WebSocket,
+-- fora da transação (e do lock) do pedido.
+
+CREATE TABLE IF NOT EXISTS notificacoes_outbox (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    pedido_id UUID NOT NULL,
+    numero_pedido VARCHAR(50) NOT NULL,
+    usuario_id UUID NOT NULL,
+    status_anterior VARCHAR(30) NOT NULL,
+    status_novo VARCHAR(30) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INTEGER NOT NULL DEFAULT 0,
+    ultimo_erro VARCHAR(500),
+    criado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    processado_em TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT chk_notificacoes_outbox_status CHECK (status IN ('PENDENTE', 'ENVIADO', 'FALHOU'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_notificacoes_outbox_pendentes
+    ON notificacoes_outbox (status, criado_em);
+
+COMMENT ON TABLE notificacoes_outbox IS 'Eventos de mudança de status de pedido aguardando envio de notificações';
+
+DO $$ BEGIN RAISE NOTICE 'V23: Outbox de notificações criada.'; END $$;
@@ -0,0 +1,31 @@
+-- ====================================
+-- V24: Outbox de despacho automático de corridas Uber
+-- ====================================
+-- Descrição: Marcar o pedido como PRONTO só grava uma linha aqui; a chamada à
+-- Uber é feita por workers (DespachoUberService) fora da transação do lojista,
+-- com retentativas em backoff exponencial e chave de idempotência por pedido.
+-- Linhas PROCESSANDO com lease (travado_ate) expirado são retomadas por outro worker.
+
+CREATE TABLE IF NOT EXISTS despachos_uber_outbox (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    pedido_id UUID NOT NULL REFERENCES pedidos(id) ON DELETE CASCADE,
+    chave_idempotencia VARCHAR(100) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INTEGER NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    travado_ate TIMESTAMP WITH TIME ZONE,
+    ultimo_erro VARCHAR(500),
+    criado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    atualizado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT uk_despachos_uber_outbox_pedido UNIQUE (pedido_id),
+    CONSTRAINT uk_despachos_uber_outbox_chave UNIQUE (chave_idempotencia),
+    CONSTRAINT ck_despachos_uber_outbox_status CHECK (status IN ('PENDENTE', 'PROCESSANDO', 'CONCLUIDO', 'FALHOU'))
+);
+
+-- Reivindicação pelos workers: pendentes vencidos e leases expirados
+CREATE INDEX IF NOT EXISTS idx_despachos_uber_outbox_fila
+    ON despachos_uber_outbox (status, proxima_tentativa_em);
+
+COMMENT ON TABLE despachos_uber_outbox IS 'Solicitações automáticas de corrida Uber pendentes (uma por pedido)';
+
+DO $$ BEGIN RAISE NOTICE 'V24: Outbox de despacho Uber criada.'; END $$;
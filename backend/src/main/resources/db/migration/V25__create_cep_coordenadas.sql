@@ -0,0 +1,24 @@
+-- ====================================
+-- V25: Nível durável do cache de geocodificação
+-- ====================================
+-- Descrição: Coordenadas de CEP resolvidas via Nominatim/Google ficam gravadas
+-- aqui (GeocodificacaoCacheService). Sobrevivem a restarts, são compartilhadas
+-- entre réplicas e pré-aquecem o cache em memória na subida. Coordenadas
+-- aproximadas (fixas por cidade) e CEPs inexistentes não são gravados.
+
+CREATE TABLE IF NOT EXISTS cep_coordenadas (
+    cep VARCHAR(8) PRIMARY KEY,
+    latitude DOUBLE PRECISION NOT NULL,
+    longitude DOUBLE PRECISION NOT NULL,
+    fonte VARCHAR(20) NOT NULL,
+    atualizado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT ck_cep_coordenadas_cep CHECK (cep ~ '^[0-9]{8}$')
+);
+
+-- Pré-aquecimento: CEPs mais recentes primeiro
+CREATE INDEX IF NOT EXISTS idx_cep_coordenadas_atualizado_em
+    ON cep_coordenadas (atualizado_em DESC);
+
+COMMENT ON TABLE cep_coordenadas IS 'Coordenadas geocodificadas por CEP (cache durável de geocodificação)';
+
+DO $$ BEGIN RAISE NOTICE 'V25: Tabela cep_coordenadas criada.'; END $$;
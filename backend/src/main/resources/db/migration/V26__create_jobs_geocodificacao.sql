@@ -0,0 +1,33 @@
+-- ====================================
+-- V26: Jobs de geocodificação em lote
+-- ====================================
+-- Descrição: Progresso e checkpoint da geocodificação em massa de lojistas,
+-- endereços e usuários (GeocodificacaoLoteService). O job grava o último id
+-- processado a cada página e é retomado a partir dele se a instância cair.
+
+CREATE TABLE IF NOT EXISTS jobs_geocodificacao (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    alvo VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'EXECUTANDO',
+    total INTEGER NOT NULL DEFAULT 0,
+    processados INTEGER NOT NULL DEFAULT 0,
+    sucessos INTEGER NOT NULL DEFAULT 0,
+    falhas INTEGER NOT NULL DEFAULT 0,
+    ultimo_id_processado UUID,
+    instancia VARCHAR(100),
+    ultimo_erro VARCHAR(500),
+    iniciado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    atualizado_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    concluido_em TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS idx_jobs_geocodificacao_alvo_status
+    ON jobs_geocodificacao (alvo, status);
+
+-- No máximo um job em execução por alvo
+CREATE UNIQUE INDEX IF NOT EXISTS uk_jobs_geocodificacao_alvo_executando
+    ON jobs_geocodificacao (alvo) WHERE status = 'EXECUTANDO';
+
+COMMENT ON TABLE jobs_geocodificacao IS 'Geocodificação em lote com checkpoint (keyset por id) e heartbeat';
+
+DO $$ BEGIN RAISE NOTICE 'V26: Tabela jobs_geocodificacao criada.'; END $$;
@@ -0,0 +1,15 @@
+-- ====================================
+-- V27: Cursor da sincronização incremental de estoque ERP
+-- ====================================
+-- Descrição: ERPs com modo incremental (Tiny, NavSoft) recebem apenas os
+-- saldos alterados desde stock_cursor_at. Uma reconciliação completa roda
+-- periodicamente (last_full_sync_at) como rede de segurança.
+
+ALTER TABLE lojista_erp_config
+    ADD COLUMN IF NOT EXISTS stock_cursor_at TIMESTAMP,
+    ADD COLUMN IF NOT EXISTS last_full_sync_at TIMESTAMP;
+
+COMMENT ON COLUMN lojista_erp_config.stock_cursor_at IS 'Início da última sincronização de estoque bem-sucedida (cursor incremental)';
+COMMENT ON COLUMN lojista_erp_config.last_full_sync_at IS 'Última reconciliação completa de todos os SKUs vinculados';
+
+DO $$ BEGIN RAISE NOTICE 'V27: Cursor incremental de estoque ERP adicionado.'; END $$;
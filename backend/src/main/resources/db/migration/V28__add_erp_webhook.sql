@@ -0,0 +1,16 @@
+-- ====================================
+-- V28: Webhooks de estoque enviados pelo ERP
+-- ====================================
+-- Descrição: o ERP pode notificar alterações de saldo em
+-- POST /api/v1/webhooks/erp/{configId}, autenticado pelo segredo do lojista.
+-- Enquanto houver webhooks recentes (last_webhook_at), o polling roda só
+-- como reconciliação, a cada 60 minutos.
+
+ALTER TABLE lojista_erp_config
+    ADD COLUMN IF NOT EXISTS webhook_secret_encrypted VARCHAR(500),
+    ADD COLUMN IF NOT EXISTS last_webhook_at TIMESTAMP;
+
+COMMENT ON COLUMN lojista_erp_config.webhook_secret_encrypted IS 'Segredo (criptografado) para validar os webhooks de estoque do ERP';
+COMMENT ON COLUMN lojista_erp_config.last_webhook_at IS 'Último lote de webhooks de estoque aplicado';
+
+DO $$ BEGIN RAISE NOTICE 'V28: Webhooks de estoque ERP adicionados.'; END $$;
@@ -0,0 +1,36 @@
+-- ====================================
+-- V29: Inbox de webhooks da Uber
+-- ====================================
+-- Descrição: o endpoint de webhook só valida a assinatura, grava o evento
+-- bruto aqui e responde 200. Workers (UberWebhookInboxService) processam
+-- fora da requisição, em ordem por entrega. event_id único descarta as
+-- retentativas da Uber do mesmo evento.
+
+CREATE TABLE IF NOT EXISTS uber_webhook_inbox (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    event_id VARCHAR(120) NOT NULL,
+    delivery_id VARCHAR(100),
+    event_type VARCHAR(100),
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INTEGER NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    travado_ate TIMESTAMP WITH TIME ZONE,
+    ultimo_erro VARCHAR(500),
+    recebido_em TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    processado_em TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT uk_uber_webhook_inbox_evento UNIQUE (event_id),
+    CONSTRAINT ck_uber_webhook_inbox_status CHECK (status IN ('PENDENTE', 'PROCESSANDO', 'CONCLUIDO', 'FALHOU'))
+);
+
+-- Reivindicação pelos workers
+CREATE INDEX IF NOT EXISTS idx_uber_webhook_inbox_fila
+    ON uber_webhook_inbox (status, proxima_tentativa_em);
+
+-- Ordem por entrega (evento anterior ainda não resolvido bloqueia os seguintes)
+CREATE INDEX IF NOT EXISTS idx_uber_webhook_inbox_entrega
+    ON uber_webhook_inbox (delivery_id, recebido_em);
+
+COMMENT ON TABLE uber_webhook_inbox IS 'Eventos de webhook da Uber recebidos, processados de forma assíncrona';
+
+DO $$ BEGIN RAISE NOTICE 'V29: Inbox de webhooks Uber criada.'; END $$;
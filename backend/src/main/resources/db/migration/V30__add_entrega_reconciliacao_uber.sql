@@ -0,0 +1,22 @@
+-- ====================================
+-- V30: Reconciliação de status das entregas com a Uber
+-- ====================================
+-- Descrição: ReconciliacaoEntregaUberService consulta em segundo plano o
+-- status das entregas em andamento (caso algum webhook se perca). Cada
+-- entrega guarda quando deve ser consultada de novo e há quantas consultas
+-- nada muda (o intervalo cresce enquanto está parada).
+
+ALTER TABLE entregas
+    ADD COLUMN IF NOT EXISTS proxima_consulta_uber TIMESTAMP WITH TIME ZONE,
+    ADD COLUMN IF NOT EXISTS consultas_uber_sem_mudanca INTEGER DEFAULT 0;
+
+-- Só entregas em andamento na Uber entram na varredura
+CREATE INDEX IF NOT EXISTS idx_entregas_proxima_consulta_uber
+    ON entregas (proxima_consulta_uber NULLS FIRST)
+    WHERE id_corrida_uber IS NOT NULL
+      AND status_entrega IN ('AGUARDANDO_PREPARACAO', 'AGUARDANDO_MOTORISTA', 'MOTORISTA_A_CAMINHO_RETIRADA', 'EM_TRANSITO');
+
+COMMENT ON COLUMN entregas.proxima_consulta_uber IS 'Próxima consulta de status na Uber (reconciliação)';
+COMMENT ON COLUMN entregas.consultas_uber_sem_mudanca IS 'Consultas seguidas sem mudança de status (backoff)';
+
+DO $$ BEGIN RAISE NOTICE 'V30: Reconciliação de entregas Uber configurada.'; END $$;
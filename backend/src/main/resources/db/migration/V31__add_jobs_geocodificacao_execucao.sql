@@ -0,0 +1,15 @@
+-- ====================================
+-- V31: Execução corrente dos jobs de geocodificação
+-- ====================================
+-- Descrição: A vazão e o ETA do job passam a considerar só a execução
+-- corrente (desde a criação ou a última retomada), sem o tempo em que o job
+-- ficou cancelado, com falha ou abandonado.
+
+ALTER TABLE jobs_geocodificacao
+    ADD COLUMN IF NOT EXISTS execucao_iniciada_em TIMESTAMP WITH TIME ZONE,
+    ADD COLUMN IF NOT EXISTS processados_inicio_execucao INTEGER;
+
+COMMENT ON COLUMN jobs_geocodificacao.execucao_iniciada_em IS 'Início da execução corrente (base da vazão/ETA)';
+COMMENT ON COLUMN jobs_geocodificacao.processados_inicio_execucao IS 'Processados quando a execução corrente começou';
+
+DO $$ BEGIN RAISE NOTICE 'V31: Execução corrente dos jobs de geocodificação.'; END $$;
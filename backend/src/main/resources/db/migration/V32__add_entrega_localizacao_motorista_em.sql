@@ -0,0 +1,13 @@
+-- ====================================
+-- V32: Instante de captura da localização do motorista
+-- ====================================
+-- Descrição: Cada réplica grava em lote as posições que recebeu. O UPDATE só
+-- aplica a posição se ela foi capturada depois da que está gravada, para uma
+-- réplica com posição antiga não sobrescrever a mais nova de outra.
+
+ALTER TABLE entregas
+    ADD COLUMN IF NOT EXISTS localizacao_motorista_em TIMESTAMP WITH TIME ZONE;
+
+COMMENT ON COLUMN entregas.localizacao_motorista_em IS 'Instante de captura (Uber) de latitude/longitude_motorista';
+
+DO $$ BEGIN RAISE NOTICE 'V32: Instante de captura da localização do motorista.'; END $$;
@@ -37,6 +37,7 @@ class UberDeliveryIntegrationTest {
     @Mock private EntregaRepository entregaRepository;
     @Mock private PedidoStatusService pedidoStatusService;
     @Mock private WebSocketNotificationService webSocketService;
+    @Mock private LocalizacaoMotoristaService localizacaoMotoristaService;
 
     @InjectMocks private UberWebhookService webhookService;
 
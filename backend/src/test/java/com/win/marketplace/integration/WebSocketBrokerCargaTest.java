@@ -0,0 +1,320 @@
+package com.win.marketplace.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.config.RedisBrokerBridge;
+import com.win.marketplace.config.WebSocketConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.web.servlet.context.AnnotationConfigServletWebApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Teste de carga do broker WebSocket no modo redis: duas réplicas, cada uma
+ * um contexto Spring com o WebSocketConfig real (executores dos canais,
+ * limites de envio por sessão, heartbeat e ponte Redis no brokerChannel),
+ * milhares de sessões STOMP entrando pelo SubProtocolWebSocketHandler e o
+ * pub/sub do Redis simulado entre as pontes.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Carga do broker WebSocket entre réplicas")
+class WebSocketBrokerCargaTest {
+
+    private static final int ASSINANTES_POR_REPLICA = 2_500;
+    private static final int ENTREGAS = 250;
+    private static final int MENSAGENS_POR_ENTREGA = 20;
+    private static final int TEMPO_ENVIO_MS = 300;
+    private static final String CANAL = "win:ws:topic";
+
+    @Mock private RedisTemplate<String, String> redisTemplate;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        replicas.forEach(Replica::parar);
+    }
+
+    @Test
+    @DisplayName("Deve entregar cada mensagem uma única vez a todos os assinantes das duas réplicas")
+    void deveEntregarParaAssinantesDeTodasAsReplicas() throws Exception {
+        // Given
+        CountDownLatch entregues = new CountDownLatch(2 * ASSINANTES_POR_REPLICA * MENSAGENS_POR_ENTREGA);
+        Replica a = new Replica();
+        Replica b = new Replica();
+        simularPubSub(a, b);
+
+        List<Sessao> sessoes = new ArrayList<>();
+        for (int i = 0; i < ASSINANTES_POR_REPLICA; i++) {
+            sessoes.add(new Sessao("sessao-a-" + i, a, destino(i % ENTREGAS), entregues, 0));
+            sessoes.add(new Sessao("sessao-b-" + i, b, destino(i % ENTREGAS), entregues, 0));
+        }
+        conectarEAssinar(sessoes);
+
+        // When
+        ExecutorService publicadores = Executors.newFixedThreadPool(8);
+        for (int entrega = 0; entrega < ENTREGAS; entrega++) {
+            String destino = destino(entrega);
+            publicadores.execute(() -> {
+                for (int m = 0; m < MENSAGENS_POR_ENTREGA; m++) {
+                    a.template.convertAndSend(destino, Map.of("tipo", "COURIER_UPDATE", "seq", m));
+                }
+            });
+        }
+        boolean concluiu = entregues.await(60, TimeUnit.SECONDS);
+        publicadores.shutdown();
+
+        // Then
+        assertThat(concluiu).as("entregas pendentes: %d", entregues.getCount()).isTrue();
+        assertThat(sessoes).allSatisfy(sessao -> {
+            assertThat(sessao.mensagens.get()).isEqualTo(MENSAGENS_POR_ENTREGA);
+            assertThat(sessao.fechada).isNull();
+        });
+    }
+
+    @Test
+    @DisplayName("Deve desconectar o assinante lento sem atrasar os demais da mesma réplica")
+    void deveDesconectarAssinanteLento() throws Exception {
+        // Given
+        int rapidas = 100;
+        CountDownLatch entregues = new CountDownLatch(rapidas * MENSAGENS_POR_ENTREGA);
+        Replica a = new Replica();
+        Replica b = new Replica();
+        simularPubSub(a, b);
+
+        List<Sessao> sessoes = new ArrayList<>();
+        for (int i = 0; i < rapidas; i++) {
+            sessoes.add(new Sessao("sessao-" + i, b, destino(0), entregues, 0));
+        }
+        Sessao lenta = new Sessao("sessao-lenta", b, destino(0), new CountDownLatch(0), TEMPO_ENVIO_MS * 4);
+        sessoes.add(lenta);
+        conectarEAssinar(sessoes);
+
+        // When
+        for (int m = 0; m < MENSAGENS_POR_ENTREGA; m++) {
+            a.template.convertAndSend(destino(0), Map.of("tipo", "COURIER_UPDATE", "seq", m));
+            Thread.sleep(TEMPO_ENVIO_MS / 5);
+        }
+        boolean concluiu = entregues.await(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(concluiu).as("entregas pendentes: %d", entregues.getCount()).isTrue();
+        assertThat(lenta.fechada).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(lenta.mensagens.get()).isLessThan(MENSAGENS_POR_ENTREGA);
+    }
+
+    /**
+     * Como um cliente real: CONNECT, espera o CONNECTED e só então SUBSCRIBE
+     */
+    private static void conectarEAssinar(List<Sessao> sessoes) throws Exception {
+        for (Sessao sessao : sessoes) {
+            sessao.conectar();
+        }
+        for (Sessao sessao : sessoes) {
+            assertThat(sessao.conectada.await(10, TimeUnit.SECONDS)).as("CONNECTED de %s", sessao.id).isTrue();
+        }
+        for (Sessao sessao : sessoes) {
+            sessao.assinar();
+        }
+        for (Sessao sessao : sessoes) {
+            assertThat(sessao.assinada.await(10, TimeUnit.SECONDS)).as("SUBSCRIBE de %s", sessao.id).isTrue();
+        }
+    }
+
+    /**
+     * Redis simulado: cada publicação chega a todas as pontes, inclusive a que publicou
+     */
+    private void simularPubSub(Replica... replicasConectadas) {
+        when(redisTemplate.convertAndSend(eq(CANAL), anyString())).thenAnswer(invocation -> {
+            DefaultMessage mensagem = new DefaultMessage(CANAL.getBytes(StandardCharsets.UTF_8),
+                    invocation.<String>getArgument(1).getBytes(StandardCharsets.UTF_8));
+            for (Replica replica : replicasConectadas) {
+                replica.ponte.onMessage(mensagem, null);
+            }
+            return (long) replicasConectadas.length;
+        });
+    }
+
+    private static String destino(int entrega) {
+        return "/topic/entrega/del-" + entrega + "/courier";
+    }
+
+    /**
+     * Uma réplica: contexto web com o WebSocketConfig e a ponte Redis. O
+     * container de assinatura do Redis é o único bean trocado (pelo pub/sub simulado).
+     */
+    private class Replica {
+        final AnnotationConfigServletWebApplicationContext contexto = new AnnotationConfigServletWebApplicationContext();
+        final SubProtocolWebSocketHandler handler;
+        final SimpMessagingTemplate template;
+        final RedisBrokerBridge ponte;
+        final Map<String, CountDownLatch> assinaturas = new ConcurrentHashMap<>();
+
+        Replica() {
+            contexto.setServletContext(new MockServletContext());
+            contexto.getEnvironment().getPropertySources().addFirst(new MapPropertySource("teste", Map.of(
+                    "app.websocket.broker.modo", "redis",
+                    "app.websocket.broker.redis.canal", CANAL,
+                    "app.websocket.sessao.tempo-envio-ms", TEMPO_ENVIO_MS)));
+            contexto.registerBean("redisTemplate", RedisTemplate.class, () -> redisTemplate);
+            contexto.registerBean(ObjectMapper.class, () -> new ObjectMapper());
+            contexto.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            contexto.register(WebSocketConfig.class, RedisBrokerBridge.class);
+            contexto.addBeanFactoryPostProcessor(beanFactory ->
+                    ((BeanDefinitionRegistry) beanFactory).removeBeanDefinition("websocketBrokerRedisListener"));
+            contexto.refresh();
+            replicas.add(this);
+
+            handler = contexto.getBean("subProtocolWebSocketHandler", SubProtocolWebSocketHandler.class);
+            template = contexto.getBean(SimpMessagingTemplate.class);
+            ponte = contexto.getBean(RedisBrokerBridge.class);
+            contexto.getBean("clientInboundChannel", ExecutorSubscribableChannel.class)
+                    .addInterceptor(new ExecutorChannelInterceptor() {
+                        @Override
+                        public void afterMessageHandled(Message<?> message, MessageChannel channel,
+                                                        MessageHandler messageHandler, Exception ex) {
+                            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.SUBSCRIBE) {
+                                CountDownLatch assinada = assinaturas.get(
+                                        SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+                                if (assinada != null) {
+                                    assinada.countDown();
+                                }
+                            }
+                        }
+                    });
+        }
+
+        void parar() {
+            contexto.close();
+        }
+    }
+
+    /**
+     * Sessão WebSocket de um cliente; atrasoMs simula um cliente com rede lenta
+     */
+    private static class Sessao implements WebSocketSession {
+        final String id;
+        final Replica replica;
+        final String destino;
+        final CountDownLatch entregues;
+        final long atrasoMs;
+        final CountDownLatch conectada = new CountDownLatch(1);
+        final CountDownLatch assinada = new CountDownLatch(1);
+        final AtomicInteger mensagens = new AtomicInteger();
+        final Map<String, Object> atributos = new ConcurrentHashMap<>();
+        volatile CloseStatus fechada;
+        int limiteTexto = 8 * 1024;
+
+        Sessao(String id, Replica replica, String destino, CountDownLatch entregues, long atrasoMs) {
+            this.id = id;
+            this.replica = replica;
+            this.destino = destino;
+            this.entregues = entregues;
+            this.atrasoMs = atrasoMs;
+            replica.assinaturas.put(id, assinada);
+        }
+
+        void conectar() throws Exception {
+            replica.handler.afterConnectionEstablished(this);
+            replica.handler.handleMessage(this,
+                    new TextMessage("CONNECT\naccept-version:1.2\nheart-beat:0,0\n\n\u0000"));
+        }
+
+        void assinar() throws Exception {
+            replica.handler.handleMessage(this,
+                    new TextMessage("SUBSCRIBE\nid:sub-0\ndestination:" + destino + "\n\n\u0000"));
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws java.io.IOException {
+            String quadro = message instanceof TextMessage texto
+                    ? texto.getPayload()
+                    : StandardCharsets.UTF_8.decode(((BinaryMessage) message).getPayload()).toString();
+            if (quadro.startsWith("CONNECTED")) {
+                conectada.countDown();
+            } else if (quadro.startsWith("MESSAGE")) {
+                if (atrasoMs > 0) {
+                    try {
+                        Thread.sleep(atrasoMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                mensagens.incrementAndGet();
+                entregues.countDown();
+            }
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            fechada = status;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return fechada == null;
+        }
+
+        @Override public String getId() { return id; }
+        @Override public URI getUri() { return URI.create("ws://localhost/ws/connect"); }
+        @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+        @Override public Map<String, Object> getAttributes() { return atributos; }
+        @Override public Principal getPrincipal() { return null; }
+        @Override public InetSocketAddress getLocalAddress() { return null; }
+        @Override public InetSocketAddress getRemoteAddress() { return null; }
+        @Override public String getAcceptedProtocol() { return null; }
+        @Override public void setTextMessageSizeLimit(int limite) { limiteTexto = limite; }
+        @Override public int getTextMessageSizeLimit() { return limiteTexto; }
+        @Override public void setBinaryMessageSizeLimit(int limite) { }
+        @Override public int getBinaryMessageSizeLimit() { return limiteTexto; }
+        @Override public List<WebSocketExtension> getExtensions() { return List.of(); }
+    }
+}
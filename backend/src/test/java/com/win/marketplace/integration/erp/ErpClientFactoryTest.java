@@ -0,0 +1,80 @@
+package com.win.marketplace.integration.erp;
+
+import com.win.marketplace.model.Lojista;
+import com.win.marketplace.model.LojistaErpConfig;
+import com.win.marketplace.model.enums.ErpType;
+import com.win.marketplace.service.EncryptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para ErpClientFactory (reaproveitamento de clientes por configuração)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ErpClientFactory")
+class ErpClientFactoryTest {
+
+    @Mock private EncryptionService encryptionService;
+    @Mock private ErpHttpClientPool httpPool;
+
+    private ErpClientFactory factory;
+    private LojistaErpConfig config;
+
+    @BeforeEach
+    void setUp() {
+        factory = new ErpClientFactory(encryptionService, httpPool, new SimpleMeterRegistry(), 10, 60);
+        when(encryptionService.decrypt(anyString())).thenReturn("token");
+
+        Lojista lojista = new Lojista();
+        lojista.setId(UUID.randomUUID());
+        config = LojistaErpConfig.builder()
+                .id(UUID.randomUUID())
+                .lojista(lojista)
+                .erpType(ErpType.TINY)
+                .apiUrl("https://api.tiny.com.br/api2")
+                .apiKeyEncrypted("cifrada-1")
+                .build();
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar o cliente e descriptografar a chave uma única vez")
+    void deveReaproveitarCliente() {
+        // When
+        ErpApiClient primeiro = factory.createClient(config);
+        config.setLastSyncStatus("SUCCESS");
+        ErpApiClient segundo = factory.createClient(config);
+
+        // Then
+        assertThat(segundo).isSameAs(primeiro);
+        verify(encryptionService, times(1)).decrypt("cifrada-1");
+    }
+
+    @Test
+    @DisplayName("Deve recriar o cliente quando a chave muda ou a configuração é invalidada")
+    void deveRecriarQuandoConfiguracaoMuda() {
+        // Given
+        ErpApiClient original = factory.createClient(config);
+
+        // When
+        config.setApiKeyEncrypted("cifrada-2");
+        ErpApiClient comNovaChave = factory.createClient(config);
+        factory.invalidar(config.getId());
+        ErpApiClient aposInvalidar = factory.createClient(config);
+
+        // Then
+        assertThat(comNovaChave).isNotSameAs(original);
+        assertThat(aposInvalidar).isNotSameAs(comNovaChave);
+        verify(encryptionService, times(2)).decrypt("cifrada-2");
+    }
+}
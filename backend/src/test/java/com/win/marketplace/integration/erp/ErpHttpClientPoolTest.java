@@ -0,0 +1,174 @@
+package com.win.marketplace.integration.erp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Testes unitários para ErpHttpClientPool (retentativa, circuit breaker e fan-out limitado)
+ */
+@DisplayName("ErpHttpClientPool")
+class ErpHttpClientPoolTest {
+
+    private static final String URL = "https://erp.exemplo.com.br/api";
+    private static final String TOKEN = "token-lojista-a";
+
+    private ErpHttpClientPool pool;
+
+    @BeforeEach
+    void setUp() {
+        // 3 tentativas, backoff de 1ms, 4 chamadas por lojista, circuito abre com 3 falhas
+        pool = new ErpHttpClientPool(1000, 1000, 3, 1, 4, 3, 60, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.encerrar();
+    }
+
+    @Test
+    @DisplayName("Deve repetir erros transitórios e devolver o resultado")
+    void deveRepetirErroTransitorio() {
+        // Given
+        AtomicInteger chamadas = new AtomicInteger();
+
+        // When
+        String resultado = pool.executar(URL, TOKEN, () -> {
+            if (chamadas.incrementAndGet() < 3) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "ok";
+        });
+
+        // Then
+        assertThat(resultado).isEqualTo("ok");
+        assertThat(chamadas.get()).isEqualTo(3);
+        assertThat(pool.estadoCircuito(URL, TOKEN)).isEqualTo(ErpCircuitBreaker.Estado.FECHADO);
+    }
+
+    @Test
+    @DisplayName("Não deve repetir erro 4xx")
+    void naoDeveRepetirErroDoCliente() {
+        // Given
+        AtomicInteger chamadas = new AtomicInteger();
+
+        // When / Then
+        assertThatThrownBy(() -> pool.executar(URL, TOKEN, () -> {
+            chamadas.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+        })).isInstanceOf(HttpClientErrorException.class);
+        assertThat(chamadas.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve abrir o circuito e falhar rápido após falhas seguidas")
+    void deveAbrirCircuito() {
+        // Given: 3 falhas transitórias esgotam as tentativas e abrem o circuito
+        assertThatThrownBy(() -> pool.executar(URL, TOKEN, () -> {
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        })).isInstanceOf(HttpServerErrorException.class);
+        AtomicInteger chamadas = new AtomicInteger();
+
+        // When / Then
+        assertThatThrownBy(() -> pool.executar(URL, TOKEN, chamadas::incrementAndGet))
+                .isInstanceOf(ErpCircuitBreaker.CircuitoAbertoException.class);
+        assertThat(chamadas.get()).isZero();
+        assertThat(pool.estadoCircuito(URL, TOKEN)).isEqualTo(ErpCircuitBreaker.Estado.ABERTO);
+    }
+
+    @Test
+    @DisplayName("Circuito aberto de uma credencial não deve bloquear outra credencial do mesmo host")
+    void deveIsolarCircuitoPorCredencial() {
+        // Given
+        assertThatThrownBy(() -> pool.executar(URL, TOKEN, () -> {
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        })).isInstanceOf(HttpServerErrorException.class);
+
+        // When
+        String resultado = pool.executar(URL, "token-lojista-b", () -> "ok");
+
+        // Then
+        assertThat(resultado).isEqualTo("ok");
+        assertThat(pool.estadoCircuito(URL, TOKEN)).isEqualTo(ErpCircuitBreaker.Estado.ABERTO);
+        assertThat(pool.estadoCircuito(URL, "token-lojista-b")).isEqualTo(ErpCircuitBreaker.Estado.FECHADO);
+    }
+
+    @Test
+    @DisplayName("Deve esperar o Retry-After em 429 sem contar falha no circuito")
+    void deveEsperarLimiteSemAbrirCircuito() {
+        // Given: circuito abre com 3 falhas, mas 429 não conta
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        AtomicInteger chamadas = new AtomicInteger();
+        long inicio = System.nanoTime();
+
+        // When: estoura as 3 tentativas só com 429
+        assertThatThrownBy(() -> pool.executar(URL, TOKEN, () -> {
+            chamadas.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "limite", headers, null, null);
+        })).isInstanceOf(HttpClientErrorException.TooManyRequests.class);
+
+        // Then: 2 esperas limitadas ao teto de 50ms e o circuito continua fechado
+        assertThat(chamadas.get()).isEqualTo(3);
+        assertThat(System.nanoTime() - inicio).isGreaterThanOrEqualTo(100_000_000L);
+        assertThat(pool.estadoCircuito(URL, TOKEN)).isEqualTo(ErpCircuitBreaker.Estado.FECHADO);
+        assertThat(pool.executar(URL, TOKEN, () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    @DisplayName("Deve respeitar o limite de chamadas simultâneas por lojista")
+    void deveLimitarConcorrenciaPorLojista() {
+        // Given
+        AtomicInteger emAndamento = new AtomicInteger();
+        AtomicInteger pico = new AtomicInteger();
+        List<Integer> itens = IntStream.range(0, 50).boxed().toList();
+
+        // When
+        ErpHttpClientPool.Resultado<Integer> resultados = pool.paraCada(UUID.randomUUID(), itens, item -> {
+            pico.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            emAndamento.decrementAndGet();
+            return item % 10 == 0 ? null : item;
+        });
+
+        // Then
+        assertThat(resultados.itens()).hasSize(45);
+        assertThat(resultados.falhas()).isZero();
+        assertThat(pico.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Deve contar os itens que falharam sem perder os que deram certo")
+    void deveContarFalhasDoFanOut() {
+        // Given
+        List<Integer> itens = IntStream.range(0, 20).boxed().toList();
+
+        // When
+        ErpHttpClientPool.Resultado<Integer> resultado = pool.paraCada(UUID.randomUUID(), itens, item -> {
+            if (item % 5 == 0) {
+                throw new ErpIntegrationException("falha no item " + item);
+            }
+            return item;
+        });
+
+        // Then
+        assertThat(resultado.itens()).hasSize(16);
+        assertThat(resultado.falhas()).isEqualTo(4);
+    }
+}
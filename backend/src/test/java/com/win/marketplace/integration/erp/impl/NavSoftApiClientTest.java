@@ -0,0 +1,88 @@
+package com.win.marketplace.integration.erp.impl;
+
+import com.win.marketplace.integration.erp.ErpHttpClientPool;
+import com.win.marketplace.integration.erp.dto.ErpStockChangesDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+/**
+ * Testes unitários para NavSoftApiClient (feed de alterações de estoque)
+ */
+@DisplayName("NavSoftApiClient")
+class NavSoftApiClientTest {
+
+    private static final String URL = "https://navsoft.exemplo.com.br/api";
+    private static final LocalDateTime DESDE = LocalDateTime.of(2025, 3, 7, 14, 0, 0);
+
+    private ErpHttpClientPool pool;
+    private MockRestServiceServer servidor;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ErpHttpClientPool(1000, 1000, 1, 1, 4, 3, 60, 50);
+        // O RestTemplate do host é compartilhado: o mock vale para todos os clientes do host
+        servidor = MockRestServiceServer.bindTo(pool.restTemplate(URL)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.encerrar();
+    }
+
+    @Test
+    @DisplayName("Deve ler a página de alterações desde o cursor")
+    void deveLerPaginaDeAlteracoes() {
+        // Given
+        servidor.expect(requestTo(URL + "/estoque/alteracoes?desde=2025-03-07T14:00:00&pagina=1"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("X-API-Key", "chave"))
+                .andRespond(withSuccess("{\"itens\":[{\"sku\":\"SKU-1\",\"saldo\":7}],\"temMais\":true}",
+                        MediaType.APPLICATION_JSON));
+        NavSoftApiClient client = new NavSoftApiClient(URL, "chave", UUID.randomUUID(), pool);
+
+        // When
+        ErpStockChangesDTO changes = client.getStockChangesSince(DESDE, 1);
+
+        // Then
+        assertThat(changes.getAlteracoes()).singleElement()
+                .satisfies(update -> {
+                    assertThat(update.getSku()).isEqualTo("SKU-1");
+                    assertThat(update.getEstoque()).isEqualTo(7);
+                });
+        assertThat(changes.isTemMaisPaginas()).isTrue();
+        assertThat(client.supportsIncrementalSync()).isTrue();
+        servidor.verify();
+    }
+
+    @Test
+    @DisplayName("Deve lembrar que o host não tem feed de alterações e deixar de oferecer modo incremental")
+    void deveLembrarHostSemFeed() {
+        // Given
+        servidor.expect(requestTo(startsWith(URL + "/estoque/alteracoes")))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+        NavSoftApiClient client = new NavSoftApiClient(URL, "chave", UUID.randomUUID(), pool);
+
+        // When
+        ErpStockChangesDTO changes = client.getStockChangesSince(DESDE, 1);
+
+        // Then: vale também para outro lojista do mesmo host
+        assertThat(changes).isNull();
+        assertThat(client.supportsIncrementalSync()).isFalse();
+        assertThat(new NavSoftApiClient(URL, "outra-chave", UUID.randomUUID(), pool).supportsIncrementalSync()).isFalse();
+        servidor.verify();
+    }
+}
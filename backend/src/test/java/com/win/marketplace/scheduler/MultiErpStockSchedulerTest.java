@@ -0,0 +1,230 @@
+package com.win.marketplace.scheduler;
+
+import com.win.marketplace.integration.erp.ErpApiClient;
+import com.win.marketplace.integration.erp.ErpClientFactory;
+import com.win.marketplace.integration.erp.ErpFalhaParcialException;
+import com.win.marketplace.integration.erp.dto.ErpStockChangesDTO;
+import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
+import com.win.marketplace.model.Lojista;
+import com.win.marketplace.model.LojistaErpConfig;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.model.enums.ErpType;
+import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.service.EstoqueErpService;
+import com.win.marketplace.service.LojistaErpConfigService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para MultiErpStockScheduler (despacho, fila justa e tempo limite)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MultiErpStockScheduler")
+class MultiErpStockSchedulerTest {
+
+    @Mock private LojistaErpConfigService erpConfigService;
+    @Mock private ErpClientFactory erpClientFactory;
+    @Mock private ProdutoRepository produtoRepository;
+    @Mock private EstoqueErpService estoqueErpService;
+
+    private ThreadPoolTaskExecutor executor;
+    private final CountDownLatch liberar = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberar.countDown();
+        executor.shutdown();
+    }
+
+    private MultiErpStockScheduler scheduler(long timeoutMinutos) {
+        return new MultiErpStockScheduler(erpConfigService, erpClientFactory, produtoRepository, estoqueErpService,
+                executor, new SimpleMeterRegistry(), 24, 120, 20, timeoutMinutos);
+    }
+
+    private LojistaErpConfig config(LocalDateTime ultimaSync) {
+        Lojista lojista = new Lojista();
+        lojista.setId(UUID.randomUUID());
+        return LojistaErpConfig.builder()
+                .id(UUID.randomUUID())
+                .lojista(lojista)
+                .erpType(ErpType.NAVSOFT)
+                .syncFrequencyMinutes(5)
+                .lastSyncAt(ultimaSync)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Deve ordenar do lojista mais atrasado para o menos atrasado")
+    void deveOrdenarPorAtraso() {
+        // Given
+        LojistaErpConfig recente = config(LocalDateTime.now().minusMinutes(6));
+        LojistaErpConfig antigo = config(LocalDateTime.now().minusHours(2));
+        LojistaErpConfig nunca = config(null);
+
+        // When
+        List<LojistaErpConfig> ordenados = List.of(recente, antigo, nunca).stream()
+                .sorted(MultiErpStockScheduler.POR_ATRASO)
+                .toList();
+
+        // Then
+        assertThat(ordenados).containsExactly(nunca, antigo, recente);
+    }
+
+    @Test
+    @DisplayName("Não deve despachar de novo lojista que ainda está sincronizando")
+    void devePularLojistaEmAndamento() {
+        // Given
+        LojistaErpConfig config = config(null);
+        when(erpConfigService.buscarConfiguracoesParaSync()).thenReturn(List.of(config));
+        when(erpClientFactory.createClient(config)).thenAnswer(invocation -> {
+            liberar.await();
+            throw new IllegalStateException("fim do teste");
+        });
+        MultiErpStockScheduler scheduler = scheduler(10);
+
+        // When
+        scheduler.sincronizarEstoques();
+        verify(erpClientFactory, timeout(2000)).createClient(config);
+        scheduler.sincronizarEstoques();
+
+        // Then
+        verify(erpClientFactory, times(1)).createClient(config);
+    }
+
+    @Test
+    @DisplayName("Deve interromper a sincronização que passou do tempo limite e registrar a falha")
+    void deveInterromperPorTempoLimite() {
+        // Given
+        LojistaErpConfig config = config(null);
+        when(erpConfigService.buscarConfiguracoesParaSync()).thenReturn(List.of(config));
+        when(erpClientFactory.createClient(config)).thenAnswer(invocation -> {
+            liberar.await();
+            return null;
+        });
+        MultiErpStockScheduler scheduler = scheduler(0);
+
+        // When
+        scheduler.sincronizarEstoques();
+        verify(erpClientFactory, timeout(2000)).createClient(config);
+        scheduler.sincronizarEstoques();
+
+        // Then
+        verify(erpConfigService, timeout(2000))
+                .atualizarStatusSync(eq(config.getId()), eq(false), contains("tempo limite"));
+    }
+
+    @Test
+    @DisplayName("Deve aplicar os saldos obtidos e registrar falha sem avançar o cursor quando parte das consultas falha")
+    void deveRegistrarFalhaParcial() {
+        // Given
+        LojistaErpConfig config = config(null);
+        ErpApiClient client = mock(ErpApiClient.class);
+        Produto produto = new Produto();
+        produto.setErpSku("SKU-1");
+        List<ErpStockUpdateDTO> obtidos = List.of(ErpStockUpdateDTO.builder().sku("SKU-1").estoque(3).build());
+        when(erpClientFactory.createClient(config)).thenReturn(client);
+        when(produtoRepository.findByLojistaIdAndErpSkuIsNotNull(config.getLojista().getId())).thenReturn(List.of(produto));
+        when(client.getStockUpdates(List.of("SKU-1"))).thenThrow(new ErpFalhaParcialException(obtidos, 1, 2));
+        when(estoqueErpService.aplicar(anyList(), eq(obtidos)))
+                .thenReturn(new EstoqueErpService.ResultadoAplicacao(1, 1, 0, 0));
+
+        // When
+        scheduler(10).executar(new MultiErpStockScheduler.Execucao(config));
+
+        // Then
+        verify(estoqueErpService).aplicar(List.of(produto), obtidos);
+        verify(erpConfigService).atualizarStatusSync(eq(config.getId()), eq(false), contains("falharam"));
+        verify(erpConfigService, never()).registrarSyncEstoque(any(), any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("Deve buscar alterações desde o cursor com sobreposição, em páginas, e manter o último saldo de cada SKU")
+    void deveSincronizarIncremental() {
+        // Given
+        LocalDateTime cursor = LocalDateTime.of(2025, 3, 7, 14, 0, 0);
+        LojistaErpConfig config = config(null);
+        config.setStockCursorAt(cursor);
+        config.setLastFullSyncAt(LocalDateTime.now());
+        ErpApiClient client = mock(ErpApiClient.class);
+        when(erpClientFactory.createClient(config)).thenReturn(client);
+        when(client.supportsIncrementalSync()).thenReturn(true);
+        when(client.getStockChangesSince(cursor.minusSeconds(120), 1)).thenReturn(ErpStockChangesDTO.builder()
+                .alteracoes(List.of(ErpStockUpdateDTO.builder().sku("SKU-1").estoque(3).build()))
+                .temMaisPaginas(true)
+                .build());
+        when(client.getStockChangesSince(cursor.minusSeconds(120), 2)).thenReturn(ErpStockChangesDTO.builder()
+                .alteracoes(List.of(ErpStockUpdateDTO.builder().sku("SKU-1").estoque(5).build(),
+                        ErpStockUpdateDTO.builder().sku("SKU-2").estoque(1).build()))
+                .build());
+        List<Produto> produtos = List.of(new Produto(), new Produto());
+        when(produtoRepository.findByLojistaIdAndErpSkuIn(config.getLojista().getId(), Set.of("SKU-1", "SKU-2")))
+                .thenReturn(produtos);
+        when(estoqueErpService.aplicar(eq(produtos), anyCollection()))
+                .thenReturn(new EstoqueErpService.ResultadoAplicacao(2, 2, 0, 0));
+
+        // When
+        scheduler(10).executar(new MultiErpStockScheduler.Execucao(config));
+
+        // Then
+        ArgumentCaptor<Collection<ErpStockUpdateDTO>> aplicados = ArgumentCaptor.forClass(Collection.class);
+        verify(estoqueErpService).aplicar(eq(produtos), aplicados.capture());
+        assertThat(aplicados.getValue()).extracting(ErpStockUpdateDTO::getSku, ErpStockUpdateDTO::getEstoque)
+                .containsExactly(tuple("SKU-1", 5), tuple("SKU-2", 1));
+        verify(erpConfigService).registrarSyncEstoque(eq(config.getId()), any(LocalDateTime.class), eq(false));
+        verify(client, never()).getStockUpdates(any());
+    }
+
+    @Test
+    @DisplayName("Deve cair para a reconciliação completa quando o ERP não tem feed de alterações")
+    void deveCairParaCompletoSemFeed() {
+        // Given
+        LojistaErpConfig config = config(null);
+        config.setStockCursorAt(LocalDateTime.now().minusMinutes(5));
+        config.setLastFullSyncAt(LocalDateTime.now());
+        ErpApiClient client = mock(ErpApiClient.class);
+        Produto produto = new Produto();
+        produto.setErpSku("SKU-1");
+        when(erpClientFactory.createClient(config)).thenReturn(client);
+        when(client.supportsIncrementalSync()).thenReturn(true);
+        when(client.getStockChangesSince(any(), eq(1))).thenReturn(null);
+        when(produtoRepository.findByLojistaIdAndErpSkuIsNotNull(config.getLojista().getId())).thenReturn(List.of(produto));
+        when(client.getStockUpdates(List.of("SKU-1"))).thenReturn(List.of());
+        when(estoqueErpService.aplicar(anyList(), anyList()))
+                .thenReturn(new EstoqueErpService.ResultadoAplicacao(0, 0, 0, 0));
+
+        // When
+        scheduler(10).executar(new MultiErpStockScheduler.Execucao(config));
+
+        // Then
+        verify(client).getStockUpdates(List.of("SKU-1"));
+        verify(erpConfigService).registrarSyncEstoque(eq(config.getId()), any(LocalDateTime.class), eq(true));
+    }
+}
@@ -0,0 +1,115 @@
+package com.win.marketplace.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Testes unitários para CepCentroideIndex (índice offline de CEPs mapeado em memória)
+ */
+@DisplayName("CepCentroideIndex")
+class CepCentroideIndexTest {
+
+    @TempDir
+    Path diretorio;
+
+    private CepCentroideIndex novoIndice() {
+        return novoIndice(5);
+    }
+
+    private CepCentroideIndex novoIndice(int digitosMinimos) {
+        return new CepCentroideIndex(new SimpleMeterRegistry(), diretorio.resolve("cep.idx").toString(), digitosMinimos);
+    }
+
+    private static ByteArrayInputStream csv(String conteudo) {
+        return new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Deve manter CEPs completos e agregá-los em centroides por prefixo")
+    void deveAgregarCentroidesPorPrefixo() throws Exception {
+        // Given
+        CepCentroideIndex indice = novoIndice(3);
+
+        // When
+        Map<String, Object> resultado = indice.importarCsv(csv("""
+                cep,latitude,longitude
+                01310-100,-23.56,-46.65
+                01310-200,-23.58,-46.67
+                70040-010,-15.79,-47.88
+                """));
+
+        // Then: os 3 CEPs completos mais os prefixos 01310, 013, 70040 e 700
+        assertThat(resultado).containsEntry("prefixos", 7).containsEntry("linhasDescartadas", 1);
+        assertThat(indice.buscar("01310200")).containsExactly(-23.58, -46.67); // coordenada do próprio CEP
+        assertThat(indice.buscar("01310999")).containsExactly(-23.57, -46.66);
+        assertThat(indice.buscar("01399000")).containsExactly(-23.57, -46.66); // cai no prefixo de 3 dígitos
+        assertThat(indice.buscar("70040010")).containsExactly(-15.79, -47.88);
+        assertThat(indice.buscar("99999999")).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve preferir o prefixo mais longo e descartar coordenadas fora do Brasil")
+    void devePreferirPrefixoMaisLongo() throws Exception {
+        // Given
+        CepCentroideIndex indice = novoIndice(3);
+
+        // When
+        indice.importarCsv(csv("""
+                013;-23.50;-46.60
+                01310;-23.56;-46.65
+                01311;46.65;-23.56
+                """));
+
+        // Then
+        assertThat(indice.buscar("01310100")).containsExactly(-23.56, -46.65);
+        assertThat(indice.buscar("01311000")).containsExactly(-23.5, -46.6);
+    }
+
+    @Test
+    @DisplayName("Não deve responder com centroide mais curto que o mínimo configurado")
+    void deveRecusarPrefixoCurtoDemais() throws Exception {
+        // Given: padrão de 5 dígitos
+        CepCentroideIndex indice = novoIndice();
+
+        // When
+        indice.importarCsv(csv("01310100,-23.56,-46.65\n"));
+
+        // Then: o centroide do 013 existe, mas é regional demais para frete
+        assertThat(indice.buscar("01310555")).containsExactly(-23.56, -46.65);
+        assertThat(indice.buscar("01399000")).isNull();
+    }
+
+    @Test
+    @DisplayName("Nova instância deve carregar o arquivo gerado")
+    void deveCarregarArquivoExistente() throws Exception {
+        // Given
+        novoIndice().importarCsv(csv("01310100,-23.56,-46.65\n"));
+
+        // When
+        CepCentroideIndex outraReplica = novoIndice();
+        outraReplica.carregar();
+
+        // Then
+        assertThat(outraReplica.isCarregado()).isTrue();
+        assertThat(outraReplica.buscar("01310100")).containsExactly(-23.56, -46.65);
+    }
+
+    @Test
+    @DisplayName("Sem arquivo o índice fica desligado")
+    void semArquivoNaoResolve() {
+        CepCentroideIndex indice = novoIndice();
+        indice.carregar();
+
+        assertThat(indice.isCarregado()).isFalse();
+        assertThat(indice.buscar("01310100")).isNull();
+    }
+}
@@ -0,0 +1,149 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.repository.PedidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para CodigoEntregaAllocator (pool de códigos no bitmap Redis)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CodigoEntregaAllocator")
+class CodigoEntregaAllocatorTest {
+
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    @Mock private StringRedisTemplate redisTemplate;
+
+    // Estado do bitmap CHAVE_BITMAP, manipulado pelos scripts Lua simulados
+    private final BitSet emUso = new BitSet(CodigoEntregaAllocator.TOTAL_CODIGOS);
+
+    private CodigoEntregaAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplateProvider.getIfAvailable()).thenReturn(redisTemplate);
+        lenient().when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(inv -> {
+            RedisScript<?> script = inv.getArgument(0);
+            List<?> chaves = inv.getArgument(1);
+            assertThat(chaves.get(0)).isEqualTo(CodigoEntregaAllocator.CHAVE_BITMAP);
+            String lua = script.getScriptAsString();
+            if (lua.contains("BITPOS")) {
+                return alocarBit(Integer.parseInt(inv.getArgument(2)), Integer.parseInt(inv.getArgument(3)));
+            }
+            int posicao = Integer.parseInt(inv.getArgument(2));
+            boolean anterior = emUso.get(posicao);
+            emUso.clear(posicao);
+            return anterior ? 1L : 0L;
+        });
+        allocator = new CodigoEntregaAllocator(pedidoRepository, redisTemplateProvider, true, 300, 60);
+    }
+
+    /** BITPOS a partir do byte sorteado, com volta ao início, seguido de SETBIT */
+    private long alocarBit(int byteInicial, int total) {
+        int posicao = emUso.nextClearBit(byteInicial * 8);
+        if (posicao >= total) {
+            posicao = emUso.nextClearBit(0);
+        }
+        if (posicao >= total) {
+            return -1L;
+        }
+        emUso.set(posicao);
+        return posicao;
+    }
+
+    @Test
+    @DisplayName("Deve alocar códigos de 4 dígitos sem repetir enquanto estão em uso")
+    void deveAlocarCodigosUnicos() {
+        // When
+        Set<String> codigos = new HashSet<>();
+        for (int i = 0; i < 2_000; i++) {
+            codigos.add(allocator.alocar());
+        }
+
+        // Then
+        assertThat(codigos).hasSize(2_000).allMatch(codigo -> codigo.matches("\\d{4}"));
+        assertThat(emUso.cardinality()).isEqualTo(2_000);
+        verifyNoInteractions(pedidoRepository);
+    }
+
+    @Test
+    @DisplayName("Código liberado ao sair de PRONTO/EM_TRANSITO deve poder ser realocado")
+    void deveRealocarCodigoLiberado() {
+        // Given: pool cheio
+        for (int i = 0; i < CodigoEntregaAllocator.TOTAL_CODIGOS; i++) {
+            allocator.alocar();
+        }
+
+        // When
+        allocator.liberar("0042", Pedido.StatusPedido.EM_TRANSITO);
+        String realocado = allocator.alocar();
+
+        // Then: o único bit livre é o que acabou de voltar
+        assertThat(realocado).isEqualTo("0042");
+        assertThat(emUso.cardinality()).isEqualTo(CodigoEntregaAllocator.TOTAL_CODIGOS);
+    }
+
+    @Test
+    @DisplayName("Não deve liberar de novo o código de pedido já finalizado")
+    void naoDeveLiberarCodigoDePedidoFinalizado() {
+        // Given
+        String codigo = allocator.alocar();
+
+        // When: pedido saindo de ENTREGUE já devolveu o código (pode estar com outro pedido)
+        allocator.liberar(codigo, Pedido.StatusPedido.ENTREGUE);
+        allocator.liberar("abc", Pedido.StatusPedido.PRONTO);
+
+        // Then
+        assertThat(emUso.get(Integer.parseInt(codigo))).isTrue();
+        assertThat(emUso.cardinality()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve recusar a alocação com o pool esgotado, sem cair para o banco")
+    void deveFalharComPoolEsgotado() {
+        // Given
+        emUso.set(0, CodigoEntregaAllocator.TOTAL_CODIGOS);
+
+        // When / Then
+        assertThatThrownBy(() -> allocator.alocar())
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Não há códigos de retirada disponíveis");
+        verifyNoInteractions(pedidoRepository);
+    }
+
+    @Test
+    @DisplayName("Sem Redis deve sortear e conferir apenas contra pedidos ativos no banco")
+    void deveAlocarPeloBancoSemRedis() {
+        // Given
+        when(redisTemplateProvider.getIfAvailable()).thenReturn(null);
+        when(pedidoRepository.existsByCodigoEntregaAndStatusIn(anyString(), anyList()))
+                .thenReturn(true, true, false);
+
+        // When
+        String codigo = allocator.alocar();
+
+        // Then
+        assertThat(codigo).matches("\\d{4}");
+        verify(pedidoRepository, times(3)).existsByCodigoEntregaAndStatusIn(anyString(),
+                eq(List.of(Pedido.StatusPedido.PRONTO, Pedido.StatusPedido.EM_TRANSITO)));
+    }
+}
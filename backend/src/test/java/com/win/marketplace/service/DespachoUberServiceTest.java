@@ -0,0 +1,172 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.request.SolicitacaoCorridaUberRequestDTO;
+import com.win.marketplace.dto.response.SolicitacaoCorridaUberResponseDTO;
+import com.win.marketplace.model.DespachoUberOutbox;
+import com.win.marketplace.repository.DespachoUberOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para DespachoUberService (outbox de despacho automático de corridas)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DespachoUberService")
+class DespachoUberServiceTest {
+
+    @Mock private DespachoUberOutboxRepository despachoRepository;
+    @Mock private EntregaService entregaService;
+    @Mock private UberFlashService uberFlashService;
+    @Mock private ThreadPoolTaskExecutor executor;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private static final OffsetDateTime LEASE = OffsetDateTime.parse("2025-03-07T12:02:00.123456Z");
+
+    private SimpleMeterRegistry meterRegistry;
+    private DespachoUberService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new DespachoUberService(despachoRepository, entregaService, uberFlashService, executor,
+                transactionManager, meterRegistry, 20, 3, 5, 300, 120);
+    }
+
+    private DespachoUberOutbox despacho(int tentativas) {
+        DespachoUberOutbox despacho = new DespachoUberOutbox();
+        despacho.setId(UUID.randomUUID());
+        despacho.setPedidoId(UUID.randomUUID());
+        despacho.setChaveIdempotencia(DespachoUberService.chaveIdempotencia(despacho.getPedidoId()));
+        despacho.setTentativas(tentativas);
+        despacho.setStatus(DespachoUberOutbox.StatusDespacho.PROCESSANDO);
+        despacho.setTravadoAte(LEASE);
+        return despacho;
+    }
+
+    private SolicitacaoCorridaUberResponseDTO resposta(boolean sucesso) {
+        SolicitacaoCorridaUberResponseDTO response = new SolicitacaoCorridaUberResponseDTO();
+        response.setSucesso(sucesso);
+        response.setErro(sucesso ? null : "timeout");
+        return response;
+    }
+
+    @Test
+    @DisplayName("Deve enviar chave de idempotência e concluir o despacho em caso de sucesso")
+    void deveConcluirComChaveIdempotencia() {
+        // Given
+        DespachoUberOutbox despacho = despacho(0);
+        when(entregaService.aguardandoSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(true);
+        when(entregaService.montarSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(new SolicitacaoCorridaUberRequestDTO());
+        when(uberFlashService.solicitarCorrida(any())).thenReturn(resposta(true));
+        when(despachoRepository.concluir(eq(despacho.getId()), eq(LEASE), any())).thenReturn(1);
+
+        // When
+        service.processar(despacho);
+
+        // Then
+        ArgumentCaptor<SolicitacaoCorridaUberRequestDTO> request = ArgumentCaptor.forClass(SolicitacaoCorridaUberRequestDTO.class);
+        verify(uberFlashService).solicitarCorrida(request.capture());
+        assertThat(request.getValue().getChaveIdempotencia()).isEqualTo(despacho.getChaveIdempotencia());
+        verify(entregaService).registrarResultadoSolicitacao(eq(despacho.getPedidoId()), any());
+        verify(despachoRepository).concluir(eq(despacho.getId()), eq(LEASE), any());
+        assertThat(meterRegistry.counter("uber.despacho", "resultado", "sucesso").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Deve reagendar falha da Uber antes de esgotar as tentativas, sem marcar a entrega")
+    void deveReagendarFalhaTransitoria() {
+        // Given
+        DespachoUberOutbox despacho = despacho(0);
+        when(entregaService.aguardandoSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(true);
+        when(entregaService.montarSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(new SolicitacaoCorridaUberRequestDTO());
+        when(uberFlashService.solicitarCorrida(any())).thenReturn(resposta(false));
+        when(despachoRepository.reagendar(eq(despacho.getId()), eq(LEASE), eq("timeout"), any(), any())).thenReturn(1);
+
+        // When
+        service.processar(despacho);
+
+        // Then
+        verify(despachoRepository).reagendar(eq(despacho.getId()), eq(LEASE), eq("timeout"), any(OffsetDateTime.class), any());
+        verify(entregaService, never()).registrarResultadoSolicitacao(any(), any());
+        assertThat(meterRegistry.counter("uber.despacho", "resultado", "retentativa").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Deve registrar falha na entrega ao esgotar as tentativas")
+    void deveFalharAoEsgotarTentativas() {
+        // Given: última tentativa permitida (max = 3)
+        DespachoUberOutbox despacho = despacho(2);
+        when(entregaService.aguardandoSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(true);
+        when(entregaService.montarSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(new SolicitacaoCorridaUberRequestDTO());
+        when(uberFlashService.solicitarCorrida(any())).thenReturn(resposta(false));
+
+        // When
+        service.processar(despacho);
+
+        // Then
+        verify(entregaService).registrarResultadoSolicitacao(eq(despacho.getPedidoId()), any());
+        verify(despachoRepository).falhar(eq(despacho.getId()), eq(LEASE), eq("timeout"), any());
+        verify(despachoRepository, never()).reagendar(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Não deve chamar a Uber se a corrida já foi solicitada")
+    void naoDeveChamarUberSeCorridaJaSolicitada() {
+        // Given
+        DespachoUberOutbox despacho = despacho(1);
+        when(entregaService.aguardandoSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(false);
+
+        // When
+        service.processar(despacho);
+
+        // Then
+        verifyNoInteractions(uberFlashService);
+        verify(despachoRepository).concluir(eq(despacho.getId()), eq(LEASE), any());
+    }
+
+    @Test
+    @DisplayName("Deve descartar o resultado quando o lease expirou e outra instância reivindicou o despacho")
+    void deveDescartarResultadoComLeasePerdido() {
+        // Given: o UPDATE guardado pelo lease não encontra a linha
+        DespachoUberOutbox despacho = despacho(0);
+        when(entregaService.aguardandoSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(true);
+        when(entregaService.montarSolicitacaoCorrida(despacho.getPedidoId())).thenReturn(new SolicitacaoCorridaUberRequestDTO());
+        when(uberFlashService.solicitarCorrida(any())).thenReturn(resposta(false));
+        when(despachoRepository.reagendar(eq(despacho.getId()), eq(LEASE), any(), any(), any())).thenReturn(0);
+
+        // When
+        service.processar(despacho);
+
+        // Then
+        assertThat(meterRegistry.counter("uber.despacho", "resultado", "lease-perdido").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("uber.despacho", "resultado", "retentativa").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Backoff deve crescer exponencialmente até o máximo")
+    void backoffDeveSerExponencialELimitado() {
+        Duration base = Duration.ofSeconds(5);
+        Duration maximo = Duration.ofSeconds(300);
+
+        assertThat(DespachoUberService.calcularBackoff(1, base, maximo, 0)).isEqualTo(Duration.ofSeconds(5));
+        assertThat(DespachoUberService.calcularBackoff(3, base, maximo, 0)).isEqualTo(Duration.ofSeconds(20));
+        assertThat(DespachoUberService.calcularBackoff(30, base, maximo, 0)).isEqualTo(Duration.ofSeconds(300));
+        assertThat(DespachoUberService.calcularBackoff(1, base, maximo, 0.5)).isEqualTo(Duration.ofMillis(7500));
+    }
+}
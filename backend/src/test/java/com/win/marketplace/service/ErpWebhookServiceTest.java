@@ -0,0 +1,119 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
+import com.win.marketplace.model.Lojista;
+import com.win.marketplace.model.LojistaErpConfig;
+import com.win.marketplace.repository.LojistaErpConfigRepository;
+import com.win.marketplace.repository.ProdutoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para ErpWebhookService (autenticação, fila coalescida e micro-lote)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ErpWebhookService")
+class ErpWebhookServiceTest {
+
+    private static final String SEGREDO = "segredo-do-lojista";
+
+    @Mock private LojistaErpConfigRepository erpConfigRepository;
+    @Mock private ProdutoRepository produtoRepository;
+    @Mock private EstoqueErpService estoqueErpService;
+    @Mock private EncryptionService encryptionService;
+
+    private ErpWebhookService service;
+    private LojistaErpConfig config;
+
+    @BeforeEach
+    void setUp() {
+        service = new ErpWebhookService(erpConfigRepository, produtoRepository, estoqueErpService,
+                encryptionService, new ObjectMapper(), new SimpleMeterRegistry(), 100);
+
+        Lojista lojista = new Lojista();
+        lojista.setId(UUID.randomUUID());
+        config = LojistaErpConfig.builder()
+                .id(UUID.randomUUID())
+                .lojista(lojista)
+                .webhookSecretEncrypted("cifrado")
+                .build();
+    }
+
+    private void configurarSegredo() {
+        when(erpConfigRepository.findById(config.getId())).thenReturn(Optional.of(config));
+        when(encryptionService.decrypt("cifrado")).thenReturn(SEGREDO);
+    }
+
+    private int receberAssinado(String corpo) {
+        return service.receber(config.getId(), corpo, ErpWebhookService.hmacSha256(corpo, SEGREDO), null);
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar webhook com assinatura inválida")
+    void deveRejeitarAssinaturaInvalida() {
+        // Given
+        configurarSegredo();
+
+        // When / Then
+        assertThatThrownBy(() -> service.receber(config.getId(), "[]", "deadbeef", null))
+                .isInstanceOf(ResponseStatusException.class)
+                .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED));
+        verifyNoInteractions(estoqueErpService);
+    }
+
+    @Test
+    @DisplayName("Deve coalescer o mesmo SKU e aplicar um único lote por lojista")
+    void deveCoalescerEAplicarEmLote() {
+        // Given
+        configurarSegredo();
+        receberAssinado("{\"atualizacoes\":[{\"sku\":\"SKU-1\",\"estoque\":5},{\"sku\":\"SKU-2\",\"estoque\":1}]}");
+        service.receber(config.getId(), "{\"sku\":\"SKU-1\",\"estoque\":3}", null, SEGREDO);
+        when(estoqueErpService.aplicar(any(), any()))
+                .thenReturn(new EstoqueErpService.ResultadoAplicacao(2, 2, 0, 0));
+
+        // When
+        service.aplicarPendentes();
+        service.aplicarPendentes();
+
+        // Then
+        ArgumentCaptor<Collection<ErpStockUpdateDTO>> updates = ArgumentCaptor.forClass(Collection.class);
+        verify(estoqueErpService, times(1)).aplicar(any(), updates.capture());
+        assertThat(updates.getValue())
+                .extracting(ErpStockUpdateDTO::getSku, ErpStockUpdateDTO::getEstoque)
+                .containsExactly(tuple("SKU-1", 3), tuple("SKU-2", 1));
+        verify(erpConfigRepository).registrarWebhooks(eq(List.of(config.getId())), any());
+    }
+
+    @Test
+    @DisplayName("Deve interpretar a notificação de estoque do Tiny")
+    void deveInterpretarFormatoTiny() {
+        // When
+        List<ErpStockUpdateDTO> updates = service.interpretar(
+                "{\"tipo\":\"estoque\",\"dados\":{\"idProduto\":\"123\",\"sku\":\"SKU-9\",\"saldo\":\"12.00\"}}");
+
+        // Then
+        assertThat(updates).singleElement()
+                .satisfies(u -> {
+                    assertThat(u.getSku()).isEqualTo("SKU-9");
+                    assertThat(u.getEstoque()).isEqualTo(12);
+                });
+    }
+}
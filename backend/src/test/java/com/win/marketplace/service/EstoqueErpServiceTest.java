@@ -0,0 +1,137 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.integration.erp.dto.ErpStockUpdateDTO;
+import com.win.marketplace.model.Categoria;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para EstoqueErpService (aplicação em lote do estoque vindo do ERP)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EstoqueErpService")
+class EstoqueErpServiceTest {
+
+    @Mock private ProdutoRepository produtoRepository;
+    @Mock private CatalogoCacheService catalogoCacheService;
+
+    private EstoqueErpService service;
+    private Categoria categoria;
+
+    @BeforeEach
+    void setUp() {
+        service = new EstoqueErpService(produtoRepository, catalogoCacheService);
+        categoria = new Categoria();
+        categoria.setId(UUID.randomUUID());
+    }
+
+    private Produto produto(String sku, int estoque) {
+        Produto produto = new Produto();
+        produto.setId(UUID.randomUUID());
+        produto.setErpSku(sku);
+        produto.setEstoque(estoque);
+        produto.setAtivo(true);
+        produto.setCategoria(categoria);
+        return produto;
+    }
+
+    private ErpStockUpdateDTO update(String sku, Integer estoque, Boolean ativo) {
+        return ErpStockUpdateDTO.builder().sku(sku).estoque(estoque).ativo(ativo).build();
+    }
+
+    @Test
+    @DisplayName("Deve gravar e invalidar apenas produtos cujo estoque mudou")
+    void deveGravarSomenteAlterados() {
+        // Given
+        Produto igual = produto("SKU-1", 10);
+        Produto alterado = produto("SKU-2", 5);
+        when(produtoRepository.aplicarEstoqueErp(anyString(), anyString(), anyString())).thenReturn(1);
+
+        // When
+        EstoqueErpService.ResultadoAplicacao resultado = service.aplicar(List.of(igual, alterado), List.of(
+                update("SKU-1", 10, true),
+                update("SKU-2", 7, true),
+                update("SKU-X", 3, true)));
+
+        // Then
+        verify(produtoRepository).aplicarEstoqueErp("{" + alterado.getId() + "}", "{7}", "{true}");
+        ArgumentCaptor<Collection<UUID>> invalidados = ArgumentCaptor.forClass(Collection.class);
+        verify(catalogoCacheService).invalidarProdutos(invalidados.capture());
+        assertThat(invalidados.getValue()).containsExactly(alterado.getId());
+        verify(catalogoCacheService, never()).invalidarProdutoEListagens(any(), any());
+        assertThat(resultado.alterados()).isEqualTo(1);
+        assertThat(resultado.naoEncontrados()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve ir ao banco quando nada mudou")
+    void naoDeveGravarSemAlteracoes() {
+        // Given
+        Produto produto = produto("SKU-1", 10);
+
+        // When
+        EstoqueErpService.ResultadoAplicacao resultado = service.aplicar(List.of(produto),
+                List.of(update("SKU-1", 10, null)));
+
+        // Then
+        verifyNoInteractions(produtoRepository, catalogoCacheService);
+        assertThat(resultado.alterados()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve desativar mantendo o saldo e invalidar as listagens uma vez por categoria")
+    void deveDesativarEInvalidarListagens() {
+        // Given
+        Produto primeiro = produto("SKU-1", 4);
+        Produto segundo = produto("SKU-2", 8);
+        when(produtoRepository.aplicarEstoqueErp(anyString(), anyString(), anyString())).thenReturn(2);
+
+        // When
+        EstoqueErpService.ResultadoAplicacao resultado = service.aplicar(List.of(primeiro, segundo),
+                List.of(update("SKU-1", null, false), update("SKU-2", null, false)));
+
+        // Then
+        verify(produtoRepository).aplicarEstoqueErp(anyString(), eq("{4,8}"), eq("{false,false}"));
+        verify(catalogoCacheService, times(1)).invalidarProdutoEListagens(primeiro.getId(), categoria.getId());
+        verify(catalogoCacheService).invalidarProdutos(List.of(segundo.getId()));
+        assertThat(resultado.desativados()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve dividir o UPDATE em blocos")
+    void deveDividirEmBlocos() {
+        // Given
+        List<Produto> produtos = new ArrayList<>();
+        List<ErpStockUpdateDTO> updates = new ArrayList<>();
+        for (int i = 0; i < EstoqueErpService.BLOCO_UPDATE + 10; i++) {
+            produtos.add(produto("SKU-" + i, 0));
+            updates.add(update("SKU-" + i, 1, true));
+        }
+        when(produtoRepository.aplicarEstoqueErp(anyString(), anyString(), anyString()))
+                .thenReturn(EstoqueErpService.BLOCO_UPDATE, 10);
+
+        // When
+        EstoqueErpService.ResultadoAplicacao resultado = service.aplicar(produtos, updates);
+
+        // Then
+        verify(produtoRepository, times(2)).aplicarEstoqueErp(anyString(), anyString(), anyString());
+        assertThat(resultado.alterados()).isEqualTo(EstoqueErpService.BLOCO_UPDATE + 10);
+    }
+}
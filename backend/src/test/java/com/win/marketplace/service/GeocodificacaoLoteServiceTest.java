@@ -0,0 +1,145 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.response.JobGeocodificacaoResponseDTO;
+import com.win.marketplace.model.JobGeocodificacao;
+import com.win.marketplace.model.Lojista;
+import com.win.marketplace.repository.EnderecoRepository;
+import com.win.marketplace.repository.JobGeocodificacaoRepository;
+import com.win.marketplace.repository.LojistaRepository;
+import com.win.marketplace.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para GeocodificacaoLoteService (job retomável de geocodificação em massa)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GeocodificacaoLoteService")
+class GeocodificacaoLoteServiceTest {
+
+    @Mock private JobGeocodificacaoRepository jobRepository;
+    @Mock private LojistaRepository lojistaRepository;
+    @Mock private EnderecoRepository enderecoRepository;
+    @Mock private UsuarioRepository usuarioRepository;
+    @Mock private GeocodingService geocodingService;
+
+    private GeocodificacaoLoteService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new GeocodificacaoLoteService(jobRepository, lojistaRepository, enderecoRepository,
+                usuarioRepository, geocodingService, Runnable::run, 2, 2, 10);
+    }
+
+    private JobGeocodificacao job(UUID checkpoint) {
+        JobGeocodificacao job = new JobGeocodificacao();
+        job.setId(UUID.randomUUID());
+        job.setAlvo(JobGeocodificacao.Alvo.LOJISTA);
+        job.setUltimoIdProcessado(checkpoint);
+        return job;
+    }
+
+    private Lojista lojista(UUID id, String logradouro) {
+        Lojista lojista = new Lojista();
+        lojista.setId(id);
+        lojista.setCep("01310-100");
+        lojista.setLogradouro(logradouro);
+        lojista.setNumero("1000");
+        lojista.setCidade("São Paulo");
+        lojista.setUf("SP");
+        return lojista;
+    }
+
+    @Test
+    @DisplayName("Deve continuar do checkpoint, gravar progresso por página e concluir")
+    void deveRetomarDoCheckpointEConcluir() {
+        // Given
+        UUID checkpoint = UUID.randomUUID();
+        JobGeocodificacao job = job(checkpoint);
+        Lojista comEndereco = lojista(UUID.randomUUID(), "Av. Paulista");
+        Lojista semEndereco = lojista(UUID.randomUUID(), null);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(jobRepository.findStatusById(job.getId())).thenReturn(JobGeocodificacao.StatusJob.EXECUTANDO);
+        when(lojistaRepository.findSemCoordenadasApos(eq(checkpoint), any())).thenReturn(List.of(comEndereco, semEndereco));
+        when(lojistaRepository.findSemCoordenadasApos(eq(semEndereco.getId()), any())).thenReturn(List.of());
+        when(geocodingService.geocodificarEmLote(eq("01310-100"), anyString())).thenReturn(new Double[]{-23.56, -46.65});
+
+        // When
+        service.executar(job.getId());
+
+        // Then
+        verify(lojistaRepository).atualizarCoordenadas(comEndereco.getId(), -23.56, -46.65);
+        verify(lojistaRepository, never()).atualizarCoordenadas(eq(semEndereco.getId()), any(), any());
+        verify(jobRepository).registrarProgresso(eq(job.getId()), eq(2), eq(1), eq(1),
+                eq(semEndereco.getId()), contains("insuficientes"), any());
+        verify(jobRepository).finalizar(eq(job.getId()), eq(JobGeocodificacao.StatusJob.CONCLUIDO), any());
+    }
+
+    @Test
+    @DisplayName("Deve parar sem processar quando o job foi cancelado")
+    void devePararQuandoCancelado() {
+        // Given
+        JobGeocodificacao job = job(null);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(jobRepository.findStatusById(job.getId())).thenReturn(JobGeocodificacao.StatusJob.CANCELADO);
+
+        // When
+        service.executar(job.getId());
+
+        // Then
+        verifyNoInteractions(lojistaRepository, geocodingService);
+        verify(jobRepository, never()).finalizar(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Deve calcular percentual, vazão e ETA do job em execução")
+    void deveCalcularProgressoEEta() {
+        // Given
+        OffsetDateTime agora = OffsetDateTime.parse("2025-03-07T12:10:00-03:00");
+        JobGeocodificacao job = job(null);
+        job.setTotal(400);
+        job.setProcessados(100);
+        job.setIniciadoEm(agora.minusMinutes(10));
+
+        // When
+        JobGeocodificacaoResponseDTO response = GeocodificacaoLoteService.toResponse(job, agora);
+
+        // Then
+        assertThat(response.getPercentual()).isEqualTo(25.0);
+        assertThat(response.getItensPorMinuto()).isEqualTo(10.0);
+        assertThat(response.getEtaSegundos()).isEqualTo(1800L);
+    }
+
+    @Test
+    @DisplayName("Não deve contar o tempo parado antes da retomada na vazão e no ETA")
+    void deveIgnorarTempoParadoNoEta() {
+        // Given: 100 itens na primeira execução, 2 horas parado, 50 itens em 5 minutos após retomar
+        OffsetDateTime agora = OffsetDateTime.parse("2025-03-07T14:15:00-03:00");
+        JobGeocodificacao job = job(null);
+        job.setTotal(400);
+        job.setProcessados(150);
+        job.setIniciadoEm(agora.minusHours(2).minusMinutes(15));
+        job.setExecucaoIniciadaEm(agora.minusMinutes(5));
+        job.setProcessadosNoInicioExecucao(100);
+
+        // When
+        JobGeocodificacaoResponseDTO response = GeocodificacaoLoteService.toResponse(job, agora);
+
+        // Then
+        assertThat(response.getItensPorMinuto()).isEqualTo(10.0);
+        assertThat(response.getEtaSegundos()).isEqualTo(1500L);
+    }
+}
@@ -0,0 +1,60 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.service.cache.GeocodificacaoCacheService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para GeocodingService (ordem de consulta por CEP)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GeocodingService")
+class GeocodingServiceTest {
+
+    private static final String CEP = "01310100";
+
+    @Mock private GeocodificacaoCacheService geocodificacaoCache;
+    @Mock private CepCentroideIndex cepCentroideIndex;
+    @Mock private NominatimGeocoder nominatimGeocoder;
+
+    @InjectMocks private GeocodingService service;
+
+    @Test
+    @DisplayName("Coordenada conhecida do CEP deve prevalecer sobre o centroide do índice")
+    void devePreferirCacheAoIndice() {
+        // Given
+        when(geocodificacaoCache.buscar(GeocodificacaoCacheService.chaveCep(CEP)))
+                .thenReturn(Optional.of(new GeocodificacaoCacheService.Entrada(-23.5614, -46.6559)));
+
+        // When
+        Double[] coords = service.geocodificarPorCEP("01310-100");
+
+        // Then
+        assertThat(coords).containsExactly(-23.5614, -46.6559);
+        verifyNoInteractions(cepCentroideIndex);
+    }
+
+    @Test
+    @DisplayName("Sem cache deve usar o índice offline antes da rede")
+    void deveUsarIndiceSemCache() {
+        // Given
+        when(geocodificacaoCache.buscar(GeocodificacaoCacheService.chaveCep(CEP))).thenReturn(Optional.empty());
+        when(cepCentroideIndex.buscar(CEP)).thenReturn(new Double[]{-23.56, -46.65});
+
+        // When
+        Double[] coords = service.geocodificarPorCEP(CEP);
+
+        // Then
+        assertThat(coords).containsExactly(-23.56, -46.65);
+        verifyNoInteractions(nominatimGeocoder);
+    }
+}
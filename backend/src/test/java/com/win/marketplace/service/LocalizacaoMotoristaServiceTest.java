@@ -0,0 +1,115 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.repository.EntregaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para LocalizacaoMotoristaService (coalescência, envio limitado e gravação em lote)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LocalizacaoMotoristaService")
+class LocalizacaoMotoristaServiceTest {
+
+    @Mock private WebSocketNotificationService webSocketService;
+    @Mock private EntregaRepository entregaRepository;
+
+    private LocalizacaoMotoristaService service;
+
+    @BeforeEach
+    void setUp() {
+        // Intervalo mínimo alto: só o primeiro envio passa dentro do teste
+        service = new LocalizacaoMotoristaService(webSocketService, entregaRepository, new SimpleMeterRegistry(),
+                60_000, 10, 30, 30);
+    }
+
+    @Test
+    @DisplayName("Deve descartar posição mais antiga que a última conhecida")
+    void deveDescartarPosicaoAntiga() {
+        // Given
+        Instant agora = Instant.now();
+        service.registrar("del-1", -23.55, -46.63, agora, "João", null, null);
+
+        // When
+        boolean aceita = service.registrar("del-1", -23.60, -46.70, agora.minusSeconds(5), "João", null, null);
+
+        // Then
+        assertThat(aceita).isFalse();
+        assertThat(service.ultimaPosicao("del-1")).get()
+                .satisfies(p -> assertThat(p.latitude()).isEqualTo(-23.55));
+    }
+
+    @Test
+    @DisplayName("Deve enviar só a última posição e respeitar o intervalo mínimo por entrega")
+    void deveCoalescerELimitarEnvios() {
+        // Given
+        Instant agora = Instant.now();
+        service.registrar("del-1", -23.5500, -46.6300, agora, "João", "+5511", "ABC1D23");
+        service.registrar("del-1", -23.5510, -46.6310, agora.plusSeconds(1), "João", "+5511", "ABC1D23");
+
+        // When
+        service.transmitir();
+        service.registrar("del-1", -23.5600, -46.6400, agora.plusSeconds(2), "João", "+5511", "ABC1D23");
+        service.transmitir();
+
+        // Then
+        ArgumentCaptor<Map<String, Object>> mensagem = ArgumentCaptor.forClass(Map.class);
+        verify(webSocketService, times(1)).enviarAtualizacaoMotorista(eq("del-1"), mensagem.capture());
+        assertThat(mensagem.getValue())
+                .containsEntry("completo", true)
+                .containsEntry("localizacao", Map.of("latitude", -23.5510, "longitude", -46.6310))
+                .containsKey("motorista");
+    }
+
+    @Test
+    @DisplayName("Deve gravar só as posições novas desde a última gravação")
+    void deveGravarEmLote() {
+        // Given
+        Instant agora = Instant.now();
+        service.registrar("del-1", -23.55, -46.63, agora, null, null, null);
+
+        // When
+        service.gravarPendentes();
+        service.gravarPendentes();
+        service.registrar("del-1", -23.56, -46.64, agora.plusSeconds(1), null, null, null);
+        service.gravarPendentes();
+
+        // Then
+        verify(entregaRepository, times(1)).atualizarLocalizacaoMotoristas("{\"del-1\"}", "{-23.55}", "{-46.63}",
+                "{\"" + agora + "\"}");
+        verify(entregaRepository, times(1)).atualizarLocalizacaoMotoristas("{\"del-1\"}", "{-23.56}", "{-46.64}",
+                "{\"" + agora.plusSeconds(1) + "\"}");
+    }
+
+    @Test
+    @DisplayName("Deve ignorar posição de entrega já encerrada")
+    void deveIgnorarEntregaEncerrada() {
+        // Given
+        Instant agora = Instant.now();
+        service.registrar("del-1", -23.55, -46.63, agora, null, null, null);
+        service.encerrar("del-1");
+
+        // When
+        boolean aceita = service.registrar("del-1", -23.56, -46.64, agora.plusSeconds(1), null, null, null);
+        service.transmitir();
+        service.gravarPendentes();
+
+        // Then
+        assertThat(aceita).isFalse();
+        assertThat(service.ultimaPosicao("del-1")).isEmpty();
+        verifyNoInteractions(webSocketService, entregaRepository);
+    }
+}
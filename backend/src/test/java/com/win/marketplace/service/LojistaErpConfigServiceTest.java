@@ -0,0 +1,79 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.integration.erp.ErpClientFactory;
+import com.win.marketplace.model.Lojista;
+import com.win.marketplace.model.LojistaErpConfig;
+import com.win.marketplace.model.Usuario;
+import com.win.marketplace.repository.LojistaErpConfigRepository;
+import com.win.marketplace.repository.LojistaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para LojistaErpConfigService (segredo do webhook de estoque)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LojistaErpConfigService")
+class LojistaErpConfigServiceTest {
+
+    @Mock private LojistaErpConfigRepository erpConfigRepository;
+    @Mock private LojistaRepository lojistaRepository;
+    @Mock private EncryptionService encryptionService;
+    @Mock private ErpClientFactory erpClientFactory;
+
+    @InjectMocks private LojistaErpConfigService service;
+
+    private Lojista lojista;
+
+    @BeforeEach
+    void setUp() {
+        Usuario dono = new Usuario();
+        dono.setEmail("dono@loja.com");
+        lojista = new Lojista();
+        lojista.setId(UUID.randomUUID());
+        lojista.setUsuario(dono);
+        when(lojistaRepository.findById(lojista.getId())).thenReturn(Optional.of(lojista));
+    }
+
+    @Test
+    @DisplayName("Deve recusar segredo de webhook para lojista de outro usuário")
+    void deveRecusarLojistaDeOutroUsuario() {
+        // When / Then
+        assertThatThrownBy(() -> service.gerarSegredoWebhook(lojista.getId(), "outro@loja.com"))
+                .isInstanceOf(ResponseStatusException.class)
+                .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN));
+        verifyNoInteractions(erpConfigRepository, encryptionService);
+    }
+
+    @Test
+    @DisplayName("Deve gerar e gravar criptografado o segredo do dono do lojista")
+    void deveGerarSegredoParaDono() {
+        // Given
+        LojistaErpConfig config = LojistaErpConfig.builder().id(UUID.randomUUID()).lojista(lojista).build();
+        when(erpConfigRepository.findByLojistaIdAndAtivoTrue(lojista.getId())).thenReturn(Optional.of(config));
+        when(encryptionService.encrypt(anyString())).thenReturn("cifrado");
+
+        // When
+        String segredo = service.gerarSegredoWebhook(lojista.getId(), "DONO@loja.com");
+
+        // Then
+        assertThat(segredo).hasSize(64);
+        assertThat(config.getWebhookSecretEncrypted()).isEqualTo("cifrado");
+        verify(encryptionService).encrypt(segredo);
+        verify(erpConfigRepository).save(config);
+    }
+}
@@ -0,0 +1,87 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para NominatimGeocoder (fila, agrupamento e token bucket local)
+ */
+@DisplayName("NominatimGeocoder")
+class NominatimGeocoderTest {
+
+    @SuppressWarnings("unchecked")
+    private NominatimGeocoder geocoder(double requisicoesPorSegundo, int fila) {
+        // Dispatcher não é iniciado: as consultas ficam na fila
+        return new NominatimGeocoder(mock(RestTemplate.class), new ObjectMapper(), mock(ObjectProvider.class),
+                new SimpleMeterRegistry(), requisicoesPorSegundo, 1, fila, 10, false);
+    }
+
+    @Test
+    @DisplayName("Deve agrupar consultas idênticas em andamento")
+    void deveAgruparConsultasIdenticas() {
+        // Given
+        NominatimGeocoder geocoder = geocoder(0.5, 10);
+
+        // When
+        CompletableFuture<Double[]> primeira = geocoder.geocodificar("Sao Paulo,SP,Brasil");
+        CompletableFuture<Double[]> segunda = geocoder.geocodificar("sao paulo,sp,brasil ");
+
+        // Then
+        assertThat(segunda).isSameAs(primeira);
+        assertThat(primeira).isNotDone();
+    }
+
+    @Test
+    @DisplayName("Deve concluir com null quando a fila estiver cheia")
+    void deveRejeitarComFilaCheia() {
+        // Given
+        NominatimGeocoder geocoder = geocoder(0.5, 1);
+        geocoder.geocodificar("Curitiba,PR,Brasil");
+
+        // When
+        CompletableFuture<Double[]> rejeitada = geocoder.geocodificar("Recife,PE,Brasil");
+
+        // Then
+        assertThat(rejeitada).isCompletedWithValue(null);
+        // Consulta rejeitada não fica registrada como em andamento
+        assertThat(geocoder.geocodificar("Recife,PE,Brasil")).isNotSameAs(rejeitada);
+    }
+
+    @Test
+    @DisplayName("Deve atender as consultas interativas antes das do lote")
+    void deveAtenderInterativasAntesDoLote() throws Exception {
+        // Given
+        NominatimGeocoder geocoder = geocoder(0.5, 10);
+        geocoder.geocodificarEmLote("Natal,RN,Brasil");
+        geocoder.geocodificar("Belem,PA,Brasil");
+
+        // Then
+        assertThat(geocoder.proxima().consulta()).isEqualTo("Belem,PA,Brasil");
+        assertThat(geocoder.proxima().consulta()).isEqualTo("Natal,RN,Brasil");
+        assertThat(geocoder.proxima()).isNull();
+    }
+
+    @Test
+    @DisplayName("Token bucket local deve liberar uma chamada a cada intervalo")
+    void tokenBucketLocalDeveRespeitarTaxa() {
+        // Given: 0,5 req/s => um token a cada 2000ms, sem rajada
+        NominatimGeocoder geocoder = geocoder(0.5, 10);
+        long agora = System.currentTimeMillis();
+
+        // Then
+        assertThat(geocoder.tentarObterTokenLocal(agora)).isZero();
+        assertThat(geocoder.tentarObterTokenLocal(agora)).isBetween(1999L, 2001L);
+        assertThat(geocoder.tentarObterTokenLocal(agora + 1000)).isBetween(999L, 1001L);
+        assertThat(geocoder.tentarObterTokenLocal(agora + 2010)).isZero();
+    }
+}
@@ -0,0 +1,137 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.model.Notificacao;
+import com.win.marketplace.model.NotificacaoOutbox;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.model.Usuario;
+import com.win.marketplace.repository.NotificacaoOutboxRepository;
+import com.win.marketplace.repository.NotificacaoRepository;
+import com.win.marketplace.repository.UsuarioRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para NotificacaoOutboxService (fan-out em lote das notificações de pedido)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificacaoOutboxService")
+class NotificacaoOutboxServiceTest {
+
+    @Mock private NotificacaoOutboxRepository outboxRepository;
+    @Mock private NotificacaoRepository notificacaoRepository;
+    @Mock private UsuarioRepository usuarioRepository;
+    @Mock private WebSocketNotificationService webSocketNotificationService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private NotificacaoOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new NotificacaoOutboxService(outboxRepository, notificacaoRepository, usuarioRepository,
+                webSocketNotificationService, transactionManager, meterRegistry, 100, 3, 60);
+        lenient().when(usuarioRepository.getReferenceById(any())).thenAnswer(inv -> {
+            Usuario usuario = new Usuario();
+            usuario.setId(inv.getArgument(0));
+            return usuario;
+        });
+    }
+
+    @Test
+    @DisplayName("Deve gravar apenas um evento por mudança de status")
+    void deveGravarUmEventoPorTransicao() {
+        // Given
+        Usuario cliente = new Usuario();
+        cliente.setId(UUID.randomUUID());
+        Pedido pedido = new Pedido();
+        pedido.setId(UUID.randomUUID());
+        pedido.setNumeroPedido("PED250307-00000001");
+        pedido.setUsuario(cliente);
+
+        // When
+        service.registrarMudancaStatus(pedido, Pedido.StatusPedido.PENDENTE, Pedido.StatusPedido.CONFIRMADO);
+
+        // Then
+        verify(outboxRepository, times(1)).save(any(NotificacaoOutbox.class));
+        verifyNoInteractions(notificacaoRepository, usuarioRepository);
+    }
+
+    @Test
+    @DisplayName("Deve gravar notificações do lote de uma vez e consultar admins só uma vez")
+    @SuppressWarnings("unchecked")
+    void deveGravarLoteComAdminsEmCache() {
+        // Given: 3 eventos e 2 admins
+        when(usuarioRepository.findIdsByPerfilAtivo("ADMIN")).thenReturn(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        when(outboxRepository.reivindicarPendentes(100))
+                .thenReturn(List.of(evento(), evento(), evento()))
+                .thenReturn(List.of(evento()));
+        when(webSocketNotificationService.notificarUsuario(any(), anyMap())).thenReturn(true);
+
+        // When
+        int primeiro = service.processarLote();
+        int segundo = service.processarLote();
+
+        // Then
+        assertThat(primeiro).isEqualTo(3);
+        assertThat(segundo).isEqualTo(1);
+        ArgumentCaptor<List<Notificacao>> lotes = ArgumentCaptor.forClass(List.class);
+        verify(notificacaoRepository, times(2)).saveAll(lotes.capture());
+        assertThat(lotes.getAllValues().get(0)).hasSize(9);
+        assertThat(lotes.getAllValues().get(1)).hasSize(3);
+        verify(usuarioRepository, times(1)).findIdsByPerfilAtivo("ADMIN");
+        verify(outboxRepository, times(2)).marcarEnviados(anyCollection(), any());
+        assertThat(meterRegistry.counter("notificacoes.enviadas", "canal", "SISTEMA").count()).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Deve isolar evento com falha reprocessando o lote individualmente")
+    void deveIsolarEventoComFalha() {
+        // Given
+        NotificacaoOutbox bom = evento();
+        NotificacaoOutbox ruim = evento();
+        when(usuarioRepository.findIdsByPerfilAtivo("ADMIN")).thenReturn(List.of());
+        when(outboxRepository.reivindicarPendentes(100)).thenReturn(List.of(bom, ruim));
+        when(outboxRepository.findById(bom.getId())).thenReturn(java.util.Optional.of(bom));
+        when(outboxRepository.findById(ruim.getId())).thenReturn(java.util.Optional.of(ruim));
+        when(notificacaoRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Notificacao> lote = inv.getArgument(0);
+            if (lote.stream().anyMatch(n -> n.getUsuario().getId().equals(ruim.getUsuarioId()))) {
+                throw new IllegalStateException("usuário removido");
+            }
+            return lote;
+        });
+
+        // When
+        service.processarLote();
+
+        // Then
+        verify(outboxRepository).marcarEnviados(eq(List.of(bom.getId())), any());
+        verify(outboxRepository).registrarFalha(eq(List.of(ruim.getId())), contains("usuário removido"), eq(3));
+    }
+
+    private NotificacaoOutbox evento() {
+        NotificacaoOutbox evento = new NotificacaoOutbox();
+        evento.setId(UUID.randomUUID());
+        evento.setPedidoId(UUID.randomUUID());
+        evento.setNumeroPedido("PED250307-" + evento.getId().toString().substring(0, 8));
+        evento.setUsuarioId(UUID.randomUUID());
+        evento.setStatusAnterior(Pedido.StatusPedido.PENDENTE);
+        evento.setStatusNovo(Pedido.StatusPedido.CONFIRMADO);
+        return evento;
+    }
+}
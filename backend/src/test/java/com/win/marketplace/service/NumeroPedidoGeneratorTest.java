@@ -0,0 +1,161 @@
+package com.win.marketplace.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Testes unitários para NumeroPedidoGenerator (hi/lo sobre pedido_numero_seq)
+ */
+@DisplayName("NumeroPedidoGenerator")
+class NumeroPedidoGeneratorTest {
+
+    private static final Clock RELOGIO = Clock.fixed(Instant.parse("2025-03-07T15:00:00Z"), ZoneId.of("America/Sao_Paulo"));
+
+    @Test
+    @DisplayName("Deve gerar número legível com data e sequência")
+    void deveGerarNumeroLegivel() {
+        // Given
+        NumeroPedidoGenerator generator = new NumeroPedidoGenerator(() -> 1L, () -> { }, RELOGIO);
+
+        // When
+        String primeiro = generator.gerar();
+        String segundo = generator.gerar();
+
+        // Then
+        assertThat(primeiro).isEqualTo("PED250307-00000001");
+        assertThat(segundo).isEqualTo("PED250307-00000002");
+        assertThat(segundo).isGreaterThan(primeiro);
+    }
+
+    @Test
+    @DisplayName("Deve ir ao banco apenas uma vez por bloco")
+    void deveAlocarPorBloco() {
+        // Given
+        AtomicLong sequencia = new AtomicLong(1);
+        AtomicLong roundTrips = new AtomicLong();
+        NumeroPedidoGenerator generator = new NumeroPedidoGenerator(() -> {
+            roundTrips.incrementAndGet();
+            return sequencia.getAndAdd(NumeroPedidoGenerator.TAMANHO_BLOCO);
+        }, () -> { }, RELOGIO);
+
+        // When
+        for (int i = 0; i < 250; i++) {
+            generator.proximoValor();
+        }
+
+        // Then
+        assertThat(roundTrips.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve gerar números únicos sob milhares de chamadas concorrentes em várias instâncias")
+    void deveSerUnicoSobConcorrencia() throws Exception {
+        // Given: 4 instâncias da aplicação compartilhando a mesma sequência do banco
+        AtomicLong sequencia = new AtomicLong(1);
+        List<NumeroPedidoGenerator> instancias = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            instancias.add(new NumeroPedidoGenerator(
+                    () -> sequencia.getAndAdd(NumeroPedidoGenerator.TAMANHO_BLOCO), () -> { }, RELOGIO));
+        }
+
+        int threads = 64;
+        int chamadasPorThread = 500;
+        Set<String> gerados = ConcurrentHashMap.newKeySet();
+        CountDownLatch prontas = new CountDownLatch(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            NumeroPedidoGenerator generator = instancias.get(t % instancias.size());
+            resultados.add(executor.submit(() -> {
+                prontas.countDown();
+                largada.await();
+                String anterior = "";
+                boolean monotonico = true;
+                for (int i = 0; i < chamadasPorThread; i++) {
+                    String numero = generator.gerar();
+                    monotonico &= numero.compareTo(anterior) > 0;
+                    anterior = numero;
+                    gerados.add(numero);
+                }
+                return monotonico;
+            }));
+        }
+        assertThat(prontas.await(10, TimeUnit.SECONDS)).isTrue();
+        largada.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        for (Future<Boolean> resultado : resultados) {
+            assertThat(resultado.get()).as("números crescentes dentro de cada thread").isTrue();
+        }
+        assertThat(gerados).hasSize(threads * chamadasPorThread);
+    }
+
+    @Test
+    @DisplayName("Não deve repetir número quando várias threads esgotam o bloco ao mesmo tempo")
+    void naoDeveDuplicarNaTrocaDeBloco() throws Exception {
+        // Given: ida ao banco lenta e sem sincronização própria; só o gerador serializa a troca de bloco
+        long[] sequencia = {1};
+        AtomicLong roundTrips = new AtomicLong();
+        NumeroPedidoGenerator generator = new NumeroPedidoGenerator(() -> {
+            roundTrips.incrementAndGet();
+            long inicio = sequencia[0];
+            Thread.yield();
+            sequencia[0] = inicio + NumeroPedidoGenerator.TAMANHO_BLOCO;
+            return inicio;
+        }, () -> { }, RELOGIO);
+
+        int threads = 32;
+        int chamadasPorThread = NumeroPedidoGenerator.TAMANHO_BLOCO * 3;
+        Set<Long> gerados = ConcurrentHashMap.newKeySet();
+        AtomicLong duplicados = new AtomicLong();
+        CountDownLatch prontas = new CountDownLatch(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                prontas.countDown();
+                largada.await();
+                for (int i = 0; i < chamadasPorThread; i++) {
+                    if (!gerados.add(generator.proximoValor())) {
+                        duplicados.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        assertThat(prontas.await(10, TimeUnit.SECONDS)).isTrue();
+        largada.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // Then: nenhum número repetido nem bloco desperdiçado
+        long total = (long) threads * chamadasPorThread;
+        assertThat(duplicados).hasValue(0);
+        assertThat(gerados).hasSize((int) total);
+        assertThat(roundTrips.get()).isEqualTo(total / NumeroPedidoGenerator.TAMANHO_BLOCO);
+        assertThat(gerados).allSatisfy(numero -> assertThat(numero).isBetween(1L, total));
+    }
+}
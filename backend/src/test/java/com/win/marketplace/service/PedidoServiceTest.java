@@ -0,0 +1,275 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.dto.mapper.PedidoMapper;
+import com.win.marketplace.dto.request.ItemPedidoRequestDTO;
+import com.win.marketplace.dto.request.PedidoCreateRequestDTO;
+import com.win.marketplace.dto.response.PedidoPaginaResponseDTO;
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.model.Lojista;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.model.Usuario;
+import com.win.marketplace.repository.MotoristaRepository;
+import com.win.marketplace.repository.PedidoRepository;
+import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para o checkout em lote de PedidoService.criarPedido
+ * e para a paginação por cursor das listagens
+ *
+ * O custo do checkout é dominado pelas idas ao banco: aqui verificamos que a
+ * quantidade de round trips não cresce com o tamanho do carrinho.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PedidoService - criação e listagem de pedidos")
+class PedidoServiceTest {
+
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private UsuarioRepository usuarioRepository;
+    @Mock private MotoristaRepository motoristaRepository;
+    @Mock private ProdutoRepository produtoRepository;
+    @Mock private ProdutoService produtoService;
+    @Mock private PedidoMapper pedidoMapper;
+    @Mock private ObjectMapper objectMapper;
+    @Mock private PedidoStatusService pedidoStatusService;
+    @Mock private NumeroPedidoGenerator numeroPedidoGenerator;
+
+    @InjectMocks private PedidoService pedidoService;
+
+    private Usuario usuario;
+    private Lojista lojista;
+
+    @BeforeEach
+    void setUp() {
+        usuario = new Usuario();
+        usuario.setId(UUID.randomUUID());
+        lojista = new Lojista();
+        lojista.setId(UUID.randomUUID());
+    }
+
+    @ParameterizedTest(name = "carrinho com {0} itens")
+    @ValueSource(ints = {1, 10, 30})
+    @DisplayName("Deve carregar produtos e reservar estoque com round trips constantes")
+    void deveUsarRoundTripsConstantes(int tamanhoCarrinho) {
+        // Given
+        List<Produto> produtos = new ArrayList<>();
+        List<ItemPedidoRequestDTO> itens = new ArrayList<>();
+        for (int i = 0; i < tamanhoCarrinho; i++) {
+            Produto produto = criarProduto(lojista, new BigDecimal("10.00"), 5);
+            produtos.add(produto);
+            itens.add(new ItemPedidoRequestDTO(produto.getId(), 2, new BigDecimal("10.00"), null, null));
+        }
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(produtoRepository.findComLojistaByIdIn(any())).thenReturn(produtos);
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        pedidoService.criarPedido(criarRequest(itens));
+
+        // Then
+        verify(produtoRepository, times(1)).findComLojistaByIdIn(any());
+        verify(produtoRepository, never()).findById(any());
+        verify(produtoService, times(1)).reservarEstoque(anyMap());
+
+        ArgumentCaptor<Pedido> pedidoSalvo = ArgumentCaptor.forClass(Pedido.class);
+        verify(pedidoRepository, times(1)).save(pedidoSalvo.capture());
+        assertThat(pedidoSalvo.getValue().getItens()).hasSize(tamanhoCarrinho);
+        assertThat(pedidoSalvo.getValue().getEstoqueReservado()).isTrue();
+        assertThat(pedidoSalvo.getValue().getSubtotal())
+                .isEqualByComparingTo(new BigDecimal("20.00").multiply(BigDecimal.valueOf(tamanhoCarrinho)));
+    }
+
+    @Test
+    @DisplayName("Deve somar quantidades do mesmo produto antes de reservar")
+    @SuppressWarnings("unchecked")
+    void deveSomarQuantidadesDoMesmoProduto() {
+        // Given
+        Produto produto = criarProduto(lojista, new BigDecimal("10.00"), 5);
+        List<ItemPedidoRequestDTO> itens = List.of(
+                new ItemPedidoRequestDTO(produto.getId(), 2, new BigDecimal("10.00"), null, null),
+                new ItemPedidoRequestDTO(produto.getId(), 3, new BigDecimal("10.00"), null, null));
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(produtoRepository.findComLojistaByIdIn(any())).thenReturn(List.of(produto));
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        pedidoService.criarPedido(criarRequest(itens));
+
+        // Then
+        ArgumentCaptor<Map<UUID, Integer>> reserva = ArgumentCaptor.forClass(Map.class);
+        verify(produtoService).reservarEstoque(reserva.capture());
+        assertThat(reserva.getValue()).containsExactly(entry(produto.getId(), 5));
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar carrinho com preço desatualizado sem reservar estoque")
+    void deveRejeitarPrecoDesatualizado() {
+        // Given
+        Produto produto = criarProduto(lojista, new BigDecimal("12.00"), 5);
+        List<ItemPedidoRequestDTO> itens = List.of(
+                new ItemPedidoRequestDTO(produto.getId(), 1, new BigDecimal("10.00"), null, null));
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(produtoRepository.findComLojistaByIdIn(any())).thenReturn(List.of(produto));
+
+        // When / Then
+        assertThatThrownBy(() -> pedidoService.criarPedido(criarRequest(itens)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Atualize o carrinho");
+        verify(produtoService, never()).reservarEstoque(anyMap());
+        verify(pedidoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar produtos de lojistas diferentes")
+    void deveRejeitarLojistasDiferentes() {
+        // Given
+        Lojista outroLojista = new Lojista();
+        outroLojista.setId(UUID.randomUUID());
+        Produto produtoA = criarProduto(lojista, new BigDecimal("10.00"), 5);
+        Produto produtoB = criarProduto(outroLojista, new BigDecimal("10.00"), 5);
+        List<ItemPedidoRequestDTO> itens = List.of(
+                new ItemPedidoRequestDTO(produtoA.getId(), 1, new BigDecimal("10.00"), null, null),
+                new ItemPedidoRequestDTO(produtoB.getId(), 1, new BigDecimal("10.00"), null, null));
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(produtoRepository.findComLojistaByIdIn(any())).thenReturn(List.of(produtoA, produtoB));
+
+        // When / Then
+        assertThatThrownBy(() -> pedidoService.criarPedido(criarRequest(itens)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("mesmo lojista");
+        verify(produtoService, never()).reservarEstoque(anyMap());
+    }
+
+    @Test
+    @DisplayName("Deve paginar pedidos do lojista por cursor em duas fases")
+    @SuppressWarnings("unchecked")
+    void devePaginarPorCursorEmDuasFases() {
+        // Given: 3 pedidos mais recentes primeiro, página de 2
+        OffsetDateTime agora = OffsetDateTime.parse("2025-03-07T12:00:00Z");
+        Pedido maisNovo = criarPedido(agora);
+        Pedido meio = criarPedido(agora.minusMinutes(1));
+        Pedido maisAntigo = criarPedido(agora.minusMinutes(2));
+        when(pedidoRepository.findPaginaIdsPorLojista(eq(lojista.getId()), any(), any(), any()))
+                .thenReturn(List.of(maisNovo.getId(), meio.getId(), maisAntigo.getId()));
+        // IN não garante ordem
+        when(pedidoRepository.findComDetalhesByIdIn(any())).thenReturn(List.of(meio, maisNovo));
+        when(pedidoMapper.toResponseDTOList(anyList())).thenReturn(List.of());
+
+        // When
+        PedidoPaginaResponseDTO pagina = pedidoService.listarPedidosPorLojista(lojista.getId(), null, 2);
+
+        // Then
+        ArgumentCaptor<Pageable> paginaPedida = ArgumentCaptor.forClass(Pageable.class);
+        verify(pedidoRepository).findPaginaIdsPorLojista(eq(lojista.getId()), any(), any(), paginaPedida.capture());
+        assertThat(paginaPedida.getValue().getPageSize()).isEqualTo(3);
+
+        ArgumentCaptor<Collection<UUID>> idsHidratados = ArgumentCaptor.forClass(Collection.class);
+        verify(pedidoRepository).findComDetalhesByIdIn(idsHidratados.capture());
+        assertThat(idsHidratados.getValue()).containsExactly(maisNovo.getId(), meio.getId());
+
+        ArgumentCaptor<List<Pedido>> mapeados = ArgumentCaptor.forClass(List.class);
+        verify(pedidoMapper).toResponseDTOList(mapeados.capture());
+        assertThat(mapeados.getValue()).containsExactly(maisNovo, meio);
+        assertThat(pagina.proximoCursor()).isNotNull();
+
+        // When: próxima página continua depois do último pedido entregue
+        when(pedidoRepository.findPaginaIdsPorLojista(eq(lojista.getId()), any(), any(), any()))
+                .thenReturn(List.of(maisAntigo.getId()));
+        when(pedidoRepository.findComDetalhesByIdIn(any())).thenReturn(List.of(maisAntigo));
+        PedidoPaginaResponseDTO segunda = pedidoService.listarPedidosPorLojista(lojista.getId(), pagina.proximoCursor(), 2);
+
+        // Then
+        verify(pedidoRepository).findPaginaIdsPorLojista(lojista.getId(), meio.getCriadoEm(), meio.getId(), PageRequest.ofSize(3));
+        assertThat(segunda.proximoCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Sem limite deve devolver a página padrão com cursor para a próxima")
+    void deveUsarLimitePadraoSemLimite() {
+        // Given: mais pedidos que a página padrão
+        OffsetDateTime agora = OffsetDateTime.parse("2025-03-07T12:00:00Z");
+        List<Pedido> pedidos = new ArrayList<>();
+        for (int i = 0; i <= PedidoService.LIMITE_PADRAO_PAGINA; i++) {
+            pedidos.add(criarPedido(agora.minusMinutes(i)));
+        }
+        when(pedidoRepository.findPaginaIdsPorUsuario(eq(usuario.getId()), any(), any(), any()))
+                .thenReturn(pedidos.stream().map(Pedido::getId).toList());
+        when(pedidoRepository.findComDetalhesByIdIn(any()))
+                .thenReturn(pedidos.subList(0, PedidoService.LIMITE_PADRAO_PAGINA));
+        when(pedidoMapper.toResponseDTOList(anyList()))
+                .thenAnswer(invocation -> Collections.nCopies(((List<?>) invocation.getArgument(0)).size(), null));
+
+        // When
+        PedidoPaginaResponseDTO pagina = pedidoService.listarPedidosPorUsuario(usuario.getId(), null, null);
+
+        // Then
+        assertThat(pagina.itens()).hasSize(PedidoService.LIMITE_PADRAO_PAGINA);
+        assertThat(pagina.proximoCursor()).isNotNull();
+        verify(pedidoRepository).findPaginaIdsPorUsuario(eq(usuario.getId()), any(), any(),
+                eq(PageRequest.ofSize(PedidoService.LIMITE_PADRAO_PAGINA + 1)));
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar cursor inválido")
+    void deveRejeitarCursorInvalido() {
+        assertThatThrownBy(() -> pedidoService.listarPedidosPorUsuario(usuario.getId(), "nao-e-cursor", 20))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Cursor");
+        verify(pedidoRepository, never()).findComDetalhesByIdIn(any());
+    }
+
+    private Pedido criarPedido(OffsetDateTime criadoEm) {
+        Pedido pedido = new Pedido();
+        pedido.setId(UUID.randomUUID());
+        pedido.setLojista(lojista);
+        pedido.setCriadoEm(criadoEm);
+        return pedido;
+    }
+
+    private PedidoCreateRequestDTO criarRequest(List<ItemPedidoRequestDTO> itens) {
+        return new PedidoCreateRequestDTO(usuario.getId(), Map.of("cep", "01001000"), null,
+                BigDecimal.ZERO, BigDecimal.ZERO, null, itens);
+    }
+
+    private Produto criarProduto(Lojista dono, BigDecimal preco, int estoque) {
+        Produto produto = new Produto();
+        produto.setId(UUID.randomUUID());
+        produto.setNome("Produto " + produto.getId());
+        produto.setLojista(dono);
+        produto.setPreco(preco);
+        produto.setEstoque(estoque);
+        produto.setAtivo(true);
+        return produto;
+    }
+}
@@ -0,0 +1,148 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.mapper.ProdutoMapper;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO;
+import com.win.marketplace.dto.response.ProdutoBuscaResponseDTO.FaixaPrecoDTO;
+import com.win.marketplace.exception.BusinessException;
+import com.win.marketplace.repository.ProdutoRepository;
+import com.win.marketplace.repository.ProdutoRepository.ResultadoBusca;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para ProdutoBuscaService (tsquery, cursor e facetas)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProdutoBuscaService")
+class ProdutoBuscaServiceTest {
+
+    private static final UUID PRODUTO_A = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID PRODUTO_B = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+
+    @Mock private ProdutoRepository produtoRepository;
+    @Mock private ProdutoMapper produtoMapper;
+
+    @InjectMocks private ProdutoBuscaService service;
+
+    @Test
+    @DisplayName("Deve remover pontuação, combinar termos com AND e usar prefixo no último")
+    void deveMontarTsqueryComPrefixoNoUltimoTermo() {
+        assertThat(ProdutoBuscaService.montarConsultaTsquery("Tênis  Corrida!"))
+                .isEqualTo("tênis & corrida:*");
+        assertThat(ProdutoBuscaService.montarConsultaTsquery("café'); DROP TABLE produtos;--"))
+                .isEqualTo("café & drop & table & produtos:*");
+        assertThat(ProdutoBuscaService.montarConsultaTsquery("iphone")).isEqualTo("iphone:*");
+    }
+
+    @Test
+    @DisplayName("Deve limitar a quantidade e o tamanho dos termos da tsquery")
+    void deveLimitarTermosDaTsquery() {
+        // When
+        String consulta = ProdutoBuscaService.montarConsultaTsquery("a b c d e f g h i j " + "x".repeat(80));
+
+        // Then: só os 8 primeiros termos entram
+        assertThat(consulta).isEqualTo("a & b & c & d & e & f & g & h:*");
+        assertThat(ProdutoBuscaService.montarConsultaTsquery("x".repeat(80)))
+                .isEqualTo("x".repeat(50) + ":*");
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar termo vazio ou sem letras e números")
+    void deveRejeitarTermoSemConteudo() {
+        assertThatThrownBy(() -> ProdutoBuscaService.montarConsultaTsquery("   "))
+                .isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> ProdutoBuscaService.montarConsultaTsquery("&|!:*()"))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("letras ou números");
+    }
+
+    @Test
+    @DisplayName("Cursor da próxima página deve continuar a partir do último (rank, id) entregue")
+    void deveContinuarPeloCursor() {
+        // Given: limite 1, o repositório devolve limite + 1 resultados
+        when(produtoRepository.buscarFullText(anyString(), anyString(), anyString(), anyString(),
+                any(), any(), anyDouble(), anyString(), eq(2)))
+                .thenReturn(List.of(resultado(PRODUTO_B, 0.75), resultado(PRODUTO_A, 0.5)));
+
+        // When
+        ProdutoBuscaResponseDTO primeira = service.buscar("tenis", null, null, null, null, null, 1);
+        service.buscar("tenis", null, null, null, null, primeira.proximoCursor(), 1);
+
+        // Then
+        assertThat(primeira.proximoCursor()).isNotBlank();
+        verify(produtoRepository).buscarFullText(eq("tenis:*"), eq("tenis"), eq(""), eq(""),
+                eq(BigDecimal.ZERO), eq(ProdutoBuscaService.PRECO_MAXIMO),
+                eq(Double.MAX_VALUE), eq(""), eq(2));
+        verify(produtoRepository).buscarFullText(eq("tenis:*"), eq("tenis"), eq(""), eq(""),
+                eq(BigDecimal.ZERO), eq(ProdutoBuscaService.PRECO_MAXIMO),
+                eq(0.75), eq(PRODUTO_B.toString()), eq(2));
+    }
+
+    @Test
+    @DisplayName("Cursor adulterado deve ser recusado antes de consultar o banco")
+    void deveRecusarCursorInvalido() {
+        assertThatThrownBy(() -> service.buscar("tenis", null, null, null, null, "não-é-base64", 20))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Cursor de busca inválido");
+        assertThatThrownBy(() -> service.buscar("tenis", null, null, null, null, "c2VtLXNlcGFyYWRvcg", 20))
+                .isInstanceOf(BusinessException.class);
+        verifyNoInteractions(produtoRepository);
+    }
+
+    @Test
+    @DisplayName("Deve converter os índices do width_bucket nas faixas de preço")
+    void deveMapearFaixasDePreco() {
+        // Given
+        when(produtoRepository.contarFacetaFaixasPreco("tenis:*", "tenis", "", "", "{25,50,100,250,500}"))
+                .thenReturn(List.of(new Object[]{0, 3L}, new Object[]{2, 5L}, new Object[]{5, 1L}));
+
+        // When
+        ProdutoBuscaResponseDTO resposta = service.buscar("tenis", null, null, null, null, null, 20);
+
+        // Then: 0 = abaixo do primeiro limite, 5 = acima do último
+        assertThat(resposta.facetas().faixasPreco()).containsExactly(
+                new FaixaPrecoDTO(null, new BigDecimal("25"), 3L),
+                new FaixaPrecoDTO(new BigDecimal("50"), new BigDecimal("100"), 5L),
+                new FaixaPrecoDTO(new BigDecimal("500"), null, 1L));
+    }
+
+    @Test
+    @DisplayName("Páginas seguintes não devem recalcular as facetas")
+    void naoDeveCalcularFacetasComCursor() {
+        // Given
+        String cursor = primeiroCursor();
+
+        // When
+        ProdutoBuscaResponseDTO resposta = service.buscar("tenis", null, null, null, null, cursor, 1);
+
+        // Then
+        assertThat(resposta.facetas()).isNull();
+        verify(produtoRepository, times(1)).contarFacetaFaixasPreco(any(), any(), any(), any(), any());
+    }
+
+    private String primeiroCursor() {
+        when(produtoRepository.buscarFullText(anyString(), anyString(), anyString(), anyString(),
+                any(), any(), anyDouble(), anyString(), anyInt()))
+                .thenReturn(List.of(resultado(PRODUTO_B, 0.75), resultado(PRODUTO_A, 0.5)));
+        return service.buscar("tenis", null, null, null, null, null, 1).proximoCursor();
+    }
+
+    private static ResultadoBusca resultado(UUID id, double rank) {
+        return new ResultadoBusca() {
+            public UUID getId() { return id; }
+            public Double getRank() { return rank; }
+        };
+    }
+}
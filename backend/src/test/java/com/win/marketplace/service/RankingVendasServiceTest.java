@@ -0,0 +1,166 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.model.ItemPedido;
+import com.win.marketplace.model.Pedido;
+import com.win.marketplace.model.Produto;
+import com.win.marketplace.repository.ProdutoVendaAgregadaRepository;
+import com.win.marketplace.service.cache.CatalogoCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para RankingVendasService (contadores incrementais e reconstrução)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RankingVendasService")
+class RankingVendasServiceTest {
+
+    private static final ZoneId FUSO = ZoneId.of("America/Sao_Paulo");
+    private static final UUID PRODUTO_A = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID PRODUTO_B = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+
+    @Mock private ProdutoVendaAgregadaRepository repository;
+    @Mock private CatalogoCacheService catalogoCacheService;
+
+    private RankingVendasService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RankingVendasService(repository, catalogoCacheService, FUSO.getId());
+    }
+
+    @Test
+    @DisplayName("Deve somar as unidades por produto no total e no bucket do dia ao confirmar")
+    void deveAcumularNaConfirmacao() {
+        // Given: dois itens do mesmo produto no pedido
+        OffsetDateTime confirmadoEm = OffsetDateTime.now();
+        Pedido pedido = pedido(confirmadoEm, item(PRODUTO_B, 1), item(PRODUTO_A, 2), item(PRODUTO_A, 3));
+        LocalDate dia = confirmadoEm.atZoneSameInstant(FUSO).toLocalDate();
+
+        // When
+        service.registrarConfirmacao(pedido);
+
+        // Then: agrupado e em ordem de produto (mesma ordem de lock entre transações)
+        InOrder ordem = inOrder(repository);
+        ordem.verify(repository).acumularTotal(PRODUTO_A, 5);
+        ordem.verify(repository).acumularDia(PRODUTO_A, dia, 5);
+        ordem.verify(repository).acumularTotal(PRODUTO_B, 1);
+        ordem.verify(repository).acumularDia(PRODUTO_B, dia, 1);
+    }
+
+    @Test
+    @DisplayName("Deve estornar as unidades ao cancelar pedido já confirmado")
+    void deveDecrementarNoCancelamento() {
+        // Given
+        OffsetDateTime confirmadoEm = OffsetDateTime.now();
+        Pedido pedido = pedido(confirmadoEm, item(PRODUTO_A, 2));
+
+        // When
+        service.registrarCancelamento(pedido, Pedido.StatusPedido.CONFIRMADO);
+
+        // Then
+        verify(repository).acumularTotal(PRODUTO_A, -2);
+        verify(repository).acumularDia(PRODUTO_A, confirmadoEm.atZoneSameInstant(FUSO).toLocalDate(), -2);
+    }
+
+    @Test
+    @DisplayName("Não deve mexer no ranking ao cancelar pedido que nunca foi confirmado")
+    void naoDeveEstornarPedidoPendente() {
+        // Given
+        Pedido pedido = pedido(null, item(PRODUTO_A, 2));
+
+        // When
+        service.registrarCancelamento(pedido, Pedido.StatusPedido.PENDENTE);
+
+        // Then
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Venda fora da janela de 30 dias deve contar só no total")
+    void deveIgnorarBucketForaDaJanela() {
+        // Given
+        Pedido pedido = pedido(OffsetDateTime.now().minusDays(45), item(PRODUTO_A, 1));
+
+        // When
+        service.registrarCancelamento(pedido, Pedido.StatusPedido.ENTREGUE);
+
+        // Then
+        verify(repository).acumularTotal(PRODUTO_A, -1);
+        verify(repository, never()).acumularDia(any(), any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve bloquear as escritas antes de limpar e reconstruir os contadores")
+    void deveReconstruirComTabelasBloqueadas() {
+        // Given
+        when(repository.tentarLockReconstrucao(anyLong())).thenReturn(true);
+        when(repository.reconstruirTotais()).thenReturn(12);
+        when(repository.reconstruirDiasDesde(any(), eq(FUSO.getId()))).thenReturn(40);
+
+        // When
+        Map<String, Object> resultado = service.reconstruir();
+
+        // Then
+        InOrder ordem = inOrder(repository, catalogoCacheService);
+        ordem.verify(repository).bloquearEscritas();
+        ordem.verify(repository).limparTotais();
+        ordem.verify(repository).reconstruirTotais();
+        ordem.verify(repository).limparDias();
+        ordem.verify(repository).reconstruirDiasDesde(LocalDate.now(FUSO).minusDays(29), FUSO.getId());
+        ordem.verify(catalogoCacheService).invalidarNamespace(CatalogoCacheService.NS_MAIS_VENDIDOS);
+        assertThat(resultado).containsEntry("executado", true)
+                .containsEntry("produtos", 12)
+                .containsEntry("bucketsDiarios", 40);
+    }
+
+    @Test
+    @DisplayName("Não deve reconstruir quando outra instância já está reconstruindo")
+    void naoDeveReconstruirSemLock() {
+        // Given
+        when(repository.tentarLockReconstrucao(anyLong())).thenReturn(false);
+
+        // When
+        Map<String, Object> resultado = service.reconstruir();
+
+        // Then
+        assertThat(resultado).containsEntry("executado", false);
+        verify(repository, never()).bloquearEscritas();
+        verify(repository, never()).limparTotais();
+        verifyNoInteractions(catalogoCacheService);
+    }
+
+    private static Pedido pedido(OffsetDateTime confirmadoEm, ItemPedido... itens) {
+        Pedido pedido = new Pedido();
+        pedido.setId(UUID.randomUUID());
+        pedido.setConfirmadoEm(confirmadoEm);
+        pedido.setItens(new ArrayList<>(List.of(itens)));
+        return pedido;
+    }
+
+    private static ItemPedido item(UUID produtoId, int quantidade) {
+        Produto produto = new Produto();
+        produto.setId(produtoId);
+        ItemPedido item = new ItemPedido();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        return item;
+    }
+}
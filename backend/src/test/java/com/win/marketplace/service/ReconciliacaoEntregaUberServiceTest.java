@@ -0,0 +1,176 @@
+package com.win.marketplace.service;
+
+import com.win.marketplace.dto.response.DeliveryStatusResponseDTO;
+import com.win.marketplace.dto.webhook.UberWebhookEventDTO;
+import com.win.marketplace.model.enums.StatusEntrega;
+import com.win.marketplace.repository.EntregaRepository;
+import com.win.marketplace.repository.EntregaRepository.ConsultaStatusUber;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para ReconciliacaoEntregaUberService (consulta adaptativa e orçamento)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReconciliacaoEntregaUberService")
+class ReconciliacaoEntregaUberServiceTest {
+
+    private static final UUID ENTREGA_ID = UUID.randomUUID();
+
+    @Mock private EntregaRepository entregaRepository;
+    @Mock private UberFlashService uberFlashService;
+    @Mock private UberWebhookInboxService inboxService;
+    @Mock private LocalizacaoMotoristaService localizacaoMotoristaService;
+    @Mock private RedisTemplate<String, String> redisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private ReconciliacaoEntregaUberService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ReconciliacaoEntregaUberService(entregaRepository, uberFlashService, inboxService,
+                localizacaoMotoristaService, redisTemplate, Runnable::run, transactionManager,
+                new SimpleMeterRegistry(), true, 50, 120, 15, 60, 600, 300, 120);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    private static ConsultaStatusUber entrega(StatusEntrega status, int semMudanca) {
+        return new ConsultaStatusUber() {
+            public UUID getId() { return ENTREGA_ID; }
+            public String getIdCorridaUber() { return "del-1"; }
+            public String getStatusEntrega() { return status.name(); }
+            public Integer getConsultasSemMudanca() { return semMudanca; }
+        };
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar o status perdido na inbox e zerar o contador de consultas sem mudança")
+    void deveReconciliarStatusDivergente() {
+        // Given
+        when(valueOperations.increment(anyString(), eq(50L))).thenReturn(50L);
+        when(entregaRepository.reivindicarConsultasUber(50))
+                .thenReturn(List.of(entrega(StatusEntrega.AGUARDANDO_MOTORISTA, 4)));
+        when(uberFlashService.consultarStatusEntrega("del-1")).thenReturn(DeliveryStatusResponseDTO.builder()
+                .deliveryId("del-1")
+                .status("dropoff")
+                .dropoff(DeliveryStatusResponseDTO.LocationInfo.builder()
+                        .eta(Instant.now().plus(Duration.ofMinutes(2)))
+                        .build())
+                .build());
+
+        // When
+        int consultadas = service.reconciliar();
+
+        // Then
+        assertThat(consultadas).isEqualTo(1);
+        ArgumentCaptor<UberWebhookEventDTO> evento = ArgumentCaptor.forClass(UberWebhookEventDTO.class);
+        verify(inboxService).enfileirar(evento.capture());
+        assertThat(evento.getValue().getEventId()).isEqualTo("reconciliacao:del-1:dropoff");
+        assertThat(evento.getValue().getEventType()).isEqualTo("deliveries.delivery_status_updated");
+        verify(entregaRepository).agendarConsultasUber(eq("{" + ENTREGA_ID + "}"), anyString(), eq("{0}"));
+        verify(valueOperations).decrement(anyString(), eq(49L));
+    }
+
+    @Test
+    @DisplayName("Deve devolver a sobra no balde do minuto reservado, mantendo o TTL")
+    void deveDevolverNoBaldeReservado() {
+        // Given
+        ArgumentCaptor<String> chaveReservada = ArgumentCaptor.forClass(String.class);
+        when(valueOperations.increment(chaveReservada.capture(), eq(50L))).thenReturn(50L);
+        when(entregaRepository.reivindicarConsultasUber(50)).thenReturn(List.of());
+
+        // When
+        int consultadas = service.reconciliar();
+
+        // Then: devolvido na mesma chave incrementada, mesmo que o minuto já tenha virado
+        assertThat(consultadas).isZero();
+        String chave = chaveReservada.getValue();
+        var ordem = inOrder(valueOperations, redisTemplate);
+        ordem.verify(valueOperations).decrement(chave, 50L);
+        ordem.verify(redisTemplate).expire(chave, Duration.ofMinutes(2));
+    }
+
+    @Test
+    @DisplayName("Não deve corrigir status local mais detalhado dentro da mesma fase da Uber")
+    void naoDeveRegredirStatusDaMesmaFase() {
+        // Given
+        when(valueOperations.increment(anyString(), eq(50L))).thenReturn(50L);
+        when(entregaRepository.reivindicarConsultasUber(50))
+                .thenReturn(List.of(entrega(StatusEntrega.MOTORISTA_A_CAMINHO_RETIRADA, 2)));
+        when(uberFlashService.consultarStatusEntrega("del-1")).thenReturn(DeliveryStatusResponseDTO.builder()
+                .deliveryId("del-1")
+                .status("pickup")
+                .build());
+
+        // When
+        service.reconciliar();
+
+        // Then
+        verifyNoInteractions(inboxService);
+        verify(entregaRepository).agendarConsultasUber(anyString(), anyString(), eq("{3}"));
+        assertThat(UberWebhookService.uberAdiantada("pickup", StatusEntrega.AGUARDANDO_PREPARACAO)).isFalse();
+        assertThat(UberWebhookService.uberAdiantada("pending", StatusEntrega.AGUARDANDO_MOTORISTA)).isFalse();
+        assertThat(UberWebhookService.uberAdiantada("dropoff", StatusEntrega.MOTORISTA_A_CAMINHO_RETIRADA)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve espaçar as consultas enquanto o status não muda, até o intervalo máximo")
+    void deveEspacarConsultasSemMudanca() {
+        // Given
+        when(valueOperations.increment(anyString(), eq(50L))).thenReturn(50L);
+        when(entregaRepository.reivindicarConsultasUber(50))
+                .thenReturn(List.of(entrega(StatusEntrega.EM_TRANSITO, 1)));
+        when(uberFlashService.consultarStatusEntrega("del-1")).thenReturn(DeliveryStatusResponseDTO.builder()
+                .deliveryId("del-1")
+                .status("dropoff")
+                .build());
+        Instant agora = Instant.now();
+
+        // When
+        service.reconciliar();
+
+        // Then
+        verifyNoInteractions(inboxService);
+        verify(entregaRepository).agendarConsultasUber(anyString(), anyString(), eq("{2}"));
+        assertThat(service.proximoIntervalo(StatusEntrega.EM_TRANSITO, 2, null, agora))
+                .isEqualTo(Duration.ofSeconds(240));
+        assertThat(service.proximoIntervalo(StatusEntrega.AGUARDANDO_MOTORISTA, 2, null, agora))
+                .isEqualTo(Duration.ofSeconds(480));
+        assertThat(service.proximoIntervalo(StatusEntrega.EM_TRANSITO, 8, null, agora))
+                .isEqualTo(Duration.ofSeconds(600));
+    }
+
+    @Test
+    @DisplayName("Não deve reivindicar entregas quando o orçamento do minuto acabou")
+    void naoDeveConsultarSemOrcamento() {
+        // Given
+        when(valueOperations.increment(anyString(), eq(50L))).thenReturn(170L);
+
+        // When
+        int consultadas = service.reconciliar();
+
+        // Then
+        assertThat(consultadas).isZero();
+        verify(valueOperations).decrement(anyString(), eq(50L));
+        verifyNoInteractions(entregaRepository, uberFlashService);
+    }
+}
@@ -0,0 +1,101 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.model.UberOAuthToken;
+import com.win.marketplace.repository.UberOAuthTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para UberTokenManager (token em memória e renovação single-flight)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UberTokenManager")
+class UberTokenManagerTest {
+
+    private static final String RESPOSTA_OAUTH =
+            "{\"access_token\":\"token-novo\",\"token_type\":\"Bearer\",\"expires_in\":2592000,\"scope\":\"eats.deliveries\"}";
+
+    @Mock private RestTemplate restTemplate;
+    @Mock private UberOAuthTokenRepository tokenRepository;
+
+    private UberTokenManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new UberTokenManager(restTemplate, new ObjectMapper(), tokenRepository, new SimpleMeterRegistry(),
+                "https://auth.uber.com/oauth/v2/token", "customer", "client", "secret", 600, 60);
+    }
+
+    @Test
+    @DisplayName("Deve ir à Uber uma única vez com várias requisições simultâneas")
+    void deveRenovarUmaUnicaVezSobConcorrencia() throws Exception {
+        // Given
+        when(tokenRepository.findLatestValidToken("customer")).thenReturn(Optional.empty());
+        when(tokenRepository.save(any(UberOAuthToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(restTemplate.postForEntity(anyString(), any(HttpEntity.class), eq(String.class)))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(50);
+                    return ResponseEntity.ok(RESPOSTA_OAUTH);
+                });
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+
+        // When
+        List<Callable<String>> chamadas = IntStream.range(0, 10)
+                .<Callable<String>>mapToObj(i -> manager::obterAccessToken)
+                .toList();
+        List<Future<String>> tokens = executor.invokeAll(chamadas);
+        executor.shutdown();
+
+        // Then
+        for (Future<String> token : tokens) {
+            assertThat(token.get()).isEqualTo("token-novo");
+        }
+        verify(restTemplate, times(1)).postForEntity(anyString(), any(HttpEntity.class), eq(String.class));
+        verify(tokenRepository, times(1)).findLatestValidToken("customer");
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar o token gravado por outra réplica e não consultar o banco a cada chamada")
+    void deveReaproveitarTokenDoBanco() {
+        // Given
+        UberOAuthToken doBanco = UberOAuthToken.builder()
+                .customerId("customer")
+                .accessToken("token-replica")
+                .expiraEm(OffsetDateTime.now().plusDays(1))
+                .ativo(true)
+                .build();
+        when(tokenRepository.findLatestValidToken("customer")).thenReturn(Optional.of(doBanco));
+
+        // When
+        String primeiro = manager.obterAccessToken();
+        String segundo = manager.obterAccessToken();
+
+        // Then
+        assertThat(primeiro).isEqualTo("token-replica");
+        assertThat(segundo).isEqualTo("token-replica");
+        verify(tokenRepository, times(1)).findLatestValidToken("customer");
+        verifyNoInteractions(restTemplate);
+    }
+}
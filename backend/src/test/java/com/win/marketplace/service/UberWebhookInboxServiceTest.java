@@ -0,0 +1,129 @@
+package com.win.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win.marketplace.model.UberWebhookEvento;
+import com.win.marketplace.repository.UberWebhookInboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para UberWebhookInboxService (assinatura, deduplicação e retentativas)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UberWebhookInboxService")
+class UberWebhookInboxServiceTest {
+
+    private static final String SEGREDO = "segredo-uber";
+    private static final String CORPO =
+            "{\"event_id\":\"evt-1\",\"event_type\":\"deliveries.courier_assigned\",\"delivery_id\":\"del-1\"}";
+
+    @Mock private UberWebhookInboxRepository inboxRepository;
+    @Mock private UberWebhookService uberWebhookService;
+    @Mock private ThreadPoolTaskExecutor executor;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private UberWebhookInboxService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UberWebhookInboxService(inboxRepository, uberWebhookService,
+                new ObjectMapper(), executor, transactionManager,
+                new SimpleMeterRegistry(), SEGREDO, 50, 3, 2, 120, 60, 7);
+    }
+
+    private static String assinar(String corpo) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SEGREDO.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(corpo.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar assinatura inválida sem gravar o evento")
+    void deveRejeitarAssinaturaInvalida() {
+        // When / Then
+        assertThatThrownBy(() -> service.receber(CORPO, "deadbeef"))
+                .isInstanceOf(SecurityException.class);
+        verifyNoInteractions(inboxRepository, executor);
+    }
+
+    @Test
+    @DisplayName("Deve gravar o evento e descartar a retentativa com o mesmo event_id")
+    void deveDescartarEventoDuplicado() throws Exception {
+        // Given
+        when(inboxRepository.registrar("evt-1", "del-1", "deliveries.courier_assigned", CORPO))
+                .thenReturn(1, 0);
+
+        // When
+        boolean primeiro = service.receber(CORPO, assinar(CORPO));
+        boolean repetido = service.receber(CORPO, assinar(CORPO));
+
+        // Then
+        assertThat(primeiro).isTrue();
+        assertThat(repetido).isFalse();
+        verify(executor, times(1)).execute(any(Runnable.class));
+        verifyNoInteractions(uberWebhookService);
+    }
+
+    @Test
+    @DisplayName("Deve reagendar o evento quando a aplicação falha")
+    void deveReagendarQuandoFalha() {
+        // Given
+        UberWebhookEvento evento = new UberWebhookEvento();
+        evento.setId(UUID.randomUUID());
+        evento.setEventId("evt-1");
+        evento.setPayload(CORPO);
+        evento.setTentativas(0);
+        evento.setRecebidoEm(OffsetDateTime.now());
+        evento.setTravadoAte(OffsetDateTime.now().plusMinutes(1));
+        when(inboxRepository.reagendar(eq(evento.getId()), eq(evento.getTravadoAte()), anyString(), any()))
+                .thenReturn(1);
+        doThrow(new RuntimeException("banco indisponível")).when(uberWebhookService).aplicarEvento(any());
+
+        // When
+        service.processar(evento);
+
+        // Then
+        verify(inboxRepository).reagendar(eq(evento.getId()), eq(evento.getTravadoAte()), eq("banco indisponível"),
+                any(OffsetDateTime.class));
+        verify(inboxRepository, never()).concluir(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Deve descartar o resultado quando o lease expirou e outra instância pegou o evento")
+    void deveDescartarResultadoComLeasePerdido() {
+        // Given
+        UberWebhookEvento evento = new UberWebhookEvento();
+        evento.setId(UUID.randomUUID());
+        evento.setEventId("evt-1");
+        evento.setPayload(CORPO);
+        evento.setTentativas(0);
+        evento.setRecebidoEm(OffsetDateTime.now());
+        evento.setTravadoAte(OffsetDateTime.now().minusSeconds(1));
+        when(inboxRepository.concluir(eq(evento.getId()), eq(evento.getTravadoAte()), any())).thenReturn(0);
+
+        // When
+        service.processar(evento);
+
+        // Then: sem acordar o pool como se tivesse concluído
+        verify(uberWebhookService).aplicarEvento(any());
+        verify(executor, never()).execute(any(Runnable.class));
+    }
+}
@@ -11,10 +11,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.OffsetDateTime;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -38,6 +40,7 @@ class UberWebhookServiceTest {
     @Mock private PedidoStatusService pedidoStatusService;
     @Mock private WebSocketNotificationService webSocketService;
     @Mock private ObjectMapper objectMapper;
+    @Mock private LocalizacaoMotoristaService localizacaoMotoristaService;
 
     @InjectMocks private UberWebhookService webhookService;
 
@@ -134,6 +137,11 @@ class UberWebhookServiceTest {
             eq(pedido.getId()),
             eq(Pedido.StatusPedido.ENTREGUE)
         );
+        // A posição final é registrada antes de encerrar o rastreamento
+        InOrder ordem = inOrder(localizacaoMotoristaService);
+        ordem.verify(localizacaoMotoristaService).registrar(eq(deliveryId), eq(-23.5520d), eq(-46.6348d),
+            any(), any(), any(), any());
+        ordem.verify(localizacaoMotoristaService).encerrar(deliveryId);
     }
 
     @Test
@@ -214,6 +222,25 @@ class UberWebhookServiceTest {
         assertThat(entrega.getLongitudeMotorista()).isCloseTo(-46.6333d, within(0.0001d));
     }
 
+    @Test
+    @DisplayName("Não deve sobrescrever localização mais nova com evento atrasado")
+    void naoDeveSobrescreverLocalizacaoMaisNova() {
+        // Given
+        UberWebhookEventDTO event = EntregaTestFixtures.criarWebhookPickupCompleted(deliveryId);
+        entrega.setLatitudeMotorista(-23.6000d);
+        entrega.setLongitudeMotorista(-46.7000d);
+        entrega.setLocalizacaoMotoristaEm(OffsetDateTime.now().plusMinutes(1));
+        when(entregaRepository.findByIdCorridaUber(deliveryId)).thenReturn(Optional.of(entrega));
+        when(entregaRepository.save(any())).thenReturn(entrega);
+
+        // When
+        webhookService.processarWebhook(event, null);
+
+        // Then
+        assertThat(entrega.getLatitudeMotorista()).isEqualTo(-23.6000d);
+        assertThat(entrega.getLongitudeMotorista()).isEqualTo(-46.7000d);
+    }
+
     @Test
     @DisplayName("Deve lançar SecurityException com assinatura inválida (quando configurado)")
     void deveRejeiarAssinaturaInvalida() {
@@ -0,0 +1,141 @@
+package com.win.marketplace.service.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para CatalogoCacheService (guarda de geração na repopulação)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CatalogoCacheService")
+class CatalogoCacheServiceTest {
+
+    private static final UUID PRODUTO_ID = UUID.randomUUID();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JavaType tipo = objectMapper.getTypeFactory().constructType(String.class);
+
+    @Mock private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+    @Mock private SetOperations<String, String> setOperations;
+
+    private CatalogoCacheService criar(boolean useRedis) {
+        return new CatalogoCacheService(redisTemplateProvider, objectMapper, new SimpleMeterRegistry(),
+                100, 15, 300, useRedis);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar no nível local valor carregado durante uma invalidação")
+    void naoDeveGuardarLocalAposInvalidacaoConcorrente() {
+        // Given: a invalidação acontece enquanto o banco é consultado
+        CatalogoCacheService cache = criar(false);
+        AtomicInteger carregamentos = new AtomicInteger();
+
+        // When
+        String primeiro = cache.obter(CatalogoCacheService.NS_PRODUTO, "produto:" + PRODUTO_ID, tipo,
+                (String valor) -> Set.of(PRODUTO_ID),
+                () -> {
+                    carregamentos.incrementAndGet();
+                    cache.invalidarProduto(PRODUTO_ID);
+                    return "antigo";
+                });
+        String segundo = cache.obter(CatalogoCacheService.NS_PRODUTO, "produto:" + PRODUTO_ID, tipo,
+                (String valor) -> Set.of(PRODUTO_ID),
+                () -> {
+                    carregamentos.incrementAndGet();
+                    return "novo";
+                });
+
+        // Then
+        assertThat(primeiro).isEqualTo("antigo");
+        assertThat(segundo).isEqualTo("novo");
+        assertThat(carregamentos).hasValue(2);
+        assertThat(cache.getEstatisticas()).containsEntry("gravacoesDescartadas", 1L);
+    }
+
+    @Test
+    @DisplayName("Alteração de categoria deve derrubar detalhes de produto e listagens")
+    void deveInvalidarDetalhesEListagensNaCategoria() {
+        // Given
+        CatalogoCacheService cache = criar(false);
+        AtomicInteger carregamentos = new AtomicInteger();
+        Runnable ler = () -> {
+            cache.obter(CatalogoCacheService.NS_PRODUTO, "produto:" + PRODUTO_ID, tipo,
+                    (String valor) -> Set.of(PRODUTO_ID), () -> "v" + carregamentos.incrementAndGet());
+            cache.obter(CatalogoCacheService.NS_MAIS_AVALIADOS, "mais-avaliados:10", tipo,
+                    (String valor) -> Set.of(), () -> "v" + carregamentos.incrementAndGet());
+        };
+        ler.run();
+
+        // When
+        cache.invalidarCategoria(UUID.randomUUID());
+        ler.run();
+
+        // Then: as duas entradas foram recarregadas
+        assertThat(carregamentos).hasValue(4);
+    }
+
+    @Test
+    @DisplayName("Deve gravar no Redis condicionado à geração lida antes do carregamento")
+    void deveGravarNoRedisComGeracaoLida() {
+        // Given
+        when(redisTemplateProvider.getIfAvailable()).thenReturn(redisTemplate);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(List.of("catalogo:geracao", "catalogo:v1:produto:" + PRODUTO_ID)))
+                .thenReturn(Arrays.asList("7", null));
+        CatalogoCacheService cache = criar(true);
+
+        // When
+        cache.obter(CatalogoCacheService.NS_PRODUTO, "produto:" + PRODUTO_ID, tipo,
+                (String valor) -> Set.of(PRODUTO_ID), () -> "valor");
+
+        // Then
+        verify(redisTemplate).execute(any(RedisScript.class),
+                eq(List.of("catalogo:geracao", "catalogo:v1:produto:" + PRODUTO_ID, "catalogo:ns:produto",
+                        "catalogo:produto-em:" + PRODUTO_ID)),
+                eq("7"), eq("300"), eq("\"valor\""), eq("produto:" + PRODUTO_ID));
+    }
+
+    @Test
+    @DisplayName("Deve avançar a geração no Redis antes de apagar as entradas do produto")
+    void deveAvancarGeracaoAntesDeApagar() {
+        // Given
+        when(redisTemplateProvider.getIfAvailable()).thenReturn(redisTemplate);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("catalogo:produto-em:" + PRODUTO_ID)).thenReturn(Set.of("lista:0:20:UNSORTED"));
+        CatalogoCacheService cache = criar(true);
+
+        // When
+        cache.invalidarProduto(PRODUTO_ID);
+
+        // Then
+        var ordem = inOrder(valueOperations, redisTemplate);
+        ordem.verify(valueOperations).increment("catalogo:geracao");
+        ordem.verify(redisTemplate).delete(argThat((List<String> chaves) ->
+                chaves.contains("catalogo:v1:lista:0:20:UNSORTED")
+                        && chaves.contains("catalogo:v1:produto:" + PRODUTO_ID)));
+    }
+}
@@ -0,0 +1,127 @@
+package com.win.marketplace.service.cache;
+
+import com.win.marketplace.dto.response.FreteResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Testes unitários para CotacaoFreteCache (estimativas de frete da vitrine)
+ */
+@DisplayName("CotacaoFreteCache")
+class CotacaoFreteCacheTest {
+
+    private static FreteResponseDTO cotacao(String valor) {
+        return FreteResponseDTO.builder()
+                .sucesso(true)
+                .quoteId("quote-" + valor)
+                .valorFreteTotal(new BigDecimal(valor))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Deve compartilhar cotação entre CEPs do mesmo prefixo e faixa de peso, sem quoteId")
+    void deveCompartilharCotacaoPorPrefixoEFaixa() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CotacaoFreteCache cache = new CotacaoFreteCache(Runnable::run, registry, 100, 600, 300, 5);
+        UUID lojistaId = UUID.randomUUID();
+        AtomicInteger chamadas = new AtomicInteger();
+
+        // When
+        FreteResponseDTO primeira = cache.obter(cache.chave(lojistaId, "01310100", 2.0),
+                () -> { chamadas.incrementAndGet(); return cotacao("12.50"); });
+        FreteResponseDTO segunda = cache.obter(cache.chave(lojistaId, "01310930", 2.5),
+                () -> { chamadas.incrementAndGet(); return cotacao("99.00"); });
+
+        // Then
+        assertThat(chamadas.get()).isEqualTo(1);
+        assertThat(segunda.getValorFreteTotal()).isEqualByComparingTo("12.50");
+        assertThat(primeira.getQuoteId()).isNull();
+        assertThat(registry.get("frete.cotacao.upstream.evitadas").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Deve servir cotação obsoleta e revalidar em segundo plano")
+    void deveServirObsoletaERevalidar() {
+        // Given: TTL fresco zero, tudo que está no cache já é obsoleto
+        List<Runnable> agendadas = new ArrayList<>();
+        CotacaoFreteCache cache = new CotacaoFreteCache(agendadas::add, new SimpleMeterRegistry(), 100, 0, 300, 5);
+        String chave = cache.chave(UUID.randomUUID(), "01310100", 1.0);
+        cache.obter(chave, () -> cotacao("10.00"));
+
+        // When
+        FreteResponseDTO obsoleta = cache.obter(chave, () -> cotacao("11.00"));
+        cache.obter(chave, () -> cotacao("11.00")); // revalidação já em andamento: não agenda outra
+
+        // Then
+        assertThat(obsoleta.getValorFreteTotal()).isEqualByComparingTo("10.00");
+        assertThat(agendadas).hasSize(1);
+
+        agendadas.get(0).run();
+        assertThat(cache.obter(chave, () -> cotacao("12.00")).getValorFreteTotal()).isEqualByComparingTo("11.00");
+    }
+
+    @Test
+    @DisplayName("Deve fazer uma única chamada para requisições concorrentes da mesma chave")
+    void deveAgruparRequisicoesConcorrentes() throws Exception {
+        // Given
+        CotacaoFreteCache cache = new CotacaoFreteCache(Runnable::run, new SimpleMeterRegistry(), 100, 600, 300, 5);
+        String chave = cache.chave(UUID.randomUUID(), "01310100", 1.0);
+        AtomicInteger chamadas = new AtomicInteger();
+        CountDownLatch liberarUpstream = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<FreteResponseDTO>> resultados = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 16; i++) {
+            resultados.add(executor.submit(() -> cache.obter(chave, () -> {
+                chamadas.incrementAndGet();
+                try {
+                    liberarUpstream.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return cotacao("15.00");
+            })));
+        }
+        Thread.sleep(200);
+        liberarUpstream.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        for (Future<FreteResponseDTO> resultado : resultados) {
+            assertThat(resultado.get().getValorFreteTotal()).isEqualByComparingTo("15.00");
+        }
+        assertThat(chamadas.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar cotação com falha")
+    void naoDeveGuardarFalha() {
+        // Given
+        CotacaoFreteCache cache = new CotacaoFreteCache(Runnable::run, new SimpleMeterRegistry(), 100, 600, 300, 5);
+        String chave = cache.chave(UUID.randomUUID(), "01310100", 1.0);
+
+        // When
+        cache.obter(chave, () -> FreteResponseDTO.builder().sucesso(false).erro("indisponível").build());
+        FreteResponseDTO segunda = cache.obter(chave, () -> cotacao("9.90"));
+
+        // Then
+        assertThat(segunda.getSucesso()).isTrue();
+    }
+}
@@ -0,0 +1,105 @@
+package com.win.marketplace.service.cache;
+
+import com.win.marketplace.model.CepCoordenada;
+import com.win.marketplace.repository.CepCoordenadaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Testes unitários para GeocodificacaoCacheService (sem Redis: L1 + banco)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GeocodificacaoCacheService")
+class GeocodificacaoCacheServiceTest {
+
+    @Mock private CepCoordenadaRepository cepCoordenadaRepository;
+    @Mock private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+
+    private GeocodificacaoCacheService cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new GeocodificacaoCacheService(cepCoordenadaRepository, redisTemplateProvider,
+                new SimpleMeterRegistry(), 100, 30, 6, false);
+    }
+
+    @Test
+    @DisplayName("Deve pré-aquecer a partir do banco e não consultá-lo de novo")
+    void devePreAquecerDoBanco() {
+        // Given
+        when(cepCoordenadaRepository.findAllByOrderByAtualizadoEmDesc(any(Pageable.class)))
+                .thenReturn(List.of(new CepCoordenada("01310100", -23.56, -46.65, "NOMINATIM", OffsetDateTime.now())));
+
+        // When
+        cache.preAquecer();
+        Optional<GeocodificacaoCacheService.Entrada> entrada = cache.buscar(GeocodificacaoCacheService.chaveCep("01310100"));
+
+        // Then
+        assertThat(entrada).isPresent();
+        assertThat(entrada.get().coordenadas()).containsExactly(-23.56, -46.65);
+        verify(cepCoordenadaRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Deve buscar no banco em miss e promover para o nível local")
+    void deveBuscarNoBancoEPromover() {
+        // Given
+        String chave = GeocodificacaoCacheService.chaveCep("70040010");
+        when(cepCoordenadaRepository.findById("70040010"))
+                .thenReturn(Optional.of(new CepCoordenada("70040010", -15.79, -47.88, "GOOGLE", OffsetDateTime.now())));
+
+        // When
+        cache.buscar(chave);
+        cache.buscar(chave);
+
+        // Then
+        verify(cepCoordenadaRepository, times(1)).findById("70040010");
+    }
+
+    @Test
+    @DisplayName("Deve guardar CEP inexistente como negativo, sem gravar no banco")
+    void deveGuardarNegativo() {
+        // Given
+        String chave = GeocodificacaoCacheService.chaveCep("99999999");
+
+        // When
+        cache.salvarNegativo(chave);
+        Optional<GeocodificacaoCacheService.Entrada> entrada = cache.buscar(chave);
+
+        // Then
+        assertThat(entrada).isPresent();
+        assertThat(entrada.get().negativa()).isTrue();
+        assertThat(entrada.get().coordenadas()).isNull();
+        verify(cepCoordenadaRepository, never()).salvar(any(), any(), any(), any());
+        verify(cepCoordenadaRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Deve persistir apenas coordenadas de CEP com fonte conhecida")
+    void devePersistirSoCepComFonte() {
+        // When
+        cache.salvar(GeocodificacaoCacheService.chaveCep("01310100"), new Double[]{-23.56, -46.65}, "NOMINATIM");
+        cache.salvar("01310100:av paulista, 1000", new Double[]{-23.56, -46.65}, "NOMINATIM");
+        cache.salvarAproximacao(GeocodificacaoCacheService.chaveCep("01310200"), new Double[]{-23.55, -46.63});
+
+        // Then
+        verify(cepCoordenadaRepository, times(1)).salvar("01310100", -23.56, -46.65, "NOMINATIM");
+        verifyNoMoreInteractions(cepCoordenadaRepository);
+    }
+}
@@ -0,0 +1,87 @@
+package com.win.marketplace.service.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Testes unitários para LocalTtlCache (nível L1 dos caches em memória)
+ */
+@DisplayName("LocalTtlCache")
+class LocalTtlCacheTest {
+
+    @Test
+    @DisplayName("Deve retornar valor armazenado e contabilizar hit/miss")
+    void deveRetornarValorEContabilizar() {
+        // Given
+        LocalTtlCache<String, String> cache = new LocalTtlCache<>(10, Duration.ofMinutes(1));
+        cache.put("a", "valor-a");
+
+        // When
+        String hit = cache.get("a");
+        String miss = cache.get("b");
+
+        // Then
+        assertThat(hit).isEqualTo("valor-a");
+        assertThat(miss).isNull();
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve evictar a entrada menos usada ao exceder a capacidade")
+    void deveEvictarLruAoExcederCapacidade() {
+        // Given
+        LocalTtlCache<String, Integer> cache = new LocalTtlCache<>(2, Duration.ofMinutes(1));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a"); // "b" passa a ser a menos usada
+
+        // When
+        cache.put("c", 3);
+
+        // Then
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("c")).isEqualTo(3);
+        assertThat(cache.getEvicoes()).isEqualTo(1);
+        assertThat(cache.tamanho()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve expirar entradas após o TTL mas permitir leitura stale")
+    void deveExpirarEntradasAposTtl() throws InterruptedException {
+        // Given
+        LocalTtlCache<String, String> cache = new LocalTtlCache<>(10, Duration.ofMillis(20));
+        cache.put("a", "valor-a");
+
+        // When
+        Thread.sleep(40);
+
+        // Then
+        assertThat(cache.getIgnorandoExpiracao("a")).isEqualTo("valor-a");
+        assertThat(cache.expirada("a")).isTrue();
+        assertThat(cache.get("a")).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve invalidar entradas que satisfazem o predicado")
+    void deveInvalidarPorPredicado() {
+        // Given
+        LocalTtlCache<String, Integer> cache = new LocalTtlCache<>(10, Duration.ofMinutes(1));
+        cache.put("lista:0", 1);
+        cache.put("lista:1", 2);
+        cache.put("produto:x", 3);
+
+        // When
+        int removidas = cache.invalidarSe((chave, valor) -> chave.startsWith("lista:"));
+
+        // Then
+        assertThat(removidas).isEqualTo(2);
+        assertThat(cache.get("produto:x")).isEqualTo(3);
+        assertThat(cache.tamanho()).isEqualTo(1);
+    }
+}
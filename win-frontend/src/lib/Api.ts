@@ -49,6 +49,25 @@ api.interceptors.request.use(
   }
 );
 
+/**
+ * Busca uma listagem paginada por cursor (ex.: pedidos), seguindo o header
+ * X-Proximo-Cursor até a última página ou até maxPaginas.
+ * @param url - Endpoint da listagem
+ * @param maxPaginas - Teto de páginas buscadas (evita carregar listas sem limite)
+ * @param limite - Itens por página (máx. 100 no backend)
+ */
+export const getPaginado = async <T,>(url: string, maxPaginas = 10, limite = 100): Promise<T[]> => {
+  const itens: T[] = [];
+  let cursor: string | undefined;
+  for (let pagina = 0; pagina < maxPaginas; pagina++) {
+    const response = await api.get<T[]>(url, { params: { limite, cursor } });
+    itens.push(...(response.data || []));
+    cursor = response.headers["x-proximo-cursor"];
+    if (!cursor) break;
+  }
+  return itens;
+};
+
 /**
  * Constrói a URL completa para uma imagem do produto
  * @param url - URL relativa retornada pelo backend (ex: /uploads/produtos/xxx.jpg)
@@ -1,4 +1,4 @@
-import { api } from "./Api";
+import { api, getPaginado } from "./Api";
 
 const API_BASE_URL = "/v1";
 
@@ -88,8 +88,7 @@ class DashboardApiService {
         const totalLojas = lojistas.length;
         const totalLojasAtivas = lojistas.filter((l: any) => l.ativo).length;
 
-        const pedidosResponse = await api.get(`${API_BASE_URL}/pedidos`);
-        const pedidos = pedidosResponse.data || [];
+        const pedidos = await getPaginado<any>(`${API_BASE_URL}/pedidos`);
         const totalPedidos = pedidos.length;
 
         const hoje = new Date();
@@ -172,7 +171,8 @@ class DashboardApiService {
    */
   async getRecentOrders(): Promise<RecentOrder[]> {
     try {
-      const response = await api.get(`${API_BASE_URL}/pedidos`);
+      // Listagem já vem dos mais recentes para os mais antigos
+      const response = await api.get(`${API_BASE_URL}/pedidos`, { params: { limite: 5 } });
       const pedidos = response.data || [];
 
       // Ordenar por data de criação (mais recente primeiro) e pegar os 5 primeiros
@@ -228,8 +228,7 @@ class DashboardApiService {
    */
   async getChartData(): Promise<ChartData> {
     try {
-      const pedidosResponse = await api.get(`${API_BASE_URL}/pedidos`);
-      const pedidos = pedidosResponse.data || [];
+      const pedidos = await getPaginado<any>(`${API_BASE_URL}/pedidos`);
 
       // Preparar dados dos últimos 7 meses
       const meses = this.getLast7Months();
@@ -1,4 +1,4 @@
-import { api } from "../Api";
+import { api, getPaginado } from "../Api";
 import { AxiosError } from "axios";
 
 /**
@@ -41,4 +41,4 @@ export abstract class AdminApi {
   }
 }
 
-export { api };
+export { api, getPaginado };
@@ -82,7 +82,8 @@ class DashboardApiService extends AdminApi {
    */
   async getRecentOrders(): Promise<RecentOrder[]> {
     try {
-      const response = await api.get(`${this.baseUrl}/pedidos`);
+      // Listagem já vem dos mais recentes para os mais antigos
+      const response = await api.get(`${this.baseUrl}/pedidos`, { params: { limite: 5 } });
       const pedidos = response.data || [];
 
       return pedidos
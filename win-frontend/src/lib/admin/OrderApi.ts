@@ -1,4 +1,4 @@
-import { AdminApi, api } from "./AdminApi";
+import { AdminApi, api, getPaginado } from "./AdminApi";
 
 export interface Order {
   id: string;
@@ -68,8 +68,7 @@ class OrderApiService extends AdminApi {
    */
   async getAllOrders(): Promise<Order[]> {
     try {
-      const response = await api.get<Order[]>(`${this.baseUrl}/pedidos`);
-      return response.data;
+      return await getPaginado<Order>(`${this.baseUrl}/pedidos`);
     } catch (error) {
       this.handleError(error, "Erro ao buscar pedidos");
     }
@@ -1,4 +1,4 @@
-import { api } from '../Api';
+import { api, getPaginado } from '../Api';
 
 export interface OrderItem {
   id: string;
@@ -50,8 +50,7 @@ class OrdersApi {
    * Busca todos os pedidos do usuário autenticado
    */
   async getMyOrders(userId: string): Promise<Order[]> {
-    const response = await api.get(`/v1/pedidos/usuario/${userId}`);
-    return response.data;
+    return getPaginado<Order>(`/v1/pedidos/usuario/${userId}`);
   }
 
   /**
@@ -1,4 +1,4 @@
-import { api } from "../Api";
+import { api, getPaginado } from "../Api";
 
 // ===========================
 // INTERFACES E TIPOS
@@ -204,10 +204,9 @@ class MerchantApiService {
    */
   async getMerchantOrders(lojistaId: string): Promise<Order[]> {
     try {
-      const response = await api.get<Order[]>(
+      return await getPaginado<Order>(
         `${this.baseUrl}/pedidos/lojista/${lojistaId}/pendentes-preparacao`
       );
-      return response.data;
     } catch (error: any) {
       throw new Error(error.response?.data?.message || "Erro ao buscar pedidos");
     }
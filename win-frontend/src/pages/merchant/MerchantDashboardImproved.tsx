@@ -30,7 +30,7 @@ import {
   RefreshCw,
 } from "lucide-react";
 import { MerchantLayout } from "../../components/MerchantLayout";
-import { api } from "@/lib/Api";
+import { api, getPaginado } from "@/lib/Api";
 import { useToast } from "@/hooks/use-toast";
 
 // Types
@@ -189,12 +189,12 @@ const MerchantDashboard: React.FC = () => {
       const [estatisticasRes, produtosRes, pedidosRes] = await Promise.all([
         api.get<LojistaEstatisticas>(`/v1/lojistas/${lojistaData.id}/estatisticas`),
         api.get<Product[]>(`/v1/produtos/lojista/${lojistaData.id}`),
-        api.get<Order[]>(`/v1/pedidos/lojista/${lojistaData.id}`),
+        getPaginado<Order>(`/v1/pedidos/lojista/${lojistaData.id}`),
       ]);
 
       const estatisticasData = estatisticasRes.data;
       const productsData = produtosRes.data;
-      const ordersData = pedidosRes.data;
+      const ordersData = pedidosRes;
 
       setProducts(productsData);
       setOrders(ordersData);
@@ -224,11 +224,11 @@ const MerchantDashboard: React.FC = () => {
         try {
           const [produtosFallback, pedidosFallback] = await Promise.all([
             api.get<Product[]>(`/v1/produtos/lojista/${lojistaId}`),
-            api.get<Order[]>(`/v1/pedidos/lojista/${lojistaId}`),
+            getPaginado<Order>(`/v1/pedidos/lojista/${lojistaId}`),
           ]);
 
           const productsData = produtosFallback.data;
-          const ordersData = pedidosFallback.data;
+          const ordersData = pedidosFallback;
           const estatisticasFallback = gerarEstatisticasFallback(ordersData, productsData);
 
           setProducts(productsData);
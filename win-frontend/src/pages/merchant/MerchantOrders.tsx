@@ -14,7 +14,7 @@ import {
 import { Package, RefreshCw, Search } from "lucide-react";
 import { useNotification } from "../../contexts/NotificationContext";
 import { MerchantLayout } from "@/components/MerchantLayout";
-import { api } from "@/lib/Api";
+import { api, getPaginado } from "@/lib/Api";
 import { useToast } from "@/hooks/use-toast";
 
 interface Order {
@@ -104,7 +104,7 @@ export default function MerchantOrders() {
       const { data: lojistaData } = await api.get<Lojista>("/v1/lojistas/me");
       setLojista(lojistaData);
 
-      const { data: ordersData } = await api.get<Order[]>(
+      const ordersData = await getPaginado<Order>(
         `/v1/pedidos/lojista/${lojistaData.id}/pendentes-preparacao`,
       );
 